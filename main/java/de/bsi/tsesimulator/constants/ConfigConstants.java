@@ -119,6 +119,84 @@ public abstract class ConfigConstants {
 	 * Value:<b>persistentStorageDir</b>
 	 */
 	public static final String CFG_TAG_PATH_TO_PERSISTENT_STORAGE = "persistentStorageDir";
+
+	/**
+	 * Value:<b>storageIndexDir</b>
+	 * @since 1.6
+	 */
+	public static final String CFG_TAG_STORAGE_INDEX_DIR = "storageIndexDir";
+
+	/**
+	 * Value:<b>storageMode</b>
+	 * @since 1.6
+	 */
+	public static final String CFG_TAG_STORAGE_MODE = "storageMode";
+
+	/**
+	 * Value:<b>files</b>
+	 * @since 1.6
+	 */
+	public static final String CFG_ENTRY_STORAGE_MODE_FILES = "files";
+
+	/**
+	 * Value:<b>segments</b>
+	 * @since 1.6
+	 */
+	public static final String CFG_ENTRY_STORAGE_MODE_SEGMENTS = "segments";
+
+	/**
+	 * Value:<b>storageSync</b>
+	 * @since 1.6
+	 */
+	public static final String CFG_TAG_STORAGE_SYNC = "storageSync";
+
+	/**
+	 * Value:<b>none</b>
+	 * @since 1.6
+	 */
+	public static final String CFG_ENTRY_STORAGE_SYNC_NONE = "none";
+
+	/**
+	 * Value:<b>write</b>
+	 * @since 1.6
+	 */
+	public static final String CFG_ENTRY_STORAGE_SYNC_WRITE = "write";
+
+	/**
+	 * Value:<b>group</b>
+	 * @since 1.6
+	 */
+	public static final String CFG_ENTRY_STORAGE_SYNC_GROUP = "group";
+
+	/**
+	 * Value:<b>storageGroupCommitMaxBatch</b>
+	 * @since 1.6
+	 */
+	public static final String CFG_TAG_STORAGE_GROUP_COMMIT_MAX_BATCH = "storageGroupCommitMaxBatch";
+
+	/**
+	 * Value:<b>storageGroupCommitMaxDelay</b>
+	 * @since 1.6
+	 */
+	public static final String CFG_TAG_STORAGE_GROUP_COMMIT_MAX_DELAY = "storageGroupCommitMaxDelay";
+
+	/**
+	 * Value:<b>writeAheadJournal</b>
+	 * @since 1.6
+	 */
+	public static final String CFG_TAG_WRITE_AHEAD_JOURNAL = "writeAheadJournal";
+
+	/**
+	 * Value:<b>true</b>
+	 * @since 1.6
+	 */
+	public static final String CFG_ENTRY_WRITE_AHEAD_JOURNAL_TRUE = "true";
+
+	/**
+	 * Value:<b>false</b>
+	 * @since 1.6
+	 */
+	public static final String CFG_ENTRY_WRITE_AHEAD_JOURNAL_FALSE = "false";
 	
 
 	/**
@@ -169,6 +247,75 @@ public abstract class ConfigConstants {
 	public static final String CFG_TAG_MAX_NUMBER_TRANSACTIONS = "maxNumberOfTransactions";
 	
 
+	/**
+	 * Value:<b>fixedBasePrecomputation</b>
+	 */
+	public static final String CFG_TAG_FIXED_BASE_PRECOMPUTATION = "fixedBasePrecomputation";
+
+	/**
+	 * Value:<b>true</b>
+	 */
+	public static final String CFG_ENTRY_FIXED_BASE_PRECOMPUTATION_TRUE = "true";
+
+	/**
+	 * Value:<b>false</b>
+	 */
+	public static final String CFG_ENTRY_FIXED_BASE_PRECOMPUTATION_FALSE = "false";
+	
+
+	/**
+	 * Value:<b>noncePoolSize</b>
+	 */
+	public static final String CFG_TAG_NONCE_POOL_SIZE = "noncePoolSize";
+
+	/**
+	 * Value:<b>noncePoolRefillThreshold</b>
+	 */
+	public static final String CFG_TAG_NONCE_POOL_REFILL_THRESHOLD = "noncePoolRefillThreshold";
+
+	/**
+	 * Value:<b>noncePoolThreads</b>
+	 */
+	public static final String CFG_TAG_NONCE_POOL_THREADS = "noncePoolThreads";
+	
+
+	/**
+	 * Value:<b>signatureEngine</b>
+	 */
+	public static final String CFG_TAG_SIGNATURE_ENGINE = "signatureEngine";
+
+	/**
+	 * Value:<b>reference</b>
+	 */
+	public static final String CFG_ENTRY_SIGNATURE_ENGINE_REFERENCE = "reference";
+
+	/**
+	 * Value:<b>provider</b>
+	 */
+	public static final String CFG_ENTRY_SIGNATURE_ENGINE_PROVIDER = "provider";
+
+	/**
+	 * Value:<b>crossCheck</b>
+	 */
+	public static final String CFG_ENTRY_SIGNATURE_ENGINE_CROSS_CHECK = "crossCheck";
+	
+
+	/**
+	 * Value:<b>curveArithmetic</b>
+	 */
+	public static final String CFG_TAG_CURVE_ARITHMETIC = "curveArithmetic";
+
+	/**
+	 * Value:<b>specialized</b>
+	 */
+	public static final String CFG_ENTRY_CURVE_ARITHMETIC_SPECIALIZED = "specialized";
+
+	/**
+	 * Value:<b>generic</b>
+	 */
+	public static final String CFG_ENTRY_CURVE_ARITHMETIC_GENERIC = "generic";
+	
+
 	/**
 	 * Value:<b>config.properties</b>
 	 */
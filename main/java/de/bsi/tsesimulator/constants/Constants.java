@@ -166,6 +166,44 @@ public abstract class Constants {
 	 */
 	public static final int DEFAULT_MAX_NUMBER_OF_TRANSACTIONS = 512;
 	
+	/**
+	 * Value: <b>0</b><br>
+	 * Default number of precomputed nonces stored by the {@linkplain main.java.de.bsi.tsesimulator.tse.crypto.NoncePool}.
+	 * Used in case the config.properties file does not contain a legal value. A value of 0 means that no nonce pool is used.
+	 */
+	public static final int DEFAULT_NONCE_POOL_SIZE = 0;
+	
+	/**
+	 * Value: <b>0</b><br>
+	 * Default refill threshold of the {@linkplain main.java.de.bsi.tsesimulator.tse.crypto.NoncePool}.
+	 * Used in case the config.properties file does not contain a legal value. A value of 0 lets the pool refill itself when it is half empty.
+	 */
+	public static final int DEFAULT_NONCE_POOL_REFILL_THRESHOLD = 0;
+	
+	/**
+	 * Value: <b>1</b><br>
+	 * Default number of threads refilling the {@linkplain main.java.de.bsi.tsesimulator.tse.crypto.NoncePool}.
+	 * Used in case the config.properties file does not contain a legal value.
+	 */
+	public static final int DEFAULT_NONCE_POOL_THREADS = 1;
+	
+	/**
+	 * Value: <b>64</b><br>
+	 * Default maximum number of log messages that the {@linkplain main.java.de.bsi.tsesimulator.tse.storage.Storage} writes with one group commit.
+	 * Used in case the config.properties file does not contain a legal value.
+	 * @since 1.6
+	 */
+	public static final int DEFAULT_STORAGE_GROUP_COMMIT_MAX_BATCH = 64;
+	
+	/**
+	 * Value: <b>0</b><br>
+	 * Default time in milliseconds that the {@linkplain main.java.de.bsi.tsesimulator.tse.storage.Storage} waits for further log messages before a 
+	 * group commit. Used in case the config.properties file does not contain a legal value. A value of 0 means that only the log messages that are
+	 * already waiting are written together.
+	 * @since 1.6
+	 */
+	public static final int DEFAULT_STORAGE_GROUP_COMMIT_MAX_DELAY = 0;
+	
 	//custom viable times (used for checking the zonedDateTime values against in TSEController)
 	/**
 	 * EARLIEST_LEGAL_TIME is 1.1.2019 0:00. The time zone used is the one returned by {@linkplain ZoneId#systemDefault()}.
@@ -313,4 +351,10 @@ public abstract class Constants {
 	 * Value: <b>persistentValues.ser</b><br>
 	 */
 	public static final String FILE_NAME_PERSISTEDVALUES_SER = "persistentValues.ser";
+
+	/**
+	 * Value: <b>writeAheadJournal.wal</b><br>
+	 * @since 1.6
+	 */
+	public static final String FILE_NAME_WRITE_AHEAD_JOURNAL = "writeAheadJournal.wal";
 }
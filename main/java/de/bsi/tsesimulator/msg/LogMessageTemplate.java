@@ -0,0 +1,104 @@
+package main.java.de.bsi.tsesimulator.msg;
+
+import java.util.Arrays;
+
+import main.java.de.bsi.tsesimulator.constants.ASN1Constants;
+import main.java.de.bsi.tsesimulator.exceptions.ValueNullException;
+import main.java.de.bsi.tsesimulator.tlv.DerWriter;
+
+/**
+ * Holds the parts of a log message that never change for a running TSE in their ASN.1 DER encoded form. These are the version and the certified data type
+ * at the beginning of the upper part of a log message and the serial number and the signature algorithm at its end.<br>
+ * The {@linkplain main.java.de.bsi.tsesimulator.tse.ERSSpecificModule} creates one template for the transaction logs and one for the system logs when it
+ * is constructed. {@linkplain TransactionLogMessage#toMinorTLVByteArray(LogMessageTemplate)} and {@linkplain SystemLogMessage#toMinorTLVByteArray(LogMessageTemplate)}
+ * then only have to encode the variable values of a log message and copy the rest from the template.
+ *
+ * @since 1.6
+ */
+public final class LogMessageTemplate {
+	private final int version;
+	private final String certifiedDataType;
+	private final byte[] serialNumber;
+	private final String algorithm;
+
+	private final byte[] encodedPrefix;			//version INTEGER and certifiedDataType OBJECT IDENTIFIER
+	private final byte[] encodedSuffix;			//serialNumber OCTET STRING and signatureAlgorithm SEQUENCE
+
+	/**
+	 * Encodes the constant parts of a log message.
+	 * @param version the version of the log messages, see {@linkplain LogMessage#getVersion()}
+	 * @param certifiedDataType the OID of the log message type, e.g. {@linkplain main.java.de.bsi.tsesimulator.constants.Constants#TRANSACTION_LOG_OID}
+	 * @param serialNumber the serial number of the TSE. It is copied, so later changes to the array do not affect the template.
+	 * @param algorithm the OID of the signature algorithm
+	 * @throws ValueNullException if the certified data type, the serial number or the algorithm is null
+	 * @since 1.6
+	 */
+	public LogMessageTemplate(int version, String certifiedDataType, byte[] serialNumber, String algorithm) throws ValueNullException {
+		if(serialNumber == null) {
+			throw new ValueNullException("The serial number of the log message template is not set");
+		}
+		this.version = version;
+		this.certifiedDataType = certifiedDataType;
+		this.serialNumber = serialNumber.clone();
+		this.algorithm = algorithm;
+
+		DerWriter writer = DerWriter.get();
+
+		//1. the prefix, encoded like in TransactionLogMessage#toMinorTLVByteArray()
+		//UNIVERSAL 2 INTEGER and UNIVERSAL 6 OBJECT IDENTIFIER
+		writer.writeInteger(ASN1Constants.UNIVERSAL_INTEGER, version);
+		writer.writeObjectIdentifier(ASN1Constants.UNIVERSAL_OBJECT_INDENTIFIER, certifiedDataType);
+		this.encodedPrefix = writer.toByteArray();
+
+		//2. the suffix
+		//UNIVERSAL 4 OCTET STRING and UNIVERSAL 16 constructed SEQUENCE containing the algorithm as UNIVERSAL 6 OBJECT IDENTIFIER. THERE ARE NO PARAMETERS YET
+		writer.reset();
+		writer.writeOctets(ASN1Constants.UNIVERSAL_OCTET_STRING, this.serialNumber);
+		writer.startConstructed(ASN1Constants.UNIVERSAL_SEQUENCE);
+		writer.writeObjectIdentifier(ASN1Constants.UNIVERSAL_OBJECT_INDENTIFIER, algorithm);
+		writer.endConstructed();
+		this.encodedSuffix = writer.toByteArray();
+		writer.reset();
+	}
+
+	/**
+	 * Checks if the constant values of the log message are the ones the template was created with. Only then the encoded parts of the template
+	 * may be used for the log message.
+	 * @param logMessage the log message that shall be encoded
+	 * @return true, if version, certified data type, serial number and algorithm of the log message equal those of the template
+	 * @since 1.6
+	 */
+	public boolean matches(LogMessage logMessage) {
+		if(logMessage.getVersion() != version) {
+			return false;
+		}
+		//the log messages created by the simulator use the same String instances as the template, so most of the time the cheap check is enough
+		String otherCertifiedDataType = logMessage.getCertifiedDatatype();
+		if((otherCertifiedDataType != certifiedDataType) && ((otherCertifiedDataType == null) || !otherCertifiedDataType.equals(certifiedDataType))) {
+			return false;
+		}
+		String otherAlgorithm = logMessage.getAlgorithm();
+		if((otherAlgorithm != algorithm) && ((otherAlgorithm == null) || !otherAlgorithm.equals(algorithm))) {
+			return false;
+		}
+		return Arrays.equals(logMessage.getSerialNumber(), serialNumber);
+	}
+
+	/**
+	 * Records the encoded version and certified data type in the writer.
+	 * @param writer the writer the log message is encoded with
+	 * @since 1.6
+	 */
+	public void writePrefix(DerWriter writer) {
+		writer.writeEncoded(encodedPrefix, 0, encodedPrefix.length);
+	}
+
+	/**
+	 * Records the encoded serial number and signature algorithm in the writer.
+	 * @param writer the writer the log message is encoded with
+	 * @since 1.6
+	 */
+	public void writeSuffix(DerWriter writer) {
+		writer.writeEncoded(encodedSuffix, 0, encodedSuffix.length);
+	}
+}
@@ -0,0 +1,371 @@
+package main.java.de.bsi.tsesimulator.msg;
+
+import java.util.Arrays;
+
+import main.java.de.bsi.tsesimulator.constants.ASN1Constants;
+import main.java.de.bsi.tsesimulator.constants.Constants;
+import main.java.de.bsi.tsesimulator.exceptions.TLVException;
+import main.java.de.bsi.tsesimulator.exceptions.ValueNullException;
+import main.java.de.bsi.tsesimulator.exceptions.ValueTooBigException;
+import main.java.de.bsi.tsesimulator.tlv.ObjectIdentifier;
+import main.java.de.bsi.tsesimulator.tlv.TLVUtility;
+
+/**
+ * A read-only view of an encoded log message of any type. Unlike a {@linkplain LogMessage}, it does not decode the log message when it is created.
+ * The constructor only reads the tag and length of every field and remembers where the fields are. A value is decoded when it is asked for, Strings
+ * are decoded only once. Readers of stored log messages that need one or two fields, like export filters or the verification, should use a view
+ * instead of a {@linkplain TransactionLogMessage} or {@linkplain SystemLogMessage}.<br>
+ * The fields that all log messages have are read by this class, {@linkplain TransactionLogMessageView} and {@linkplain SystemLogMessageView} add
+ * the fields of their log message type. {@linkplain #wrap(byte[])} creates the view that fits the certified data type.<br>
+ * The array the view was created from must not be modified as long as the view is in use. A view is not thread-safe.
+ *
+ * @since 1.6
+ */
+public class LogMessageView {
+	/**
+	 * A log message with more top level fields than this is not accepted. A transaction log has at most 14.
+	 */
+	private static final int MAX_NUMBER_OF_FIELDS = 16;
+
+	//the encoded certified data types, to find the type of a log message without decoding its OID
+	private static final byte[] TRANSACTION_LOG_TYPE = ObjectIdentifier.convertOIDtoTLVValue(Constants.TRANSACTION_LOG_OID);
+	private static final byte[] SYSTEM_LOG_TYPE = ObjectIdentifier.convertOIDtoTLVValue(Constants.SYSTEM_LOG_OID);
+
+	private final byte[] encoded;
+	//for every top level field: the tag octet, the position of the tag octet, the position of the value and the length of the value
+	private final byte[] fieldTags;
+	private final int[] fieldOffsets;
+	private final int[] valueOffsets;
+	private final int[] valueLengths;
+	private final int numberOfFields;
+	private final int algorithmField;			//the index of the SEQUENCE signatureAlgorithm
+
+	//decoded on first access
+	private String certifiedDatatype;
+	private String algorithm;
+
+	/**
+	 * Creates a view of an encoded log message. Reads the positions of the top level fields and checks that the fields every log message has
+	 * are present, no value is decoded.
+	 * @param encoded the encoded log message, with or without the SEQUENCE wrapper. Not copied.
+	 * @throws TLVException if the array is not a complete log message
+	 * @since 1.6
+	 */
+	public LogMessageView(byte[] encoded) throws TLVException {
+		if(encoded == null) {
+			throw new TLVException("An empty array can not be viewed as a log message!");
+		}
+		this.encoded = encoded;
+		this.fieldTags = new byte[MAX_NUMBER_OF_FIELDS];
+		this.fieldOffsets = new int[MAX_NUMBER_OF_FIELDS];
+		this.valueOffsets = new int[MAX_NUMBER_OF_FIELDS];
+		this.valueLengths = new int[MAX_NUMBER_OF_FIELDS];
+
+		//1. skip the SEQUENCE wrapper, if there is one. The log message itself starts with the version.
+		int position = 0;
+		int end = encoded.length;
+		if((end > 0) && (encoded[0] == ASN1Constants.UNIVERSAL_SEQUENCE)) {
+			readHeader(0, end, 0);
+			position = valueOffsets[0];
+			end = position + valueLengths[0];
+		}
+
+		//2. remember where each top level field is. The content of the SEQUENCE signatureAlgorithm is skipped like any other value.
+		int count = 0;
+		while(position < end) {
+			if(count == MAX_NUMBER_OF_FIELDS) {
+				throw new TLVException("The log message has more than " +MAX_NUMBER_OF_FIELDS +" fields!");
+			}
+			position = readHeader(position, end, count);
+			count++;
+		}
+		this.numberOfFields = count;
+
+		//3. check the fields every log message has: version, certifiedDataType, ..., serialNumber, signatureAlgorithm, ..., signatureCounter, logTime,
+		//signatureValue. Only audit logs have a field (seAuditData) between the signatureAlgorithm and the signatureCounter.
+		if(count < 7) {
+			throw new TLVException("The log message has only " +count +" fields, at least 7 are required!");
+		}
+		int sequenceField = 2;
+		while((sequenceField < count) && (fieldTags[sequenceField] != ASN1Constants.UNIVERSAL_SEQUENCE)) {
+			sequenceField++;
+		}
+		this.algorithmField = sequenceField;
+		if((fieldTags[0] != ASN1Constants.UNIVERSAL_INTEGER) || (fieldTags[1] != ASN1Constants.UNIVERSAL_OBJECT_INDENTIFIER)
+				|| (sequenceField > count - 4) || (fieldTags[sequenceField - 1] != ASN1Constants.UNIVERSAL_OCTET_STRING)
+				|| (fieldTags[count - 3] != ASN1Constants.UNIVERSAL_INTEGER) || (fieldTags[count - 2] != ASN1Constants.UNIVERSAL_INTEGER)
+				|| (fieldTags[count - 1] != ASN1Constants.UNIVERSAL_OCTET_STRING)) {
+			throw new TLVException("The array does not have the structure of a log message!");
+		}
+	}
+
+	/**
+	 * Creates a view of the same log message that uses the positions of the fields the other view has already read.
+	 * Used by the subclasses, so that {@linkplain #wrap(byte[])} reads the fields only once.
+	 * @param view the view of the log message
+	 * @since 1.6
+	 */
+	protected LogMessageView(LogMessageView view) {
+		//the positions are never changed after the constructor, so they can be shared
+		this.encoded = view.encoded;
+		this.fieldTags = view.fieldTags;
+		this.fieldOffsets = view.fieldOffsets;
+		this.valueOffsets = view.valueOffsets;
+		this.valueLengths = view.valueLengths;
+		this.numberOfFields = view.numberOfFields;
+		this.algorithmField = view.algorithmField;
+	}
+
+	/**
+	 * Creates the view that fits the certified data type of the log message: a {@linkplain TransactionLogMessageView} for transaction logs,
+	 * a {@linkplain SystemLogMessageView} for system logs and a plain LogMessageView for all other log messages.
+	 * @param encoded the encoded log message, with or without the SEQUENCE wrapper. Not copied.
+	 * @return the view of the log message
+	 * @throws TLVException if the array is not a complete log message of its type
+	 * @since 1.6
+	 */
+	public static LogMessageView wrap(byte[] encoded) throws TLVException {
+		LogMessageView view = new LogMessageView(encoded);
+		if(view.valueEquals(1, TRANSACTION_LOG_TYPE)) {
+			return new TransactionLogMessageView(view);
+		}
+		if(view.valueEquals(1, SYSTEM_LOG_TYPE)) {
+			return new SystemLogMessageView(view);
+		}
+		return view;
+	}
+
+	//-----------------------------------FIELDS ALL LOG MESSAGES HAVE------------------------------------------------------------------
+
+	/**
+	 * @return the encoded log message the view was created from. Not a copy.
+	 * @since 1.6
+	 */
+	public byte[] getEncoded() {
+		return encoded;
+	}
+
+	/**
+	 * @return the version
+	 * @throws ValueNullException if the value is empty
+	 * @throws ValueTooBigException if the value is longer than 4 octets
+	 * @since 1.6
+	 */
+	public int getVersion() throws ValueNullException, ValueTooBigException {
+		return TLVUtility.asn1Value_ByteArrayToInteger(encoded, valueOffsets[0], valueLengths[0]);
+	}
+
+	/**
+	 * @return the certified data type, an OID in the "dot" notation
+	 * @since 1.6
+	 */
+	public String getCertifiedDatatype() {
+		if(certifiedDatatype == null) {
+			certifiedDatatype = ObjectIdentifier.convertTLVValueToOID(encoded, valueOffsets[1], valueLengths[1]);
+		}
+		return certifiedDatatype;
+	}
+
+	/**
+	 * @return a copy of the serial number
+	 * @since 1.6
+	 */
+	public byte[] getSerialNumber() {
+		return getFieldValue(algorithmField - 1);
+	}
+
+	/**
+	 * Compares the serial number with the given one without copying it.
+	 * @param serialNumber the serial number to compare with
+	 * @return true, if the log message was created by the TSE with this serial number
+	 * @since 1.6
+	 */
+	public boolean hasSerialNumber(byte[] serialNumber) {
+		return valueEquals(algorithmField - 1, serialNumber);
+	}
+
+	/**
+	 * @return the algorithm, the OID in the "dot" notation that is the first element of the SEQUENCE signatureAlgorithm
+	 * @throws TLVException if the SEQUENCE signatureAlgorithm does not start with an OID
+	 * @since 1.6
+	 */
+	public String getAlgorithm() throws TLVException {
+		if(algorithm == null) {
+			//the algorithm OID is the first TLV inside the SEQUENCE
+			int sequenceValueOffset = valueOffsets[algorithmField];
+			int sequenceEnd = sequenceValueOffset + valueLengths[algorithmField];
+			if((sequenceEnd - sequenceValueOffset < 2) || (encoded[sequenceValueOffset] != ASN1Constants.UNIVERSAL_OBJECT_INDENTIFIER)
+					|| ((encoded[sequenceValueOffset + 1] & 0x80) != 0) || (encoded[sequenceValueOffset + 1] > sequenceEnd - sequenceValueOffset - 2)) {
+				throw new TLVException("The signature algorithm does not start with an object identifier!");
+			}
+			algorithm = ObjectIdentifier.convertTLVValueToOID(encoded, sequenceValueOffset + 2, encoded[sequenceValueOffset + 1]);
+		}
+		return algorithm;
+	}
+
+	/**
+	 * @return the signature counter
+	 * @throws ValueNullException if the value is empty
+	 * @throws ValueTooBigException if the value is longer than 8 octets
+	 * @since 1.6
+	 */
+	public long getSignatureCounter() throws ValueNullException, ValueTooBigException {
+		return getFieldValueAsLong(numberOfFields - 3);
+	}
+
+	/**
+	 * @return the log time as Unix time. Other formats of the log time are not supported, like in {@linkplain LogMessage}.
+	 * @throws ValueNullException if the value is empty
+	 * @throws ValueTooBigException if the value is longer than 8 octets
+	 * @since 1.6
+	 */
+	public long getLogTime() throws ValueNullException, ValueTooBigException {
+		return getFieldValueAsLong(numberOfFields - 2);
+	}
+
+	/**
+	 * @return a copy of the signature value
+	 * @since 1.6
+	 */
+	public byte[] getSignatureValue() {
+		return getFieldValue(numberOfFields - 1);
+	}
+
+	/**
+	 * @return the position of the first signed octet in the encoded log message, the tag octet of the version
+	 * @since 1.6
+	 */
+	public int getSignedPartOffset() {
+		return fieldOffsets[0];
+	}
+
+	/**
+	 * @return the number of signed octets, everything from the version to the signature value, which is not signed itself
+	 * @since 1.6
+	 */
+	public int getSignedPartLength() {
+		return fieldOffsets[numberOfFields - 1] - fieldOffsets[0];
+	}
+
+	//-----------------------------------METHODS FOR THE SUBCLASSES------------------------------------------------------------------
+
+	/**
+	 * Looks for a context-specific field of the log message type. They are between the certifiedDataType and the serialNumber.
+	 * @param tag the tag of the field
+	 * @return the index of the field, -1 if the log message does not have it
+	 * @since 1.6
+	 */
+	protected final int findField(byte tag) {
+		for(int field = 2; field < algorithmField - 1; field++) {
+			if(fieldTags[field] == tag) {
+				return field;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param field the index of the field
+	 * @return a copy of the value of the field, null if the index is -1
+	 * @since 1.6
+	 */
+	protected final byte[] getFieldValue(int field) {
+		if(field < 0) {
+			return null;
+		}
+		return Arrays.copyOfRange(encoded, valueOffsets[field], valueOffsets[field] + valueLengths[field]);
+	}
+
+	/**
+	 * @param field the index of the field
+	 * @return the value of the field as a String, decoded with the default charset like <i>new String(byte[])</i>. Null if the index is -1.
+	 * @since 1.6
+	 */
+	protected final String getFieldValueAsString(int field) {
+		if(field < 0) {
+			return null;
+		}
+		return new String(encoded, valueOffsets[field], valueLengths[field]);
+	}
+
+	/**
+	 * @param field the index of the field
+	 * @return the value of the field as a long
+	 * @throws ValueNullException if the value is empty
+	 * @throws ValueTooBigException if the value is longer than 8 octets
+	 * @since 1.6
+	 */
+	protected final long getFieldValueAsLong(int field) throws ValueNullException, ValueTooBigException {
+		return TLVUtility.asn1Value_ByteArrayToLong(encoded, valueOffsets[field], valueLengths[field]);
+	}
+
+	/**
+	 * Compares the value of a field with an array without copying the value.
+	 * @param field the index of the field
+	 * @param value the expected value
+	 * @return true, if the field has exactly this value. False, if the index is -1 or value is null.
+	 * @since 1.6
+	 */
+	protected final boolean valueEquals(int field, byte[] value) {
+		if((field < 0) || (value == null) || (valueLengths[field] != value.length)) {
+			return false;
+		}
+		int valueOffset = valueOffsets[field];
+		for(int i = 0; i < value.length; i++) {
+			if(encoded[valueOffset + i] != value[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	//-----------------------------------INTERNAL METHODS------------------------------------------------------------------
+
+	/**
+	 * Reads the tag and the length of one TLV and stores them for the field.
+	 * @param offset the position of the tag octet
+	 * @param end the position after the last octet that may belong to the TLV
+	 * @param field the index under which the TLV is stored
+	 * @return the position after the TLV
+	 * @throws TLVException if the TLV is incomplete or uses a high tag number form tag
+	 */
+	private int readHeader(int offset, int end, int field) throws TLVException {
+		//1. check if tag and length octet are present and the tag is in low number form
+		if(end - offset < 2) {
+			throw new TLVException("ASN1 TLVs are at least 2 octets long!");
+		}
+		if((encoded[offset] & 0x1F) == 0x1F) {
+			throw new TLVException("Does not support high tag number form!");
+		}
+
+		//2. get the length, in the short or the long form
+		int valueLength;
+		int valueOffset;
+		byte firstLengthOctet = encoded[offset + 1];
+		if((firstLengthOctet & 0x80) == 0) {
+			valueLength = firstLengthOctet;
+			valueOffset = offset + 2;
+		}
+		else {
+			int numberOfLengthOctets = (firstLengthOctet & 0b01111111);
+			if((numberOfLengthOctets == 0) || (numberOfLengthOctets > 4) || (end - offset - 2 < numberOfLengthOctets)) {
+				throw new TLVException("The length of the TLV can not be decoded!");
+			}
+			valueLength = 0;
+			for(int i = 0; i < numberOfLengthOctets; i++) {
+				valueLength = (valueLength << 8) | (encoded[offset + 2 + i] & 0xFF);
+			}
+			valueOffset = offset + 2 + numberOfLengthOctets;
+		}
+
+		//3. check if the value fits, the first check catches lengths that do not fit into an int
+		if((valueLength < 0) || (valueLength > end - valueOffset)) {
+			throw new TLVException("The input byte array is too short for the encoded length!");
+		}
+		fieldTags[field] = encoded[offset];
+		fieldOffsets[field] = offset;
+		valueOffsets[field] = valueOffset;
+		valueLengths[field] = valueLength;
+		return valueOffset + valueLength;
+	}
+}
@@ -2,16 +2,16 @@ package main.java.de.bsi.tsesimulator.msg;
 
 import main.java.de.bsi.tsesimulator.constants.ASN1Constants;
 import main.java.de.bsi.tsesimulator.constants.Constants;
-import main.java.de.bsi.tsesimulator.exceptions.TLVException;
 import main.java.de.bsi.tsesimulator.exceptions.ValueNullException;
 import main.java.de.bsi.tsesimulator.exceptions.ValueTooBigException;
+import main.java.de.bsi.tsesimulator.tlv.DerWriter;
 import main.java.de.bsi.tsesimulator.tlv.ObjectIdentifier;
 import main.java.de.bsi.tsesimulator.tlv.TLVObject;
 import main.java.de.bsi.tsesimulator.tlv.TLVUtility;
+import main.java.de.bsi.tsesimulator.tlv.TLVView;
 import main.java.de.bsi.tsesimulator.tse.SecurityModule;
 import main.java.de.bsi.tsesimulator.tse.CryptoCore;
 import main.java.de.bsi.tsesimulator.tse.ERSSpecificModule;
-import main.java.de.bsi.tsesimulator.utils.Utils;
 
 
 /**
@@ -158,6 +158,63 @@ public class SystemLogMessage extends LogMessage {
 		this.setSignatureValue(input[index].getValue());
 	}
 	
+	/**
+	 * Constructs a SystemLogMessage from the views of an encoded system log message. Works like {@linkplain #SystemLogMessage(TLVObject[])}, 
+	 * but reads the values directly from the encoded log message. Only the byte array values are copied.<br>
+	 * The calling method has to make sure that the TLVView[] is without the Sequence-wrapper that the {@linkplain SecurityModule} attaches, 
+	 * see {@linkplain TLVView#decodeWithoutSEQUENCEWrapper(byte[])}.
+	 * @param input a SystemLogMessage in its representation as a TLVView[] without the SEQUENCE-wrapper.
+	 * @throws ValueTooBigException gets thrown by the conversion methods {@linkplain TLVView#getValueAsInteger()} and {@linkplain TLVView#getValueAsLong()}.
+	 * @throws ValueNullException gets thrown by the conversion methods {@linkplain TLVView#getValueAsInteger()} and {@linkplain TLVView#getValueAsLong()}.
+	 * @throws NullPointerException if the input array is empty
+	 * @see TransactionLogMessage#TransactionLogMessage(TLVView[])
+	 * @since 1.6
+	 */
+	public SystemLogMessage(TLVView[] input) throws ValueNullException, ValueTooBigException, NullPointerException {
+		if(input == null) {
+			throw new NullPointerException("An empty array can not be converted to a SystemLogMessage!");
+		}
+		//the fields that are always present: version, certifiedDataType, operationType
+		this.setVersion(input[0].getValueAsInteger());
+		this.setCertifiedDatatype(input[1].getValueAsOID());
+		this.setOperationType(input[2].getValueAsString());
+		
+		//the optional fields are recognized by their tag
+		int index = 3;
+		
+		//systemOperationData, present in every SystemLog except the one created by initialize()
+		if(input[index].getTag() == ((byte) 0x81)) {
+			this.setSystemOperationData(input[index].getValue());
+			index++;
+		}
+		
+		//additionalInternalData
+		if(input[index].getTag() == ((byte) 0x82)) {
+			this.setAdditionalInternalData(input[index].getValue());
+			index++;
+		}
+		
+		//next entry should be the serial number
+		this.setSerialNumber(input[index].getValue());
+		index++;
+		
+		//get the algorithm from the SEQUENCE signature algorithm
+		++index;	//because there is one view that represents the whole SEQUENCE
+		this.setAlgorithm(input[index].getValueAsOID());
+		index++;
+		
+		//get the signature counter
+		this.setSignatureCounter(input[index].getValueAsLong());
+		index++;
+		
+		//get the log time. currently only unix time as a long supported
+		this.setLogTime(input[index].getValueAsLong());
+		index++;
+		
+		//get the signature value
+		this.setSignatureValue(input[index].getValue());
+	}
+	
 	
 	
 	//--------------------------------------SETTER METHODS-------------------------------------------------------------------------------
@@ -214,152 +271,105 @@ public class SystemLogMessage extends LogMessage {
 	//--------------------------------------TO BYTE ARRAY METHODS-------------------------------------------------------------------------------
 	
 	/**
-	 * Converts the SystemLogMessage into its ASN.1 DER encoded form using {@linkplain TLVObject#toTLVByteArray()}. It assumes that every value that should be 
+	 * Converts the SystemLogMessage into its ASN.1 DER encoded form using {@linkplain DerWriter}. It assumes that every value that should be 
 	 * present in a SystemLogMessage conforming to BSI TR-03151 is present. This is because it is only used to create SystemLogMessages in the context of this simulator 
 	 * and the calling classes provide all the necessary values. <br>
 	 * The missing values, signature counter, log time and signature value, can only be provided by the {@linkplain CryptoCore} after the upper part of the log message 
 	 * has been converted into this TLV byte array. Hence the name <i>MinorTLVByteArray</i>, since it is not yet complete. The assembly of the whole log message in its 
-	 * TLV byte array form is performed by {@linkplain ERSSpecificModule}. 
+	 * TLV byte array form is performed by {@linkplain ERSSpecificModule}.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * Encoded by the {@linkplain DerWriter} of the thread into a single array of the exact length, like {@linkplain TransactionLogMessage#toMinorTLVByteArray()}.<br>
 	 * @return the upper part of the SystemLogMessage in its ASN.1 DER encoded form.
-	 * @throws ValueNullException if an (instance) parameter that should be present is not and therefore this Exception is thrown when trying to convert that
-	 * particular value to a TLV byte array via {@linkplain TLVObject#toTLVByteArray()}.
-	 * @throws ValueTooBigException if the value of an (instance) parameter is too long to have its length encoded according to the ASN1 DER rules,
-	 * {@linkplain TLVObject#toTLVByteArray()} throws this exception.
+	 * @throws ValueNullException if an (instance) parameter that should be present is not.
+	 * @throws ValueTooBigException no longer thrown, every length of a Java array can be DER encoded. Kept for compatibility.
+	 * @version 1.6
 	 */
 	public byte[] toMinorTLVByteArray() throws ValueNullException, ValueTooBigException {
-		byte[] systemLogAsMinorByteArray = null;
-		
-		//non elegant handling of the optional/conditional parameter problem. Should nevertheless be quicker than several if(something==null) checks in the method body
-		boolean systemOperationDataPresent = !(systemOperationData==null);
-		boolean additionalIntDataPresent = !(additionalIntData==null);
-		
-		//Version to TLV
-		//UNIVERSAL 2 INTEGER
-		TLVObject versionElement=new TLVObject();
-		versionElement.setTagWithByteElement(ASN1Constants.UNIVERSAL_INTEGER);
-		versionElement.setValueWithIntegerElement(this.getVersion());
-				
-		//certifiedDataType to TLV
-		//UNIVERSAL 6 OBJECT IDENTIFIER
-		TLVObject certifiedDataTypeElement= new TLVObject();
-		certifiedDataTypeElement.setTagWithByteElement(ASN1Constants.UNIVERSAL_OBJECT_INDENTIFIER);
-		certifiedDataTypeElement.setValue(ObjectIdentifier.convertOIDtoTLVValue(this.getCertifiedDatatype()));	//conversion to value delegated to
-		
-		//operationType to TLV
-		//Context Specific IMPLICIT 0 PRINTABLE STRING
-		TLVObject operationTypeElement = new TLVObject();
-		operationTypeElement.setTagWithIntegerElement(0x80);
-		operationTypeElement.setValue(operationType.getBytes());		
-		
-		//if systemOperationData present:
-		TLVObject systemOperationDataElement = new TLVObject();
-		if(systemOperationDataPresent) {
-			//systemOperationData to TLV
-			//Context Specific IMPLICIT 1 OCTET STRING
-			systemOperationDataElement.setTagWithIntegerElement(0x81);
-			systemOperationDataElement.setValue(systemOperationData);
+		DerWriter writer = DerWriter.get();
+		try {
+			//Version to TLV
+			//UNIVERSAL 2 INTEGER
+			writer.writeInteger(ASN1Constants.UNIVERSAL_INTEGER, this.getVersion());
+			
+			//certifiedDataType to TLV
+			//UNIVERSAL 6 OBJECT IDENTIFIER
+			writer.writeObjectIdentifier(ASN1Constants.UNIVERSAL_OBJECT_INDENTIFIER, this.getCertifiedDatatype());
+			
+			//operationType, systemOperationData and additional internal data
+			writeSystemLogValues(writer);
+			
+			//serialNumber to TLV
+			//UNIVERSAL 4 OCTET STRING
+			writer.writeOctets(ASN1Constants.UNIVERSAL_OCTET_STRING, this.getSerialNumber());
+			
+			//signatureAlgorithm SEQUENCE to TLV
+			//UNIVERSAL 16 constructed SEQUENCE containing the algorithm as UNIVERSAL 6 OBJECT IDENTIFIER. THERE ARE NO PARAMETERS YET
+			writer.startConstructed(ASN1Constants.UNIVERSAL_SEQUENCE);
+			writer.writeObjectIdentifier(ASN1Constants.UNIVERSAL_OBJECT_INDENTIFIER, this.getAlgorithm());
+			writer.endConstructed();
+		} catch (ValueNullException e) {
+			throw new ValueNullException("The value of a TLVObject was not set and could not be converted to a TLV byte array. " +e.getMessage());
 		}
 		
-		//if additional internal data present
-		TLVObject additionalIntDataElement = new TLVObject();
-		if(additionalIntDataPresent) {
-			additionalIntDataElement.setTagWithIntegerElement(0x82);
-			additionalIntDataElement.setValue(additionalIntData);
+		//encode everything into one array
+		return writer.toByteArray();
+	}
+	
+	/**
+	 * Same as {@linkplain #toMinorTLVByteArray()}, but copies the encoded version, certified data type, serial number and signature algorithm from the 
+	 * template, like {@linkplain TransactionLogMessage#toMinorTLVByteArray(LogMessageTemplate)}.<br>
+	 * If the template is null or was created for other constant values, the log message is encoded by {@linkplain #toMinorTLVByteArray()}. 
+	 * The result is the same in every case.
+	 * @param template the template of the {@linkplain ERSSpecificModule} for system logs, may be null
+	 * @return the upper part of the SystemLogMessage in its ASN.1 DER encoded form.
+	 * @throws ValueNullException if an (instance) parameter that should be present is not.
+	 * @throws ValueTooBigException see {@linkplain #toMinorTLVByteArray()}
+	 * @since 1.6
+	 */
+	public byte[] toMinorTLVByteArray(LogMessageTemplate template) throws ValueNullException, ValueTooBigException {
+		if((template == null) || !template.matches(this)) {
+			return toMinorTLVByteArray();
 		}
 		
-		//serialNumber to TLV
-		//UNIVERSAL 4 OCTET STRING
-		TLVObject serialNumberElement = new TLVObject();
-		serialNumberElement.setTagWithByteElement(ASN1Constants.UNIVERSAL_OCTET_STRING);
-		serialNumberElement.setValue(this.getSerialNumber());
-		
-		//signatureAlgorithm SEQUENCE to TLV
-		//UNIVERSAL 16 constructed SEQUENCE
-			TLVObject signatureAlgorithmElement=new TLVObject();
-			signatureAlgorithmElement.setTagWithIntegerElement(0x30);	
-			
-			//algorithm to TLV
-			//UNIVERSAL 6 OBJECT IDENTIFIER
-			TLVObject algorithmElement = new TLVObject();
-			algorithmElement.setTagWithByteElement(ASN1Constants.UNIVERSAL_OBJECT_INDENTIFIER);
-			//get the algorithm from the ERSSpecificModule and convert its OID to asn1
-			algorithmElement.setValue(ObjectIdentifier.convertOIDtoTLVValue(this.getAlgorithm()));
-			
-			//THERE ARE NO PARAMETERS YET
-			// Append algorithm to signatureAlgorithm TLV
-	        try {
-				signatureAlgorithmElement.appendChild(algorithmElement);
-			} catch (TLVException e1) {
-				e1.printStackTrace();
-			} catch (ValueNullException e1) {
-				e1.printStackTrace();
-			} catch (ValueTooBigException e1) {
-				e1.printStackTrace();
-			}
-	        
-	      //create all the byte arrays to hold the values
-	        byte[] versionTLV=null;
-	        byte[] certifiedDataTypeTLV =null;
-			byte[] operationTypeTLV = null;
-			byte[] systemOperationDataTLV = null;
-			byte[] additionalIntDataTLV = null;
-			byte[] serialNumberTLV = null;
-			byte[] signatureAlgorithmTLV = null;
+		DerWriter writer = DerWriter.get();
+		try {
+			//version and certifiedDataType
+			template.writePrefix(writer);
 			
-		//convert every value present to a TLV byte array	
-			try {
-				versionTLV = versionElement.toTLVByteArray();
-				certifiedDataTypeTLV = certifiedDataTypeElement.toTLVByteArray();
-				operationTypeTLV = operationTypeElement.toTLVByteArray();
-				//systemOperationData is conditional
-				if(systemOperationDataPresent) {
-					systemOperationDataTLV = systemOperationDataElement.toTLVByteArray();
-				}
-				//additional internal data is optional
-				if(additionalIntDataPresent) {
-					additionalIntDataTLV=additionalIntDataElement.toTLVByteArray();
-				}
-				
-				serialNumberTLV=serialNumberElement.toTLVByteArray();
-				signatureAlgorithmTLV=signatureAlgorithmElement.toTLVByteArray();
-			} catch (ValueNullException e) {
-				throw new ValueNullException("The value of a TLVObject was not set and could not be converted to a TLV byte array");
-			} catch (ValueTooBigException e) {
-				throw new ValueTooBigException("The value of a TLVObject was too long to be ASN1 DER encoded. The TLVObject could not be converted to a TLV byte array");
-			}
+			//operationType, systemOperationData and additional internal data
+			writeSystemLogValues(writer);
 			
-			//depending on what values are present, concatenate the TLV byte arrays into one byte array
-			//if systemOperationData present and NO additionalIntData present:
-			if(systemOperationDataPresent && (!additionalIntDataPresent)) {
-				systemLogAsMinorByteArray=Utils.concatAnyNumberOfByteArrays(versionTLV, certifiedDataTypeTLV, operationTypeTLV, systemOperationDataTLV,
-						serialNumberTLV, signatureAlgorithmTLV);
-			}
-			//if NO systemOperationData present and NO additionalIntData present:
-			else if((!systemOperationDataPresent) && (!additionalIntDataPresent)) {
-				systemLogAsMinorByteArray=Utils.concatAnyNumberOfByteArrays(versionTLV, certifiedDataTypeTLV, operationTypeTLV, 
-						serialNumberTLV, signatureAlgorithmTLV);
-			}
-			//if systemOperationOperationData present and additionalIntData present
-			else if(systemOperationDataPresent && additionalIntDataPresent) {
-				systemLogAsMinorByteArray=Utils.concatAnyNumberOfByteArrays(versionTLV, certifiedDataTypeTLV, operationTypeTLV, systemOperationDataTLV,
-						additionalIntDataTLV, serialNumberTLV, signatureAlgorithmTLV);
-			}
-			//if NO systemOperationOperationData present and additionalIntData present
-			else if((!systemOperationDataPresent) && additionalIntDataPresent) {
-				systemLogAsMinorByteArray=Utils.concatAnyNumberOfByteArrays(versionTLV, certifiedDataTypeTLV, operationTypeTLV, 
-						additionalIntDataTLV,serialNumberTLV, signatureAlgorithmTLV);
-			}
-/*			
-if(!additionalIntDataPresent) {
-	systemLogAsMinorByteArray=Utils.concatAnyNumberOfByteArrays(versionTLV, certifiedDataTypeTLV, operationTypeTLV, systemOperationDataTLV,
-			serialNumberTLV, signatureAlgorithmTLV);
-}
-else{
-	systemLogAsMinorByteArray=Utils.concatAnyNumberOfByteArrays(versionTLV, certifiedDataTypeTLV, operationTypeTLV, systemOperationDataTLV,
-			additionalIntDataTLV,serialNumberTLV, signatureAlgorithmTLV);
-}
-*/	
-			return systemLogAsMinorByteArray;
+			//serialNumber and signatureAlgorithm SEQUENCE
+			template.writeSuffix(writer);
+		} catch (ValueNullException e) {
+			throw new ValueNullException("The value of a TLVObject was not set and could not be converted to a TLV byte array. " +e.getMessage());
+		}
+		
+		//encode everything into one array
+		return writer.toByteArray();
+	}
+	
+	/**
+	 * Records the values that are specific to a system log message: the operation type, the system operation data and the additional internal data.
+	 * @param writer the writer the log message is encoded with
+	 * @throws ValueNullException if the operation type is not set
+	 */
+	private void writeSystemLogValues(DerWriter writer) throws ValueNullException {
+		//operationType to TLV
+		//Context Specific IMPLICIT 0 PRINTABLE STRING
+		writer.writeString((byte) 0x80, operationType);
+		
+		//systemOperationData is conditional
+		//Context Specific IMPLICIT 1 OCTET STRING
+		if(systemOperationData != null) {
+			writer.writeOctets((byte) 0x81, systemOperationData);
+		}
+		
+		//additional internal data is optional
+		//Context Specific IMPLICIT 2 OCTET STRING
+		if(additionalIntData != null) {
+			writer.writeOctets((byte) 0x82, additionalIntData);
+		}
 	}
 	
 	//------------------------------------------------TO STRING METHODS--------------------------------------------------------
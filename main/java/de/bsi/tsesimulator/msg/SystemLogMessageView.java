@@ -0,0 +1,78 @@
+package main.java.de.bsi.tsesimulator.msg;
+
+import main.java.de.bsi.tsesimulator.exceptions.TLVException;
+
+/**
+ * A read-only view of an encoded system log message. Reads the same fields as {@linkplain SystemLogMessage#SystemLogMessage(main.java.de.bsi.tsesimulator.tlv.TLVView[])},
+ * but only when they are asked for. See {@linkplain LogMessageView}.
+ *
+ * @since 1.6
+ */
+public class SystemLogMessageView extends LogMessageView {
+	//the tags of the fields of a system log message
+	private static final byte OPERATION_TYPE_TAG = (byte) 0x80;
+	private static final byte SYSTEM_OPERATION_DATA_TAG = (byte) 0x81;
+	private static final byte ADDITIONAL_INTERNAL_DATA_TAG = (byte) 0x82;
+
+	//the indices of the fields, -1 for the fields that are not present
+	private final int operationTypeField;
+	private final int systemOperationDataField;
+	private final int additionalInternalDataField;
+
+	//decoded on first access
+	private String operationType;
+
+	/**
+	 * Creates a view of an encoded system log message. Reads the positions of the fields and checks that the operation type is present,
+	 * no value is decoded.
+	 * @param encoded the encoded system log message, with or without the SEQUENCE wrapper. Not copied.
+	 * @throws TLVException if the array is not a complete system log message
+	 * @since 1.6
+	 */
+	public SystemLogMessageView(byte[] encoded) throws TLVException {
+		this(new LogMessageView(encoded));
+	}
+
+	/**
+	 * Creates a view of a system log message that has already been read by a {@linkplain LogMessageView}.
+	 * @param view the view of the system log message
+	 * @throws TLVException if the system log message is not complete
+	 */
+	SystemLogMessageView(LogMessageView view) throws TLVException {
+		super(view);
+		operationTypeField = findField(OPERATION_TYPE_TAG);
+		systemOperationDataField = findField(SYSTEM_OPERATION_DATA_TAG);
+		additionalInternalDataField = findField(ADDITIONAL_INTERNAL_DATA_TAG);
+
+		if(operationTypeField < 0) {
+			throw new TLVException("The operation type of the system log message is missing!");
+		}
+	}
+
+	/**
+	 * @return the operation type, e.g. "UpdateTime"
+	 * @since 1.6
+	 */
+	public String getOperationType() {
+		if(operationType == null) {
+			operationType = getFieldValueAsString(operationTypeField);
+		}
+		return operationType;
+	}
+
+	/**
+	 * @return a copy of the system operation data, null if the log message does not have any. Only the system log of initialize() has none.
+	 * @since 1.6
+	 */
+	public byte[] getSystemOperationData() {
+		return getFieldValue(systemOperationDataField);
+	}
+
+	/**
+	 * @return a copy of the additional internal data, null if the log message does not have any
+	 * @since 1.6
+	 */
+	public byte[] getAdditionalInternalData() {
+		return getFieldValue(additionalInternalDataField);
+	}
+}
@@ -5,11 +5,13 @@ import main.java.de.bsi.tsesimulator.constants.Constants;
 import main.java.de.bsi.tsesimulator.exceptions.TLVException;
 import main.java.de.bsi.tsesimulator.exceptions.ValueNullException;
 import main.java.de.bsi.tsesimulator.exceptions.ValueTooBigException;
+import main.java.de.bsi.tsesimulator.tlv.DerWriter;
+import main.java.de.bsi.tsesimulator.tlv.EncodedSegments;
 import main.java.de.bsi.tsesimulator.tlv.ObjectIdentifier;
 import main.java.de.bsi.tsesimulator.tlv.TLVObject;
 import main.java.de.bsi.tsesimulator.tlv.TLVUtility;
+import main.java.de.bsi.tsesimulator.tlv.TLVView;
 import main.java.de.bsi.tsesimulator.tse.ERSSpecificModule;
-import main.java.de.bsi.tsesimulator.utils.Utils;
 
 
 /**
@@ -176,6 +178,75 @@ public class TransactionLogMessage extends LogMessage {
 		this.setSignatureValue(input[index].getValue());
 	}
 	
+	/**
+	 * Constructs a TransactionLogMessage from the views of an encoded transaction log message. Works like {@linkplain #TransactionLogMessage(TLVObject[])}, 
+	 * but reads the values directly from the encoded log message. Only the byte array values are copied.
+	 * <br>Please be aware of the fact, that the TLVView[] has to represent the TransactionLogMessage in its "data only form", as it is returned by 
+	 * {@linkplain TLVView#decodeWithoutSEQUENCEWrapper(byte[])}. The first data present has to be the version.
+	 * @param input a transaction log message in its representation as a TLVView[] without the SEQUENCE-wrapper.
+	 * @throws ValueTooBigException gets thrown by the conversion methods {@linkplain TLVView#getValueAsInteger()} and {@linkplain TLVView#getValueAsLong()}.
+	 * @throws ValueNullException gets thrown by the conversion methods {@linkplain TLVView#getValueAsInteger()} and {@linkplain TLVView#getValueAsLong()}.
+	 * @throws NullPointerException if the input array is empty
+	 * @throws TLVException if the length of the TLVView array is too long or to short to be converted into a TransactionLogMessage
+	 * @since 1.6
+	 */
+	public TransactionLogMessage(TLVView[] input) throws NullPointerException, TLVException, ValueNullException, ValueTooBigException {
+		//check if the input array is null
+		if(input == null) {
+			throw new NullPointerException("An empty array can not be converted to a TransactionLogMessage!");
+		}
+		//same number of elements as in the TLVObject[] form
+		if((input.length < 13) ||(input.length > 16)) {
+			throw new TLVException("input array length:\t" +input.length +"\trequired 13 <= input length <= 16\n");
+		}
+		//the fields that are always present: version, certifiedDataType, operationType, clientID, processData, processType
+		this.setVersion(input[0].getValueAsInteger());
+		this.setCertifiedDatatype(input[1].getValueAsOID());
+		this.setOperationtype(input[2].getValueAsString());
+		this.setClientID(input[3].getValueAsString());
+		this.setProcessData(input[4].getValue());
+		this.setProcessType(input[5].getValueAsString());
+		
+		//the optional fields are recognized by their tag
+		int index = 6;
+		
+		//additional external data
+		if(input[index].getTag() == ((byte) 0x84)) {
+			this.additionalExtData = input[index].getValue();
+			index++;
+		}
+		
+		//next entry in input has to be the transaction number
+		this.setTransactionNumber(input[index].getValueAsLong());
+		index++;
+		
+		//additional internal data
+		if(input[index].getTag() == ((byte) 0x86)) {
+			this.setAdditionalIntData(input[index].getValue());
+			index++;
+		}
+		
+		//set the serial number
+		this.setSerialNumber(input[index].getValue());
+		index++;
+		
+		//get the algorithm from the SEQUENCE signature algorithm
+		++index;	//because there is one view that represents the whole SEQUENCE
+		this.setAlgorithm(input[index].getValueAsOID());
+		index++;
+		
+		//get the signature counter
+		this.setSignatureCounter(input[index].getValueAsLong());
+		index++;
+		
+		//get the log time. currently only Unix time as a long supported
+		this.setLogTime(input[index].getValueAsLong());
+		index++;
+		
+		//get the signature value
+		this.setSignatureValue(input[index].getValue());
+	}
+	
 	//-----------------------------------GETTER METHODS---------------------------------------------------
 	/**
 	 * Getter for the transaction number
@@ -264,180 +335,148 @@ public class TransactionLogMessage extends LogMessage {
 	//---------------------------------------------------------------------TO BYTE ARRAY METHODS-----------------------------------------------
 	
 	/**
-	 * Converts the TransactionLogMessage into its ASN.1 DER encoded form using {@linkplain TLVObject#toTLVByteArray()}. It assumes that every value that should be 
+	 * Converts the TransactionLogMessage into its ASN.1 DER encoded form using {@linkplain DerWriter}. It assumes that every value that should be 
 	 * present in a transaction log message is present, since it is only used by the simulator. Classes higher up the hierarchy have to make sure, that every 
 	 * value is present. <br>
 	 * The missing values signature counter, log time and signature value are provided by the {@linkplain CryptoCore} which uses the result of this very function 
 	 * as input for the signature creation. 
-	 * The assembly of the whole log message in its TLV byte array form is performed by {@linkplain ERSSpecificModule}. 
+	 * The assembly of the whole log message in its TLV byte array form is performed by {@linkplain ERSSpecificModule}.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * The values are recorded in the {@linkplain DerWriter} of the thread, which encodes them into a single array of the exact length. Before, every value was 
+	 * converted into a TLVObject and a TLV byte array of its own, and all of them were concatenated afterwards.<br>
 	 * @return a byte array of the log message containing everything except the signature counter, the log time and the signature value.
-	 * @throws ValueNullException if an (instance) parameter that should be present is not and therefore this Exception is thrown when trying to convert that
-	 * particular value to a TLV byte array via {@linkplain TLVObject#toTLVByteArray()}.
-	 * @throws ValueTooBigException if the value of an (instance) parameter is too long to have its length encoded according to the ASN1 DER rules,
-	 * {@linkplain TLVObject#toTLVByteArray()} throws this exception.
+	 * @throws ValueNullException if an (instance) parameter that should be present is not.
+	 * @throws ValueTooBigException no longer thrown, every length of a Java array can be DER encoded. Kept for compatibility.
+	 * @version 1.6
 	 */
 	public byte[] toMinorTLVByteArray() throws ValueNullException, ValueTooBigException {
-		byte[] transactionLogAsMinorByteArray = null;
-		//non elegant handling of the optional parameter problem. Should nevertheless be quicker than several if(something==null) checks in the method body
-		boolean additionalExtDataPresent = !(additionalExtData==null);
-		boolean additionalIntDataPresent = !(additionalIntData==null);
-		
-		//Version to TLV
-		//UNIVERSAL 2 INTEGER
-		TLVObject versionElement=new TLVObject();
-		versionElement.setTagWithByteElement(ASN1Constants.UNIVERSAL_INTEGER);
-		versionElement.setValueWithIntegerElement(this.getVersion());
-		
-		//certifiedDataType to TLV
-		//UNIVERSAL 6 OBJECT IDENTIFIER
-		TLVObject certifiedDataTypeElement= new TLVObject();
-		certifiedDataTypeElement.setTagWithByteElement(ASN1Constants.UNIVERSAL_OBJECT_INDENTIFIER);
-		certifiedDataTypeElement.setValue(ObjectIdentifier.convertOIDtoTLVValue(this.getCertifiedDatatype()));	//conversion to value delegated to
+		DerWriter writer = DerWriter.get();
+		recordMinorTLVs(writer, null);
+		
+		//encode everything into one array
+		return writer.toByteArray();
+	}	
+	
+	/**
+	 * Same as {@linkplain #toMinorTLVByteArray()}, but copies the encoded version, certified data type, serial number and signature algorithm from the 
+	 * template instead of encoding them again. Only the values that differ from log message to log message are encoded.<br>
+	 * If the template is null or was created for other constant values, the log message is encoded by {@linkplain #toMinorTLVByteArray()}. 
+	 * The result is the same in every case.
+	 * @param template the template of the {@linkplain ERSSpecificModule} for transaction logs, may be null
+	 * @return a byte array of the log message containing everything except the signature counter, the log time and the signature value.
+	 * @throws ValueNullException if an (instance) parameter that should be present is not.
+	 * @throws ValueTooBigException see {@linkplain #toMinorTLVByteArray()}
+	 * @since 1.6
+	 */
+	public byte[] toMinorTLVByteArray(LogMessageTemplate template) throws ValueNullException, ValueTooBigException {
+		DerWriter writer = DerWriter.get();
+		recordMinorTLVs(writer, template);
+		
+		//encode everything into one array
+		return writer.toByteArray();
+	}
+	
+	/**
+	 * Same as {@linkplain #toMinorTLVByteArray(LogMessageTemplate)}, but the process data and the additional data are not copied into the result if they 
+	 * have at least {@linkplain DerWriter#REFERENCE_THRESHOLD} octets. The result references them, see {@linkplain DerWriter#toSegments()}, so they 
+	 * must not be changed as long as the result is in use. Used for signing and storing log messages with big process data.
+	 * @param template the template of the {@linkplain ERSSpecificModule} for transaction logs, may be null
+	 * @return the log message containing everything except the signature counter, the log time and the signature value
+	 * @throws ValueNullException if an (instance) parameter that should be present is not.
+	 * @since 1.6
+	 */
+	public EncodedSegments toMinorTLVSegments(LogMessageTemplate template) throws ValueNullException {
+		DerWriter writer = DerWriter.get();
+		recordMinorTLVs(writer, template);
 		
+		//encode everything except the big values into one array
+		return writer.toSegments();
+	}
+	
+	/**
+	 * Records everything except the signature counter, the log time and the signature value in the writer. The constant values are copied from 
+	 * the template, if it fits this log message, otherwise they are encoded.
+	 * @param writer the writer the log message is encoded with
+	 * @param template the template for transaction logs, may be null
+	 * @throws ValueNullException if an (instance) parameter that should be present is not.
+	 */
+	private void recordMinorTLVs(DerWriter writer, LogMessageTemplate template) throws ValueNullException {
+		try {
+			if((template != null) && template.matches(this)) {
+				//version and certifiedDataType
+				template.writePrefix(writer);
+				
+				//operationType up to additional internal data
+				writeTransactionValues(writer);
+				
+				//serialNumber and signatureAlgorithm SEQUENCE
+				template.writeSuffix(writer);
+				return;
+			}
+			
+			//Version to TLV
+			//UNIVERSAL 2 INTEGER
+			writer.writeInteger(ASN1Constants.UNIVERSAL_INTEGER, this.getVersion());
+			
+			//certifiedDataType to TLV
+			//UNIVERSAL 6 OBJECT IDENTIFIER
+			writer.writeObjectIdentifier(ASN1Constants.UNIVERSAL_OBJECT_INDENTIFIER, this.getCertifiedDatatype());
+			
+			//operationType up to additional internal data
+			writeTransactionValues(writer);
+			
+			//serialNumber to TLV
+			//UNIVERSAL 4 OCTET STRING
+			writer.writeOctets(ASN1Constants.UNIVERSAL_OCTET_STRING, this.getSerialNumber());
+			
+			//signatureAlgorithm SEQUENCE to TLV
+			//UNIVERSAL 16 constructed SEQUENCE containing the algorithm as UNIVERSAL 6 OBJECT IDENTIFIER. THERE ARE NO PARAMETERS YET
+			writer.startConstructed(ASN1Constants.UNIVERSAL_SEQUENCE);
+			writer.writeObjectIdentifier(ASN1Constants.UNIVERSAL_OBJECT_INDENTIFIER, this.getAlgorithm());
+			writer.endConstructed();
+		} catch (ValueNullException e) {
+			throw new ValueNullException("The value of a TLVObject was not set and could not be converted to a TLV byte array. " +e.getMessage());
+		}
+	}
+	
+	/**
+	 * Records the values that are specific to a transaction log message, from the operation type up to the additional internal data. 
+	 * @param writer the writer the log message is encoded with
+	 * @throws ValueNullException if a mandatory value is not set
+	 */
+	private void writeTransactionValues(DerWriter writer) throws ValueNullException {
 		//operationType to TLV
 		//Context Specific IMPLICIT 0 PRINTABLE STRING
-		TLVObject operationTypeElement = new TLVObject();
-		operationTypeElement.setTagWithIntegerElement(0x80);
-		operationTypeElement.setValue(operationType.getBytes());		
+		writer.writeString((byte) 0x80, operationType);
 		
 		//clientID to TLV
 		//Context Specific IMPLICIT 1 PRINTABLE STRING
-		TLVObject clientIDElement = new TLVObject();
-		clientIDElement.setTagWithIntegerElement(0x81);
-		clientIDElement.setValue(clientID.getBytes()); 		
+		writer.writeString((byte) 0x81, clientID);
 		
 		//processData to TLV
 		//Context Specific IMPLICIT 2 OCTET STRING
-		TLVObject processDataElement = new TLVObject();
-		processDataElement.setTagWithIntegerElement(0x82);
-		processDataElement.setValue(processData);
+		writer.writeOctets((byte) 0x82, processData);
 		
 		//processType to TLV
 		//Context Specific IMPLICIT 3 PRINTABLE STRING
-		TLVObject processTypeElement = new TLVObject();
-		processTypeElement.setTagWithIntegerElement(0x83);
-		processTypeElement.setValue(processType.getBytes());	
+		writer.writeString((byte) 0x83, processType);
 		
 		//if additional external data present, convert to TLV
-		TLVObject additionalExtDataElement = new TLVObject();
-		if(additionalExtDataPresent) {
-			//additionalExtData to TLV
-			//Context Specific IMPLICIT 4 OCTET STRING
-			additionalExtDataElement.setTagWithIntegerElement(0x84);
-			additionalExtDataElement.setValue(additionalExtData);
+		//Context Specific IMPLICIT 4 OCTET STRING
+		if(additionalExtData != null) {
+			writer.writeOctets((byte) 0x84, additionalExtData);
 		}
-
+		
 		//transactionNumber to TLV
 		//Context Specific IMPLICIT 5 INTEGER
-		TLVObject transactionNumberElement = new TLVObject();
-		transactionNumberElement.setTagWithIntegerElement(0x85);
-		transactionNumberElement.setValueWithLongElement(transactionNumber);   
+		writer.writeInteger((byte) 0x85, transactionNumber);
 		
 		//if additional internal data present, convert to TLV
-		TLVObject additionalIntDataElement = new TLVObject();
-		if(additionalIntDataPresent) {
-			//additionalIntData to TLV
-			//Context Specific IMPLICIT 6 OCTET STRING
-			
-			additionalIntDataElement.setTagWithIntegerElement(0x86);
-			additionalIntDataElement.setValue(additionalIntData);
+		//Context Specific IMPLICIT 6 OCTET STRING
+		if(additionalIntData != null) {
+			writer.writeOctets((byte) 0x86, additionalIntData);
 		}
-		
-		//serialNumber to TLV
-		//UNIVERSAL 4 OCTET STRING
-		TLVObject serialNumberElement = new TLVObject();
-		serialNumberElement.setTagWithByteElement(ASN1Constants.UNIVERSAL_OCTET_STRING);
-		serialNumberElement.setValue(this.getSerialNumber());
-		
-		//signatureAlgorithm SEQUENCE to TLV
-		//UNIVERSAL 16 constructed SEQUENCE
-			TLVObject signatureAlgorithmElement=new TLVObject();
-			signatureAlgorithmElement.setTagWithIntegerElement(0x30);	
-			
-			//algorithm to TLV
-			//UNIVERSAL 6 OBJECT IDENTIFIER
-			TLVObject algorithmElement = new TLVObject();
-			algorithmElement.setTagWithByteElement(ASN1Constants.UNIVERSAL_OBJECT_INDENTIFIER);
-			//get the algorithm from the ERSSpecificModule and convert its OID to asn1
-			algorithmElement.setValue(ObjectIdentifier.convertOIDtoTLVValue(this.getAlgorithm()));
-			
-			//THERE ARE NO PARAMETERS YET
-			// Append algorithm to signatureAlgorithm TLV
-	        try {
-				signatureAlgorithmElement.appendChild(algorithmElement);
-			} catch (TLVException e1) {
-				// TODO Auto-generated catch block
-				e1.printStackTrace();
-			} catch (ValueNullException e1) {
-				// TODO Auto-generated catch block
-				e1.printStackTrace();
-			} catch (ValueTooBigException e1) {
-				// TODO Auto-generated catch block
-				e1.printStackTrace();
-			}
-	       
-	    //create all the byte arrays to hold the values
-	        byte[] versionTLV=null;
-	        byte[] certifiedDataTypeTLV =null;
-			byte[] operationTypeTLV = null;
-			byte[] clientIDTLV = null;
-			byte[] processDataTLV = null;
-			byte[] processTypeTLV = null;
-			byte[] additionalExtDataTLV = null;		
-			byte[] transactionNumberTLV = null;
-			byte[] additionalIntDataTLV = null;
-			byte[] serialNumberTLV = null;
-			byte[] signatureAlgorithmTLV = null;
-	    
-		//create correct TLV byte arrays for each TLV
-		try {
-			versionTLV = versionElement.toTLVByteArray();
-			certifiedDataTypeTLV = certifiedDataTypeElement.toTLVByteArray();
-			operationTypeTLV = operationTypeElement.toTLVByteArray();
-			clientIDTLV = clientIDElement.toTLVByteArray();
-			processDataTLV = processDataElement.toTLVByteArray();
-			processTypeTLV = processTypeElement.toTLVByteArray();
-			//additional external data may or may not be present
-			if(additionalExtDataPresent) {
-				additionalExtDataTLV = additionalExtDataElement.toTLVByteArray();
-			}
-			transactionNumberTLV = transactionNumberElement.toTLVByteArray();
-			//additional internal data may or may not be present
-			if(additionalIntDataPresent) {
-				 additionalIntDataTLV = additionalIntDataElement.toTLVByteArray();
-			}
-			serialNumberTLV = serialNumberElement.toTLVByteArray();
-			//how to build the Signature algorithm element?
-			signatureAlgorithmTLV = signatureAlgorithmElement.toTLVByteArray();		
-		} catch (ValueNullException e) {
-			throw new ValueNullException("The value of a TLVObject was not set and could not be converted to a TLV byte array");
-		} catch (ValueTooBigException e) {
-			throw new ValueTooBigException("The value of a TLVObject was too long to be ASN1 DER encoded. The TLVObject could not be converted to a TLV byte array");
-		}
-		
-		//if no additional data present:
-		if((!additionalExtDataPresent) && (!additionalIntDataPresent)) {
-			transactionLogAsMinorByteArray = Utils.concatAnyNumberOfByteArrays(versionTLV, certifiedDataTypeTLV, operationTypeTLV,
-					clientIDTLV, processDataTLV, processTypeTLV, transactionNumberTLV, serialNumberTLV, signatureAlgorithmTLV);
-		}
-		//if no additionalIntData present:
-		else if(additionalExtDataPresent && (!additionalIntDataPresent)) {
-			transactionLogAsMinorByteArray = Utils.concatAnyNumberOfByteArrays(versionTLV, certifiedDataTypeTLV, operationTypeTLV,
-					clientIDTLV, processDataTLV, processTypeTLV, additionalExtDataTLV, transactionNumberTLV, serialNumberTLV, signatureAlgorithmTLV);
-		}
-		//if no additionalExtData present
-		else if((!additionalExtDataPresent) && additionalIntDataPresent) {
-			transactionLogAsMinorByteArray = Utils.concatAnyNumberOfByteArrays(versionTLV, certifiedDataTypeTLV, operationTypeTLV,
-					clientIDTLV, processDataTLV, processTypeTLV, transactionNumberTLV, additionalIntDataTLV, serialNumberTLV, signatureAlgorithmTLV);
-		}
-		//if both additional data present
-		else if(additionalExtDataPresent&&additionalIntDataPresent) {
-			transactionLogAsMinorByteArray = Utils.concatAnyNumberOfByteArrays(versionTLV, certifiedDataTypeTLV, operationTypeTLV,
-					clientIDTLV, processDataTLV, processTypeTLV, additionalExtDataTLV, transactionNumberTLV, additionalIntDataTLV, serialNumberTLV, 
-					signatureAlgorithmTLV);
-		}
-		return transactionLogAsMinorByteArray;
-	}	
+	}
 	
 //----------------------------------------------------------TO STRING METHODS--------------------------------------------------
 	
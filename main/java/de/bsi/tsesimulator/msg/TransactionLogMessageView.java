@@ -0,0 +1,148 @@
+package main.java.de.bsi.tsesimulator.msg;
+
+import main.java.de.bsi.tsesimulator.exceptions.TLVException;
+import main.java.de.bsi.tsesimulator.exceptions.ValueNullException;
+import main.java.de.bsi.tsesimulator.exceptions.ValueTooBigException;
+
+/**
+ * A read-only view of an encoded transaction log message. Reads the same fields as {@linkplain TransactionLogMessage#TransactionLogMessage(main.java.de.bsi.tsesimulator.tlv.TLVView[])},
+ * but only when they are asked for. See {@linkplain LogMessageView}.
+ *
+ * @since 1.6
+ */
+public class TransactionLogMessageView extends LogMessageView {
+	//the tags of the fields of a transaction log message
+	private static final byte OPERATION_TYPE_TAG = (byte) 0x80;
+	private static final byte CLIENT_ID_TAG = (byte) 0x81;
+	private static final byte PROCESS_DATA_TAG = (byte) 0x82;
+	private static final byte PROCESS_TYPE_TAG = (byte) 0x83;
+	private static final byte ADDITIONAL_EXTERNAL_DATA_TAG = (byte) 0x84;
+	private static final byte TRANSACTION_NUMBER_TAG = (byte) 0x85;
+	private static final byte ADDITIONAL_INTERNAL_DATA_TAG = (byte) 0x86;
+
+	//the indices of the fields, -1 for the optional fields that are not present
+	private final int operationTypeField;
+	private final int clientIDField;
+	private final int processDataField;
+	private final int processTypeField;
+	private final int additionalExternalDataField;
+	private final int transactionNumberField;
+	private final int additionalInternalDataField;
+
+	//decoded on first access
+	private String operationType;
+	private String clientID;
+	private String processType;
+
+	/**
+	 * Creates a view of an encoded transaction log message. Reads the positions of the fields and checks that the mandatory fields are present,
+	 * no value is decoded.
+	 * @param encoded the encoded transaction log message, with or without the SEQUENCE wrapper. Not copied.
+	 * @throws TLVException if the array is not a complete transaction log message
+	 * @since 1.6
+	 */
+	public TransactionLogMessageView(byte[] encoded) throws TLVException {
+		this(new LogMessageView(encoded));
+	}
+
+	/**
+	 * Creates a view of a transaction log message that has already been read by a {@linkplain LogMessageView}.
+	 * @param view the view of the transaction log message
+	 * @throws TLVException if the transaction log message is not complete
+	 */
+	TransactionLogMessageView(LogMessageView view) throws TLVException {
+		super(view);
+		operationTypeField = findField(OPERATION_TYPE_TAG);
+		clientIDField = findField(CLIENT_ID_TAG);
+		processDataField = findField(PROCESS_DATA_TAG);
+		processTypeField = findField(PROCESS_TYPE_TAG);
+		additionalExternalDataField = findField(ADDITIONAL_EXTERNAL_DATA_TAG);
+		transactionNumberField = findField(TRANSACTION_NUMBER_TAG);
+		additionalInternalDataField = findField(ADDITIONAL_INTERNAL_DATA_TAG);
+
+		if((operationTypeField < 0) || (clientIDField < 0) || (processDataField < 0) || (processTypeField < 0) || (transactionNumberField < 0)) {
+			throw new TLVException("A mandatory field of the transaction log message is missing!");
+		}
+	}
+
+	/**
+	 * @return the operation type, e.g. "StartTransaction"
+	 * @since 1.6
+	 */
+	public String getOperationType() {
+		if(operationType == null) {
+			operationType = getFieldValueAsString(operationTypeField);
+		}
+		return operationType;
+	}
+
+	/**
+	 * @return the ID of the client that invoked the operation
+	 * @since 1.6
+	 */
+	public String getClientID() {
+		if(clientID == null) {
+			clientID = getFieldValueAsString(clientIDField);
+		}
+		return clientID;
+	}
+
+	/**
+	 * Compares the client ID with the given one without decoding it. The client ID is encoded with the default charset, like in 
+	 * {@linkplain TransactionLogMessage#toMinorTLVByteArray()}.
+	 * @param clientID the client ID to compare with
+	 * @return true, if the operation was invoked by this client
+	 * @since 1.6
+	 */
+	public boolean hasClientID(String clientID) {
+		if(this.clientID != null) {
+			return this.clientID.equals(clientID);
+		}
+		return (clientID != null) && valueEquals(clientIDField, clientID.getBytes());
+	}
+
+	/**
+	 * @return a copy of the process data
+	 * @since 1.6
+	 */
+	public byte[] getProcessData() {
+		return getFieldValue(processDataField);
+	}
+
+	/**
+	 * @return the process type
+	 * @since 1.6
+	 */
+	public String getProcessType() {
+		if(processType == null) {
+			processType = getFieldValueAsString(processTypeField);
+		}
+		return processType;
+	}
+
+	/**
+	 * @return a copy of the additional external data, null if the log message does not have any
+	 * @since 1.6
+	 */
+	public byte[] getAdditionalExternalData() {
+		return getFieldValue(additionalExternalDataField);
+	}
+
+	/**
+	 * @return the transaction number
+	 * @throws ValueNullException if the value is empty
+	 * @throws ValueTooBigException if the value is longer than 8 octets
+	 * @since 1.6
+	 */
+	public long getTransactionNumber() throws ValueNullException, ValueTooBigException {
+		return getFieldValueAsLong(transactionNumberField);
+	}
+
+	/**
+	 * @return a copy of the additional internal data, null if the log message does not have any
+	 * @since 1.6
+	 */
+	public byte[] getAdditionalInternalData() {
+		return getFieldValue(additionalInternalDataField);
+	}
+}
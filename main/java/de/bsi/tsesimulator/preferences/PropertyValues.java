@@ -163,6 +163,23 @@ public class PropertyValues {
 		String pathToPersistentStorage = pathToResourceDirectory+File.separator+instance.getValue(ConfigConstants.CFG_TAG_PATH_TO_PERSISTENT_STORAGE);
 		return pathToPersistentStorage;
 	}
+
+	/**
+	 * Getter for the absolute path to the directory denoted by {@linkplain ConfigConstants#CFG_TAG_STORAGE_INDEX_DIR} in config.properties. 
+	 * This expects the directory to be a child directory of the resources directory, set by {@linkplain PropertyValues#setPathToResourceDirectory(String)}.
+	 * The returned path ends with the name of the index directory, <b>not</b> with a path separator character (e.g. <b>/</b> or <b>\</b>).
+	 * <br><b>IMPORTANT:</b> should only be used after {@linkplain PropertyValues#setPathToResourceDirectory(String)} has been called once.
+	 * @return the absolute path to the directory in which the index of the storage is kept, or null if config.properties does not contain the entry
+	 * @since 1.6
+	 */
+	public String getPathToStorageIndex() {
+		String storageIndexDir = instance.getValue(ConfigConstants.CFG_TAG_STORAGE_INDEX_DIR);
+		if((storageIndexDir == null) || storageIndexDir.trim().isEmpty()) {
+			return null;
+		}
+		//path to storage index = pathToResourceDirectory/storageIndexDir
+		return pathToResourceDirectory+File.separator+storageIndexDir.trim();
+	}
 	
 	
  
@@ -0,0 +1,378 @@
+package main.java.de.bsi.tsesimulator.tlv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+
+import main.java.de.bsi.tsesimulator.exceptions.TLVException;
+
+/**
+ * A pull parser for ASN.1 DER encoded data that reads its input piece by piece instead of requiring it as one byte array. It can be used to
+ * inspect large exports, TAR contents or log files without loading them completely.<br>
+ * Every call of {@linkplain #next()} returns the next event:
+ * <ul>
+ * <li>{@linkplain #START_CONSTRUCTED}: the tag and the length of a constructed TLV, e.g. a SEQUENCE, have been read. The following events belong
+ * to its content.</li>
+ * <li>{@linkplain #PRIMITIVE}: the tag and the length of a primitive TLV have been read. Its value is only read if it is requested by
+ * {@linkplain #getValue()} or {@linkplain #readValue(byte[], int, int)}, otherwise it is skipped by the next call of {@linkplain #next()}.</li>
+ * <li>{@linkplain #END_CONSTRUCTED}: the content of the innermost constructed TLV has been read completely.</li>
+ * <li>{@linkplain #END_OF_INPUT}: there are no more TLVs.</li>
+ * </ul>
+ * The parser only buffers a fixed number of octets (see {@linkplain #DEFAULT_BUFFER_SIZE}) and the end positions of the open constructed TLVs,
+ * independent of the size of the input. Short and long form of length are supported, like in {@linkplain TLVObject#getLengthFromLongFormOfLengthByteArray(byte[])},
+ * but lengths may have up to 8 length octets. High tag number form tags and the indefinite length form are not supported, since the simulator does not use them.<br>
+ * The parser is not thread-safe.
+ *
+ * @since 1.6
+ */
+public final class DerPullParser {
+	/**
+	 * Event: the header of a constructed TLV has been read.
+	 * @since 1.6
+	 */
+	public static final int START_CONSTRUCTED = 1;
+	/**
+	 * Event: the header of a primitive TLV has been read, the value can be read now.
+	 * @since 1.6
+	 */
+	public static final int PRIMITIVE = 2;
+	/**
+	 * Event: the content of the innermost constructed TLV has been read.
+	 * @since 1.6
+	 */
+	public static final int END_CONSTRUCTED = 3;
+	/**
+	 * Event: the input does not contain any more TLVs.
+	 * @since 1.6
+	 */
+	public static final int END_OF_INPUT = -1;
+
+	/**
+	 * Number of octets buffered when reading from an InputStream or a channel.
+	 * @since 1.6
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private final ReadableByteChannel channel;	//null if the whole input is in the buffer, e.g. for a MappedByteBuffer
+	private final ByteBuffer buffer;			//the octets that have been read from the channel but not consumed yet, in read mode
+	private boolean channelExhausted;
+
+	private long position;						//number of octets consumed from the input
+	private long[] endOfConstructed = new long[8];	//stack of the positions after the open constructed TLVs
+	private int depth;
+
+	private int event;
+	private byte tag;
+	private long length;
+	private long remainingValueOctets;			//octets of the value of the current primitive TLV that have not been read yet
+
+	/**
+	 * Creates a parser that reads from an InputStream. The stream is not closed by the parser.
+	 * @param in the stream that contains the DER encoded TLVs
+	 * @since 1.6
+	 */
+	public DerPullParser(InputStream in) {
+		this(Channels.newChannel(in), DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a parser that reads from a channel, e.g. a FileChannel. The channel is not closed by the parser.
+	 * @param channel the channel that contains the DER encoded TLVs
+	 * @since 1.6
+	 */
+	public DerPullParser(ReadableByteChannel channel) {
+		this(channel, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a parser that reads from a channel with a buffer of the given size.
+	 * @param channel the channel that contains the DER encoded TLVs
+	 * @param bufferSize the number of octets that are buffered. Has to be at least 10, so that the header of every TLV fits into the buffer.
+	 * @throws IllegalArgumentException if the buffer size is smaller than 10
+	 * @since 1.6
+	 */
+	public DerPullParser(ReadableByteChannel channel, int bufferSize) {
+		//1 tag octet, 1 octet for the number of length octets, up to 8 length octets
+		if(bufferSize < 10) {
+			throw new IllegalArgumentException("The buffer has to hold at least 10 octets");
+		}
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocate(bufferSize);
+		this.buffer.flip();
+	}
+
+	/**
+	 * Creates a parser that reads the remaining octets of a ByteBuffer, e.g. a MappedByteBuffer of a log file. The octets are not copied into
+	 * another buffer, and the position of the given buffer is not changed.
+	 * @param input the buffer that contains the DER encoded TLVs between its position and its limit
+	 * @since 1.6
+	 */
+	public DerPullParser(ByteBuffer input) {
+		this.channel = null;
+		this.buffer = input.slice();
+		this.channelExhausted = true;
+	}
+
+	//-----------------------------------EVENT METHODS------------------------------------------------------------------
+
+	/**
+	 * Moves to the next event. The value of the current primitive TLV is skipped, as far as it has not been read.
+	 * @return {@linkplain #START_CONSTRUCTED}, {@linkplain #PRIMITIVE}, {@linkplain #END_CONSTRUCTED} or {@linkplain #END_OF_INPUT}
+	 * @throws TLVException if the input is not a sequence of complete TLVs, a TLV is longer than the constructed TLV it belongs to,
+	 * or it uses a high tag number form tag or the indefinite length form
+	 * @throws IOException if reading from the input fails
+	 * @since 1.6
+	 */
+	public int next() throws TLVException, IOException {
+		//1. skip what is left of the value of the current primitive TLV
+		if(remainingValueOctets > 0) {
+			skip(remainingValueOctets);
+			remainingValueOctets = 0;
+		}
+
+		//2. if the content of the innermost constructed TLV is complete, report its end
+		if((depth > 0) && (position == endOfConstructed[depth - 1])) {
+			depth--;
+			return setEvent(END_CONSTRUCTED, (byte) 0, 0);
+		}
+
+		//3. the end of the input is only allowed outside of constructed TLVs
+		if(!ensureAvailable(1)) {
+			if(depth > 0) {
+				throw new TLVException("The input ends inside of a constructed TLV!");
+			}
+			return setEvent(END_OF_INPUT, (byte) 0, 0);
+		}
+
+		//4. read tag and length
+		byte currentTag = readOctet();
+		if((currentTag & 0x1F) == 0x1F) {
+			throw new TLVException("Does not support high tag number form!");
+		}
+		long currentLength = readLength();
+
+		//5. the TLV has to fit into the constructed TLV it belongs to
+		if((depth > 0) && (currentLength > endOfConstructed[depth - 1] - position)) {
+			throw new TLVException("The TLV is longer than the constructed TLV it belongs to!");
+		}
+
+		if((currentTag & 0x20) != 0) {
+			pushConstructed(position + currentLength);
+			return setEvent(START_CONSTRUCTED, currentTag, currentLength);
+		}
+		remainingValueOctets = currentLength;
+		return setEvent(PRIMITIVE, currentTag, currentLength);
+	}
+
+	/**
+	 * @return the event returned by the last call of {@linkplain #next()}, 0 before the first call
+	 * @since 1.6
+	 */
+	public int getEvent() {
+		return event;
+	}
+
+	/**
+	 * @return the tag of the current TLV, only valid for {@linkplain #START_CONSTRUCTED} and {@linkplain #PRIMITIVE}
+	 * @since 1.6
+	 */
+	public byte getTag() {
+		return tag;
+	}
+
+	/**
+	 * @return the number of value octets of the current TLV, only valid for {@linkplain #START_CONSTRUCTED} and {@linkplain #PRIMITIVE}
+	 * @since 1.6
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return the number of constructed TLVs the parser is inside of. The children of a top level SEQUENCE have the depth 1.
+	 * @since 1.6
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return the number of octets that have been consumed from the input
+	 * @since 1.6
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	//-----------------------------------VALUE METHODS------------------------------------------------------------------
+
+	/**
+	 * Reads the value of the current primitive TLV completely. Should only be used for values of a known, small size, since the value is
+	 * copied into a new array.
+	 * @return the value octets that have not been read by {@linkplain #readValue(byte[], int, int)} yet
+	 * @throws TLVException if the current event is not {@linkplain #PRIMITIVE} or the value does not fit into an array
+	 * @throws IOException if reading from the input fails
+	 * @since 1.6
+	 */
+	public byte[] getValue() throws TLVException, IOException {
+		checkPrimitive();
+		if(remainingValueOctets > Integer.MAX_VALUE - 8) {
+			throw new TLVException("The value is too long to be read into an array!");
+		}
+		byte[] value = new byte[(int) remainingValueOctets];
+		int read = 0;
+		while(read < value.length) {
+			read += readValue(value, read, value.length - read);
+		}
+		return value;
+	}
+
+	/**
+	 * Reads a part of the value of the current primitive TLV. Can be called repeatedly to stream a long value.
+	 * @param destination the array the octets are written to
+	 * @param offset the position in destination where the first octet is written
+	 * @param maxLength the maximum number of octets to be read
+	 * @return the number of octets that have been read, -1 if the whole value has been read before
+	 * @throws TLVException if the current event is not {@linkplain #PRIMITIVE} or the input ends inside of the value
+	 * @throws IOException if reading from the input fails
+	 * @since 1.6
+	 */
+	public int readValue(byte[] destination, int offset, int maxLength) throws TLVException, IOException {
+		checkPrimitive();
+		if(remainingValueOctets == 0) {
+			return -1;
+		}
+		if(!ensureAvailable(1)) {
+			throw new TLVException("The input ends inside of the value of a TLV!");
+		}
+		int count = (int) Math.min(Math.min(maxLength, remainingValueOctets), buffer.remaining());
+		buffer.get(destination, offset, count);
+		position += count;
+		remainingValueOctets -= count;
+		return count;
+	}
+
+	/**
+	 * @return the number of value octets of the current primitive TLV that have not been read yet
+	 * @since 1.6
+	 */
+	public long getRemainingValueLength() {
+		return remainingValueOctets;
+	}
+
+	//-----------------------------------INTERNAL METHODS------------------------------------------------------------------
+
+	private int setEvent(int newEvent, byte newTag, long newLength) {
+		this.event = newEvent;
+		this.tag = newTag;
+		this.length = newLength;
+		return newEvent;
+	}
+
+	private void checkPrimitive() throws TLVException {
+		if(event != PRIMITIVE) {
+			throw new TLVException("Only the value of a primitive TLV can be read!");
+		}
+	}
+
+	private void pushConstructed(long end) {
+		if(depth == endOfConstructed.length) {
+			long[] larger = new long[depth * 2];
+			System.arraycopy(endOfConstructed, 0, larger, 0, depth);
+			endOfConstructed = larger;
+		}
+		endOfConstructed[depth++] = end;
+	}
+
+	/**
+	 * Decodes the length octets. Short form: the octet is the length. Long form: the octet encodes how many length octets follow.
+	 */
+	private long readLength() throws TLVException, IOException {
+		if(!ensureAvailable(1)) {
+			throw new TLVException("ASN1 TLVs are at least 2 octets long!");
+		}
+		int firstLengthOctet = readOctet() & 0xFF;
+		if((firstLengthOctet & 0x80) == 0) {
+			return firstLengthOctet;
+		}
+		int numberOfLengthOctets = firstLengthOctet & 0b01111111;
+		if(numberOfLengthOctets == 0) {
+			throw new TLVException("The indefinite length form is not allowed in DER!");
+		}
+		if(numberOfLengthOctets > 8) {
+			throw new TLVException("The length of the TLV can not be decoded!");
+		}
+		if(!ensureAvailable(numberOfLengthOctets)) {
+			throw new TLVException("The input ends inside of the length octets!");
+		}
+		long decodedLength = 0;
+		for(int i = 0; i < numberOfLengthOctets; i++) {
+			decodedLength = (decodedLength << 8) | (readOctet() & 0xFF);
+		}
+		//8 length octets with the first bit set do not fit into a long
+		if(decodedLength < 0) {
+			throw new TLVException("The length of the TLV can not be decoded!");
+		}
+		return decodedLength;
+	}
+
+	private byte readOctet() {
+		position++;
+		return buffer.get();
+	}
+
+	/**
+	 * Makes sure that at least the given number of octets are in the buffer, reading from the channel if necessary.
+	 * @return false, if the input ends before
+	 */
+	private boolean ensureAvailable(int octets) throws IOException {
+		while(buffer.remaining() < octets) {
+			if(channelExhausted) {
+				return false;
+			}
+			buffer.compact();
+			int read = channel.read(buffer);
+			buffer.flip();
+			if(read < 0) {
+				channelExhausted = true;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Skips octets of the input. Octets that are not in the buffer are not read at all if the input is a FileChannel or another seekable channel.
+	 */
+	private void skip(long octets) throws TLVException, IOException {
+		//1. the octets that are already in the buffer
+		int inBuffer = (int) Math.min(octets, buffer.remaining());
+		buffer.position(buffer.position() + inBuffer);
+		position += inBuffer;
+		long toBeSkipped = octets - inBuffer;
+		
+		//2. a seekable channel moves its position instead of reading the octets
+		if((toBeSkipped > 0) && !channelExhausted && (channel instanceof SeekableByteChannel)) {
+			SeekableByteChannel seekableChannel = (SeekableByteChannel) channel;
+			if(seekableChannel.size() - seekableChannel.position() < toBeSkipped) {
+				throw new TLVException("The input ends inside of the value of a TLV!");
+			}
+			seekableChannel.position(seekableChannel.position() + toBeSkipped);
+			position += toBeSkipped;
+			return;
+		}
+		
+		//3. otherwise read them through the buffer
+		while(toBeSkipped > 0) {
+			if(!ensureAvailable(1)) {
+				throw new TLVException("The input ends inside of the value of a TLV!");
+			}
+			int count = (int) Math.min(toBeSkipped, buffer.remaining());
+			buffer.position(buffer.position() + count);
+			position += count;
+			toBeSkipped -= count;
+		}
+	}
+}
@@ -0,0 +1,460 @@
+package main.java.de.bsi.tsesimulator.tlv;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import main.java.de.bsi.tsesimulator.exceptions.ValueNullException;
+
+/**
+ * Encodes a sequence of TLVs according to ASN.1 DER into a single byte array.<br>
+ * The elements are recorded first. While recording, the length of every element is calculated, and a constructed element gets its length as soon as
+ * {@linkplain #endConstructed()} is called. Afterwards, {@linkplain #toByteArray()} allocates one array of the exact length and writes every tag, length
+ * and value into it. Unlike {@linkplain TLVObject#toTLVByteArray()} and {@linkplain TLVObject#appendChild(TLVObject)}, no element is encoded into an array
+ * of its own that has to be concatenated afterwards.<br>
+ * <br>
+ * Every thread has one DerWriter, fetched by {@linkplain #get()}. It keeps the arrays it records the elements in, and a byte array
+ * ({@linkplain #encodeIntoThreadBuffer()}) for encodings that are used right away. A DerWriter must not be passed to other threads and has to be
+ * completely used before the same thread calls {@linkplain #get()} again.<br>
+ * Only low tag number form tags (a single tag octet) are supported, like everywhere else in the simulator.
+ *
+ * @since 1.6
+ */
+public final class DerWriter {
+
+	private static final ThreadLocal<DerWriter> WRITER_OF_THREAD = new ThreadLocal<DerWriter>() {
+		@Override
+		protected DerWriter initialValue() {
+			return new DerWriter();
+		}
+	};
+
+	//the kinds of recorded elements
+	private static final byte KIND_PRIMITIVE = 0;			//tag, length and the value from values[i]
+	private static final byte KIND_INTEGER = 1;				//tag, length and the two's complement of numbers[i]
+	private static final byte KIND_CONSTRUCTED = 2;			//tag and length, the children follow as the next elements
+	private static final byte KIND_ENCODED = 3;				//values[i] is already encoded and is copied as it is
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * {@linkplain #toSegments()} references values with at least this many octets instead of copying them. Copying smaller values is cheaper than
+	 * handling them as segments of their own.
+	 */
+	public static final int REFERENCE_THRESHOLD = 4096;
+
+	//one entry per recorded element
+	private byte[] kinds = new byte[INITIAL_CAPACITY];
+	private byte[] tags = new byte[INITIAL_CAPACITY];
+	private byte[][] values = new byte[INITIAL_CAPACITY][];
+	private int[] valueOffsets = new int[INITIAL_CAPACITY];
+	private int[] valueLengths = new int[INITIAL_CAPACITY];		//for a constructed element: the length of its content, known after endConstructed()
+	private long[] numbers = new long[INITIAL_CAPACITY];
+	private int count;
+
+	//the constructed elements that have not been ended yet
+	private int[] openConstructed = new int[4];
+	private int[] lengthBeforeConstructed = new int[4];
+	private int depth;
+
+	private int currentLength;									//the encoded length of all elements recorded on the current level
+	private byte[] threadBuffer = new byte[0];					//grows to the biggest encoding of the thread
+
+	/**
+	 * Only {@linkplain #get()} shall create DerWriter objects.
+	 */
+	private DerWriter() {}
+
+	/**
+	 * Fetches the DerWriter of the calling thread. Everything the thread recorded before is discarded.
+	 * @return an empty DerWriter that belongs to the calling thread
+	 * @since 1.6
+	 */
+	public static DerWriter get() {
+		DerWriter writer = WRITER_OF_THREAD.get();
+		writer.reset();
+		return writer;
+	}
+
+	/**
+	 * Discards every recorded element. The references to recorded values are removed, so they can be garbage collected.
+	 * @since 1.6
+	 */
+	public void reset() {
+		Arrays.fill(values, 0, count, null);
+		count = 0;
+		depth = 0;
+		currentLength = 0;
+	}
+
+	//-----------------------------------RECORD METHODS------------------------------------------------------------------
+
+	/**
+	 * Records a primitive TLV. The value is not copied before {@linkplain #toByteArray()} or {@linkplain #encodeInto(byte[], int)} is called, so it must
+	 * not be changed until then.
+	 * @param tag the tag octet
+	 * @param value the value octets
+	 * @throws ValueNullException if the value is null
+	 * @since 1.6
+	 */
+	public void writeOctets(byte tag, byte[] value) throws ValueNullException {
+		if(value == null) {
+			throw new ValueNullException("The value of the TLV with the tag " +Integer.toHexString(tag & 0xFF) +" is not set");
+		}
+		writeOctets(tag, value, 0, value.length);
+	}
+
+	/**
+	 * Records a primitive TLV whose value is a part of a bigger array. The value is not copied before {@linkplain #toByteArray()} or
+	 * {@linkplain #encodeInto(byte[], int)} is called, so it must not be changed until then.
+	 * @param tag the tag octet
+	 * @param buffer the array that contains the value octets
+	 * @param offset the position of the first value octet
+	 * @param length the number of value octets
+	 * @since 1.6
+	 */
+	public void writeOctets(byte tag, byte[] buffer, int offset, int length) {
+		int index = addElement(KIND_PRIMITIVE, tag);
+		values[index] = buffer;
+		valueOffsets[index] = offset;
+		valueLengths[index] = length;
+		currentLength += 1 + lengthOfLengthOctets(length) + length;
+	}
+
+	/**
+	 * Records an INTEGER (or an implicitly tagged integer) with the minimal number of value octets.
+	 * @param tag the tag octet, e.g. {@linkplain main.java.de.bsi.tsesimulator.constants.ASN1Constants#UNIVERSAL_INTEGER}
+	 * @param value the integer
+	 * @since 1.6
+	 */
+	public void writeInteger(byte tag, long value) {
+		int index = addElement(KIND_INTEGER, tag);
+		int length = integerLength(value);
+		numbers[index] = value;
+		valueLengths[index] = length;
+		currentLength += 2 + length;
+	}
+
+	/**
+	 * Records a String (e.g. a PRINTABLE STRING) with the bytes of the String in the default charset, like {@linkplain String#getBytes()}.
+	 * @param tag the tag octet
+	 * @param value the String
+	 * @throws ValueNullException if the String is null
+	 * @since 1.6
+	 */
+	public void writeString(byte tag, String value) throws ValueNullException {
+		if(value == null) {
+			throw new ValueNullException("The value of the TLV with the tag " +Integer.toHexString(tag & 0xFF) +" is not set");
+		}
+		writeOctets(tag, value.getBytes());
+	}
+
+	/**
+	 * Records an OBJECT IDENTIFIER given in the "dot" notation, see {@linkplain ObjectIdentifier#convertOIDtoTLVValue(String)}.
+	 * @param tag the tag octet
+	 * @param oid the object identifier, e.g. 0.4.0.127.0.7.3.7.1.1
+	 * @throws ValueNullException if the object identifier is null
+	 * @since 1.6
+	 */
+	public void writeObjectIdentifier(byte tag, String oid) throws ValueNullException {
+		if(oid == null) {
+			throw new ValueNullException("The value of the TLV with the tag " +Integer.toHexString(tag & 0xFF) +" is not set");
+		}
+		writeOctets(tag, ObjectIdentifier.getSharedEncoding(oid));
+	}
+
+	/**
+	 * Records octets that are already encoded TLVs. They are copied as they are.
+	 * @param encoded one or more encoded TLVs
+	 * @throws ValueNullException if encoded is null
+	 * @since 1.6
+	 */
+	public void writeEncoded(byte[] encoded) throws ValueNullException {
+		if(encoded == null) {
+			throw new ValueNullException("The encoded TLVs are not set");
+		}
+		writeEncoded(encoded, 0, encoded.length);
+	}
+
+	/**
+	 * Records octets that are already encoded TLVs and are a part of a bigger array. They are copied as they are, but not before
+	 * {@linkplain #toByteArray()} or {@linkplain #encodeInto(byte[], int)} is called.
+	 * @param buffer the array that contains the encoded TLVs
+	 * @param offset the position of the first octet
+	 * @param length the number of octets
+	 * @since 1.6
+	 */
+	public void writeEncoded(byte[] buffer, int offset, int length) {
+		int index = addElement(KIND_ENCODED, (byte) 0);
+		values[index] = buffer;
+		valueOffsets[index] = offset;
+		valueLengths[index] = length;
+		currentLength += length;
+	}
+
+	/**
+	 * Starts a constructed TLV, e.g. a SEQUENCE. Every element recorded until the matching {@linkplain #endConstructed()} becomes a child of it.
+	 * @param tag the tag octet, e.g. {@linkplain main.java.de.bsi.tsesimulator.constants.ASN1Constants#UNIVERSAL_SEQUENCE}
+	 * @since 1.6
+	 */
+	public void startConstructed(byte tag) {
+		int index = addElement(KIND_CONSTRUCTED, tag);
+		if(depth == openConstructed.length) {
+			openConstructed = Arrays.copyOf(openConstructed, depth * 2);
+			lengthBeforeConstructed = Arrays.copyOf(lengthBeforeConstructed, depth * 2);
+		}
+		//the children are counted on a level of their own
+		openConstructed[depth] = index;
+		lengthBeforeConstructed[depth] = currentLength;
+		depth++;
+		currentLength = 0;
+	}
+
+	/**
+	 * Ends the constructed TLV started last. Its length is now known.
+	 * @throws IllegalStateException if there is no constructed TLV that has not been ended
+	 * @since 1.6
+	 */
+	public void endConstructed() {
+		if(depth == 0) {
+			throw new IllegalStateException("There is no constructed TLV to be ended");
+		}
+		depth--;
+		int contentLength = currentLength;
+		valueLengths[openConstructed[depth]] = contentLength;
+		currentLength = lengthBeforeConstructed[depth] + 1 + lengthOfLengthOctets(contentLength) + contentLength;
+	}
+
+	//-----------------------------------ENCODE METHODS------------------------------------------------------------------
+
+	/**
+	 * @return the number of octets {@linkplain #toByteArray()} returns
+	 * @throws IllegalStateException if a constructed TLV has not been ended
+	 * @since 1.6
+	 */
+	public int getEncodedLength() {
+		if(depth != 0) {
+			throw new IllegalStateException("A constructed TLV has not been ended");
+		}
+		return currentLength;
+	}
+
+	/**
+	 * Encodes every recorded element into a new array of the exact length.
+	 * @return the recorded elements, ASN.1 DER encoded
+	 * @throws IllegalStateException if a constructed TLV has not been ended
+	 * @since 1.6
+	 */
+	public byte[] toByteArray() {
+		byte[] encoded = new byte[getEncodedLength()];
+		encodeInto(encoded, 0);
+		return encoded;
+	}
+
+	/**
+	 * Encodes every recorded element into the byte array of the calling thread. The array is reused by the next call of the same thread, so the encoding
+	 * has to be used before that. Only the first {@linkplain #getEncodedLength()} octets belong to the encoding.
+	 * @return the byte array of the thread, containing the encoding at position 0
+	 * @throws IllegalStateException if a constructed TLV has not been ended
+	 * @since 1.6
+	 */
+	public byte[] encodeIntoThreadBuffer() {
+		int length = getEncodedLength();
+		if(threadBuffer.length < length) {
+			threadBuffer = new byte[Math.max(length, threadBuffer.length * 2)];
+		}
+		encodeInto(threadBuffer, 0);
+		return threadBuffer;
+	}
+
+	/**
+	 * Encodes every recorded element into the given array.
+	 * @param out the array the encoding is written into. Needs {@linkplain #getEncodedLength()} octets from offset on.
+	 * @param offset the position of the first octet of the encoding
+	 * @return the position after the last octet of the encoding
+	 * @throws IllegalStateException if a constructed TLV has not been ended
+	 * @since 1.6
+	 */
+	public int encodeInto(byte[] out, int offset) {
+		if(out.length - offset < getEncodedLength()) {
+			throw new IllegalArgumentException("The array is too short for the encoding");
+		}
+		int position = offset;
+		for(int i = 0; i < count; i++) {
+			position = encodeElement(i, out, position);
+		}
+		return position;
+	}
+
+	/**
+	 * Encodes every recorded element, but references the values with at least {@linkplain #REFERENCE_THRESHOLD} octets instead of copying them.
+	 * Everything else is encoded into one new array, and the referenced values are the segments between its parts. Used for log messages with big
+	 * process data, which are then hashed and written to the storage part by part.<br>
+	 * The referenced values must not be changed as long as the result is in use.
+	 * @return the recorded elements, ASN.1 DER encoded. A single array, if no value is big enough to be referenced.
+	 * @throws IllegalStateException if a constructed TLV has not been ended
+	 * @since 1.6
+	 */
+	public EncodedSegments toSegments() {
+		int length = getEncodedLength();
+
+		//1. count the values that are referenced and their octets
+		int referencedValues = 0;
+		int referencedLength = 0;
+		for(int i = 0; i < count; i++) {
+			if(isReferenced(i)) {
+				referencedValues++;
+				referencedLength += valueLengths[i];
+			}
+		}
+		if(referencedValues == 0) {
+			return EncodedSegments.of(toByteArray());
+		}
+
+		//2. encode everything else into one array. The octets copied since the last referenced value become a segment, followed by the value.
+		byte[] copied = new byte[length - referencedLength];
+		ByteBuffer[] segments = new ByteBuffer[2 * referencedValues + 1];
+		int numberOfSegments = 0;
+		int segmentStart = 0;
+		int position = 0;
+		for(int i = 0; i < count; i++) {
+			if(!isReferenced(i)) {
+				position = encodeElement(i, copied, position);
+				continue;
+			}
+			//the tag and the length of a primitive TLV are copied, an encoded value has none
+			if(kinds[i] == KIND_PRIMITIVE) {
+				copied[position++] = tags[i];
+				position = writeLength(valueLengths[i], copied, position);
+			}
+			if(position > segmentStart) {
+				segments[numberOfSegments++] = ByteBuffer.wrap(copied, segmentStart, position - segmentStart);
+			}
+			segments[numberOfSegments++] = ByteBuffer.wrap(values[i], valueOffsets[i], valueLengths[i]);
+			segmentStart = position;
+		}
+		if(position > segmentStart) {
+			segments[numberOfSegments++] = ByteBuffer.wrap(copied, segmentStart, position - segmentStart);
+		}
+
+		if(numberOfSegments < segments.length) {
+			segments = Arrays.copyOf(segments, numberOfSegments);
+		}
+		return new EncodedSegments(segments, length);
+	}
+
+	//-----------------------------------LENGTH METHODS------------------------------------------------------------------
+
+	/**
+	 * Calculates how many octets the DER encoding of a length needs.
+	 * @param length the number of value octets
+	 * @return 1 for the short form (length &lt;= 127), otherwise 1 plus the number of octets of the long form
+	 * @since 1.6
+	 */
+	public static int lengthOfLengthOctets(int length) {
+		if(length < 0x80) {
+			return 1;
+		}
+		if(length < 0x100) {
+			return 2;
+		}
+		if(length < 0x10000) {
+			return 3;
+		}
+		if(length < 0x1000000) {
+			return 4;
+		}
+		return 5;
+	}
+
+	/**
+	 * Writes the DER encoding of a length, using the short form if possible.
+	 * @param length the number of value octets
+	 * @param out the array the length octets are written into
+	 * @param offset the position of the first length octet
+	 * @return the position after the last length octet
+	 * @since 1.6
+	 */
+	public static int writeLength(int length, byte[] out, int offset) {
+		int numberOfLengthOctets = lengthOfLengthOctets(length);
+		//short form: the length itself
+		if(numberOfLengthOctets == 1) {
+			out[offset] = (byte) length;
+			return offset + 1;
+		}
+		//long form: the number of following octets with the msb set, then the length big-endian
+		int followingOctets = numberOfLengthOctets - 1;
+		out[offset] = (byte) (0x80 | followingOctets);
+		for(int i = 1; i <= followingOctets; i++) {
+			out[offset + i] = (byte) (length >>> ((followingOctets - i) * 8));
+		}
+		return offset + numberOfLengthOctets;
+	}
+
+	/**
+	 * Calculates the minimal number of octets of the two's complement representation of value, as DER requires it for INTEGER values.
+	 * @param value the integer
+	 * @return a number between 1 and 8
+	 */
+	private static int integerLength(long value) {
+		int length = 1;
+		//value fits into length octets if everything above the sign bit of the last octet is a copy of the sign
+		while((length < 8) && ((value >> (length * 8 - 1)) != 0) && ((value >> (length * 8 - 1)) != -1)) {
+			length++;
+		}
+		return length;
+	}
+
+	/**
+	 * Encodes one recorded element. A constructed element only gets its tag and length, its children are the next elements.
+	 * @return the position after the last octet of the element
+	 */
+	private int encodeElement(int i, byte[] out, int position) {
+		switch(kinds[i]) {
+			case KIND_PRIMITIVE:
+				out[position++] = tags[i];
+				position = writeLength(valueLengths[i], out, position);
+				System.arraycopy(values[i], valueOffsets[i], out, position, valueLengths[i]);
+				return position + valueLengths[i];
+			case KIND_INTEGER:
+				out[position++] = tags[i];
+				out[position++] = (byte) valueLengths[i];
+				//big-endian, most significant octet first
+				for(int shift = (valueLengths[i] - 1) * 8; shift >= 0; shift -= 8) {
+					out[position++] = (byte) (numbers[i] >> shift);
+				}
+				return position;
+			case KIND_CONSTRUCTED:
+				out[position++] = tags[i];
+				return writeLength(valueLengths[i], out, position);
+			default:
+				System.arraycopy(values[i], valueOffsets[i], out, position, valueLengths[i]);
+				return position + valueLengths[i];
+		}
+	}
+
+	/**
+	 * @return true, if {@linkplain #toSegments()} references the value of the element instead of copying it
+	 */
+	private boolean isReferenced(int i) {
+		return ((kinds[i] == KIND_PRIMITIVE) || (kinds[i] == KIND_ENCODED)) && (valueLengths[i] >= REFERENCE_THRESHOLD);
+	}
+
+	/**
+	 * Adds an element and grows the arrays if necessary.
+	 * @return the index of the new element
+	 */
+	private int addElement(byte kind, byte tag) {
+		if(count == kinds.length) {
+			int newCapacity = count * 2;
+			kinds = Arrays.copyOf(kinds, newCapacity);
+			tags = Arrays.copyOf(tags, newCapacity);
+			values = Arrays.copyOf(values, newCapacity);
+			valueOffsets = Arrays.copyOf(valueOffsets, newCapacity);
+			valueLengths = Arrays.copyOf(valueLengths, newCapacity);
+			numbers = Arrays.copyOf(numbers, newCapacity);
+		}
+		kinds[count] = kind;
+		tags[count] = tag;
+		return count++;
+	}
+}
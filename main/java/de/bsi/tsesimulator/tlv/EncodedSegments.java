@@ -0,0 +1,151 @@
+package main.java.de.bsi.tsesimulator.tlv;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An ASN.1 DER encoding that is not put together in one byte array, but consists of several parts of byte arrays one after another.
+ * Big values, e.g. the processData of a transaction log, are referenced where the caller keeps them instead of being copied into the encoding.
+ * The parts can be hashed one after another and written with a gathering write like {@linkplain java.nio.channels.FileChannel#write(ByteBuffer[])},
+ * so the encoding is only put together in one array if {@linkplain #toByteArray()} is called.<br>
+ * The referenced arrays must not be modified as long as the encoding is in use.
+ *
+ * @see DerWriter#toSegments()
+ * @since 1.6
+ */
+public final class EncodedSegments {
+	private final ByteBuffer[] segments;			//heap buffers, the octets of a segment are between its position and its limit
+	private final int length;
+
+	/**
+	 * Only created by the static methods of this class and by {@linkplain DerWriter#toSegments()}.
+	 * @param segments the parts of the encoding, one after another
+	 * @param length the number of octets of all parts together
+	 */
+	EncodedSegments(ByteBuffer[] segments, int length) {
+		this.segments = segments;
+		this.length = length;
+	}
+
+	/**
+	 * @param encoded an encoding that is already put together in one array. Not copied.
+	 * @return the encoding as a single segment
+	 * @since 1.6
+	 */
+	public static EncodedSegments of(byte[] encoded) {
+		return new EncodedSegments(new ByteBuffer[] {ByteBuffer.wrap(encoded)}, encoded.length);
+	}
+
+	/**
+	 * Puts a constructed TLV around the given encodings, e.g. the SEQUENCE wrapper around the parts of a log message. Only the tag and the length
+	 * octets are new, the segments of the content are not copied.
+	 * @param tag the tag octet, e.g. {@linkplain main.java.de.bsi.tsesimulator.constants.ASN1Constants#UNIVERSAL_SEQUENCE}
+	 * @param content the encodings that become the content of the constructed TLV, one after another
+	 * @return the encoding of the constructed TLV
+	 * @throws IllegalArgumentException if the content is longer than an array can be
+	 * @since 1.6
+	 */
+	public static EncodedSegments wrapConstructed(byte tag, EncodedSegments... content) {
+		//1. count the segments and the octets of the content
+		long contentLength = 0;
+		int numberOfSegments = 1;
+		for(EncodedSegments part : content) {
+			contentLength += part.length;
+			numberOfSegments += part.segments.length;
+		}
+		if(contentLength > Integer.MAX_VALUE - 6) {
+			throw new IllegalArgumentException("The content is too long to be encoded");
+		}
+
+		//2. the tag and the length octets are the first segment
+		byte[] header = new byte[1 + DerWriter.lengthOfLengthOctets((int) contentLength)];
+		header[0] = tag;
+		DerWriter.writeLength((int) contentLength, header, 1);
+
+		//3. the segments of the content follow
+		ByteBuffer[] segments = new ByteBuffer[numberOfSegments];
+		segments[0] = ByteBuffer.wrap(header);
+		int index = 1;
+		for(EncodedSegments part : content) {
+			System.arraycopy(part.segments, 0, segments, index, part.segments.length);
+			index += part.segments.length;
+		}
+		return new EncodedSegments(segments, header.length + (int) contentLength);
+	}
+
+	/**
+	 * @return the number of octets of the encoding
+	 * @since 1.6
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Returns the parts of the encoding for a gathering write. Every call returns new buffers, so the positions they are left at after a write do
+	 * not change this encoding.
+	 * @return read-only buffers with the parts of the encoding, one after another
+	 * @since 1.6
+	 */
+	public ByteBuffer[] getSegments() {
+		ByteBuffer[] duplicates = new ByteBuffer[segments.length];
+		for(int i = 0; i < segments.length; i++) {
+			duplicates[i] = segments[i].asReadOnlyBuffer();
+		}
+		return duplicates;
+	}
+
+	/**
+	 * @return the number of parts of the encoding
+	 * @since 1.6
+	 */
+	public int getNumberOfSegments() {
+		return segments.length;
+	}
+
+	/**
+	 * Gives direct access to the array of a part, e.g. for feeding the part into a hash function with <i>update(array, offset, length)</i>.
+	 * @param index the number of the part, starting with 0
+	 * @return the array that contains the part. Not a copy.
+	 * @since 1.6
+	 */
+	public byte[] getSegmentArray(int index) {
+		return segments[index].array();
+	}
+
+	/**
+	 * @param index the number of the part, starting with 0
+	 * @return the position of the first octet of the part in {@linkplain #getSegmentArray(int)}
+	 * @since 1.6
+	 */
+	public int getSegmentOffset(int index) {
+		return segments[index].arrayOffset() + segments[index].position();
+	}
+
+	/**
+	 * @param index the number of the part, starting with 0
+	 * @return the number of octets of the part
+	 * @since 1.6
+	 */
+	public int getSegmentLength(int index) {
+		return segments[index].remaining();
+	}
+
+	/**
+	 * Puts the encoding together in one array. If the encoding consists of a single whole array, e.g. one created by {@linkplain #of(byte[])},
+	 * that array is returned without copying it.
+	 * @return the encoding in one array
+	 * @since 1.6
+	 */
+	public byte[] toByteArray() {
+		if((segments.length == 1) && (getSegmentOffset(0) == 0) && (getSegmentArray(0).length == length)) {
+			return getSegmentArray(0);
+		}
+		byte[] encoded = new byte[length];
+		int position = 0;
+		for(int i = 0; i < segments.length; i++) {
+			System.arraycopy(getSegmentArray(i), getSegmentOffset(i), encoded, position, getSegmentLength(i));
+			position += getSegmentLength(i);
+		}
+		return encoded;
+	}
+}
@@ -1,12 +1,52 @@
 package main.java.de.bsi.tsesimulator.tlv;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import main.java.de.bsi.tsesimulator.constants.Constants;
+
 /**
  * This class converts the object identifiers used in the TSE-simulator from String to byte[].
- * That means, converting it from the human readable form into the ASN.1 encoded form. 
+ * That means, converting it from the human readable form into the ASN.1 encoded form.<br>
+ * <b>Changes in version 1.6:</b><br>
+ * Converted OIDs are cached in both directions. The OIDs from {@linkplain Constants} are in the cache from the start, other OIDs are added 
+ * until {@linkplain #MAX_CACHED_OIDS} OIDs are cached in each direction. Each direction caches exactly the results of its conversion, so an 
+ * encoding that is not DER or a "dot" notation with leading zeros is only found again in the same form.
  * 
  * @author dpottkaemper
- *
+ * @version 1.6
  */
 public class ObjectIdentifier {
+	/**
+	 * The maximum number of OIDs in each direction of the cache, including the OIDs from {@linkplain Constants}. OIDs that are converted after the cache is full 
+	 * are converted every time.
+	 * @since 1.6
+	 */
+	public static final int MAX_CACHED_OIDS = 64;
+	
+	//the encodings of the cached OIDs by their "dot" notation
+	private static final ConcurrentHashMap<String, byte[]> CACHE_BY_OID = new ConcurrentHashMap<>();
+	private static final AtomicInteger NUMBER_CACHED_BY_OID = new AtomicInteger();
+	//the cached OIDs by their encoding. Open addressing with linear probing, the table is never more than half full and entries are never removed
+	private static final AtomicReferenceArray<CachedOID> CACHE_BY_ENCODING = new AtomicReferenceArray<>(2 * MAX_CACHED_OIDS);
+	private static final AtomicInteger NUMBER_CACHED_BY_ENCODING = new AtomicInteger();
+	
+	static {
+		//put the OIDs from the Constants in the cache in both directions
+		String[] constantOIDs = new String[3 + Constants.ALGORITHM_OID_MAP.size()];
+		constantOIDs[0] = Constants.TRANSACTION_LOG_OID;
+		constantOIDs[1] = Constants.SYSTEM_LOG_OID;
+		constantOIDs[2] = Constants.AUDIT_LOG_OID;
+		int index = 3;
+		for(String algorithmOID : Constants.ALGORITHM_OID_MAP.values()) {
+			constantOIDs[index++] = algorithmOID;
+		}
+		for(String constantOID : constantOIDs) {
+			byte[] encoded = getSharedEncoding(constantOID);
+			convertTLVValueToOID(encoded, 0, encoded.length);
+		}
+	}
 	
 	/**
 	 * Class only provides static methods, therefore should not be instantiated. 
@@ -15,11 +55,47 @@ public class ObjectIdentifier {
 	
 	/**
 	 * converts OIDs to value components according to ASN1. 
-	 * Can handle OIDs with values greater than 127 in them by calling {@linkplain #advancedConvertOIDtoTLVValue(int[])} in the method body if necessary.
+	 * Can handle OIDs with values greater than 127 in them by calling {@linkplain #advancedConvertOIDtoTLVValue(int[])} in the method body if necessary.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * Cached OIDs are not converted again, their encoding is copied.<br>
 	 * @param OID an object identifier in the "dot" notation, e.g. 0.4.0.127.0.7.3.7.1.1
-	 * @return a byte array representation of the OID specified by the String
+	 * @return a byte array representation of the OID specified by the String. A new array, which the caller may modify.
+	 * @version 1.6
 	 */
 	public static byte[] convertOIDtoTLVValue(String OID) {
+		return getSharedEncoding(OID).clone();
+	}
+	
+	/**
+	 * Same as {@linkplain #convertOIDtoTLVValue(String)}, but the encoding of a cached OID is not copied. Used by {@linkplain DerWriter}, which only
+	 * copies the encoding into the log message it writes.
+	 * @param OID an object identifier in the "dot" notation
+	 * @return the encoding of the OID. If the OID is cached, the array is shared with all other callers and must not be modified.
+	 * @since 1.6
+	 */
+	static byte[] getSharedEncoding(String OID) {
+		byte[] cached = CACHE_BY_OID.get(OID);
+		if(cached != null) {
+			return cached;
+		}
+		
+		//not cached: encode it and cache it if the cache is not full yet
+		byte[] encoded = encodeOID(OID);
+		if(reserve(NUMBER_CACHED_BY_OID)) {
+			cached = CACHE_BY_OID.putIfAbsent(OID, encoded);
+			if(cached != null) {
+				//another thread has cached the OID in the meantime, return its array so all callers share the same one
+				NUMBER_CACHED_BY_OID.decrementAndGet();
+				return cached;
+			}
+		}
+		return encoded;
+	}
+	
+	/**
+	 * Converts an OID that is not in the cache, see {@linkplain #getSharedEncoding(String)}.
+	 */
+	private static byte[] encodeOID(String OID) {
 		//split the OID at the dots and produce an array of Strings
 		String[] splitOID = OID.split("\\.");
 		//create a new integer array to hold the values so they can be used to do maths
@@ -157,30 +233,77 @@ public class ObjectIdentifier {
 	/**
 	 * The inverse method to {@linkplain #convertOIDtoTLVValue(String)}. 
 	 * Takes a byte array that represents an ASN1 DER encoded OID and converts it to a String.
-	 * Note: can only handle values that do not exceed the capacity of an integer
-	 * @param tlvOIDValue the value byte array of an OID which has been encoded as an ASN1 DER TLV. 
-	 * 
+	 * Note: can only handle values that do not exceed the capacity of an integer<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * Delegates to {@linkplain #convertTLVValueToOID(byte[], int, int)}.<br>
+	 * @param tlvOIDValue the value byte array of an OID which has been encoded as an ASN1 DER TLV.
+	 *
 	 * @return a String in the "dot" notation that represents the OID. Example:  0.4.0.127.0.7.3.7.1.1
 	 * @see TLVUtility#asn1Value_ByteArrayToInteger(byte[])
 	 * @see TLVUtility#asn1Value_ByteArrayToLong(byte[])
+	 * @version 1.6
 	 */
 	public static String convertTLVValueToOID(byte[] tlvOIDValue) {
+		return convertTLVValueToOID(tlvOIDValue, 0, tlvOIDValue.length);
+	}
+	
+	/**
+	 * Same as {@linkplain #convertTLVValueToOID(byte[])}, but reads the encoded OID from a part of a bigger array, so that the value 
+	 * does not have to be copied out of an encoded log message first. Cached OIDs are found by their encoding and not decoded again.
+	 * @param buffer the array that contains the value of an OID which has been encoded as an ASN1 DER TLV
+	 * @param offset the position of the first value octet in buffer
+	 * @param length the number of value octets
+	 * @return a String in the "dot" notation that represents the OID. Example:  0.4.0.127.0.7.3.7.1.1
+	 * @see TLVView#getValueAsOID()
+	 * @since 1.6
+	 */
+	public static String convertTLVValueToOID(byte[] buffer, int offset, int length) {
+		//look for the encoding in the cache
+		int hash = hash(buffer, offset, length);
+		int mask = CACHE_BY_ENCODING.length() - 1;
+		for(int slot = hash & mask; ; slot = (slot + 1) & mask) {
+			CachedOID cached = CACHE_BY_ENCODING.get(slot);
+			if(cached == null) {
+				break;
+			}
+			if((cached.hash == hash) && cached.hasEncoding(buffer, offset, length)) {
+				return cached.oid;
+			}
+		}
+		
+		//not cached: decode it and cache it if the cache is not full yet. The encoding is copied, because the buffer belongs to the caller.
+		//If two threads cache the same encoding at the same time, it is in the table twice, which only costs a slot
+		String oid = decodeOID(buffer, offset, length);
+		if(reserve(NUMBER_CACHED_BY_ENCODING)) {
+			byte[] encoded = new byte[length];
+			System.arraycopy(buffer, offset, encoded, 0, length);
+			for(int slot = hash & mask; !CACHE_BY_ENCODING.compareAndSet(slot, null, new CachedOID(oid, encoded, hash)); slot = (slot + 1) & mask) {
+				//the slot is used, try the next one. The table is twice as big as the cache, so there is always a free slot
+			}
+		}
+		return oid;
+	}
+	
+	/**
+	 * Decodes an OID that is not in the cache, see {@linkplain #convertTLVValueToOID(byte[], int, int)}.
+	 */
+	private static String decodeOID(byte[] buffer, int offset, int length) {
 		StringBuilder oidBuilder = new StringBuilder();
 			//decode first octet
 		//(40*value1) + value2 = firstOctet
-		int value1 = tlvOIDValue[0] / 40;
-		int value2 = tlvOIDValue[0] % 40;
+		int value1 = buffer[offset] / 40;
+		int value2 = buffer[offset] % 40;
 		oidBuilder.append(value1).append('.').append(value2);
 		
 		//position serves as a loop varible
 		//decoding starts at tlvOIDvalue[1] because first octet has already been decoded above
 		int position = 1;
 
-		while(position < tlvOIDValue.length) {
+		while(position < length) {
 			//check if current OID part is encoded using a single octet
-			if((tlvOIDValue[position] & 0x80) == 0) {
+			if((buffer[offset + position] & 0x80) == 0) {
 				//first bit is 0 -> no additional effort necessary
-				oidBuilder.append('.').append(tlvOIDValue[position]);
+				oidBuilder.append('.').append(buffer[offset + position]);
 				position++;
 			}														
 			else {
@@ -188,10 +311,10 @@ public class ObjectIdentifier {
 				int decodedOID = 0;				//saves the decoded value 
 				
 				do {
-					int tmp = (tlvOIDValue[position] & 0b01111111);		//tmp saves the integer value from the current octet. masks first bit, because thats not part of the value
+					int tmp = (buffer[offset + position] & 0b01111111);		//tmp saves the integer value from the current octet. masks first bit, because thats not part of the value
 					
 					//check if the last octet of the long length encoded value has been reached
-					if((tlvOIDValue[position] & 0x80) == 0) {
+					if((buffer[offset + position] & 0x80) == 0) {
 						doneFlag = true;
 					}	
 					//shift the current value of the decodedOID 7 bits to the left, 
@@ -203,7 +326,7 @@ public class ObjectIdentifier {
 					//increase position
 					position++;
 					
-				} while ((position < tlvOIDValue.length) && !doneFlag);	
+				} while ((position < length) && !doneFlag);	
 				
 				oidBuilder.append('.').append(decodedOID);
 			}	//else end
@@ -211,5 +334,63 @@ public class ObjectIdentifier {
 		return oidBuilder.toString();
 	}
 	
-
+	//-----------------------------------CACHE------------------------------------------------------------------
+	
+	/**
+	 * An OID in both forms. Immutable, so it can be shared by all threads.
+	 */
+	private static final class CachedOID {
+		private final String oid;
+		private final byte[] encoded;
+		private final int hash;			//see hash(byte[], int, int)
+		
+		private CachedOID(String oid, byte[] encoded, int hash) {
+			this.oid = oid;
+			this.encoded = encoded;
+			this.hash = hash;
+		}
+		
+		/**
+		 * @return true, if the octets in the part of buffer are the encoding of this OID
+		 */
+		private boolean hasEncoding(byte[] buffer, int offset, int length) {
+			if(length != encoded.length) {
+				return false;
+			}
+			for(int i = 0; i < length; i++) {
+				if(encoded[i] != buffer[offset + i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * Reserves a place in a cache.
+	 * @param numberCached the number of OIDs in the cache, including the reserved places
+	 * @return true, if a place was reserved. false, if the cache is full
+	 */
+	private static boolean reserve(AtomicInteger numberCached) {
+		int current;
+		do {
+			current = numberCached.get();
+			if(current >= MAX_CACHED_OIDS) {
+				return false;
+			}
+		} while(!numberCached.compareAndSet(current, current + 1));
+		return true;
+	}
+	
+	/**
+	 * The hash code of an encoded OID, like {@linkplain java.util.Arrays#hashCode(byte[])} for a part of an array, but with the bits spread 
+	 * because OIDs of the same arc only differ in the last octets.
+	 */
+	private static int hash(byte[] buffer, int offset, int length) {
+		int h = 1;
+		for(int i = 0; i < length; i++) {
+			h = 31 * h + buffer[offset + i];
+		}
+		return h ^ (h >>> 16);
+	}
 }
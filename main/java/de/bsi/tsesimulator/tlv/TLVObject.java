@@ -4,10 +4,10 @@ package main.java.de.bsi.tsesimulator.tlv;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.util.ArrayList;
 
 import org.bouncycastle.util.Arrays;
 
+import main.java.de.bsi.tsesimulator.constants.ASN1Constants;
 import main.java.de.bsi.tsesimulator.exceptions.TLVException;
 import main.java.de.bsi.tsesimulator.exceptions.ValueNullException;
 import main.java.de.bsi.tsesimulator.exceptions.ValueTooBigException;
@@ -155,11 +155,14 @@ public class TLVObject {
 	
 	/**
 	 * Computes and then encodes the length of the value array according to ASN1 DER standard.
-	 * Should only be called, if the value has been assigned.
+	 * Should only be called, if the value has been assigned.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * The number of length octets is counted by {@linkplain DerWriter#lengthOfLengthOctets(int)} instead of being calculated with Math.log.<br>
 	 * @return an ASN1 DER encoded representation of the value.
 	 * @throws ValueNullException the value has not been set or has been reset. Length encoding therefore not possible.
 	 * 
 	 * @throws ValueTooBigException the value has a length greater than 2^125 - 1 and can't be ASN1 DER encoded.
+	 * @version 1.6
 	 */
 	public byte[] getLengthAsByteArray() throws ValueNullException, ValueTooBigException {
 		//if there is no value, the value does not have a length
@@ -174,54 +177,10 @@ public class TLVObject {
 			throw new ValueNullException("The value of this TLV is not set");
 		}
 
-		byte[] toBeReturned=null;
-		
 		//DER encoding: "When the length is between 0 and 127, the short form of length must be used".
-		if(this.value.length<=127) {
-			toBeReturned=new byte[1];
-			toBeReturned[0]=(byte) this.value.length;
-		}
-		//DER encoding: "When the length is 128 or greater, the long form of length must be used"
-		else {
-			//1. determine number of bytes to be used. 
-			// this is calculated by getting the log of this.value.length with base 256.
-			// == (log(this.value.length))/(log(256)
-			double numberOfBytesAsDouble = Math.log(this.value.length) / Math.log(256);
-			
-			//Math.floor, because we do not want to get "2" if the input is "1.9". That would not follow the principle of "minimal number of octets"
-			long numberOfBytesAsLong = (long) Math.floor(numberOfBytesAsDouble);
-			
-			//because of log, numberOfBytes is actually one octet more. -> add 1
-			numberOfBytesAsLong++;
-			
-			//2. check whether the number of bytes is bigger than 126. If yes, throw an exception
-			if(numberOfBytesAsLong>126) {
-				throw new ValueTooBigException("The length of the value exceeds 2^125 - 1 and can not be encoded.");
-			}
-			
-			//3. store number of bytes that are used for the length encoding in the beginning of the byte array (the first octet). Set the first bit of that octet to 1.
-			byte firstOctet = (byte) numberOfBytesAsLong;
-			firstOctet +=0b10000000;
-			
-			//4. store the real length in the following octets. That is an array of the length "numberOfBytesAsLong"
-			byte[] followingOctets = new byte[(int) numberOfBytesAsLong];
-			
-			//beautiful bit shifting...
-			for(int i=0; i<numberOfBytesAsLong; i++) {
-				followingOctets[i] = (byte) (this.value.length >> (i*8) & 0xff);		
-			}
-
-			//define the length of the byte array that will represent the length
-			toBeReturned = new byte[(int) (numberOfBytesAsLong+1)];
-			toBeReturned[0]=firstOctet;
-			
-			//reverse the followingOctets array and put it into toBeReturned. 
-			//that means: followingOctets[followingOctets.length-1] will be toBeReturned[1]
-			//only go from j=0 to j<toBeReturned.length-1 because otherwise toBeReturned[j+1] causes IndexOutOfBounds
-			for(int j=0; j<toBeReturned.length-1;j++) {
-				toBeReturned[j+1]=followingOctets[followingOctets.length-1-j];
-			}
-		}
+		//"When the length is 128 or greater, the long form of length must be used". The length of a Java array always fits into the long form.
+		byte[] toBeReturned = new byte[DerWriter.lengthOfLengthOctets(this.value.length)];
+		DerWriter.writeLength(this.value.length, toBeReturned, 0);
 		return toBeReturned;
 	}
 
@@ -240,11 +199,14 @@ public class TLVObject {
 	
 //----------------------------------------------------TLV Encoder & Decoder-------------------------------------------------------------------
 	/**
-	 * Converts the whole TLVObject into an ASN1 DER encoded byte array. 
+	 * Converts the whole TLVObject into an ASN1 DER encoded byte array.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * The length octets are encoded once instead of twice, and the parts are copied with System.arraycopy.<br>
 	 * @return the TLVObject as a byte array
 	 * @throws ValueTooBigException thrown by {@link #getLengthAsByteArray()} if the length is too big to be encoded.
 	 * @throws ValueNullException thrown by {@link #getLengthAsByteArray()} if the value has not been set and therefore is null and the TLV it belongs to
 	 * is <b>not</b> tagged as a NULL.
+	 * @version 1.6
 	 */
 	public byte[] toTLVByteArray() throws ValueNullException, ValueTooBigException {
 		//check if it's an UNIVERSAL NULL
@@ -253,27 +215,18 @@ public class TLVObject {
 			return legitimateNullValue;
 		}
 		
-		//determine length of byte array needed:
-		int lengthOfTLVObject = this.tag.getTagContent().length + this.getLengthAsByteArray().length + this.value.length;
-
-		byte[] toBeReturned = new byte[lengthOfTLVObject];
-		int offset=0;
+		//determine length of byte array needed. The length octets are encoded only once.
+		byte[] lengthAsByteArray = this.getLengthAsByteArray();
+		byte[] tagContent = this.tag.getTagContent();
+		byte[] toBeReturned = new byte[tagContent.length + lengthAsByteArray.length + this.value.length];
 		
-		//fill the tag content into toBeReturned
-		for(byte tagArrayElement : this.getTag().getTagContent()) {
-			toBeReturned[offset] = tagArrayElement;
-			offset++;
-		}
-		//fill the length encoded to asn1 standards into toBeReturned
-		for(byte lengthArrayElement : this.getLengthAsByteArray()) {
-			toBeReturned[offset] = lengthArrayElement;
-			offset++;
-		}
-		//fill the value into toBeReturned
-		for(byte valueArrayElement : this.getValue()) {
-			toBeReturned[offset] = valueArrayElement;
-			offset++;
-		}
+		//fill the tag content, the length encoded to asn1 standards and the value into toBeReturned
+		int offset = 0;
+		System.arraycopy(tagContent, 0, toBeReturned, offset, tagContent.length);
+		offset += tagContent.length;
+		System.arraycopy(lengthAsByteArray, 0, toBeReturned, offset, lengthAsByteArray.length);
+		offset += lengthAsByteArray.length;
+		System.arraycopy(this.value, 0, toBeReturned, offset, this.value.length);
 		return toBeReturned;
 		
 	}
@@ -282,113 +235,24 @@ public class TLVObject {
 	/**
 	 * Takes a byte array as an argument and decodes its contents according to ASN1 DER standard.
 	 * Used in the TSE simulator to get the log time from the byte array that the CryptoCore returns to the ERSSpecificModule. <br>
-	 * Note: the method distinguishes between primitive and constructed TLVs. If it encounters a constructed TLV, it adds this TLV to the array that it returns, then also adds the child (or children) of the constructed TLV to this array.
+	 * Note: the method distinguishes between primitive and constructed TLVs. If it encounters a constructed TLV, it adds this TLV to the array that it returns, then also adds the child (or children) of the constructed TLV to this array.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * Decodes the array with {@linkplain TLVView#decode(byte[])} and copies the value of every view into a TLVObject. Callers that only read the 
+	 * decoded values should use {@linkplain TLVView} directly, it does not copy anything.<br>
 	 * 
 	 * @param inputArray - one or more TLVs encoded as an ASN1 byte array.
 	 * @return - an array of TLVObjects where each represents one TLV that had been encoded in the byte array.
-	 * @throws TLVException - if this Exception is thrown by {@link #decodeASN1ByteArrayToTLVObject(byte[], int, int, int)} because it could not decode
+	 * @throws TLVException - if this Exception is thrown by {@link TLVView#decode(byte[])} because it could not decode
 	 * the current TLV. 
+	 * @version 1.6
 	 */
 	public static TLVObject[] decodeASN1ByteArrayToTLVObjectArray(byte[] inputArray) throws TLVException {
-		//create an ArrayList capable of storing the TLVObjects until they can be converted to a TLVObject[]
-		ArrayList<TLVObject> temporalToBeReturned = new ArrayList<TLVObject>();
-		
-		//goes through the inputArray and always first checks the tag to see what type of content should be expected
-		int offsetCurrentTag = 0;
-		while(offsetCurrentTag<inputArray.length) {
-			TLVObject currentTLV = null;
-			
-			//idea: use the decodeASN1ByteArrayToTLVObject
-			boolean shortLength = ((inputArray[offsetCurrentTag+1] & 0x80) == 0);
-			int numberOfValueOctets = 0;
-			int numberOfLengthOctets = 0;
-			int numberOfTagOctets = 1;
-			//1. get the tag
-			byte firstTagOctet = inputArray[offsetCurrentTag];
-			
-			//2. determine if the TLV is primitive
-			if(!(((firstTagOctet >>> 5) & 1) != 0)) {
-				//3. get the primitive tlv object
-					//3.1 get the length
-						//3.1.1 if the short form of length is used, increment the numberOfLengthOctets to 1 and set the numberOfValueOctets to what the length octet says
-				if(shortLength) {
-					numberOfValueOctets = inputArray[offsetCurrentTag + 1];
-					numberOfLengthOctets++;
-				}
-						//3.1.2 if the long form of length is used, get the length from the TLVObject.getLengthFromLongFormOfLengthByteArray method
-				else {
-					numberOfLengthOctets = (inputArray[offsetCurrentTag + 1] & 0b01111111);		//first octet has msb set to 1 and the other bits encode numberOfLengthOctets
-					byte[] lengthOctets = new byte[numberOfLengthOctets];		//		store the length octets
-					
-							//copy from the input array from position offsetCurrentTag+1+1 because (offsetCurrentTag+1) is 
-							//the position of the octet which says how many octets are needed to encode the length
-							//therefore, the real length encoding starts at position (offsetCurrentTag+2)
-					System.arraycopy(inputArray, (offsetCurrentTag+2), lengthOctets, 0, lengthOctets.length);	//copy only the octets encoding the length
-					
-					
-					numberOfValueOctets = TLVObject.getLengthFromLongFormOfLengthByteArray(lengthOctets);	//decode the log form of length from the byte array
-																											//store it in "length"
-					numberOfLengthOctets++;		//because the length-encoding octet only encodes the FOLLOWING length octets. itself not counted.
-				}
-				
-				//4. create what will be fed into decodeASN1ByteArrayToTLVObject
-				byte[] primitiveTLVasByteArray = new byte[numberOfValueOctets + numberOfLengthOctets + numberOfTagOctets];
-				System.arraycopy(inputArray, offsetCurrentTag, primitiveTLVasByteArray, 0, primitiveTLVasByteArray.length);
-				try {
-					currentTLV = TLVObject.decodeASN1ByteArrayToTLVObject(primitiveTLVasByteArray, numberOfTagOctets, numberOfLengthOctets, numberOfValueOctets);
-				} catch (TLVException e) {
-					throw new TLVException(e.getMessage());
-				}
-			}
-			
-				//C. decode the constructed tlv object. 
-			else {
-
-				//D.1 get the length of the whole constructed TLV encoded as a byte array
-					//D.1.1 if the short form of length is used, just save the length
-				if(shortLength) {
-					numberOfValueOctets = inputArray[offsetCurrentTag + 1];
-					numberOfLengthOctets++;
-				}
-					//D.1.2 if the long form of length is used, get the length from the TLVObject.getLengthFromLongFormOfLengthByteArray method
-				else {
-					numberOfLengthOctets = (inputArray[offsetCurrentTag + 1] & 0b01111111);		//first octet has msb set to 1 and the other bits encode numberOfLengthOctets
-					byte[] lengthOctets = new byte[numberOfLengthOctets];		//ggf new byte[numberOfLengthOctets -1]			store the length octets
-					
-
-					//copy from the input array from position offsetCurrentTag+1+1 because (offsetCurrentTag+1) is 
-					//the position of the octet which says how many octets are needed to encode the length
-					//therefore, the real length encoding starts at position (offsetCurrentTag+2)
-					System.arraycopy(inputArray, (offsetCurrentTag+2), lengthOctets, 0, lengthOctets.length);	//copy only the octets encoding the length
-			
-					
-					numberOfValueOctets = TLVObject.getLengthFromLongFormOfLengthByteArray(lengthOctets);	//decode the log form of length from the byte array
-																											//store it in "length"
-					numberOfLengthOctets++;		//because the length-encoding octet only encodes the FOLLOWING length octets. itself not counted.
-				}
-				
-				//create the parent TLVObject from the byte array
-				byte[] constructedTLVValueasByteArray = new byte[numberOfValueOctets];
-				System.arraycopy(inputArray, (offsetCurrentTag+numberOfTagOctets+numberOfLengthOctets), constructedTLVValueasByteArray, 0, constructedTLVValueasByteArray.length);
-				
-				currentTLV = new TLVObject();
-				currentTLV.setTagWithByteElement(firstTagOctet);
-				currentTLV.setValue(constructedTLVValueasByteArray);
-				
-				//set the number of value octets to 0 so that "update currentOffsetTag" goes to the tag of the child (hopefully) and does not skip the 
-				//child because it adds the whole length of the child to currentOffsetTag through the child being counted in the numberOfValueOctets of 
-				//the parent
-				numberOfValueOctets=0;
-			}
-			
-			//add the newly created TLVObject to the temporal ArrayList
-			temporalToBeReturned.add(currentTLV);
-			
-			//update the offsetCurrentTag
-			offsetCurrentTag += numberOfValueOctets + numberOfLengthOctets + numberOfTagOctets;
+		//decode the views, then create a TLVObject with a copy of the value from every view
+		TLVView[] views = TLVView.decode(inputArray);
+		TLVObject[] toBeReturned = new TLVObject[views.length];
+		for(int i = 0; i < views.length; i++) {
+			toBeReturned[i] = views[i].toTLVObject();
 		}
-		//convert the ArrayList into a real TLVObject array and return that
-		TLVObject[] toBeReturned = temporalToBeReturned.toArray(new TLVObject[temporalToBeReturned.size()]);
 		return toBeReturned;
 	}
 	
@@ -472,57 +336,6 @@ public class TLVObject {
 	}
 	
 	
-	/**
-	 * Overloaded version of the {@linkplain #decodeASN1ByteArrayToTLVObject(byte[])} method. To be used by {@linkplain #decodeASN1ByteArrayToTLVObjectArray(byte[])}.
-	 * The caller of this method has to calculate the number of tag octets, the number of length octets and the number of value octets.
-	 * Note: can only be called on primitive TLVs because it does not check if its a primitive tlv or not.
-	 * @param tlvByteArray - the whole encoded TLV including the tag and the length octets. Has to be (numberOftagOctets + numberOflengthOctets + numberOfValueOctets) long. This is checked in the method body.
-	 * @param numberOfTagOctets - the number of tag octets. Must be counted by the calling method and currently only the value "1" is supported, as the TR-03151 does not specify high tag number form tags.
-	 * @param numberOfLengthOctets - the number of length octets. Must be counted by the calling method and can be "1" or more, depending on what kiind of length encoding has been used.
-	 * @param numberOfValueOctets - the number of value octets as encoded by the length octets. Must be provided by the calling method. 
-	 * @return - a TLVObject with the tag and value encoded in the tlvByteArray.
-	 * @throws TLVException - If the tlvByteArray is too short to be an ASN1 encoded TLV, if the tag is in high tag number form and/or if the byte array's length does not match (numberOftagOctets + numberOflengthOctets + numberOfValueOctets).
-	 */
-	private static TLVObject decodeASN1ByteArrayToTLVObject(byte[] tlvByteArray, int numberOfTagOctets, int numberOfLengthOctets, int numberOfValueOctets) throws TLVException {
-		//check if tag and length octet are present. if not: exception
-		if(tlvByteArray.length < 2) {
-			throw new TLVException("ASN1 TLVs are at least 2 octets long!");
-		}
-		
-		//save the tag in a byte
-		byte firstTagOctet = tlvByteArray[0];
-		//check if the tag is in low number form. if not throw exception
-		if((firstTagOctet << 3) == 0b11111000) {
-			throw new TLVException("Does not support high tag number form!");
-		}
-		//create what will be returned
-		TLVObject toBeReturned = new TLVObject();
-		
-		
-		//check if the numberOfValueOctets corresponds to the length of the tlvByteArray
-		//tlvByteArray.length == numberOfValueOctets + numberOfLengthOctets + numberOfTagOctets(which is currently always 1) should be true
-		//otherwise: exception
-		if(tlvByteArray.length != (numberOfValueOctets + numberOfLengthOctets + numberOfTagOctets)) {
-			throw new TLVException("The input byte array is either too short or too long!");
-		}
-		
-		//check if the decoded TLV has a total length of 2 AND has the tag NULL
-		//if that's the case, return a TLVObject with tag NULL and no value
-		if(((numberOfValueOctets + numberOfLengthOctets + numberOfTagOctets) == 2) && (((firstTagOctet << 2) ^ 0b00010100) == 0)) {
-			toBeReturned.setTagWithByteElement(firstTagOctet);
-			return toBeReturned;
-		}
-		
-		//set Tag & Value in the toBeReturned TLVObject
-		toBeReturned.setTagWithByteElement(firstTagOctet); 		//set the tag element from the first octet of the byte array
-		byte[] valueByteArray = new byte[numberOfValueOctets];	//create a new array where only the value octets are stored
-		System.arraycopy(tlvByteArray, (numberOfTagOctets+numberOfLengthOctets), valueByteArray, 0, valueByteArray.length);
-		toBeReturned.setValue(valueByteArray);
-	
-		return toBeReturned;
-	}
-	
-	
 	/**
 	 * Decodes long form of length asn1 encoded byte arrays to long.
 	 * Takes only the "following length octets", NOT the first length octet that encodes how many octets encode the length.
@@ -575,57 +388,34 @@ public class TLVObject {
 	 * @return true, if the log message could be verified. False otherwise.
 	 * @throws IOException if reading the Java File from the file system fails
 	 * @throws VerifyingOperationFailedException if something unusual happens during verification. This can be anything from a parsing error to an error in {@linkplain CryptoCore#isVerified(byte[], byte[])} method.
+	 * <b>Changes in version 1.6:</b><br>
+	 * The signed value is taken from the file as it is instead of decoding the log message into TLVObjects and encoding them again.<br>
 	 * @since 1.5
+	 * @version 1.6
 	 * @see {@linkplain CryptoCore#isVerified(byte[], byte[])}, {@linkplain CryptoCore#verify}
 	 */
 	public static boolean verifyTransactionOrSystemLog(File transysLog, CryptoCore cryptoCore) throws IOException, VerifyingOperationFailedException {
 		//1. read the file into a byte array
 		byte[] logAsByteArray = Files.readAllBytes(transysLog.toPath());
 		
-		//2. create a TLVObject array from that
-		TLVObject[] logAsTLVObjectArraySequenceWrapper = null;
-		try {
-			logAsTLVObjectArraySequenceWrapper = TLVObject.decodeASN1ByteArrayToTLVObjectArray(logAsByteArray);
-		} catch (TLVException e) {
-			throw new VerifyingOperationFailedException(e.getMessage(), e);
-		}
-		
-		//3. the resulting TLVObject array does have the SEQUENCE wrapper that is added to the Log Message around it. We have to remove it:
-		TLVObject[] logAsTLVObjectArray = TLVUtility.removeSEQUENCEWrapper(logAsTLVObjectArraySequenceWrapper);
-		
-		//4. the last TLVObject of the new array represents the signature. Isolate the value of that:
-		byte[] signatureValue = logAsTLVObjectArray[logAsTLVObjectArray.length - 1].getValue();
-		
-		//5. with the signature value isolated, we now have to create the byte array that has been signed and created the aforementioned signature
-		//Problem: the logAsTLVObjectArray does contain the signatureAlgorithm field, that is defined as a SEQUENCE containing an ObjectIdentifier
-			//ugly but quick solution: identify the TLVObject[i] (can be multiple!) which must be removed to create the value that was signed originally.
-			//That means, remove the signatureValue TLVObject and the TLVObject representing the value of the SEQUENCE TLV signatureAlgorithm
-		
-		//5.1: create an array holding everything from the beginning of the log message to the signatureAlgorithm Sequence (inclusive)
-			TLVObject[] tempLogUpper = new TLVObject[logAsTLVObjectArray.length - 4];	// -4 = signatureAlgorithm Sequence
-			System.arraycopy(logAsTLVObjectArray, 0, tempLogUpper, 0, (logAsTLVObjectArray.length - 4));
-		//5.2: create an array holding only the two values missing: logTime and signatureCounter. Signature itself does obviously not contribute to the signature computation	
-			TLVObject[] tempLogLower = new TLVObject[2];
-			System.arraycopy(logAsTLVObjectArray, (tempLogUpper.length + 1), tempLogLower, 0, 2);
-		//5.3: combine the two arrays:
-			TLVObject[] tempLogCombined = Utils.concatAll(tempLogUpper, tempLogLower);	
-				
-		//6. create the byte array holding the whole TLVObjects from tempLogCombined as byte arrays in ASN.1 DER form
-		byte[] signedValue = null;
-		//go through whole tempLogCombined array and convert each TLVObject to an ASN.1 byte array. Then append the result to signedValueAsArrayList
-		try {
-			for(TLVObject currentObject : tempLogCombined) {
-				byte[] currentObjectAsByteArray = currentObject.toTLVByteArray();
-				signedValue = Utils.concatTwoByteArrays(signedValue, currentObjectAsByteArray);
-			}
-		} catch(ValueNullException |ValueTooBigException e) {
-			throw new VerifyingOperationFailedException(e.getMessage(), e);
-		} 
+		//2. verify the signature over the log message. The signatureAlgorithm is signed together with the other fields of the log message, so 
+		//the signed value is the content of the SEQUENCE wrapper up to the signature.
+		return verifyLogMessage(logAsByteArray, cryptoCore);
+	}
 
-		//7. now use the CryptoCore to verify the signature and the values that were signed
-		return cryptoCore.isVerified(signatureValue, signedValue);
+	/**
+	 * Verifies a {@linkplain TransactionLogMessage} or a {@linkplain SystemLogMessage} that has already been read, e.g. from a segment of the
+	 * storage. The same rules as for {@linkplain #verifyTransactionOrSystemLog(File, CryptoCore)} apply.
+	 * @param logAsByteArray the encoded log message including the SEQUENCE wrapper
+	 * @param cryptoCore a {@linkplain CryptoCore} with the configuration that was used to create the log message
+	 * @return true, if the log message could be verified. False otherwise.
+	 * @throws VerifyingOperationFailedException if the log message can not be decoded or {@linkplain CryptoCore#isVerified(byte[], byte[])} fails
+	 * @since 1.6
+	 */
+	public static boolean verifyTransactionOrSystemLog(byte[] logAsByteArray, CryptoCore cryptoCore) throws VerifyingOperationFailedException {
+		return verifyLogMessage(logAsByteArray, cryptoCore);
 	}
-	
+
 	/**
 	 * <b>Not yet tested, since AuditLogs are not yet implemented!</b><br>
 	 * This method can be used to verify an AuditLog using a file on the file system and a {@linkplain CryptoCore}.
@@ -640,7 +430,10 @@ public class TLVObject {
 	 * @return true, if the log message could be verified. False otherwise.
 	 * @throws IOException if reading the Java File from the file system fails
 	 * @throws VerifyingOperationFailedException if something unusual happens during verification. This can be anything from a parsing error to an error in {@linkplain CryptoCore#isVerified(byte[], byte[])} method.
+	 * <b>Changes in version 1.6:</b><br>
+	 * Uses the same verification as {@linkplain #verifyTransactionOrSystemLog(File, CryptoCore)}.<br>
 	 * @since 1.5
+	 * @version 1.6
 	 * @see {@linkplain CryptoCore#isVerified(byte[], byte[])}, {@linkplain CryptoCore#verify}
 	 * @deprecated Due to AuditLogs not being implemented, this method could not yet be tested.
 	 */
@@ -648,47 +441,53 @@ public class TLVObject {
 		//1. read the file into a byte array
 		byte[] logAsByteArray = Files.readAllBytes(auditLog.toPath());
 		
-		//2. create a TLVObject array from that
-		TLVObject[] logAsTLVObjectArraySequenceWrapper = null;
+		//2. verify the signature over the log message. seAuditData lies between signatureAlgorithm and signature, so it is part of the signed value 
+		//in the same way as signatureCounter and logTime.
+		return verifyLogMessage(logAsByteArray, cryptoCore);
+	}
+	
+	/**
+	 * Verifies the signature of an encoded log message of any type. The signed value is everything between the SEQUENCE wrapper and the 
+	 * signature, which is the last TLV of the log message. It is taken from the encoded log message as it is, so nothing has to be encoded again.
+	 * Only the tags and lengths of the top level fields are read in place with {@linkplain TLVView}, no value is decoded or copied except the
+	 * signed part and the signature value.
+	 * @param logAsByteArray the encoded log message including the SEQUENCE wrapper
+	 * @param cryptoCore a {@linkplain CryptoCore} with the configuration that was used to create the log message
+	 * @return true, if the log message could be verified. False otherwise.
+	 * @throws VerifyingOperationFailedException if the log message can not be decoded or {@linkplain CryptoCore#isVerified(byte[], byte[])} fails
+	 * @since 1.6
+	 */
+	private static boolean verifyLogMessage(byte[] logAsByteArray, CryptoCore cryptoCore) throws VerifyingOperationFailedException {
+		//1. skip the SEQUENCE wrapper, if there is one, and step from field to field to find the first and the last one
+		TLVView firstField = null;
+		TLVView lastField = null;
 		try {
-			logAsTLVObjectArraySequenceWrapper = TLVObject.decodeASN1ByteArrayToTLVObjectArray(logAsByteArray);
+			int position = 0;
+			int end = logAsByteArray.length;
+			if((end > 0) && (logAsByteArray[0] == ASN1Constants.UNIVERSAL_SEQUENCE)) {
+				TLVView wrapper = TLVView.decodeElement(logAsByteArray, 0, end);
+				position = wrapper.getValueOffset();
+				end = wrapper.getEnd();
+			}
+			while(position < end) {
+				lastField = TLVView.decodeElement(logAsByteArray, position, end);
+				if(firstField == null) {
+					firstField = lastField;
+				}
+				position = lastField.getEnd();
+			}
 		} catch (TLVException e) {
 			throw new VerifyingOperationFailedException(e.getMessage(), e);
 		}
+		if((firstField == null) || (firstField == lastField)) {
+			throw new VerifyingOperationFailedException("The log message is too short to contain a signature");
+		}
 		
-		//3. the resulting TLVObject array does have the SEQUENCE wrapper that is added to the Log Message around it. We have to remove it:
-		TLVObject[] logAsTLVObjectArray = TLVUtility.removeSEQUENCEWrapper(logAsTLVObjectArraySequenceWrapper);
-		
-		//4. the last TLVObject of the new array represents the signature. Isolate the value of that:
-		byte[] signatureValue = logAsTLVObjectArray[logAsTLVObjectArray.length - 1].getValue();
-		
-		//5. with the signature value isolated, we now have to create the byte array that has been signed and created the aforementioned signature
-		//Problem: the logAsTLVObjectArray does contain the signatureAlgorithm field, that is defined as a SEQUENCE containing an ObjectIdentifier
-			//ugly but quick solution: identify the TLVObject[i] (can be multiple!) which must be removed to create the value that was signed originally.
-			//That means, remove the signatureValue TLVObject and the TLVObject representing the value of the SEQUENCE TLV signatureAlgorithm
+		//2. the signature value is the last field, everything from the first field to the signature has been signed
+		byte[] signatureValue = lastField.getValue();
+		byte[] signedValue = Arrays.copyOfRange(logAsByteArray, firstField.getOffset(), lastField.getOffset());
 		
-		//5.1: create an array holding everything from the beginning of the log message to the signatureAlgorithm Sequence (inclusive)
-			TLVObject[] tempLogUpper = new TLVObject[logAsTLVObjectArray.length - 5];	// -5 = signatureAlgorithm Sequence, not -4 because AuditLogs MUST have seAuditData
-			System.arraycopy(logAsTLVObjectArray, 0, tempLogUpper, 0, (logAsTLVObjectArray.length - 5));
-		//5.2: create an array holding only the three values missing: seAuditData, logTime and signatureCounter. Signature itself does obviously not contribute to the signature computation	
-			TLVObject[] tempLogLower = new TLVObject[3];
-			System.arraycopy(logAsTLVObjectArray, (tempLogUpper.length + 1), tempLogLower, 0, 3);
-		//5.3: combine the two arrays:
-			TLVObject[] tempLogCombined = Utils.concatAll(tempLogUpper, tempLogLower);	
-				
-		//6. create the byte array holding the whole TLVObjects from tempLogCombined as byte arrays in ASN.1 DER form
-		byte[] signedValue = null;
-		//go through whole tempLogCombined array and convert each TLVObject to an ASN.1 byte array. Then append the result to signedValueAsArrayList
-		try {
-			for(TLVObject currentObject : tempLogCombined) {
-				byte[] currentObjectAsByteArray = currentObject.toTLVByteArray();
-				signedValue = Utils.concatTwoByteArrays(signedValue, currentObjectAsByteArray);
-			}
-		} catch(ValueNullException |ValueTooBigException e) {
-			throw new VerifyingOperationFailedException(e.getMessage(), e);
-		} 
-
-		//7. now use the CryptoCore to verify the signature and the values that were signed
+		//3. now use the CryptoCore to verify the signature and the values that were signed
 		return cryptoCore.isVerified(signatureValue, signedValue);
 	}
 
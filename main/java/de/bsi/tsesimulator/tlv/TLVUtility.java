@@ -417,17 +417,100 @@ public class TLVUtility {
 		return tmpLong.longValue();
 	}
 	
+	/**
+	 * Converts an asn1 encoded integer value that is part of a bigger array back to an int, without copying the value out of that array first.
+	 * The value octets are interpreted as a big-endian two's complement number, as {@linkplain BigInteger#BigInteger(byte[])} would do it.
+	 * @param buffer the array that contains the asn1 encoded integer value
+	 * @param offset the position of the first value octet in buffer
+	 * @param length the number of value octets
+	 * @return the int value decoded from the value octets
+	 * @throws ValueNullException if the buffer is null or the length is 0
+	 * @throws ValueTooBigException if the value is longer than 4 bytes and can therefore not be stored in an int
+	 * @see #asn1Value_ByteArrayToInteger(byte[])
+	 * @see TLVView#getValueAsInteger()
+	 * @since 1.6
+	 */
+	public static int asn1Value_ByteArrayToInteger(byte[] buffer, int offset, int length) throws ValueNullException, ValueTooBigException {
+		//check if there is a value at all
+		if((buffer == null) || (length == 0)) {
+			throw new ValueNullException("The input is empty, not an encoded integer");
+		}
+		//check if the value is too long to be converted to an integer
+		if(length > 4) {
+			throw new ValueTooBigException("Java integer can only hold 32 bits or 4 octets. The passed value is bigger than that");
+		}
+		
+		//the first octet keeps its sign, all following octets are appended unsigned
+		int result = buffer[offset];
+		for(int i = 1; i < length; i++) {
+			result = (result << 8) | (buffer[offset + i] & 0xFF);
+		}
+		return result;
+	}
+	
+	/**
+	 * Converts an asn1 encoded integer value that is part of a bigger array back to a long, without copying the value out of that array first.
+	 * The value octets are interpreted as a big-endian two's complement number, as {@linkplain BigInteger#BigInteger(byte[])} would do it.
+	 * @param buffer the array that contains the asn1 encoded long value
+	 * @param offset the position of the first value octet in buffer
+	 * @param length the number of value octets
+	 * @return the long value decoded from the value octets
+	 * @throws ValueNullException if the buffer is null or the length is 0
+	 * @throws ValueTooBigException if the value is longer than 8 bytes and can therefore not be stored in a long
+	 * @see #asn1Value_ByteArrayToLong(byte[])
+	 * @see TLVView#getValueAsLong()
+	 * @since 1.6
+	 */
+	public static long asn1Value_ByteArrayToLong(byte[] buffer, int offset, int length) throws ValueNullException, ValueTooBigException {
+		//check if there is a value at all
+		if((buffer == null) || (length == 0)) {
+			throw new ValueNullException("The input is empty, not an encoded long");
+		}
+		//check if the value is too long to be converted to a long
+		if(length > 8) {
+			throw new ValueTooBigException("Java long can only hold 64 bits or 8 octets. The passed value is bigger than that");
+		}
+		
+		//the first octet keeps its sign, all following octets are appended unsigned
+		long result = buffer[offset];
+		for(int i = 1; i < length; i++) {
+			result = (result << 8) | (buffer[offset + i] & 0xFFL);
+		}
+		return result;
+	}
+	
 	
 	
 	
 	//-----------------------------------------format conformity checks-----------------------------------------------------------------
+	
+	//lookup table for the characters of an ASN1 PrintableString, indexed by the character. Characters >= 128 are never printable.
+	private static final boolean[] PRINTABLE_STRING_CHARACTERS = new boolean[128];
+	static {
+		for(char c = 'A'; c <= 'Z'; c++) {
+			PRINTABLE_STRING_CHARACTERS[c] = true;
+		}
+		for(char c = 'a'; c <= 'z'; c++) {
+			PRINTABLE_STRING_CHARACTERS[c] = true;
+		}
+		for(char c = '0'; c <= '9'; c++) {
+			PRINTABLE_STRING_CHARACTERS[c] = true;
+		}
+		for(char c : " '()+,-./:=?".toCharArray()) {
+			PRINTABLE_STRING_CHARACTERS[c] = true;
+		}
+	}
+	
 	/**
 	 * Checks whether or not an Object is a ASN1 Printable String. To be used to check all the supposed printable String that are 
-	 * inputs from outside the TSE.
+	 * inputs from outside the TSE.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * Checks the characters with a lookup table instead of a regular expression. Strings and other CharSequences are checked by 
+	 * {@linkplain #isASN1_PrintableString(CharSequence)} without calling toString(). Callers that know the type should use the typed overloads.<br>
 	 * @param supposedPrintableString the object that might be a printable string
 	 * @return true, if the string representation of the object only contains characters permitted by the ASN1 definition of a printable string.<br>
 	 * false, otherwise, especially if the supposedPrintableString is null.
-	 * @version 1.0
+	 * @version 1.6
 	 * @since 1.0
 	 */
 	//only Upper and lower case letters, digits, space, apostrophe, left/right parenthesis,
@@ -436,10 +519,51 @@ public class TLVUtility {
 		if(supposedPrintableString == null) {
 			return false;
 		}
-		String toBeTested = supposedPrintableString.toString();
-		
-		String printableStringRegex = "^([A-Za-z0-9 '()+,-./:=?])*$";
-		return toBeTested.matches(printableStringRegex);
+		if(supposedPrintableString instanceof CharSequence) {
+			return isASN1_PrintableString((CharSequence) supposedPrintableString);
+		}
+		return isASN1_PrintableString((CharSequence) supposedPrintableString.toString());
+	}
+	
+	/**
+	 * Same as {@linkplain #isASN1_PrintableString(Object)} for any CharSequence, e.g. a String or a StringBuilder. Does not allocate anything.
+	 * @param supposedPrintableString the characters that might be a printable string
+	 * @return true, if the characters are all permitted by the ASN1 definition of a printable string.<br>
+	 * false, otherwise, especially if the supposedPrintableString is null.
+	 * @since 1.6
+	 */
+	public static boolean isASN1_PrintableString(CharSequence supposedPrintableString) {
+		if(supposedPrintableString == null) {
+			return false;
+		}
+		for(int i = 0; i < supposedPrintableString.length(); i++) {
+			char c = supposedPrintableString.charAt(i);
+			if((c >= 128) || !PRINTABLE_STRING_CHARACTERS[c]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Checks whether the octets are the value of an ASN1 PrintableString, i.e. every octet is the ASCII code of a permitted character. 
+	 * Can be used for values that have not been converted to a String. Does not allocate anything.
+	 * @param supposedPrintableString the octets that might be a printable string
+	 * @return true, if every octet is a character permitted by the ASN1 definition of a printable string.<br>
+	 * false, otherwise, especially if the supposedPrintableString is null.
+	 * @since 1.6
+	 */
+	public static boolean isASN1_PrintableStringOctets(byte[] supposedPrintableString) {
+		if(supposedPrintableString == null) {
+			return false;
+		}
+		for(byte b : supposedPrintableString) {
+			//octets >= 128 are negative and never printable
+			if((b < 0) || !PRINTABLE_STRING_CHARACTERS[b]) {
+				return false;
+			}
+		}
+		return true;
 	}
 	
 	
@@ -459,6 +583,16 @@ public class TLVUtility {
 		return false;
 	}
 	
+	/**
+	 * Same as {@linkplain #isASN1_OctetString(Object)} for a byte array, without the reflective type check.
+	 * @param supposedOctetString the byte array that might be an octet string
+	 * @return true, if the supposedOctetString is not null
+	 * @since 1.6
+	 */
+	public static boolean isASN1_OctetString(byte[] supposedOctetString) {
+		return supposedOctetString != null;
+	}
+	
 	/**
 	 * Checks whether or not an Object is an ASN1 Integer. To be used to check all supposed integers that are inputs from outside the TSE.
 	 * Does currently only accept Objects that can be boxed to Integer, Long, and BigInteger.
@@ -485,6 +619,16 @@ public class TLVUtility {
 		return false;
 	}
 	
+	/**
+	 * Same as {@linkplain #isASN1_Integer(Object)} for a primitive long, without boxing it. Every long can be encoded as an ASN1 Integer.
+	 * @param supposedInteger the long that is checked
+	 * @return always true
+	 * @since 1.6
+	 */
+	public static boolean isASN1_Integer(long supposedInteger) {
+		return true;
+	}
+	
 	/**
 	 * Checks whether or not an Object is an ASN1 ObjectIdentifier. To be used if at some point in time,
 	 * OIDs are provided from outside of the TSE. In version 1.0 this only supports the following formats:<br><br>
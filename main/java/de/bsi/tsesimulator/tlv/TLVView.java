@@ -0,0 +1,265 @@
+package main.java.de.bsi.tsesimulator.tlv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import main.java.de.bsi.tsesimulator.constants.ASN1Constants;
+import main.java.de.bsi.tsesimulator.exceptions.TLVException;
+import main.java.de.bsi.tsesimulator.exceptions.ValueNullException;
+import main.java.de.bsi.tsesimulator.exceptions.ValueTooBigException;
+
+/**
+ * A read-only view of one ASN.1 DER encoded TLV inside a byte array. It stores the tag, the position of the element in the array and the position and
+ * length of its value, but does not copy anything.<br>
+ * {@linkplain #decode(byte[])} flattens the TLVs in the same way as {@linkplain TLVObject#decodeASN1ByteArrayToTLVObjectArray(byte[])}: a constructed
+ * TLV is followed by its children. Unlike a {@linkplain TLVObject}, the view of a constructed TLV does not copy its content, so nested content is not
+ * copied once per nesting level.<br>
+ * The array the view was decoded from must not be modified as long as the view is in use.
+ *
+ * @since 1.6
+ */
+public final class TLVView {
+	private final byte[] buffer;
+	private final int offset;				//position of the tag octet
+	private final int valueOffset;			//position of the first value octet
+	private final int valueLength;
+	private final byte tag;
+
+	/**
+	 * Only created by the decode methods of this class.
+	 */
+	private TLVView(byte[] buffer, int offset, int valueOffset, int valueLength) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.valueOffset = valueOffset;
+		this.valueLength = valueLength;
+		this.tag = buffer[offset];
+	}
+
+	//-----------------------------------DECODE METHODS------------------------------------------------------------------
+
+	/**
+	 * Decodes the whole array. The replacement for {@linkplain TLVObject#decodeASN1ByteArrayToTLVObjectArray(byte[])} that does not copy.
+	 * @param buffer one or more TLVs encoded as an ASN1 byte array
+	 * @return a view for every TLV in the array. A constructed TLV is followed by the views of its children.
+	 * @throws TLVException if the array does not consist of complete TLVs or uses a high tag number form tag
+	 * @since 1.6
+	 */
+	public static TLVView[] decode(byte[] buffer) throws TLVException {
+		return decode(buffer, 0, buffer.length);
+	}
+
+	/**
+	 * Decodes a part of the array, for example the content of a constructed TLV.
+	 * @param buffer the array that contains the encoded TLVs
+	 * @param offset the position of the first tag octet
+	 * @param length the number of octets to be decoded
+	 * @return a view for every TLV in that part of the array. A constructed TLV is followed by the views of its children.
+	 * @throws TLVException if that part of the array does not consist of complete TLVs or uses a high tag number form tag
+	 * @since 1.6
+	 */
+	public static TLVView[] decode(byte[] buffer, int offset, int length) throws TLVException {
+		ArrayList<TLVView> views = new ArrayList<TLVView>();
+		int end = offset + length;
+
+		//go through the array element by element
+		int offsetCurrentTag = offset;
+		while(offsetCurrentTag < end) {
+			TLVView currentView = decodeElement(buffer, offsetCurrentTag, end);
+			views.add(currentView);
+
+			//a constructed TLV is followed by its children, therefore continue with the first child instead of skipping the value
+			if(currentView.isConstructed()) {
+				offsetCurrentTag = currentView.valueOffset;
+			}
+			else {
+				offsetCurrentTag = currentView.getEnd();
+			}
+		}
+		return views.toArray(new TLVView[views.size()]);
+	}
+
+	/**
+	 * Decodes a log message as it is returned by the {@linkplain main.java.de.bsi.tsesimulator.tse.SecurityModule} and written to the storage.
+	 * The SEQUENCE wrapper is skipped, the result equals {@linkplain TLVUtility#removeSEQUENCEWrapper(TLVObject[])} applied to the result of
+	 * {@linkplain TLVObject#decodeASN1ByteArrayToTLVObjectArray(byte[])}.
+	 * @param buffer the encoded log message
+	 * @return the views of all TLVs of the log message without the SEQUENCE wrapper
+	 * @throws TLVException if the array does not consist of complete TLVs or uses a high tag number form tag
+	 * @since 1.6
+	 */
+	public static TLVView[] decodeWithoutSEQUENCEWrapper(byte[] buffer) throws TLVException {
+		TLVView wrapper = decodeElement(buffer, 0, buffer.length);
+		//if the array does not start with a SEQUENCE, there is nothing to remove
+		if(wrapper.tag != ASN1Constants.UNIVERSAL_SEQUENCE) {
+			return decode(buffer);
+		}
+		return decode(buffer, wrapper.valueOffset, buffer.length - wrapper.valueOffset);
+	}
+
+	/**
+	 * Decodes the tag and the length of a single TLV.
+	 * @param buffer the array that contains the encoded TLV
+	 * @param offset the position of the tag octet
+	 * @param end the position after the last octet that may belong to the TLV
+	 * @return the view of the TLV
+	 * @throws TLVException if the TLV is incomplete or uses a high tag number form tag
+	 */
+	static TLVView decodeElement(byte[] buffer, int offset, int end) throws TLVException {
+		//1. check if tag and length octet are present
+		if(end - offset < 2) {
+			throw new TLVException("ASN1 TLVs are at least 2 octets long!");
+		}
+		//2. check if the tag is in low number form
+		if((buffer[offset] & 0x1F) == 0x1F) {
+			throw new TLVException("Does not support high tag number form!");
+		}
+
+		//3. get the length
+		int valueLength;
+		int valueOffset;
+		byte firstLengthOctet = buffer[offset + 1];
+			//3.1 short form of length: the octet is the length
+		if((firstLengthOctet & 0x80) == 0) {
+			valueLength = firstLengthOctet;
+			valueOffset = offset + 2;
+		}
+			//3.2 long form of length: the octet encodes how many length octets follow
+		else {
+			int numberOfLengthOctets = (firstLengthOctet & 0b01111111);
+			if((numberOfLengthOctets == 0) || (numberOfLengthOctets > 4) || (end - offset - 2 < numberOfLengthOctets)) {
+				throw new TLVException("The length of the TLV can not be decoded!");
+			}
+			valueLength = 0;
+			for(int i = 0; i < numberOfLengthOctets; i++) {
+				valueLength = (valueLength << 8) | (buffer[offset + 2 + i] & 0xFF);
+			}
+			valueOffset = offset + 2 + numberOfLengthOctets;
+		}
+
+		//4. check if the value fits into the array. The first check catches lengths that do not fit into an int.
+		if((valueLength < 0) || (valueLength > end - valueOffset)) {
+			throw new TLVException("The input byte array is too short for the encoded length!");
+		}
+		return new TLVView(buffer, offset, valueOffset, valueLength);
+	}
+
+	//-----------------------------------GET METHODS------------------------------------------------------------------
+
+	/**
+	 * @return the array the view was decoded from. Not a copy.
+	 * @since 1.6
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * @return the position of the tag octet in the buffer
+	 * @since 1.6
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return the position after the last value octet in the buffer
+	 * @since 1.6
+	 */
+	public int getEnd() {
+		return valueOffset + valueLength;
+	}
+
+	/**
+	 * @return the position of the first value octet in the buffer
+	 * @since 1.6
+	 */
+	public int getValueOffset() {
+		return valueOffset;
+	}
+
+	/**
+	 * @return the number of value octets
+	 * @since 1.6
+	 */
+	public int getValueLength() {
+		return valueLength;
+	}
+
+	/**
+	 * @return the tag octet. Only low tag number form tags are supported.
+	 * @since 1.6
+	 */
+	public byte getTag() {
+		return tag;
+	}
+
+	/**
+	 * @return true, if the constructed bit of the tag is set
+	 * @since 1.6
+	 */
+	public boolean isConstructed() {
+		return (tag & 0x20) != 0;
+	}
+
+	//-----------------------------------VALUE METHODS------------------------------------------------------------------
+
+	/**
+	 * @return a copy of the value octets
+	 * @since 1.6
+	 */
+	public byte[] getValue() {
+		return Arrays.copyOfRange(buffer, valueOffset, valueOffset + valueLength);
+	}
+
+	/**
+	 * @return the value as an int, see {@linkplain TLVUtility#asn1Value_ByteArrayToInteger(byte[], int, int)}
+	 * @throws ValueNullException if the value is empty
+	 * @throws ValueTooBigException if the value is longer than 4 octets
+	 * @since 1.6
+	 */
+	public int getValueAsInteger() throws ValueNullException, ValueTooBigException {
+		return TLVUtility.asn1Value_ByteArrayToInteger(buffer, valueOffset, valueLength);
+	}
+
+	/**
+	 * @return the value as a long, see {@linkplain TLVUtility#asn1Value_ByteArrayToLong(byte[], int, int)}
+	 * @throws ValueNullException if the value is empty
+	 * @throws ValueTooBigException if the value is longer than 8 octets
+	 * @since 1.6
+	 */
+	public long getValueAsLong() throws ValueNullException, ValueTooBigException {
+		return TLVUtility.asn1Value_ByteArrayToLong(buffer, valueOffset, valueLength);
+	}
+
+	/**
+	 * @return the value as a String, decoded with the default charset like <i>new String(byte[])</i>
+	 * @since 1.6
+	 */
+	public String getValueAsString() {
+		return new String(buffer, valueOffset, valueLength);
+	}
+
+	/**
+	 * @return the value as an OID in the "dot" notation, see {@linkplain ObjectIdentifier#convertTLVValueToOID(byte[], int, int)}
+	 * @since 1.6
+	 */
+	public String getValueAsOID() {
+		return ObjectIdentifier.convertTLVValueToOID(buffer, valueOffset, valueLength);
+	}
+
+	/**
+	 * Creates a {@linkplain TLVObject} with the same tag and a copy of the value. Like {@linkplain TLVObject#decodeASN1ByteArrayToTLVObject(byte[])},
+	 * an empty NULL element gets no value at all.
+	 * @return the view as a TLVObject
+	 * @since 1.6
+	 */
+	public TLVObject toTLVObject() {
+		TLVObject tlvObject = new TLVObject();
+		tlvObject.setTagWithByteElement(tag);
+		if((valueLength != 0) || (tag != ASN1Constants.UNIVERSAL_NULL)) {
+			tlvObject.setValue(getValue());
+		}
+		return tlvObject;
+	}
+}
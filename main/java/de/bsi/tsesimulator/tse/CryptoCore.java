@@ -11,9 +11,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.security.PublicKey;
-import java.security.Security;
 import java.security.SignatureException;
 import java.text.ParseException;
 import java.time.Clock;
@@ -22,12 +20,12 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.bouncycastle.asn1.ASN1Encodable;
 import org.bouncycastle.asn1.ASN1GeneralizedTime;
 import org.bouncycastle.asn1.x509.Extension;
 import org.bouncycastle.asn1.x509.PrivateKeyUsagePeriod;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.openssl.PEMParser;
@@ -40,17 +38,24 @@ import main.java.de.bsi.tsesimulator.constants.ConfigConstants;
 import main.java.de.bsi.tsesimulator.exceptions.ECCException;
 import main.java.de.bsi.tsesimulator.exceptions.ErrorSignatureCounterOverflow;
 import main.java.de.bsi.tsesimulator.exceptions.IllegalValueLoadedException;
+import main.java.de.bsi.tsesimulator.exceptions.LoadingFailedException;
 import main.java.de.bsi.tsesimulator.exceptions.TLVException;
 import main.java.de.bsi.tsesimulator.exceptions.TR_03111_ECC_V2_1_Exception;
-import main.java.de.bsi.tsesimulator.exceptions.ValueNullException;
-import main.java.de.bsi.tsesimulator.exceptions.ValueTooBigException;
 import main.java.de.bsi.tsesimulator.exceptions.VerifyingOperationFailedException;
 import main.java.de.bsi.tsesimulator.preferences.PropertyValues;
-import main.java.de.bsi.tsesimulator.tlv.TLVObject;
+import main.java.de.bsi.tsesimulator.tlv.DerWriter;
+import main.java.de.bsi.tsesimulator.tlv.EncodedSegments;
+import main.java.de.bsi.tsesimulator.tlv.TLVView;
+import main.java.de.bsi.tsesimulator.tse.crypto.CryptoContext;
+import main.java.de.bsi.tsesimulator.tse.crypto.CrossCheckSignatureAlgorithm;
+import main.java.de.bsi.tsesimulator.tse.crypto.DigestSink;
 import main.java.de.bsi.tsesimulator.tse.crypto.ECDSA;
 import main.java.de.bsi.tsesimulator.tse.crypto.ECSDSA;
+import main.java.de.bsi.tsesimulator.tse.crypto.JcaECDSA;
+import main.java.de.bsi.tsesimulator.tse.crypto.NoncePool;
 import main.java.de.bsi.tsesimulator.tse.crypto.SignatureAlgorithm;
-import main.java.de.bsi.tsesimulator.utils.Utils;
+import main.java.de.bsi.tsesimulator.tse.crypto.SignatureInput;
+import main.java.de.bsi.tsesimulator.tse.storage.WriteAheadJournal;
 
 /**
  * This class represents the cryptographic service provider of the TSE.
@@ -68,8 +73,10 @@ import main.java.de.bsi.tsesimulator.utils.Utils;
  */
 public class CryptoCore {
 	
-	private long signatureCounter;				//signatureCounter counts up each time a signature has been created. Can count up to 9.223.372.036.854.775.808 - 1 signature operations.
-	private Clock clock;						//internal clock of the CryptoCore
+	private final AtomicLong signatureCounter = new AtomicLong(0);	//signatureCounter counts up each time a signature has been created. Can count up to 9.223.372.036.854.775.808 - 1 signature operations.
+	private volatile Clock clock;				//internal clock of the CryptoCore
+	private SignatureCounterSequencer sequencer;	//orders the storage of the log messages by their signature counters
+	private volatile WriteAheadJournal journal = null;	//records the reserved signature counters, if a write-ahead journal is kept
 	
 	private SignatureAlgorithm algorithm;		//stores the algorithm object that is used to create signatures
 	
@@ -86,19 +93,19 @@ public class CryptoCore {
 	 * This constructor also sets the internal clock and the signature counter to the default values of the current system time and zero.
 	 * 
 	 * Additionally, the constructor also tries to parse the certificate corresponding to the private key of the TSE and store the relevant values in instance 
-	 * variables. 
-	 * @throws IOException if the keys for the ECSDSA or the ECDSA could not be found or parsed.
+	 * variables. <br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * The signature algorithm is created by {@linkplain #createSignatureAlgorithm()}, which also takes the <i>signatureEngine</i> entry into account.
+	 * @throws IOException if the keys for the ECSDSA or the ECDSA could not be found or parsed, or if <i>signatureAlgorithm</i> or <i>signatureEngine</i>
+	 * contains an unknown value.
 	 */
 	public CryptoCore() throws IOException {
-		if(PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_SIGNATURE_ALGORITHM).equalsIgnoreCase(ConfigConstants.CFG_ENTRY_SIGNATURE_ALGORITHM_ECDSA)) {
-			this.algorithm = new ECDSA();
-		}
-		else if(PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_SIGNATURE_ALGORITHM).equalsIgnoreCase(ConfigConstants.CFG_ENTRY_SIGNATURE_ALGORITHM_ECSDSA)) {
-			this.algorithm = new ECSDSA();
-		}
+		//create the configured signature algorithm with the configured engine
+		this.algorithm = createSignatureAlgorithm();
 		
 		//initialize signature counter with zero if it is not loaded from a file
-		this.signatureCounter= 0;//Long.MAX_VALUE - 1; 
+		this.signatureCounter.set(0);//Long.MAX_VALUE - 1; 
+		this.sequencer = new SignatureCounterSequencer(0);
 		//set the clock to the system default 
 		this.clock=Clock.system(ZoneId.systemDefault());	
 		
@@ -111,24 +118,24 @@ public class CryptoCore {
 	 * It checks if the signature counter is a legal, non-negative value.
 	 * Like the default constructor, this one attempts to find and parse the certificate corresponding to the private key of the TSE. If this is successful, 
 	 * the constructor then stores relevant values in instance variables for quick access.
-	 * The primary usage of this constructor is by {@linkplain SecurityModule#SM(boolean, long, long, long)}
+	 * The primary usage of this constructor is by {@linkplain SecurityModule#SM(boolean, long, long, long)}<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * The signature algorithm is created by {@linkplain #createSignatureAlgorithm()}, which also takes the <i>signatureEngine</i> entry into account.
 	 * @param loadedSigCntr the signature counter loaded from the persistence file.
 	 * @param loadedUnixTime the time loaded from the persistence file
-	 * @throws IOException if the keys for the ECSDSA or the ECDSA could not be found or parsed.
+	 * @throws IOException if the keys for the ECSDSA or the ECDSA could not be found or parsed, or if <i>signatureAlgorithm</i> or <i>signatureEngine</i>
+	 * contains an unknown value.
 	 * @throws IllegalValueLoadedException if the signature counter loaded is illegal
 	 */
 	public CryptoCore(long loadedSigCntr, long loadedUnixTime) throws IOException, IllegalValueLoadedException{
-		if(PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_SIGNATURE_ALGORITHM).equalsIgnoreCase(ConfigConstants.CFG_ENTRY_SIGNATURE_ALGORITHM_ECDSA)) {
-			this.algorithm = new ECDSA();
-		}
-		else if(PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_SIGNATURE_ALGORITHM).equalsIgnoreCase(ConfigConstants.CFG_ENTRY_SIGNATURE_ALGORITHM_ECSDSA)) {
-			this.algorithm = new ECSDSA();
-		}
+		//create the configured signature algorithm with the configured engine
+		this.algorithm = createSignatureAlgorithm();
 		//perform a check on the signature counter
 		if(loadedSigCntr<0) {
 			throw new IllegalValueLoadedException("Loaded signature counter " +loadedSigCntr +" illegal.");
 		}
-		this.signatureCounter = loadedSigCntr;
+		this.signatureCounter.set(loadedSigCntr);
+		this.sequencer = new SignatureCounterSequencer(loadedSigCntr);
 		
 		//create a base clock that runs on the current time
 		Clock baseclock = Clock.system(ZoneId.systemDefault());
@@ -144,6 +151,52 @@ public class CryptoCore {
 		parseTseCertificate();
 	}
 	
+	/**
+	 * Creates the {@linkplain SignatureAlgorithm} configured in config.properties. <i>signatureAlgorithm</i> determines the algorithm (ECDSA or ECSDSA),
+	 * <i>signatureEngine</i> determines which implementation is used:
+	 * <ul>
+	 * <li><i>reference</i> or missing: the hand-written implementation of BSI TR-03111, {@linkplain ECDSA} or {@linkplain ECSDSA}.</li>
+	 * <li><i>provider</i>: the signature engine of the BouncyCastle provider, {@linkplain JcaECDSA}.</li>
+	 * <li><i>crossCheck</i>: both implementations, each one verifying the other one's signatures, see {@linkplain CrossCheckSignatureAlgorithm}.</li>
+	 * </ul>
+	 * There is no provider engine for ECSDSA, so ECSDSA always uses the reference implementation.
+	 * @return the signature algorithm
+	 * @throws LoadingFailedException if <i>signatureAlgorithm</i> is missing or <i>signatureAlgorithm</i> or <i>signatureEngine</i> contains an
+	 * unknown value.
+	 * @throws IOException if the keys for the ECSDSA or the ECDSA could not be found or parsed.
+	 * @since 1.6
+	 */
+	private SignatureAlgorithm createSignatureAlgorithm() throws IOException {
+		String algorithmName = PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_SIGNATURE_ALGORITHM);
+		String engineName = PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_SIGNATURE_ENGINE);
+		//a missing entry means the reference implementation is used
+		if(engineName == null) {
+			engineName = ConfigConstants.CFG_ENTRY_SIGNATURE_ENGINE_REFERENCE;
+		}
+		if(!engineName.equalsIgnoreCase(ConfigConstants.CFG_ENTRY_SIGNATURE_ENGINE_REFERENCE)
+				&& !engineName.equalsIgnoreCase(ConfigConstants.CFG_ENTRY_SIGNATURE_ENGINE_PROVIDER)
+				&& !engineName.equalsIgnoreCase(ConfigConstants.CFG_ENTRY_SIGNATURE_ENGINE_CROSS_CHECK)) {
+			throw new LoadingFailedException("Unable to create the signature algorithm: unknown signatureEngine " +engineName +" in config.properties!");
+		}
+		if(algorithmName == null) {
+			throw new LoadingFailedException("Unable to create the signature algorithm: no signatureAlgorithm in config.properties!");
+		}
+		
+		if(algorithmName.equalsIgnoreCase(ConfigConstants.CFG_ENTRY_SIGNATURE_ALGORITHM_ECDSA)) {
+			if(engineName.equalsIgnoreCase(ConfigConstants.CFG_ENTRY_SIGNATURE_ENGINE_PROVIDER)) {
+				return new JcaECDSA();
+			}
+			if(engineName.equalsIgnoreCase(ConfigConstants.CFG_ENTRY_SIGNATURE_ENGINE_CROSS_CHECK)) {
+				return new CrossCheckSignatureAlgorithm(new ECDSA(), new JcaECDSA());
+			}
+			return new ECDSA();
+		}
+		else if(algorithmName.equalsIgnoreCase(ConfigConstants.CFG_ENTRY_SIGNATURE_ALGORITHM_ECSDSA)) {
+			return new ECSDSA();
+		}
+		throw new LoadingFailedException("Unable to create the signature algorithm: unknown signatureAlgorithm " +algorithmName +" in config.properties!");
+	}
+	
 	/**
 	 * A method to get the current signature counter value from the CryptoCore.
 	 * @return the signatureCounter value if it isn't negative
@@ -152,11 +205,57 @@ public class CryptoCore {
 	 * @version 1.4
 	 */
 	public long getSignatureCounter() throws ErrorSignatureCounterOverflow {
-		if(this.signatureCounter<0) {
+		long currentSignatureCounter = this.signatureCounter.get();
+		if(currentSignatureCounter<0) {
 			//throw new SignatureCounterException("The signature counter value is negative! This should only happen if the value exceeds Long.MAX_VALUE.");
 			throw new ErrorSignatureCounterOverflow("The signature counter has entered an illegal state < 0 !");
 		}
-		return this.signatureCounter;
+		return currentSignatureCounter;
+	}
+	
+	/**
+	 * Provides access to the {@linkplain SignatureCounterSequencer} that knows about every signature counter reserved by this CryptoCore.
+	 * The {@linkplain main.java.de.bsi.tsesimulator.tse.storage.Storage} uses it to store the log messages in the order of their signature counters.
+	 * @return the sequencer of this CryptoCore
+	 * @since 1.6
+	 */
+	public SignatureCounterSequencer getSequencer() {
+		return this.sequencer;
+	}
+	
+	/**
+	 * Sets the {@linkplain WriteAheadJournal} that records every signature counter reserved from now on, so that it is not used again if the simulator
+	 * stops before the log message is stored.
+	 * @param journal the started journal, or null if no journal is kept
+	 * @since 1.6
+	 */
+	public void setJournal(WriteAheadJournal journal) {
+		this.journal = journal;
+	}
+	
+	/**
+	 * Reserves the next signature counter and the log time belonging to it. Both are taken under the monitor of this CryptoCore, which is also held while 
+	 * the clock is set. Therefore log messages with a bigger signature counter never have a smaller log time, unless the clock was set backwards in between.
+	 * The reservation is announced to the {@linkplain SignatureCounterSequencer} and recorded in the {@linkplain WriteAheadJournal}, if one is set.
+	 * @return an array with the reserved signature counter at index 0 and the log time at index 1
+	 * @throws ErrorSignatureCounterOverflow if the current signature counter value equals Long.MAX_VALUE - 1.
+	 * @since 1.6
+	 */
+	private synchronized long[] reserveSignatureCounterAndLogTime() throws ErrorSignatureCounterOverflow {
+		long currentSignatureCounter = this.signatureCounter.get();
+		//check if the signature counter would overflow, if thats the case: throw ErrorIncrementSignatureCouner exception
+		if((currentSignatureCounter >= (Long.MAX_VALUE - 1)) || (currentSignatureCounter < 0)) {
+			throw new ErrorSignatureCounterOverflow();
+		}
+		long reservedSignatureCounter = this.signatureCounter.incrementAndGet();
+		long reservedLogTime = getTimeAsUnixTime();
+		this.sequencer.reserved(reservedSignatureCounter);
+		WriteAheadJournal currentJournal = this.journal;
+		if(currentJournal != null) {
+			currentJournal.reserved(reservedSignatureCounter, reservedLogTime);
+		}
+		
+		return new long[] {reservedSignatureCounter, reservedLogTime};
 	}
 	
 	/**
@@ -174,89 +273,99 @@ public class CryptoCore {
 	 * the log time, converts them both into TLV byte arrays, attaches them to the byte array it was given and then signs all of
 	 * that.
 	 * <br>For the signature creation it uses the {@linkplain SignatureAlgorithm} that has been configured. It returns the 
-	 * byte arrays containing the signature counter, the log time and the signature itself.
+	 * byte arrays containing the signature counter, the log time and the signature itself.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * The signature counter and the log time are reserved together by {@linkplain #reserveSignatureCounterAndLogTime()}. Everything else, especially the 
+	 * signature calculation, runs without holding a lock, so several threads can sign at the same time. If signing fails, the reserved signature counter is 
+	 * released at the {@linkplain SignatureCounterSequencer}. The caller has to store the returned log message through the 
+	 * {@linkplain main.java.de.bsi.tsesimulator.tse.storage.Storage}, which commits it in the order of the signature counters.<br>
+	 * The upper message part, the signature counter and the log time are no longer concatenated before signing. They are given to 
+	 * {@linkplain SignatureAlgorithm#sign(SignatureInput)}, which writes them into the hash function one after another.<br>
+	 * The signature counter, the log time and the signature are encoded by a {@linkplain DerWriter} into the returned array, without encoding every TLV 
+	 * into an array of its own first.<br>
+	 * Delegates to {@linkplain #signLogMessage(byte[])}.<br>
 	 * @param upperMessagePart the byte array that shall be signed
 	 * @return 3 byte arrays concatenated, namely: the signature counter as a TLV byte array, the log time as a TLV byte array
 	 * and the signature as a TLV byte array.
 	 * @throws SignatureException if the underlying {@linkplain SignatureAlgorithm} throws an {@linkplain TR_03111_ECC_V2_1_Exception}.
 	 * @throws ErrorSignatureCounterOverflow if the current signature counter value equals Long.MAX_VALUE - 1. This is requested by BSI TR-03153 chapter 4.1.
 	 */
-	public byte[] sign(byte[] upperMessagePart) throws SignatureException, ErrorSignatureCounterOverflow{
+	public byte[] sign(final byte[] upperMessagePart) throws SignatureException, ErrorSignatureCounterOverflow{
+		return signLogMessage(upperMessagePart).getEncoded();
+	}
+	
+	/**
+	 * Same as {@linkplain #sign(byte[])}, but also returns the signature counter, the log time and the signature value that have been encoded, so that 
+	 * the caller does not have to decode them from the returned TLVs.
+	 * @param upperMessagePart the byte array that shall be signed
+	 * @return the signature counter, the log time and the signature value, as values and as TLVs
+	 * @throws SignatureException if the underlying {@linkplain SignatureAlgorithm} throws an {@linkplain TR_03111_ECC_V2_1_Exception}.
+	 * @throws ErrorSignatureCounterOverflow if the current signature counter value equals Long.MAX_VALUE - 1. This is requested by BSI TR-03153 chapter 4.1.
+	 * @since 1.6
+	 */
+	public LogMessageSignature signLogMessage(final byte[] upperMessagePart) throws SignatureException, ErrorSignatureCounterOverflow{
+		return signLogMessage(EncodedSegments.of(upperMessagePart));
+	}
+	
+	/**
+	 * Same as {@linkplain #signLogMessage(byte[])}, but the upper message part is given in segments, see {@linkplain DerWriter#toSegments()}. The segments 
+	 * are written into the hash function one after another, so big process data is hashed where it is and not copied into one array first.
+	 * @param upperMessagePart the encoded upper message part that shall be signed
+	 * @return the signature counter, the log time and the signature value, as values and as TLVs
+	 * @throws SignatureException if the underlying {@linkplain SignatureAlgorithm} throws an {@linkplain TR_03111_ECC_V2_1_Exception}.
+	 * @throws ErrorSignatureCounterOverflow if the current signature counter value equals Long.MAX_VALUE - 1. This is requested by BSI TR-03153 chapter 4.1.
+	 * @since 1.6
+	 */
+	public LogMessageSignature signLogMessage(final EncodedSegments upperMessagePart) throws SignatureException, ErrorSignatureCounterOverflow{
 		//signature: only the signature as a byte array
 		byte[] signatureValue = null;
-		//the "bottom part" of a log message, to be returned to the ERSSpecificModule
-		byte[] sigCntrLogtimeSignature = null;
-		
-		//check if the signature counter would overflow, if thats the case: throw ErrorIncrementSignatureCouner exception
-		if((this.signatureCounter >= (Long.MAX_VALUE - 1)) || (this.signatureCounter < 0)) {
-			throw new ErrorSignatureCounterOverflow();
-		}
-		
-		//Increment the signature counter:
-		this.signatureCounter++;
-		
-		//create a signatureCounter TLVObject that can convert itself into a DER encoded byte array
-		TLVObject signatureCounterElement = new TLVObject();
-		signatureCounterElement.setTagWithByteElement(ASN1Constants.UNIVERSAL_INTEGER);
-		signatureCounterElement.setValueWithLongElement(signatureCounter);
-		
-		byte[] signatureCounterAsTLV = null;
-		
-		try {
-			signatureCounterAsTLV = signatureCounterElement.toTLVByteArray();
-		} catch (ValueNullException e) {
-			e.printStackTrace();
-		} catch (ValueTooBigException e) {
-			e.printStackTrace();
-		}
-		
-		//create a time stamp and convert it to a TLV byte array
-		TLVObject logTimeElement = new TLVObject();
-		logTimeElement.setTagWithByteElement(ASN1Constants.UNIVERSAL_INTEGER);
-		logTimeElement.setValueWithLongElement(getTimeAsUnixTime());
-		
-		byte[] logTimeAsTLV = null;
 		
-		try {
-			logTimeAsTLV = logTimeElement.toTLVByteArray();
-		} catch (ValueNullException e) {
-			e.printStackTrace();
-		} catch (ValueTooBigException e) {
-			e.printStackTrace();
-		}
-		
-		//concatenate the upper half of the log message with the added parts from the crypto core so it can be signed
-		byte[] toBeSigned = Utils.concatAnyNumberOfByteArrays(upperMessagePart, signatureCounterAsTLV, logTimeAsTLV);
+		//reserve the signature counter and the log time, this is the only part that is done under a lock
+		long[] reservation = reserveSignatureCounterAndLogTime();
+		long reservedSignatureCounter = reservation[0];
+		long reservedLogTime = reservation[1];
+		
+		//record the signatureCounter and the log time as INTEGER TLVs in the DerWriter of this thread. The signature is added after it has been calculated, 
+		//then the whole bottom part of the log message is encoded into one array
+		DerWriter writer = DerWriter.get();
+		writer.writeInteger(ASN1Constants.UNIVERSAL_INTEGER, reservedSignatureCounter);
+		writer.writeInteger(ASN1Constants.UNIVERSAL_INTEGER, reservedLogTime);
+		
+		//for the signature, the two TLVs are only needed in the buffer of the thread
+		final int signatureCounterAndLogTimeLength = writer.getEncodedLength();
+		final byte[] signatureCounterAndLogTime = writer.encodeIntoThreadBuffer();
+		
+		//the upper half of the log message followed by the added parts from the crypto core is signed. The parts are written into the hash function 
+		//one after another, so they do not have to be concatenated first
+		SignatureInput toBeSigned = new SignatureInput() {
+			@Override
+			public void writeTo(DigestSink sink) {
+				for(int i = 0; i < upperMessagePart.getNumberOfSegments(); i++) {
+					sink.update(upperMessagePart.getSegmentArray(i), upperMessagePart.getSegmentOffset(i), upperMessagePart.getSegmentLength(i));
+				}
+				sink.update(signatureCounterAndLogTime, 0, signatureCounterAndLogTimeLength);
+			}
+		};
 		
 		
 		//sign the log message and save the data in the signature value byte array
 		try {
 			signatureValue = this.algorithm.sign(toBeSigned);
 		} catch (TR_03111_ECC_V2_1_Exception e1) {
+			//no log message will be stored with the reserved signature counter, later log messages must not wait for it
+			this.sequencer.releaseReservationOfCurrentThread();
 			throw new SignatureException("The algorithm failed its signing operation." +e1.getMessage());
+		} catch (RuntimeException e2) {
+			this.sequencer.releaseReservationOfCurrentThread();
+			throw e2;
 		}
 		
-		//create a signatureTLV element that can be appended to sigCntrLogtimeSignature
-		TLVObject signatureValueElement = new TLVObject();
-		signatureValueElement.setTagWithByteElement(ASN1Constants.UNIVERSAL_OCTET_STRING);
-		signatureValueElement.setValue(signatureValue);
-		
-		byte[] signatureAsTLV = null;
-		
-		try {
-			signatureAsTLV=signatureValueElement.toTLVByteArray();
-		} catch (ValueNullException e) {
-			e.printStackTrace();
-		} catch (ValueTooBigException e) {
-			e.printStackTrace();
-		}
-		
-		//concatenate what will be returned
-		sigCntrLogtimeSignature=Utils.concatAnyNumberOfByteArrays(signatureCounterAsTLV,logTimeAsTLV, signatureAsTLV);
+		//append the signature as an OCTET STRING TLV
+		writer.writeOctets(ASN1Constants.UNIVERSAL_OCTET_STRING, signatureValue, 0, signatureValue.length);
 		
 		//return the bottom part of the log message consisting of the signatureCounter ASN1_ByteArray, the logTime ASN1_byteArray and the 
-		//signature ASN1_ByteArray
-		return sigCntrLogtimeSignature;
+		//signature ASN1_ByteArray, together with the values it was encoded from
+		return new LogMessageSignature(reservedSignatureCounter, reservedLogTime, signatureValue, writer.toByteArray());
 	}
 	
 	
@@ -287,48 +396,60 @@ public class CryptoCore {
 		return this.algorithm;
 	}
 	
+	/**
+	 * Stops the threads of this crypto core when the simulator is shut down, see {@linkplain TSEController#gracefulShutdown()}. The worker threads of 
+	 * the {@linkplain NoncePool} of the signature algorithm, if it uses one, stop precomputing nonces. Signing still works afterwards, the nonces are 
+	 * then calculated in the calling thread.
+	 * @since 1.6
+	 */
+	public void shutdown() {
+		NoncePool noncePool = this.algorithm.getNoncePool();
+		if(noncePool != null) {
+			noncePool.shutdown();
+		}
+	}
+	
 	/**
 	 * According to TR-03116-5 chapter 3.1.1 the serial number is calculated through hashing the public key used to verify the signatures 
-	 * with a SHA-2 256 bit. This method performs the hashing. 
+	 * with a SHA-2 256 bit. This method performs the hashing.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * The public key is read with {@linkplain TLVView} and fed to the message digest without copying it.<br>
 	 * @return the hash over the public key
+	 * @version 1.6
 	 */
 	private byte[] calculateSerialNumber() {
 		//get the public key that is used by the CryptoCore's signature algorithm
 		PublicKey pubKeyAsKey = this.algorithm.getPublicKey();
 		//save the public key as a TLV encoded byte array
 		byte[] wholePubKeyInfoByte = pubKeyAsKey.getEncoded();
-		//decode that TLV encoded byte array to a TLVObject array
-		TLVObject[] wholePubKeyInfoTLV = null;
+		//decode that TLV encoded byte array to views, which do not copy the values
+		TLVView[] wholePubKeyInfoTLV = null;
 		try {
-			wholePubKeyInfoTLV = TLVObject.decodeASN1ByteArrayToTLVObjectArray(wholePubKeyInfoByte);
+			wholePubKeyInfoTLV = TLVView.decode(wholePubKeyInfoByte);
 		} catch (TLVException e1) {
 			e1.printStackTrace();
 		}
 		
-		//the last value in the TLVObject array should be the public key
-		byte[] publicKeyValueWithLeadingZeroes = wholePubKeyInfoTLV[wholePubKeyInfoTLV.length-1].getValue();
+		//the last value in the view array should be the public key
+		TLVView publicKeyValueWithLeadingZeroes = wholePubKeyInfoTLV[wholePubKeyInfoTLV.length-1];
 		
 		//from comparing the last value with the value openssl declares as the public key it's obvious that this public key is 
 		//padded with leading zeroes and seems to always have a 04, signifying uncompressed encoding after the 00.
 		//so let's get rid of those leading zeroes!
-		byte[] publicKeyValue = new byte[publicKeyValueWithLeadingZeroes.length-1];
-		System.arraycopy(publicKeyValueWithLeadingZeroes, 1, publicKeyValue, 0, publicKeyValue.length);
+		int publicKeyValueOffset = publicKeyValueWithLeadingZeroes.getValueOffset() + 1;
+		int publicKeyValueLength = publicKeyValueWithLeadingZeroes.getValueLength() - 1;
 		
 		
-		//add the BC provider for good measure again (should already have been added, but better safe than sorry)
-		Security.addProvider(new BouncyCastleProvider());
 		MessageDigest md = null;
 		try {
-			//get a SHA256 message digest from the bouncycastle provider
-			md = MessageDigest.getInstance("SHA256", "BC");
+			//get the SHA256 message digest of this thread from the CryptoContext, which has already resolved the bouncycastle provider
+			md = CryptoContext.get().getDigest("SHA256");
 		} catch (NoSuchAlgorithmException e) {
 			e.printStackTrace();
-		} catch (NoSuchProviderException e) {
-			e.printStackTrace();
 		}
 		
 		//feed the publicKeyValue to the message digest
-		md.update(publicKeyValue);
+		md.update(wholePubKeyInfoByte, publicKeyValueOffset, publicKeyValueLength);
 		byte[] hashedPublicKey = md.digest();
 		
 		return hashedPublicKey;
@@ -402,14 +523,12 @@ public class CryptoCore {
 	 */
 	public byte[] hashByteArray(byte[] toBeHashed) {
 		//SHA-2 256 seems to be a good idea. Because of this being only a simulator, we do not use any salt, although that would be a good idea.
-		Security.addProvider(new BouncyCastleProvider());
+		//the digest is reused by this thread, neither the provider nor the digest have to be looked up again on every PIN check
 		MessageDigest md = null;
 		try {
-			md = MessageDigest.getInstance("SHA256", "BC");
+			md = CryptoContext.get().getDigest("SHA256");
 		} catch (NoSuchAlgorithmException e) {
 			e.printStackTrace();
-		} catch (NoSuchProviderException e) {
-			e.printStackTrace();
 		}
 		//prepare an array big enough to store the result in
 		byte[] hashedValue = new byte[256];
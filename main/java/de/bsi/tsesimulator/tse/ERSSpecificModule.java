@@ -6,8 +6,7 @@ package main.java.de.bsi.tsesimulator.tse;
 import java.io.IOException;
 import java.security.SignatureException;
 import java.time.ZonedDateTime;
-import java.util.Hashtable;
-import java.util.Map;
+import java.util.HashSet;
 import java.util.Set;
 
 import main.java.de.bsi.seapi.exceptions.ErrorInvalidTime;
@@ -24,10 +23,13 @@ import main.java.de.bsi.tsesimulator.exceptions.TooManyOpenTransactionsException
 import main.java.de.bsi.tsesimulator.exceptions.ValueNullException;
 import main.java.de.bsi.tsesimulator.exceptions.ValueTooBigException;
 import main.java.de.bsi.tsesimulator.msg.LogMessage;
+import main.java.de.bsi.tsesimulator.msg.LogMessageTemplate;
 import main.java.de.bsi.tsesimulator.msg.SystemLogMessage;
 import main.java.de.bsi.tsesimulator.msg.TransactionLogMessage;
 import main.java.de.bsi.tsesimulator.preferences.PropertyValues;
+import main.java.de.bsi.tsesimulator.tlv.EncodedSegments;
 import main.java.de.bsi.tsesimulator.tlv.TLVObject;
+import main.java.de.bsi.tsesimulator.utils.LongHashMap;
 import main.java.de.bsi.tsesimulator.utils.Utils;
 
 /**
@@ -44,14 +46,20 @@ import main.java.de.bsi.tsesimulator.utils.Utils;
  */
 
 public class ERSSpecificModule {
+	//the map of open transactions grows when needed, so a large maximum number of open transactions does not allocate memory up front
+	private static final int INITIAL_OPEN_TRANSACTIONS_CAPACITY = 64;
+	
 	private long transactionCounter;		//counts each transaction operation. Can count up to 9.223.372.036.854.775.808 - 1 transaction operations.
 	private String algorithmOID;
 	
 	private int maxNumberOpenTransactions;	//stores the maximum number of transactions that can be open simultaneously
-	private Map<Long, TLVObject[]> transactionsOpen;
+	private LongHashMap<OpenTransaction> transactionsOpen;	//the open transactions by transaction number, guarded by this
+	private int transactionsStarting;		//number of transactions that have a transaction number but are not yet in transactionsOpen, guarded by this
 	
 	private CryptoCore cryptoCore;
 	private byte[] serialNumber;
+	private LogMessageTemplate transactionLogTemplate;		//the encoded constant parts of the transaction logs, null if they could not be encoded
+	private LogMessageTemplate systemLogTemplate;			//the encoded constant parts of the system logs, null if they could not be encoded
 	
 	/**
 	 * Private parameterless constructor, since this class needs to be instantiated through the other constructors if one really wants to use it.<br>
@@ -72,6 +80,9 @@ public class ERSSpecificModule {
 	 * Now stores the maximum number of transactions that can be opened simultaneously internally. If reading that value from the configuration file fails, the maximum number 
 	 * of transactions is set to the value of {@linkplain Constants#DEFAULT_MAX_NUMBER_OF_TRANSACTIONS}.
 	 * 
+	 * <b>Changes in version 1.6:</b><br>
+	 * Creates the {@linkplain LogMessageTemplate}s for transaction and system logs.<br>
+	 * 
 	 * @param cryptoCoreForSigning the CryptoCore which signs all log messages. Note that in the future, 
 	 * there could be different CryptoCores for different types of messages.
 	 * @param serialNumber the serialNumber of the TSE which is calculated as a hash of the public key used to sign messages
@@ -79,7 +90,7 @@ public class ERSSpecificModule {
 	 */
 	public ERSSpecificModule(CryptoCore cryptoCoreForSigning, byte[] serialNumber) throws IOException {
 		this.transactionCounter = 0;
-		this.transactionsOpen = new Hashtable<Long, TLVObject[]>();
+		this.transactionsOpen = new LongHashMap<OpenTransaction>(INITIAL_OPEN_TRANSACTIONS_CAPACITY);
 		//fetch the maximum number of transactions from config.properties
 		//try to read from the config file, if that fails or has an illegal value, resort to default
 		try {
@@ -104,6 +115,9 @@ public class ERSSpecificModule {
 		if(!(this.algorithmOID.equalsIgnoreCase(algorithmUsedByCryptoCore))) {
 			System.out.println("ALGORITHMS DO NOT MATCH!!!!!\nALGORITHM OIDs ARE DIFFERENT!");
 		}
+		
+		//encode the parts of the log messages that never change once
+		createLogMessageTemplates();
 	}
 	
 	/**
@@ -118,6 +132,9 @@ public class ERSSpecificModule {
 	 * Now stores the maximum number of transactions that can be opened simultaneously internally. If reading that value from the configuration file fails, the maximum number 
 	 * of transactions is set to the value of {@linkplain Constants#DEFAULT_MAX_NUMBER_OF_TRANSACTIONS}.
 	 * 
+	 * <b>Changes in version 1.6:</b><br>
+	 * Creates the {@linkplain LogMessageTemplate}s for transaction and system logs.<br>
+	 * 
 	 * @param cryptoCoreForSigning the CryptoCore which signs all log messages. Note that in the future, 
 	 * there could be different CryptoCores for different types of messages.
 	 * @param serialNumber the serialNumber of the TSE which is calculated as a hash of the public key used to sign messages
@@ -128,7 +145,7 @@ public class ERSSpecificModule {
 		//set the transaction counter to the value that was passed 
 		this.transactionCounter = loadedTransactionCounter;
 		//create the hashtable that stores the open transactions
-		this.transactionsOpen = new Hashtable<Long, TLVObject[]>();
+		this.transactionsOpen = new LongHashMap<OpenTransaction>(INITIAL_OPEN_TRANSACTIONS_CAPACITY);
 		//fetch the maximum number of transactions from config.properties
 		//try to read from the config file, if that fails or has an illegal value, resort to default
 		try {
@@ -154,6 +171,25 @@ public class ERSSpecificModule {
 		if(!(this.algorithmOID.equalsIgnoreCase(algorithmUsedByCryptoCore))) {
 			System.out.println("ALGORITHMS DO NOT MATCH!!!!!\nALGORITHM OIDs ARE DIFFERENT!");
 		}
+		
+		//encode the parts of the log messages that never change once
+		createLogMessageTemplates();
+	}
+
+	/**
+	 * Creates the templates with the encoded version, certified data type, serial number and signature algorithm of the transaction and system logs.
+	 * If they can not be encoded, e.g. because the algorithm is unknown, the templates stay null. The log messages are then encoded completely
+	 * and the error is reported when the first log message is created, like before version 1.6.
+	 * @since 1.6
+	 */
+	private void createLogMessageTemplates() {
+		try {
+			this.transactionLogTemplate = new LogMessageTemplate(Constants.VERSION, Constants.TRANSACTION_LOG_OID, this.serialNumber, this.algorithmOID);
+			this.systemLogTemplate = new LogMessageTemplate(Constants.VERSION, Constants.SYSTEM_LOG_OID, this.serialNumber, this.algorithmOID);
+		} catch (ValueNullException e) {
+			this.transactionLogTemplate = null;
+			this.systemLogTemplate = null;
+		}
 	}
 
 //----------------------------------------------------TRANSACTION METHODS------(INPUT FUNCTIONS)-------------------------------------------------------------
@@ -161,13 +197,20 @@ public class ERSSpecificModule {
 	 * The method that starts a transaction. It constructs a TrasactionlogMessage and fills it with the parameters it gets from its caller.
 	 * After the construction of the upper part of the logmessage this method converts the logmessage into a byte array and passes it to the CryptoCore which signs
 	 * the logmessage. The CryptoCore passes the bottom part of the logmessage with the signature counter, the logtime and the signature as a byte array back to this method
-	 * which then adds this part to the upper logmessage byte array.
+	 * which then adds this part to the upper logmessage byte array.<br>
+	 * 
+	 * <b>Changes in version 1.6:</b><br>
+	 * No longer synchronized as a whole. Only the checks and the increment of the transaction counter are done while holding the lock of this object, 
+	 * so that several transactions can be signed at the same time. The open transaction is stored as an {@linkplain OpenTransaction} with the client ID, 
+	 * the signature counter and the log time of the start log message, instead of the decoded log message.<br>
+	 * Returns a {@linkplain SignedTransactionLog} that already contains the SEQUENCE wrapper, see {@linkplain #signTransactionLog(TransactionLogMessage)}.<br>
+	 * 
 	 * @param cliendID - represents the ID of the application that has invoked the function.
 	 * @param processData - the process data that has to be logged as an octet string
 	 * @param processType - represents the type of the transaction as defined by the application. Is OPTIONAL according to TR-03151 but MUST requirement
 	 * according to TR-03153..
 	 * @param additionalData - OPTIONAL. currently reserved for future use.
-	 * @return a TransactionLogMessage encoded as an ASN1 byte array.
+	 * @return the TransactionLogMessage encoded as an ASN1 byte array with the SEQUENCE wrapper, together with the values needed to store it.
 	 * @throws ValueTooBigException is thrown by {@linkplain TransactionLogMessage#toMinorTLVByteArray()} if a value is too big to be converted to
 	 * an ASN1 DER encoded byte array.
 	 * @throws ValueNullException is thrown by {@linkplain TransactionLogMessage#toMinorTLVByteArray()} if a value that should be present is not.
@@ -179,45 +222,52 @@ public class ERSSpecificModule {
 	 * @throws ErrorTransactionCounterOverflow when incrementing the transaction counter would result in an illegal value for that counter
 	 * @throws TooManyOpenTransactionsException when starting this transaction would exceed the legal number of transactions that are allowed to be open simultaneously
 	 * @see {@linkplain CryptoCore#sign(byte[])}
+	 * @version 1.6
 	 */
-	public synchronized byte[] startTransaction(String cliendID, byte[] processData, String processType, byte[] additionalData) throws ValueNullException, ValueTooBigException, SignatureException, ErrorSignatureCounterOverflow, ErrorTransactionCounterOverflow, TooManyOpenTransactionsException {
-		//check if the transaction counter would overflow. If thats the case, throw ErrorIncrementTransactionCounter exception
-		if((this.transactionCounter >= (Long.MAX_VALUE - 1)) || (this.transactionCounter < 0)) {
-			throw new ErrorTransactionCounterOverflow();
-		}
-		//check if the transaction would result in exceeding the storage space for simultaneously open transactions
-		if((this.transactionsOpen.size() + 1) > maxNumberOpenTransactions) {
-			throw new TooManyOpenTransactionsException();
+	public SignedTransactionLog startTransaction(String cliendID, byte[] processData, String processType, byte[] additionalData) throws ValueNullException, ValueTooBigException, SignatureException, ErrorSignatureCounterOverflow, ErrorTransactionCounterOverflow, TooManyOpenTransactionsException {
+		long transactionNumber;
+		//only the checks and the increment of the transaction counter need the lock, signing happens outside of it
+		synchronized(this) {
+			//check if the transaction counter would overflow. If thats the case, throw ErrorIncrementTransactionCounter exception
+			if((this.transactionCounter >= (Long.MAX_VALUE - 1)) || (this.transactionCounter < 0)) {
+				throw new ErrorTransactionCounterOverflow();
+			}
+			//check if the transaction would result in exceeding the storage space for simultaneously open transactions
+			//transactions that are started right now but not yet in the map count as open as well
+			if((this.transactionsOpen.size() + this.transactionsStarting + 1) > maxNumberOpenTransactions) {
+				throw new TooManyOpenTransactionsException();
+			}
+			
+			//if transaction counter would not overflow and there is still space for one more transaction, increment the transaction counter
+			this.transactionCounter++;
+			transactionNumber = this.transactionCounter;
+			this.transactionsStarting++;
 		}
 		
-		//if transaction counter would not overflow and there is still space for one more transaction, increment the transaction counter
-		this.transactionCounter++;
-		//create the TransactionlogMessage
-		TransactionLogMessage transactionLog = new TransactionLogMessage(cliendID, processData, processType, additionalData, this.transactionCounter, this.serialNumber);
-		//set the operationType to "start transaction"
-		transactionLog.setOperationtype("StartTransaction");
-		//set the algorithm OID
-		transactionLog.setAlgorithm(algorithmOID);
-		
-		
-		//transform the upper part of the logmessage to a byte array. Then pass it to the CryptoCore so it may sign it and return the lower part of the message.
-		byte[] upperTransactionLogMessageByteArray = transactionLog.toMinorTLVByteArray();
-		byte[] lowerTransactionLogMessageByteArray = cryptoCore.sign(upperTransactionLogMessageByteArray);
-		
-		//concat the upper and the lower part and store it in another byte array
-		byte[] finishedTransactionLogMessageByteArray = new byte[upperTransactionLogMessageByteArray.length+lowerTransactionLogMessageByteArray.length];
-		finishedTransactionLogMessageByteArray = Utils.concatTwoByteArrays(upperTransactionLogMessageByteArray, lowerTransactionLogMessageByteArray);
-		
-		//add the TLVObject array that represents the logmessage to the hashtable that strores open transactions
-			TLVObject[] transactionAsTLVObjectArray = null;
-			try {
-				transactionAsTLVObjectArray = TLVObject.decodeASN1ByteArrayToTLVObjectArray(finishedTransactionLogMessageByteArray);
-			} catch (TLVException e) {
-				e.printStackTrace();
-			}
-			this.transactionsOpen.put( transactionCounter, transactionAsTLVObjectArray);
+		try {
+			//create the TransactionlogMessage
+			TransactionLogMessage transactionLog = new TransactionLogMessage(cliendID, processData, processType, additionalData, transactionNumber, this.serialNumber);
+			//set the operationType to "start transaction"
+			transactionLog.setOperationtype("StartTransaction");
+			//set the algorithm OID
+			transactionLog.setAlgorithm(algorithmOID);
+			
+			
+			//sign the logmessage and encode it together with the SEQUENCE wrapper
+			SignedTransactionLog signedTransactionLog = signTransactionLog(transactionLog);
 			
-		return finishedTransactionLogMessageByteArray;
+			//remember the transaction as open. Only the values of the start log message that identify it are kept, not the log message itself
+			OpenTransaction openTransaction = new OpenTransaction(cliendID, signedTransactionLog.getSignatureCounter(), signedTransactionLog.getLogTime());
+			synchronized(this) {
+				this.transactionsOpen.put(transactionNumber, openTransaction);
+			}
+				
+			return signedTransactionLog;
+		} finally {
+			synchronized(this) {
+				this.transactionsStarting--;
+			}
+		}
 	}
 	
 	/**
@@ -225,12 +275,17 @@ public class ERSSpecificModule {
 	 * This method creates a new TransactionLogMessage and passes the parameters to it. Since the updates currently do not support additional external data
 	 * this value is set to "null" when the TransactionLogMessage is created.
 	 * 
+	 * <b>Changes in version 1.6:</b><br>
+	 * No longer synchronized, so that several transactions can be updated at the same time. Only the check for the open transaction is done while holding 
+	 * the lock of this object, together with counting the update as in progress on the {@linkplain OpenTransaction} until it is signed. Returns a {@linkplain SignedTransactionLog} that already contains the SEQUENCE wrapper, see 
+	 * {@linkplain #signTransactionLog(TransactionLogMessage)}.<br>
+	 * 
 	 * @param clientID - represents the ID of the application that has invoked the function.
 	 * @param transactionNumber - number of the transaction to be updated. Has to exist for the correct execution of this function.
 	 * @param processData - the process data that has to be logged as an octet string
 	 * @param processType - represents the type of the transaction as defined by the application. Is OPTIONAL according to TR-03151 but MUST requirement
 	 * according to TR-03153.
-	 * @return a TransactionLogMessage encoded as an ASN1 byte array.
+	 * @return the TransactionLogMessage encoded as an ASN1 byte array with the SEQUENCE wrapper, together with the values needed to store it.
 	 * @throws ErrorNoTransaction if no open transaction exists with the given transaction number
 	 * @throws ValueTooBigException - is thrown by {@linkplain TransactionLogMessage#toMinorTLVByteArray()} if a value is too big to be converted to
 	 * an ASN1 DER encoded byte array.
@@ -241,43 +296,58 @@ public class ERSSpecificModule {
 	 * function. E.g. SHA512 with brainpoolP256r1 works, but SHA256 with brainpoolP512r1 does not.
 	 * @throws ErrorSignatureCounterOverflow when incrementing the signature counter would result in an illegal value for that counter
 	 * @see {@linkplain CryptoCore#sign(byte[])}
+	 * @version 1.6
 	 */
-	public synchronized byte[] updateTransaction(String clientID, long transactionNumber, byte[] processData, 
+	public SignedTransactionLog updateTransaction(String clientID, long transactionNumber, byte[] processData, 
 			String processType) throws ErrorNoTransaction, ValueNullException, ValueTooBigException, SignatureException, ErrorSignatureCounterOverflow {
-		//checks whether an open transaction with this transaction number exists
-		boolean transactionExists = transactionsOpen.containsKey(transactionNumber);	//implement real check here
+		//checks whether an open transaction with this transaction number exists. The update is counted under the same lock, so that the transaction
+		//can not be finished before the signature counter of this update is reserved
+		OpenTransaction openTransaction;
+		synchronized(this) {
+			openTransaction = transactionsOpen.get(transactionNumber);
+			if(openTransaction == null) {
+				throw new ErrorNoTransaction();
+			}
+			openTransaction.updateStarted();
+		}
 
-		if(!transactionExists) {
-			throw new ErrorNoTransaction();
+		try {
+			// create the upper transaction logmessage
+			TransactionLogMessage transactionLog = new TransactionLogMessage(clientID, processData, processType, null, transactionNumber, this.serialNumber);
+			//set the operation type to "UpdateTransaction"
+			transactionLog.setOperationtype("UpdateTransaction");
+			//set the algorithm OID
+			transactionLog.setAlgorithm(algorithmOID);
+			
+			//let the cryptoCore sign the log message and create what will be returned
+			return signTransactionLog(transactionLog);
+		} finally {
+			//a finish that waits for this update may go on now
+			synchronized(this) {
+				openTransaction.updateEnded();
+				this.notifyAll();
+			}
 		}
-		// create the upper transaction logmessage
-		TransactionLogMessage transactionLog = new TransactionLogMessage(clientID, processData, processType, null, transactionNumber, this.serialNumber);
-		//set the operation type to "UpdateTransaction"
-		transactionLog.setOperationtype("UpdateTransaction");
-		//set the algorithm OID
-		transactionLog.setAlgorithm(algorithmOID);
-		
-		//convert the upper transaction log message to a tlv byte array
-		byte[] upperTransactionLogMessage = transactionLog.toMinorTLVByteArray();
-		//give the upper log message to tge cryptoCore and let it sign 
-		byte[] lowerTransactionLogMessage = cryptoCore.sign(upperTransactionLogMessage);
-		
-		//create the array that will be returned
-		byte[] finishedTransactionLogMessage = Utils.concatTwoByteArrays(upperTransactionLogMessage, lowerTransactionLogMessage);
-		
-		return finishedTransactionLogMessage;
 	}
 	
 	/**
 	 * Finishes a transaction with the provided process data. The method checks, whether the transaction that should be closed exists and if it does,
 	 * it creates a TransactionLogMessage with the parameters passed in the method call. When the log message has been created successfully, it is
-	 * removed from the list of open transactions. 
+	 * removed from the list of open transactions.<br>
+	 * 
+	 * <b>Changes in version 1.6:</b><br>
+	 * No longer synchronized, so that several transactions can be finished at the same time. The transaction is removed from the open transactions 
+	 * before it is signed and put back if creating the log message fails. This way a transaction can not be finished twice by concurrent calls. 
+	 * Before signing, it waits for the updates of the transaction that are signed right now, so that the finish log message has the highest 
+	 * signature counter of the transaction. 
+	 * Returns a {@linkplain SignedTransactionLog} that already contains the SEQUENCE wrapper, see {@linkplain #signTransactionLog(TransactionLogMessage)}.<br>
+	 * 
 	 * @param clientID - represents the ID of the application that has invoked the function.
 	 * @param transactionNumber - number of the transaction to be updated. Has to exist for the correct execution of this function.
 	 * @param processData - the process data that has to be logged as an octet string
 	 * @param processType - represents the type of the transaction as defined by the application. Is OPTIONAL.
 	 * @param additionalData - OPTIONAL. currently reserved for future use.
-	 * @return a TransactionLogMessage encoded as an ASN1 byte array.
+	 * @return the TransactionLogMessage encoded as an ASN1 byte array with the SEQUENCE wrapper, together with the values needed to store it.
 	 * @throws ErrorNoTransaction if no open transaction exists with the given transaction number.<b>NOT REQUIRED TO BE THROWN AS OF VERSION 1.0.1 BSI TR-03151.</b>
 	 * @throws ValueTooBigException - is thrown by {@linkplain TransactionLogMessage#toMinorTLVByteArray()} if a value is too big to be converted to
 	 * an ASN1 DER encoded byte array.
@@ -288,34 +358,78 @@ public class ERSSpecificModule {
 	 * function. E.g. SHA512 with brainpoolP256r1 works, but SHA256 with brainpoolP512r1 does not.
 	 * @throws ErrorSignatureCounterOverflow when incrementing the signature counter would result in an illegal value for that counter
 	 * @see {@linkplain CryptoCore#sign(byte[])}
+	 * @version 1.6
 	 */
-	public synchronized byte[] finishTransaction(String clientID, long transactionNumber, byte[] processData, 
+	public SignedTransactionLog finishTransaction(String clientID, long transactionNumber, byte[] processData, 
 			String processType, byte[] additionalData) throws ErrorNoTransaction, ValueNullException, ValueTooBigException, SignatureException, ErrorSignatureCounterOverflow {
-		//checks whether an open transaction with this transaction number exists
-		boolean transactionExists = transactionsOpen.containsKey(transactionNumber);
+		//removes the transaction from the map, if it is open. Doing this first makes sure that concurrent calls can not finish the same transaction twice
+		//updates that are signed right now have to reserve their signature counters first, otherwise the finish log message could get a lower
+		//signature counter than an update of the same transaction. Since the transaction is no longer in the map, no new updates are started
+		OpenTransaction openTransaction;
+		synchronized(this) {
+			openTransaction = transactionsOpen.remove(transactionNumber);
+			if(openTransaction == null) {
+				throw new ErrorNoTransaction();
+			}
+			boolean isInterrupted = false;
+			while(openTransaction.getUpdatesInProgress() > 0) {
+				try {
+					this.wait();
+				} catch (InterruptedException e) {
+					isInterrupted = true;
+				}
+			}
+			if(isInterrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
 
-		if(!transactionExists) {
-			throw new ErrorNoTransaction();
+		boolean isFinished = false;
+		try {
+			//create a new TransactionLogMessage Object
+			TransactionLogMessage transactionLog = new TransactionLogMessage(clientID, processData, processType, additionalData, transactionNumber, this.serialNumber) ;
+			//set the operation type to "FinishTransaction"
+			transactionLog.setOperationtype("FinishTransaction");
+			//set the algorithm OID
+			transactionLog.setAlgorithm(algorithmOID);
+			
+			//let the cryptoCore sign the log message and create what will be returned
+			SignedTransactionLog finishedTransactionLog = signTransactionLog(transactionLog);
+			isFinished = true;
+			return finishedTransactionLog;
+		} finally {
+			//if the log message could not be created, the transaction is still open
+			if(!isFinished) {
+				synchronized(this) {
+					transactionsOpen.put(transactionNumber, openTransaction);
+				}
+			}
 		}
-		//create a new TransactionLogMessage Object
-		TransactionLogMessage transactionLog = new TransactionLogMessage(clientID, processData, processType, additionalData, transactionNumber, this.serialNumber) ;
-		//set the operation type to "FinishTransaction"
-		transactionLog.setOperationtype("FinishTransaction");
-		//set the algorithm OID
-		transactionLog.setAlgorithm(algorithmOID);
-		
-		//create the upper part of the logmessage as a byte array
-		byte[] upperTransactionLogMessage = transactionLog.toMinorTLVByteArray();
-		//create the lower part of the log message by passing the upper part to the cryptoCore for signing
-		byte[] lowerTransactionLogMessage = cryptoCore.sign(upperTransactionLogMessage);
-		
-		//create what will be returned
-		byte[] finishedTransactionLogMessage = new byte[upperTransactionLogMessage.length+lowerTransactionLogMessage.length];
-		finishedTransactionLogMessage = Utils.concatTwoByteArrays(upperTransactionLogMessage, lowerTransactionLogMessage);
-		
-		//remove the finished transaction from the map
-		transactionsOpen.remove(transactionNumber);
-		return finishedTransactionLogMessage;
+	}
+	
+	/**
+	 * Signs a transaction log message and encodes it completely. The upper part and the part created by the {@linkplain CryptoCore} are put 
+	 * into the SEQUENCE wrapper as segments, see {@linkplain EncodedSegments}. Big process data or additional data is referenced by the segments, so it 
+	 * is neither copied into the upper part nor into the complete log message. It is hashed and written to the storage where the caller keeps it.
+	 * @param transactionLog the transaction log message with all values set
+	 * @return the encoded log message together with the values the {@linkplain TSEController} needs
+	 * @throws ValueNullException if a value of the log message that should be present is not
+	 * @throws SignatureException if the signing functionality of the CryptoCore fails
+	 * @throws ErrorSignatureCounterOverflow when incrementing the signature counter would result in an illegal value for that counter
+	 * @since 1.6
+	 */
+	private SignedTransactionLog signTransactionLog(TransactionLogMessage transactionLog) throws ValueNullException, SignatureException, 
+		ErrorSignatureCounterOverflow {
+		//encode the upper part of the logmessage. Then pass it to the CryptoCore so it may sign it and return the lower part of the message.
+		EncodedSegments upperTransactionLogMessage = transactionLog.toMinorTLVSegments(transactionLogTemplate);
+		LogMessageSignature signature = cryptoCore.signLogMessage(upperTransactionLogMessage);
+		
+		//SEQUENCE wrapper around the upper and the lower part, only the tag and the length are new
+		EncodedSegments encodedTransactionLog = EncodedSegments.wrapConstructed(ASN1Constants.UNIVERSAL_SEQUENCE, upperTransactionLogMessage, 
+				EncodedSegments.of(signature.getEncoded()));
+		
+		return new SignedTransactionLog(encodedTransactionLog, transactionLog.getTransactionNumber(), transactionLog.getOperationType(), 
+				transactionLog.getClientID(), this.serialNumber, signature);
 	}
 	
 //----------------------------------------------------SYSTEM METHODS------( FUNCTIONS)-------------------------------------------------------------
@@ -370,7 +484,7 @@ public class ERSSpecificModule {
 		systemLogMessage.setAlgorithm(algorithmOID);
 		
 		//convert the "upper part" of the logmessage into a TLV byte array and pass that to the CryptoCore which returns the signed part of the logmessage as a byte array
-		byte[] upperSystemLogMessage = systemLogMessage.toMinorTLVByteArray();
+		byte[] upperSystemLogMessage = systemLogMessage.toMinorTLVByteArray(systemLogTemplate);
 		byte[] lowerSystemLogMessage = cryptoCore.sign(upperSystemLogMessage);
 		
 		//concat the upper and the lower logmessage parts and return them
@@ -428,7 +542,7 @@ public class ERSSpecificModule {
 		//create a new SystemLogMessage
 		SystemLogMessage updateTimeSyslog = new SystemLogMessage("UpdateTime", systemopData, this.serialNumber);
 		updateTimeSyslog.setAlgorithm(algorithmOID);
-		byte[] upperUpdateTimesyslog = updateTimeSyslog.toMinorTLVByteArray();
+		byte[] upperUpdateTimesyslog = updateTimeSyslog.toMinorTLVByteArray(systemLogTemplate);
 		byte[] lowerUpdateTimesyslog = cryptoCore.sign(upperUpdateTimesyslog);
 		
 		byte[] finishedSyslog = Utils.concatTwoByteArrays(upperUpdateTimesyslog, lowerUpdateTimesyslog);
@@ -484,7 +598,7 @@ public class ERSSpecificModule {
 		SystemLogMessage updateTimesyslog = new SystemLogMessage("UpdateTime", systemOpData, this.serialNumber);
 		updateTimesyslog.setAlgorithm(algorithmOID);
 		
-		byte[] upperUpdateTimesyslog = updateTimesyslog.toMinorTLVByteArray();
+		byte[] upperUpdateTimesyslog = updateTimesyslog.toMinorTLVByteArray(systemLogTemplate);
 		byte[] lowerUpdateTimesyslog = cryptoCore.sign(upperUpdateTimesyslog);
 		
 		//concat the upper and the lower byte array of the systemlog message
@@ -523,7 +637,7 @@ public class ERSSpecificModule {
 		SystemLogMessage syslog = new SystemLogMessage("DisableSecureElement", systemOpData, this.serialNumber);
 		syslog.setAlgorithm(algorithmOID);
 		//create the upper part of the logmessage and then sign it, get the lower part of the logessage
-		byte[] upperSyslog = syslog.toMinorTLVByteArray();
+		byte[] upperSyslog = syslog.toMinorTLVByteArray(systemLogTemplate);
 		byte[] lowersyslog = cryptoCore.sign(upperSyslog);
 		//concat both byte arrays to get the finished syslog
 		byte[] finishedSyslog = Utils.concatTwoByteArrays(upperSyslog, lowersyslog);
@@ -616,7 +730,7 @@ public class ERSSpecificModule {
 		//create a SystemLogmessage
 		SystemLogMessage syslog = new SystemLogMessage("AuthenticateUser",systemOpData, this.serialNumber);
 		syslog.setAlgorithm(algorithmOID);
-		byte[] upperAuthUserSyslog = syslog.toMinorTLVByteArray();
+		byte[] upperAuthUserSyslog = syslog.toMinorTLVByteArray(systemLogTemplate);
 		byte[] lowerAuthUserSyslog = cryptoCore.sign(upperAuthUserSyslog);
 		
 		//concat the 2 byte arrays representing the system log message 
@@ -672,7 +786,7 @@ public class ERSSpecificModule {
 		syslog.setAlgorithm(algorithmOID);
 		
 		//create the upper and lower part of the systemLogMessage as a byte array
-		byte[] upperLogOutSyslog = syslog.toMinorTLVByteArray();
+		byte[] upperLogOutSyslog = syslog.toMinorTLVByteArray(systemLogTemplate);
 		byte[] lowerLogOutSyslog = cryptoCore.sign(upperLogOutSyslog);
 		
 		//concat the upper and the lower part of the syslog
@@ -727,7 +841,7 @@ public class ERSSpecificModule {
 		syslog.setAlgorithm(algorithmOID);
 		
 		//create the upper and the lower part of the SystemLogMessage as a ASN1 TLV byte array
-		byte[] upperUnblockUserSyslog = syslog.toMinorTLVByteArray();
+		byte[] upperUnblockUserSyslog = syslog.toMinorTLVByteArray(systemLogTemplate);
 		byte[] lowerUnblockUserSyslog = cryptoCore.sign(upperUnblockUserSyslog);
 		
 		//concat the upper and lower syslog parts to form the finished system log encoded as an ASN1 byte array
@@ -747,10 +861,10 @@ public class ERSSpecificModule {
 	
 	/**
 	 * Used for telling the TSEController how many transactions are currently open. This is done via a call of transactionsOpen.size() from
-	 * {@linkplain java.util.Map#size()}.
+	 * {@linkplain LongHashMap#size()}.
 	 * @return the number of transactions currently considered open.
 	 */
-	public int getNumberOfOpenTransactions() {
+	public synchronized int getNumberOfOpenTransactions() {
 		return transactionsOpen.size();
 	}
 	
@@ -775,7 +889,7 @@ public class ERSSpecificModule {
 	 * Used to get the transaction counter so that it may be persisted.
 	 * @return the current transaction counter
 	 */
-	long getCurrentTransactioncounter() {
+	synchronized long getCurrentTransactioncounter() {
 		return this.transactionCounter;
 	}
 	
@@ -813,14 +927,21 @@ public class ERSSpecificModule {
 	
 	
 	/**
-	 * Obtains the transaction counters of the currently open transactions from the  Map<Long, TLVObject[]> transactionsOpen.
-	 * Is used by {@linkplain TSEController#gracefulShutdown()} to close all remaining transactions via the usage of {@linkplain SecurityModule#finishTransaction(String, long, byte[], String, byte[])}.
+	 * Obtains the transaction counters of the currently open transactions from the LongHashMap transactionsOpen.
+	 * Is used by {@linkplain TSEController#gracefulShutdown()} to close all remaining transactions via the usage of {@linkplain SecurityModule#finishTransaction(String, long, byte[], String, byte[])}.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * Returns a copy of the transaction numbers, since the open transactions are no longer stored in a {@linkplain java.util.Map}.<br>
 	 * 
 	 * @return a Set of transaction numbers of currently open transactions
 	 * @since 1.5
+	 * @version 1.6
 	 */
 	protected synchronized Set<Long> getOpenTransactionNumbers(){
-		Set<Long> transactionNumberSet = transactionsOpen.keySet();
+		long[] transactionNumbers = transactionsOpen.keys();
+		Set<Long> transactionNumberSet = new HashSet<Long>(transactionNumbers.length * 2);
+		for(long transactionNumber : transactionNumbers) {
+			transactionNumberSet.add(Long.valueOf(transactionNumber));
+		}
 		
 		return transactionNumberSet;
 	}
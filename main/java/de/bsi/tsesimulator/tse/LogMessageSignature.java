@@ -0,0 +1,61 @@
+package main.java.de.bsi.tsesimulator.tse;
+
+/**
+ * The part of a log message the {@linkplain CryptoCore} adds when it signs the upper part: the signature counter, the log time and the signature value.
+ * It holds these values as they are and also in their ASN.1 DER encoded form, so that callers do not have to decode the encoded part to learn them.
+ *
+ * @see CryptoCore#signLogMessage(byte[])
+ * @since 1.6
+ */
+public final class LogMessageSignature {
+	private final long signatureCounter;
+	private final long logTime;
+	private final byte[] signatureValue;
+	private final byte[] encoded;
+
+	/**
+	 * Only created by the {@linkplain CryptoCore}.
+	 * @param signatureCounter the signature counter reserved for the log message
+	 * @param logTime the log time as Unix time
+	 * @param signatureValue the signature value
+	 * @param encoded the signature counter, the log time and the signature value as TLVs
+	 */
+	LogMessageSignature(long signatureCounter, long logTime, byte[] signatureValue, byte[] encoded) {
+		this.signatureCounter = signatureCounter;
+		this.logTime = logTime;
+		this.signatureValue = signatureValue;
+		this.encoded = encoded;
+	}
+
+	/**
+	 * @return the signature counter of the log message
+	 * @since 1.6
+	 */
+	public long getSignatureCounter() {
+		return signatureCounter;
+	}
+
+	/**
+	 * @return the log time as Unix time
+	 * @since 1.6
+	 */
+	public long getLogTime() {
+		return logTime;
+	}
+
+	/**
+	 * @return the signature value. Not a copy.
+	 * @since 1.6
+	 */
+	public byte[] getSignatureValue() {
+		return signatureValue;
+	}
+
+	/**
+	 * @return the signature counter, the log time and the signature value encoded as ASN.1 DER TLVs, the same array {@linkplain CryptoCore#sign(byte[])} returns
+	 * @since 1.6
+	 */
+	public byte[] getEncoded() {
+		return encoded;
+	}
+}
@@ -0,0 +1,69 @@
+package main.java.de.bsi.tsesimulator.tse;
+
+/**
+ * What the {@linkplain ERSSpecificModule} remembers about a transaction between its start and its finish: the client that started it and the signature
+ * counter and log time of the start log message. The log message itself is in the storage, it is not kept in memory.<br>
+ * It also counts the updates of the transaction that are signed right now, so that the transaction is not finished before their signature counters
+ * are reserved. That count is guarded by the lock of the {@linkplain ERSSpecificModule}.
+ *
+ * @since 1.6
+ */
+final class OpenTransaction {
+	private final String clientID;
+	private final long startSignatureCounter;
+	private final long startLogTime;
+	private int updatesInProgress;
+
+	/**
+	 * @param clientID the ID of the client that started the transaction
+	 * @param startSignatureCounter the signature counter of the start log message
+	 * @param startLogTime the log time of the start log message as Unix time
+	 */
+	OpenTransaction(String clientID, long startSignatureCounter, long startLogTime) {
+		this.clientID = clientID;
+		this.startSignatureCounter = startSignatureCounter;
+		this.startLogTime = startLogTime;
+	}
+
+	/**
+	 * @return the ID of the client that started the transaction
+	 */
+	String getClientID() {
+		return clientID;
+	}
+
+	/**
+	 * @return the signature counter of the start log message
+	 */
+	long getStartSignatureCounter() {
+		return startSignatureCounter;
+	}
+
+	/**
+	 * @return the log time of the start log message as Unix time
+	 */
+	long getStartLogTime() {
+		return startLogTime;
+	}
+
+	/**
+	 * Counts an update of the transaction that is signed right now. Must be called while holding the lock of the {@linkplain ERSSpecificModule}.
+	 */
+	void updateStarted() {
+		updatesInProgress++;
+	}
+
+	/**
+	 * Counts an update of the transaction that has been signed or has failed. Must be called while holding the lock of the {@linkplain ERSSpecificModule}.
+	 */
+	void updateEnded() {
+		updatesInProgress--;
+	}
+
+	/**
+	 * @return the number of updates of the transaction that are signed right now
+	 */
+	int getUpdatesInProgress() {
+		return updatesInProgress;
+	}
+}
@@ -6,6 +6,7 @@ package main.java.de.bsi.tsesimulator.tse;
 import java.io.IOException;
 import java.security.SignatureException;
 import java.time.ZonedDateTime;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -35,6 +36,7 @@ import main.java.de.bsi.tsesimulator.exceptions.ValueTooBigException;
 import main.java.de.bsi.tsesimulator.msg.SystemLogMessage;
 import main.java.de.bsi.tsesimulator.msg.TransactionLogMessage;
 import main.java.de.bsi.tsesimulator.preferences.PropertyValues;
+import main.java.de.bsi.tsesimulator.tlv.EncodedSegments;
 import main.java.de.bsi.tsesimulator.tlv.TLVObject;
 
 /**
@@ -47,7 +49,7 @@ import main.java.de.bsi.tsesimulator.tlv.TLVObject;
  * @since 1.0
  */
 public class SecurityModule {
-	private boolean secureElementIsDisabled = false;		//should track whether the secure element is disabled or not
+	private volatile boolean secureElementIsDisabled = false;		//should track whether the secure element is disabled or not
 	private UpdateVariantsHolder supportedUpdates = new UpdateVariantsHolder();		//stores the possible update variants. Currently, ONLY signed is supported.
 	private SyncVariantsHolder supportedTimeSync = new SyncVariantsHolder();	//stores the type of time sync mechanism the SecurityModule supports. 
 	
@@ -56,9 +58,9 @@ public class SecurityModule {
 	private CryptoCore cryptoCore = null;	
 	private byte[] serialNumber = new byte[32];		//serial number is calculated with a SHA-256 bit function. -> serial number is 256 bit long
 	
-	private byte[] latestLogMessage = null;	//stores reference to last log message created. Only necessary, because "readLogMessage" exists in SE API.
+	private volatile EncodedSegments latestLogMessage = null;	//stores reference to last log message created. Only necessary, because "readLogMessage" exists in SE API.
 	
-	private HashSet<String> clientsUsingTSE;	//stores the clientIds of clients that are currently registered for using the TSE 
+	private Set<String> clientsUsingTSE;	//stores the clientIds of clients that are currently registered for using the TSE. Synchronized, because transactions run concurrently
 	private int maxNumberClients;			//stores the maximum number of clients that are allowed to use the TSE at any point
 	
 	/**
@@ -120,7 +122,7 @@ public class SecurityModule {
 			maxNumberClients = Constants.DEFAULT_MAX_NUMBER_OF_CLIENTS;
 		}
 		//create the HahSet storing the registered clients 
-		clientsUsingTSE = new HashSet<String>();
+		clientsUsingTSE = Collections.synchronizedSet(new HashSet<String>());
 		
 		//set the "isDisabled" state to false.
 		this.secureElementIsDisabled = false;
@@ -189,7 +191,7 @@ public class SecurityModule {
 			maxNumberClients = Constants.DEFAULT_MAX_NUMBER_OF_CLIENTS;
 		}
 		//create the HashSet storing the registered clients 
-		clientsUsingTSE = new HashSet<String>();
+		clientsUsingTSE = Collections.synchronizedSet(new HashSet<String>());
 		
 		//create the CryptoCore with the loaded values
 		this.cryptoCore = new CryptoCore(signatureCounterLoaded, clockTimeUnixLoaded);
@@ -260,15 +262,20 @@ public class SecurityModule {
 	/**
 	 * Used by {@linkplain TSEController} to obtain the last log message created for {@linkplain TSEController#readLogMessage(main.java.de.bsi.seapi.holdertypes.ByteArrayHolder)}. 
 	 * Be advised that in the case of a storage failure, the last log message created might not be found on persistent storage but through the invocation of 
-	 * this method.
+	 * this method.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * The log message is kept as {@linkplain EncodedSegments}. Transaction log messages are copied into one array when they are created, because 
+	 * the segments of {@linkplain SignedTransactionLog#getEncodedSegments()} reference the process data of the caller.<br>
 	 * @return the last log message that was created as a byte array.
 	 * @throws ErrorNoLogMessage if there is no log message to return
+	 * @version 1.6
 	 */
 	public byte[] getLatestLogMessage() throws ErrorNoLogMessage {
-		if(latestLogMessage == null) {
+		EncodedSegments latest = this.latestLogMessage;
+		if(latest == null) {
 			throw new ErrorNoLogMessage();
 		}
-		return this.latestLogMessage;
+		return latest.toByteArray();
 	}
 	
 	/**
@@ -309,26 +316,31 @@ public class SecurityModule {
 //----------------------------------------------------TRANSACTION METHODS------(INPUT FUNCTIONS)-------------------------------------------------------------
 	
 	/**
-	 * Calls the startTransaction method in the ERSSpecificModule class and wraps the result with the SEQUENCE wrapper.
+	 * Calls the startTransaction method in the ERSSpecificModule class and stores the result as the latest log message.<br>
+	 * 
+	 * <b>Changes in version 1.6:</b><br>
+	 * No longer synchronized, so that several transactions can be started at the same time. The {@linkplain ERSSpecificModule} already encodes the 
+	 * SEQUENCE wrapper, the result carries the values of the log message, so that the {@linkplain TSEController} does not have to decode it.<br>
+	 * 
 	 * @param clientID  - represents the ID of the application that has invoked the function.
 	 * @param processData - the process data that has to be logged as an octet string
 	 * @param processType - represents the type of the transaction as defined by the application. Is OPTIONAL according to TR-03151 but MUST requirement
 	 * according to TR-03153..
 	 * @param additionalData - OPTIONAL. currently reserved for future use.
-	 * @return a TransactionLogMessage encoded as an ASN1 encoded byte array with the SEQUENCE wrapper attached to it.
-	 * @throws ValueNullException if the transaction log message with the SEQUENCE wrapper could not be converted to a TLV byte array due to a 
-	 * required value being absent.
-	 * @throws ValueTooBigException if the transaction log message with the SEQUENCE wrapper could not be converted to a TLV byte array due to 
-	 * a value being too big for conversion into an ASN1 encoded TLV byte array.
+	 * @return the TransactionLogMessage encoded as an ASN1 encoded byte array with the SEQUENCE wrapper attached to it, together with the values that 
+	 * are needed to store it and to fill the holder types.
+	 * @throws ValueNullException if the transaction log message could not be converted to a TLV byte array due to a required value being absent.
+	 * @throws ValueTooBigException - is thrown by {@linkplain TransactionLogMessage#toMinorTLVByteArray()} if a value is too big to be converted to
+	 * an ASN1 DER encoded byte array.
 	 * @throws SigningOperationFailedException if the signature operation in the CryptoCore fails and is propagated to the ERSSpecificModule.
 	 * @throws ErrorTransactionCounterOverflow when incrementing the transaction counter would result in an illegal value for that counter
 	 * @throws ErrorSignatureCounterOverflow when incrementing the signature counter would result in an illegal value for that counter
 	 * @throws ErrorStartTransactionFailed if the clientID is that of an unregistered client
 	 * @throws TooManyOpenTransactionsException if starting this transaction would be one too many
 	 * @since 1.0
-	 * @version 1.5
+	 * @version 1.6
 	 */
-	public synchronized byte[] startTransaction(String clientID, byte[] processData, String processType, byte[] additionalData) throws ValueNullException, 
+	public SignedTransactionLog startTransaction(String clientID, byte[] processData, String processType, byte[] additionalData) throws ValueNullException, 
 		ValueTooBigException, SigningOperationFailedException, ErrorSignatureCounterOverflow, ErrorTransactionCounterOverflow, 
 		ErrorStartTransactionFailed, TooManyOpenTransactionsException {
 		//first, check if the client invoking this is registered. If the client is not registered, throw an exception!
@@ -336,41 +348,35 @@ public class SecurityModule {
 			throw new ErrorStartTransactionFailed("ClientId " +clientID +" not registered for TSE usage!");
 		}
 		//if the client is registered, start the process as normal:
-		byte[] logmessageWithoutSequenceWrapper = null;
+		SignedTransactionLog transactionLog = null;
 		try {
-			logmessageWithoutSequenceWrapper = erssm.startTransaction(clientID, processData, processType, additionalData);
+			//the ERSSpecificModule returns the log message with the SEQUENCE wrapper
+			transactionLog = erssm.startTransaction(clientID, processData, processType, additionalData);
 		} catch (SignatureException e1) {
 			throw new SigningOperationFailedException("SignatureException caught\n" +e1.getMessage());
 		}
 		
-		//the byte array given back by the ErsSpecificModule is without the necessary "SEQUENCE" wrapper. 
-		TLVObject transactionLogWithSequenceWrapper = new TLVObject();
-		transactionLogWithSequenceWrapper.setTagWithByteElement(ASN1Constants.UNIVERSAL_SEQUENCE);
-		transactionLogWithSequenceWrapper.setValue(logmessageWithoutSequenceWrapper);
+		//set the latestLogMessage byte array. It is put together in a new array, because the segments reference the process data of the caller, which
+		//may be changed after this call
+		latestLogMessage = EncodedSegments.of(transactionLog.getEncoded());
 		
-		//convert the SEQUENCE-wrapped TLVObect into a TLV byte array
-		byte[] transactionLogMessageByteArray = null;
-		try {
-			transactionLogMessageByteArray = transactionLogWithSequenceWrapper.toTLVByteArray();
-		} catch (ValueNullException e) {
-			throw new ValueNullException(e.getMessage());
-		} catch (ValueTooBigException e) {
-			throw new ValueTooBigException(e.getMessage());
-		}
-		//set the latestLogMessage byte array:
-		latestLogMessage = transactionLogMessageByteArray;
-		
-		return transactionLogMessageByteArray;
+		return transactionLog;
 	}
 	
 	/**
-	 * Calls the updateTransaction method in the ERSSpecificModule class and wraps the result with the SEQUENCE wrapper.
+	 * Calls the updateTransaction method in the ERSSpecificModule class and stores the result as the latest log message.<br>
+	 * 
+	 * <b>Changes in version 1.6:</b><br>
+	 * No longer synchronized, so that several transactions can be updated at the same time. Returns a {@linkplain SignedTransactionLog} like 
+	 * {@linkplain #startTransaction(String, byte[], String, byte[])}.<br>
+	 * 
 	 * @param clientID - represents the ID of the application that has invoked the function.
 	 * @param transactionNumber - number of the transaction to be updated. Has to exist for the correct execution of this function.
 	 * @param processData - the process data that has to be logged as an octet string
 	 * @param processType - represents the type of the transaction as defined by the application. Is OPTIONAL according to TR-03151 but MUST requirement
 	 * according to TR-03153.
-	 * @return a TransactionLogMessage encoded as an ASN1 encoded byte array with the SEQUENCE wrapper attached to it.
+	 * @return the TransactionLogMessage encoded as an ASN1 encoded byte array with the SEQUENCE wrapper attached to it, together with the values that 
+	 * are needed to store it and to fill the holder types.
 	 * @throws ErrorNoTransaction is thrown by the {@linkplain ERSSpecificModule} if there is no open transaction with the specified transaction number.
 	 * @throws ValueTooBigException - is thrown by {@linkplain TransactionLogMessage#toMinorTLVByteArray()} if a value is too big to be converted to
 	 * an ASN1 DER encoded byte array.
@@ -380,50 +386,44 @@ public class SecurityModule {
 	 * @throws ErrorSignatureCounterOverflow when incrementing the signature counter would result in an illegal value for that counter
 	 * @throws ErrorUpdateTransactionFailed if the function is invoked by an unregistered clientId
 	 * @since 1.0
-	 * @version 1.5
+	 * @version 1.6
 	 */
-	public synchronized byte[] updateTransaction(String clientID, long transactionNumber, byte[] processData, String processType) throws ErrorNoTransaction, ValueNullException, ValueTooBigException, SigningOperationFailedException, ErrorSignatureCounterOverflow, ErrorUpdateTransactionFailed {
+	public SignedTransactionLog updateTransaction(String clientID, long transactionNumber, byte[] processData, String processType) throws ErrorNoTransaction, ValueNullException, ValueTooBigException, SigningOperationFailedException, ErrorSignatureCounterOverflow, ErrorUpdateTransactionFailed {
 		//first, check if the client invoking this is registered. If the client is not registered, throw an exception!
 		if(!clientsUsingTSE.contains(clientID)) {
 			throw new ErrorUpdateTransactionFailed("ClientId " +clientID +" not registered for TSE usage!"); 
 		}
 		//if the client is registered, start the process as normal:
-		byte[] logmessageWithoutSequenceWrapper;
+		SignedTransactionLog transactionLog = null;
 		try {
-			logmessageWithoutSequenceWrapper = erssm.updateTransaction(clientID, transactionNumber, processData, processType);
+			//the ERSSpecificModule returns the log message with the SEQUENCE wrapper
+			transactionLog = erssm.updateTransaction(clientID, transactionNumber, processData, processType);
 		} catch (SignatureException e1) {
 			throw new SigningOperationFailedException("SignatureException caught.\n" +e1.getMessage());
 		}
 		
-		//the byte array given back by the ErsSpecificModule is without the necessary "SEQUENCE" wrapper. 
-		TLVObject transactionLogWithSequenceWrapper = new TLVObject();
-		transactionLogWithSequenceWrapper.setTagWithByteElement(ASN1Constants.UNIVERSAL_SEQUENCE);
-		transactionLogWithSequenceWrapper.setValue(logmessageWithoutSequenceWrapper);
-		
-		//convert the SEQUENCE-wrapped TLVObect into a TLV byte array
-		byte[] transactionLogMessageByteArray = null;
-		try {
-			transactionLogMessageByteArray = transactionLogWithSequenceWrapper.toTLVByteArray();
-		} catch (ValueNullException e) {
-			e.printStackTrace();
-		} catch (ValueTooBigException e) {
-			e.printStackTrace();
-		}
-		//set the latestLogMessage byte array:
-		latestLogMessage = transactionLogMessageByteArray;
+		//set the latestLogMessage byte array. It is put together in a new array, because the segments reference the process data of the caller, which
+		//may be changed after this call
+		latestLogMessage = EncodedSegments.of(transactionLog.getEncoded());
 		
-		return transactionLogMessageByteArray;
+		return transactionLog;
 	}
 	
 	/**
-	 * Calls the FinishTransaction method in the ERSSpecificModule class and wraps the result with the SEQUENCE wrapper.
+	 * Calls the FinishTransaction method in the ERSSpecificModule class and stores the result as the latest log message.<br>
+	 * 
+	 * <b>Changes in version 1.6:</b><br>
+	 * No longer synchronized, so that several transactions can be finished at the same time. Returns a {@linkplain SignedTransactionLog} like 
+	 * {@linkplain #startTransaction(String, byte[], String, byte[])}.<br>
+	 * 
 	 * @param clientID represents the ID of the application that has invoked the function.
 	 * @param transactionNumber number of the transaction to be finished. Has to exist for the correct execution of this function.
 	 * @param processData the process data that has to be logged as an octet string
 	 * @param processType represents the type of the transaction as defined by the application. Is OPTIONAL according to TR-03151 but MUST requirement
 	 * according to TR-03153.
 	 * @param additionalData OPTIONAL. currently reserved for future use.
-	 * @return a TransactionLogMessage encoded as an ASN1 encoded byte array with the SEQUENCE wrapper attached to it.
+	 * @return the TransactionLogMessage encoded as an ASN1 encoded byte array with the SEQUENCE wrapper attached to it, together with the values that 
+	 * are needed to store it and to fill the holder types.
 	 * @throws ErrorNoTransaction thrown by the {@linkplain ERSSpecificModule} if no open transaction exists with that particular transaction number.
 	 * @throws ValueTooBigException - is thrown by {@linkplain TransactionLogMessage#toMinorTLVByteArray()} if a value is too big to be converted to
 	 * an ASN1 DER encoded byte array.
@@ -433,40 +433,28 @@ public class SecurityModule {
 	 * @throws ErrorSignatureCounterOverflow when incrementing the signature counter would result in an illegal value for that counter
 	 * @throws ErrorFinishTransactionFailed if the function is invoked by an unregistered clientId
 	 * @since 1.0
-	 * @version 1.5
+	 * @version 1.6
 	 */
-	public synchronized byte[] finishTransaction(String clientID, long transactionNumber, byte[] processData, String processType, byte[] additionalData) throws ErrorNoTransaction, 
+	public SignedTransactionLog finishTransaction(String clientID, long transactionNumber, byte[] processData, String processType, byte[] additionalData) throws ErrorNoTransaction, 
 	ValueNullException, ValueTooBigException, SigningOperationFailedException, ErrorSignatureCounterOverflow, ErrorFinishTransactionFailed {
 		//first, check if the client invoking this is registered. If the client is not registered, throw an exception!
 		if(!clientsUsingTSE.contains(clientID)) {
 			throw new ErrorFinishTransactionFailed("ClientId " +clientID +" not registered for TSE usage!"); 
 		}
 		//if the client is registered, start the process as normal:
-		byte[] logmessageWithoutSequenceWrapper;
+		SignedTransactionLog transactionLog = null;
 		try {
-			logmessageWithoutSequenceWrapper = erssm.finishTransaction(clientID, transactionNumber, processData, processType, additionalData);
+			//the ERSSpecificModule returns the log message with the SEQUENCE wrapper
+			transactionLog = erssm.finishTransaction(clientID, transactionNumber, processData, processType, additionalData);
 		} catch (SignatureException e1) {
 			throw new SigningOperationFailedException("SignatureException caught.\n" +e1.getMessage());
 		}
 		
-		//the byte array given back by the ErsSpecificModule is without the necessary "SEQUENCE" wrapper. 
-		TLVObject transactionLogWithSequenceWrapper = new TLVObject();
-		transactionLogWithSequenceWrapper.setTagWithByteElement(ASN1Constants.UNIVERSAL_SEQUENCE);
-		transactionLogWithSequenceWrapper.setValue(logmessageWithoutSequenceWrapper);
+		//set the latestLogMessage byte array. It is put together in a new array, because the segments reference the process data of the caller, which
+		//may be changed after this call
+		latestLogMessage = EncodedSegments.of(transactionLog.getEncoded());
 		
-		//convert the SEQUENCE-wrapped TLVObect into a TLV byte array
-		byte[] transactionLogMessageByteArray = null;
-		try {
-			transactionLogMessageByteArray = transactionLogWithSequenceWrapper.toTLVByteArray();
-		} catch (ValueNullException e) {
-			e.printStackTrace();
-		} catch (ValueTooBigException e) {
-			e.printStackTrace();
-		}
-		//set the latestLogMessage byte array:
-		latestLogMessage = transactionLogMessageByteArray;
-		
-		return transactionLogMessageByteArray;
+		return transactionLog;
 	}
 	
 //----------------------------------------------------SYSTEM METHODS------( FUNCTIONS)-------------------------------------------------------------
@@ -505,7 +493,7 @@ public class SecurityModule {
 			e.printStackTrace();
 		}
 		//set the latestLogMessage byte array:
-		latestLogMessage = systemLogMessageByteArray;
+		latestLogMessage = EncodedSegments.of(systemLogMessageByteArray);
 		
 		return systemLogMessageByteArray;
  	}
@@ -559,7 +547,7 @@ public class SecurityModule {
 				e.printStackTrace();
 			}
 			//set the latestLogMessage byte array:
-			latestLogMessage = systemLogMessageByteArray;
+			latestLogMessage = EncodedSegments.of(systemLogMessageByteArray);
 			
 			return systemLogMessageByteArray;
 	}
@@ -598,7 +586,7 @@ public class SecurityModule {
 			e.printStackTrace();
 		}
 		//set the latestLogMessage byte array:
-		latestLogMessage = systemLogMessageByteArray;
+		latestLogMessage = EncodedSegments.of(systemLogMessageByteArray);
 		
 		return systemLogMessageByteArray;
 	}
@@ -643,7 +631,7 @@ public class SecurityModule {
 			e.printStackTrace();
 		}
 		//set the latestLogMessage byte array:
-		latestLogMessage = systemLogMessageByteArray;
+		latestLogMessage = EncodedSegments.of(systemLogMessageByteArray);
 		
 		return systemLogMessageByteArray;
 	}
@@ -688,7 +676,7 @@ public class SecurityModule {
 			e.printStackTrace();
 		}
 		//set the latestLogMessage byte array:
-		latestLogMessage = systemLogMessageByteArray;
+		latestLogMessage = EncodedSegments.of(systemLogMessageByteArray);
 		
 		return systemLogMessageByteArray;
 	}
@@ -730,7 +718,7 @@ public class SecurityModule {
 			e.printStackTrace();
 		}
 		//set the latestLogMessage byte array:
-		latestLogMessage = systemLogMessageByteArray;
+		latestLogMessage = EncodedSegments.of(systemLogMessageByteArray);
 		
 		return systemLogMessageByteArray;
 	}
@@ -743,16 +731,19 @@ public class SecurityModule {
 	 * @throws TooManyClientsException if adding the client would result in one client too many for the TSE
 	 */
 	public void registerClient(String clientId) throws ClientIdAlreadyRegisteredException, TooManyClientsException {
-		//check if the clientId is already registered
-		if(clientsUsingTSE.contains(clientId)) {
-			throw new ClientIdAlreadyRegisteredException();
-		}
-		//check if adding the new clientId would violate the maximum number of clients
-		if((clientsUsingTSE.size()+1) > maxNumberClients) {
-			throw new TooManyClientsException();
+		//the checks and adding the clientId have to happen atomically
+		synchronized(clientsUsingTSE) {
+			//check if the clientId is already registered
+			if(clientsUsingTSE.contains(clientId)) {
+				throw new ClientIdAlreadyRegisteredException();
+			}
+			//check if adding the new clientId would violate the maximum number of clients
+			if((clientsUsingTSE.size()+1) > maxNumberClients) {
+				throw new TooManyClientsException();
+			}
+			//everything went okay: add the clientId to the registered clientId list
+			clientsUsingTSE.add(clientId);
 		}
-		//everything went okay: add the clientId to the registered clientId list
-		clientsUsingTSE.add(clientId);
 	}
 	
 	/**
@@ -761,12 +752,11 @@ public class SecurityModule {
 	 * @throws ClientIdNotRegisteredException if attempting to remove a client that is not even registered
 	 */
 	public void deregisterClient(String clientId) throws ClientIdNotRegisteredException {
-		//check if the client is registered, it can not be removed if it isn't
-		if(!clientsUsingTSE.contains(clientId)) {
+		//check if the client is registered, it can not be removed if it isn't. Checking and removing in one step keeps this atomic
+		//de-register the client from the TSE
+		if(!clientsUsingTSE.remove(clientId)) {
 			throw new ClientIdNotRegisteredException();
 		}
-		//de-register the client from the TSE
-		clientsUsingTSE.remove(clientId);
 	}
 	
 //--------------------------------GRACEFUL SHUTDOWN------------------------------------------------------------------------------
@@ -0,0 +1,187 @@
+/**
+ *
+ */
+package main.java.de.bsi.tsesimulator.tse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import main.java.de.bsi.tsesimulator.tse.storage.Storage;
+
+/**
+ * Makes sure that log messages are committed to the {@linkplain Storage} in the order of their signature counters, even though several threads sign at the
+ * same time.<br>
+ * The {@linkplain CryptoCore} reserves a signature counter for each log message and tells the sequencer about it. After the expensive signature calculation
+ * the log message is stored. Before the storage writes a log message, it waits in {@linkplain #awaitTurn(long)} until all log messages with smaller signature
+ * counters have been written, and afterwards it calls {@linkplain #committed(long)}. This way the storage never contains a log message whose predecessor is
+ * still missing, so there are no gaps that {@linkplain TSEController#exportData(int, main.java.de.bsi.seapi.holdertypes.ByteArrayHolder)} could see.<br>
+ * <br>
+ * A signature counter that was reserved but never leads to a stored log message (because signing or creating the log message failed) has to be released with
+ * {@linkplain #releaseReservationOfCurrentThread()}. Otherwise every later log message would wait for it. As a safety net, a reservation is also released if
+ * the thread that made it reserves the next signature counter or if that thread has terminated.<br>
+ * Released signature counters are lost, the storage never contains a log message with them. They are listed by {@linkplain #getLostSignatureCounters()}.
+ *
+ * @since 1.6
+ */
+public class SignatureCounterSequencer {
+
+	/**
+	 * Time in milliseconds a waiting thread sleeps before it checks again, whether the thread owning the awaited signature counter is still alive.
+	 */
+	private static final long LIVENESS_CHECK_INTERVAL = 1000;
+
+	private long nextToCommit;										//the smallest signature counter that has not been committed or released yet
+	private final Set<Long> finishedAheadOfTurn = new HashSet<Long>();		//released signature counters that are bigger than nextToCommit
+	private final Map<Long, Thread> ownerOfReservation = new HashMap<Long, Thread>();	//reserved, not yet finished signature counters and their threads
+	private final Set<Long> lostSignatureCounters = new TreeSet<Long>();	//released signature counters, no log message was stored with them
+
+	//the signature counter the current thread has reserved and not yet committed or released, null if there is none
+	private final ThreadLocal<Long> reservationOfThread = new ThreadLocal<Long>();
+
+	/**
+	 * Creates a sequencer.
+	 * @param lastUsedSignatureCounter the signature counter of the last log message that has been created before. The next reservation is expected to be
+	 * this value + 1.
+	 * @since 1.6
+	 */
+	public SignatureCounterSequencer(long lastUsedSignatureCounter) {
+		this.nextToCommit = lastUsedSignatureCounter + 1;
+	}
+
+	/**
+	 * Called by the {@linkplain CryptoCore} when the current thread has reserved a signature counter. Signature counters have to be reserved in
+	 * ascending order without gaps. If the thread still had an unfinished reservation, that one is released.
+	 * @param signatureCounter the reserved signature counter
+	 * @since 1.6
+	 */
+	synchronized void reserved(long signatureCounter) {
+		//a thread signs one log message at a time, an unfinished older reservation will never be committed
+		releaseReservationOfCurrentThread();
+		reservationOfThread.set(Long.valueOf(signatureCounter));
+		ownerOfReservation.put(Long.valueOf(signatureCounter), Thread.currentThread());
+	}
+
+	/**
+	 * Blocks until all log messages with a smaller signature counter have been committed or released. Has to be followed by {@linkplain #committed(long)}.
+	 * Signature counters that have never been reserved through this sequencer (e.g. when log messages are restored) do not wait.
+	 * @param signatureCounter the signature counter of the log message that shall be written
+	 * @throws InterruptedException if the waiting thread is interrupted
+	 * @since 1.6
+	 */
+	public synchronized void awaitTurn(long signatureCounter) throws InterruptedException {
+		if(!ownerOfReservation.containsKey(Long.valueOf(signatureCounter))) {
+			return;
+		}
+		while(signatureCounter > nextToCommit) {
+			//if the thread owning the awaited reservation has died, it will never commit it
+			Thread owner = ownerOfReservation.get(Long.valueOf(nextToCommit));
+			if((owner != null) && !owner.isAlive()) {
+				release(nextToCommit);
+				continue;
+			}
+			wait(LIVENESS_CHECK_INTERVAL);
+		}
+	}
+
+	/**
+	 * Marks the log message with the given signature counter as written and wakes up the threads waiting for their turn.
+	 * Has to be called after {@linkplain #awaitTurn(long)}, regardless of whether writing the log message succeeded.
+	 * @param signatureCounter the signature counter of the log message that has been written
+	 * @since 1.6
+	 */
+	public synchronized void committed(long signatureCounter) {
+		Long reservation = reservationOfThread.get();
+		if((reservation != null) && (reservation.longValue() == signatureCounter)) {
+			reservationOfThread.remove();
+		}
+		finish(signatureCounter);
+	}
+
+	/**
+	 * Releases the signature counter the current thread has reserved but not committed, so that later log messages do not wait for it.
+	 * Does nothing if the current thread has no such reservation.
+	 * @since 1.6
+	 */
+	public synchronized void releaseReservationOfCurrentThread() {
+		Long reservation = reservationOfThread.get();
+		if(reservation == null) {
+			return;
+		}
+		reservationOfThread.remove();
+		release(reservation.longValue());
+	}
+
+	/**
+	 * Releases a reserved signature counter whose log message will not be written, e.g. because the thread that wanted to store it was interrupted while
+	 * waiting for its turn. Later log messages do not wait for it and it is listed by {@linkplain #getLostSignatureCounters()}.
+	 * Does nothing if the signature counter has already been committed or released.
+	 * @param signatureCounter the signature counter that is given up
+	 * @since 1.6
+	 */
+	public synchronized void released(long signatureCounter) {
+		Long reservation = reservationOfThread.get();
+		if((reservation != null) && (reservation.longValue() == signatureCounter)) {
+			reservationOfThread.remove();
+		}
+		release(signatureCounter);
+	}
+
+	/**
+	 * Fetches the signature counters that were reserved, but released instead of committed since this sequencer was created. They have been used up,
+	 * but the storage contains no log message with them.
+	 * @return the lost signature counters in ascending order. Empty, if there are none.
+	 * @since 1.6
+	 */
+	public synchronized List<Long> getLostSignatureCounters() {
+		return new ArrayList<Long>(lostSignatureCounters);
+	}
+
+	/**
+	 * Fetches the smallest signature counter that has neither been committed nor released.
+	 * @return the next signature counter the storage waits for. All smaller signature counters are finished.
+	 * @since 1.6
+	 */
+	public synchronized long getNextToCommit() {
+		return nextToCommit;
+	}
+
+	/**
+	 * Finishes a signature counter that will not be committed and remembers it as lost.
+	 * Must be called while holding the monitor of this object.
+	 * @param signatureCounter the signature counter that has been released
+	 */
+	private void release(long signatureCounter) {
+		if(finish(signatureCounter)) {
+			lostSignatureCounters.add(Long.valueOf(signatureCounter));
+		}
+	}
+
+	/**
+	 * Removes the signature counter from the reservations and advances nextToCommit over all finished signature counters.
+	 * Must be called while holding the monitor of this object.
+	 * @param signatureCounter the signature counter that has been committed or released
+	 * @return true, if the signature counter was reserved and has been finished now, false if it was not reserved or already finished
+	 */
+	private boolean finish(long signatureCounter) {
+		if(ownerOfReservation.remove(Long.valueOf(signatureCounter)) == null) {
+			return false;
+		}
+		if(signatureCounter == nextToCommit) {
+			nextToCommit++;
+			//signature counters that were finished ahead of their turn can now be skipped
+			while(finishedAheadOfTurn.remove(Long.valueOf(nextToCommit))) {
+				nextToCommit++;
+			}
+			notifyAll();
+		}
+		else {
+			finishedAheadOfTurn.add(Long.valueOf(signatureCounter));
+		}
+		return true;
+	}
+}
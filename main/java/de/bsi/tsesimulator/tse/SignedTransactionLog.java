@@ -0,0 +1,113 @@
+package main.java.de.bsi.tsesimulator.tse;
+
+import main.java.de.bsi.tsesimulator.tlv.EncodedSegments;
+
+/**
+ * The result of starting, updating or finishing a transaction: the complete transaction log message with the SEQUENCE wrapper as it is written to the
+ * storage, together with the values the {@linkplain TSEController} needs to store the log message and to fill the holder types.<br>
+ * The values are taken from the log message while it is created, so the encoded log message never has to be decoded again.
+ *
+ * @see SecurityModule#startTransaction(String, byte[], String, byte[])
+ * @since 1.6
+ */
+public final class SignedTransactionLog {
+	private final EncodedSegments encoded;
+	private final long transactionNumber;
+	private final String operationType;
+	private final String clientID;
+	private final byte[] serialNumber;
+	private final LogMessageSignature signature;
+
+	/**
+	 * Only created by the {@linkplain ERSSpecificModule}.
+	 * @param encoded the complete log message with the SEQUENCE wrapper, in segments that may reference the process data
+	 * @param transactionNumber the number of the transaction
+	 * @param operationType the operation type, e.g. "StartTransaction"
+	 * @param clientID the ID of the client that invoked the operation
+	 * @param serialNumber the serial number of the TSE
+	 * @param signature the signature counter, log time and signature value of the log message
+	 */
+	SignedTransactionLog(EncodedSegments encoded, long transactionNumber, String operationType, String clientID, byte[] serialNumber,
+			LogMessageSignature signature) {
+		this.encoded = encoded;
+		this.transactionNumber = transactionNumber;
+		this.operationType = operationType;
+		this.clientID = clientID;
+		this.serialNumber = serialNumber;
+		this.signature = signature;
+	}
+
+	/**
+	 * @return the complete transaction log message in its ASN.1 DER encoded form, with the SEQUENCE wrapper. The segments are put together in a new 
+	 * array, so {@linkplain #getEncodedSegments()} should be used where possible.
+	 * @since 1.6
+	 */
+	public byte[] getEncoded() {
+		return encoded.toByteArray();
+	}
+
+	/**
+	 * @return the complete transaction log message in its ASN.1 DER encoded form, with the SEQUENCE wrapper. Big process data or additional data is 
+	 * referenced by the segments and not copied.
+	 * @since 1.6
+	 */
+	public EncodedSegments getEncodedSegments() {
+		return encoded;
+	}
+
+	/**
+	 * @return the transaction number
+	 * @since 1.6
+	 */
+	public long getTransactionNumber() {
+		return transactionNumber;
+	}
+
+	/**
+	 * @return the operation type, e.g. "StartTransaction"
+	 * @since 1.6
+	 */
+	public String getOperationType() {
+		return operationType;
+	}
+
+	/**
+	 * @return the ID of the client that invoked the operation
+	 * @since 1.6
+	 */
+	public String getClientID() {
+		return clientID;
+	}
+
+	/**
+	 * @return the serial number of the TSE. Not a copy, it is the array the TSE uses for all log messages.
+	 * @since 1.6
+	 */
+	public byte[] getSerialNumber() {
+		return serialNumber;
+	}
+
+	/**
+	 * @return the signature counter of the log message
+	 * @since 1.6
+	 */
+	public long getSignatureCounter() {
+		return signature.getSignatureCounter();
+	}
+
+	/**
+	 * @return the log time as Unix time
+	 * @since 1.6
+	 */
+	public long getLogTime() {
+		return signature.getLogTime();
+	}
+
+	/**
+	 * @return the signature value. Not a copy.
+	 * @since 1.6
+	 */
+	public byte[] getSignatureValue() {
+		return signature.getSignatureValue();
+	}
+}
@@ -89,9 +89,8 @@ import main.java.de.bsi.tsesimulator.exceptions.TooManyUsersException;
 import main.java.de.bsi.tsesimulator.exceptions.UserAlreadyExistsException;
 import main.java.de.bsi.tsesimulator.exceptions.ValueNullException;
 import main.java.de.bsi.tsesimulator.exceptions.ValueTooBigException;
-import main.java.de.bsi.tsesimulator.msg.LogMessage;
 import main.java.de.bsi.tsesimulator.msg.SystemLogMessage;
-import main.java.de.bsi.tsesimulator.msg.TransactionLogMessage;
+import main.java.de.bsi.tsesimulator.msg.SystemLogMessageView;
 import main.java.de.bsi.tsesimulator.preferences.PropertyValues;
 import main.java.de.bsi.tsesimulator.preferences.UserlistValues;
 import main.java.de.bsi.tsesimulator.tlv.TLVObject;
@@ -99,6 +98,7 @@ import main.java.de.bsi.tsesimulator.tlv.TLVUtility;
 import main.java.de.bsi.tsesimulator.tse.storage.PersistedValues;
 import main.java.de.bsi.tsesimulator.tse.storage.PersistentStorage;
 import main.java.de.bsi.tsesimulator.tse.storage.Storage;
+import main.java.de.bsi.tsesimulator.tse.storage.WriteAheadJournal;
 import main.java.de.bsi.tsesimulator.tse.usermanagement.User;
 
 
@@ -125,6 +125,8 @@ public class TSEController implements SEAPI {
 	private SecurityModule securityModule;
 	private Storage storage;
 	private PersistentStorage persistentStorage;
+	private WriteAheadJournal journal = null;			//records the counters and the log messages between shutdowns, null if no journal is kept
+	private WriteAheadJournal.Recovery journalRecovery = null;	//what was read from the journal when the simulator was started
 
 	boolean tseIsInitialized = false;					//keeps track of whether the TSE has been initialized or not. 
 	
@@ -151,6 +153,10 @@ public class TSEController implements SEAPI {
 	 * stati of the TSE and the SecurityModule.
 	 * <br>If no persistence file is found, everything is constructed with its default values. That means, "0" for the transaction number and the
 	 * signature counter, "false" for seIsDisabled and "false" for tseIsInitialized.
+	 * <br><b>Changes in version 1.6:</b><br>
+	 * If {@linkplain ConfigConstants#CFG_TAG_WRITE_AHEAD_JOURNAL} is set to true, the persisted values are completed with the {@linkplain WriteAheadJournal},
+	 * so that the simulator continues with the correct counters after a stop without a graceful shutdown. Log messages that were not finished are
+	 * written again, then the journal is started anew.
 	 * @throws LoadingFailedException if the constructor of the {@linkplain SecurityModule}, {@linkplain Storage} or {@linkplain PersistentStorage} throws an IOException,
 	 * and/or if reading the configuration file fails due to a missing path to the resource directory. <br> Mitigation: Use {@linkplain PropertyValues#setPathToResourceDirectory(String)} before 
 	 * constructing the TSEController.
@@ -160,11 +166,10 @@ public class TSEController implements SEAPI {
 		this.storage = new Storage();
 		this.persistentStorage = new PersistentStorage();
 		
-		//check if a persistence file exists that can be de-serialized
-		if(this.persistentStorage.persistentValuesExist()) {
-			//get the values that can be loaded in
-			PersistedValues loaded = this.persistentStorage.loadFromPersistedFile();
-			
+		//check if a persistence file exists that can be de-serialized, then complete it with the write-ahead journal, if one is kept
+		PersistedValues loaded = this.persistentStorage.persistentValuesExist() ? this.persistentStorage.loadFromPersistedFile() : null;
+		loaded = recoverFromJournal(loaded);
+		if(loaded != null) {
 			//set the initialization status to what has been loaded
 			this.tseIsInitialized = loaded.getTseIsInitialized();
 			//create the security module with all loaded parameters
@@ -198,6 +203,11 @@ public class TSEController implements SEAPI {
 			}
 		}
 		
+		//let the storage write the log messages in the order of the signature counters reserved by the CryptoCore
+		this.storage.setSequencer(this.securityModule.getCryptoCore().getSequencer());
+		//write the log messages again that were not finished before the last stop and start recording in the journal
+		startJournal();
+		
 		//set the User to "null"
 		this.currentlyLoggedIn = null;
 	}
@@ -217,6 +227,10 @@ public class TSEController implements SEAPI {
 	 * <br>If no persistence file is found, everything is constructed with its default values. That means, "0" for the transaction number and the
 	 * signature counter, "false" for seIsDisabled and "false" for tseIsInitialized. Depending on the configuration, this may also set the 
 	 * "description of the SE API".
+	 * <br><b>Changes in version 1.6:</b><br>
+	 * If {@linkplain ConfigConstants#CFG_TAG_WRITE_AHEAD_JOURNAL} is set to true, the persisted values are completed with the {@linkplain WriteAheadJournal},
+	 * so that the simulator continues with the correct counters after a stop without a graceful shutdown. Log messages that were not finished are
+	 * written again, then the journal is started anew.
 	 * @param pathToConfigFile the (absolute) path pointing to the resource directory
 	 * 
 	 * 
@@ -262,11 +276,10 @@ public class TSEController implements SEAPI {
 		this.storage = new Storage();
 		this.persistentStorage = new PersistentStorage();
 		
-		//check if a persistence file exists that can be de-serialized
-		if(this.persistentStorage.persistentValuesExist()) {
-			//get the values that can be loaded in
-			PersistedValues loaded = this.persistentStorage.loadFromPersistedFile();
-			
+		//check if a persistence file exists that can be de-serialized, then complete it with the write-ahead journal, if one is kept
+		PersistedValues loaded = this.persistentStorage.persistentValuesExist() ? this.persistentStorage.loadFromPersistedFile() : null;
+		loaded = recoverFromJournal(loaded);
+		if(loaded != null) {
 			//set the initialization status to what has been loaded
 			this.tseIsInitialized = loaded.getTseIsInitialized();
 			//create the security module with all loaded parameters
@@ -296,6 +309,11 @@ public class TSEController implements SEAPI {
 			}
 		}
 		
+		//let the storage write the log messages in the order of the signature counters reserved by the CryptoCore
+		this.storage.setSequencer(this.securityModule.getCryptoCore().getSequencer());
+		//write the log messages again that were not finished before the last stop and start recording in the journal
+		startJournal();
+		
 		//set the User to "null"
 		this.currentlyLoggedIn = null;
 	}
@@ -407,9 +425,14 @@ public class TSEController implements SEAPI {
 	 *
 	 * <br>
 	 * depending on number of open transactions, this may take a while!
+	 * <br><b>Changes in version 1.6:</b><br>
+	 * If a {@linkplain WriteAheadJournal} is kept, the persisted values are written to it as well and it is closed. The {@linkplain Storage} is closed and the 
+	 * {@linkplain CryptoCore} stops its threads.
 	 * @return {@linkplain Constant#EXECUTION_OK} if the execution went okay
-	 * @throws GracefulShutdownFailedException 
-	 * @throws PersistingFailedException if storing the important values of the simulator in {@linkplain PersistentStorage} fails
+	 * @throws GracefulShutdownFailedException if closing the open transactions, logging out the user or closing the {@linkplain Storage} fails
+	 * @throws PersistingFailedException if storing the important values of the simulator in {@linkplain PersistentStorage} or in the 
+	 * {@linkplain WriteAheadJournal} fails
+	 * @version 1.6
 	 */
 	public synchronized short gracefulShutdown() throws GracefulShutdownFailedException, PersistingFailedException {
 		//1. call SecurityModule to de-register all the remaining clients from the TSE
@@ -435,20 +458,25 @@ public class TSEController implements SEAPI {
 			Iterator<Long> iter = transactionNumbersClone.iterator();
 			while(iter.hasNext()) {
 				Long currentNumber = iter.next();
-				byte[] resultOfFinishTransaction = null;
+				SignedTransactionLog resultOfFinishTransaction = null;
+				boolean isStored = false;
 				try {
 					resultOfFinishTransaction = this.securityModule.finishTransaction(Constants.GRACEFUL_SHUTDOWN_CLIENTID,currentNumber.longValue(),
 							Constants.GRACEFUL_SHUTDOWN_PROCESSDATA, Constants.GRACEFUL_SHUTDOWN_PROCESSTYPE, null);
 					
-					//try to construct a TransactionLogMessage from the resultOfStartTransaction byte array
-					TransactionLogMessage resultingTransactionLog = (TransactionLogMessage) createCompleteLogMessageFromByteArray(resultOfFinishTransaction, (short) 1);
-					//store the log in the storage
-					this.storage.storeTransactionLog(resultOfFinishTransaction, resultingTransactionLog.getLogTime(), resultingTransactionLog.getSignatureCounter(),
-							resultingTransactionLog.getTransactionNumber(), resultingTransactionLog.getOperationType(), resultingTransactionLog.getClientID());
+					//store the log in the storage, the values come with the result and do not have to be decoded
+					this.storage.storeTransactionLog(resultOfFinishTransaction.getEncodedSegments(), resultOfFinishTransaction.getLogTime(), resultOfFinishTransaction.getSignatureCounter(),
+							resultOfFinishTransaction.getTransactionNumber(), resultOfFinishTransaction.getOperationType(), resultOfFinishTransaction.getClientID());
+					isStored = true;
 				} catch (ErrorNoTransaction | ValueNullException | ValueTooBigException
 						| SigningOperationFailedException | ErrorSignatureCounterOverflow
-						| ErrorFinishTransactionFailed | ErrorRetrieveLogMessageFailed | ErrorStorageFailure e) {
+						| ErrorFinishTransactionFailed | ErrorStorageFailure e) {
 					throw new GracefulShutdownFailedException("Failed closing transaction number " +currentNumber.longValue() +".\n" +e.getMessage(), e);
+				} finally {
+					//a log message that was signed but not stored must not keep the storage waiting for its signature counter
+					if(!isStored) {
+						this.securityModule.getCryptoCore().getSequencer().releaseReservationOfCurrentThread();
+					}
 				}
 			}
 			//3.C: try to de-register the client responsible for closing the transactions
@@ -481,6 +509,30 @@ public class TSEController implements SEAPI {
 		//6. try to persist the values
 		this.persistentStorage.storeLatestValues(this.securityModule.getCurrentTimeFromCryptoCore(), tseIsInitialized, securityModule.getSecureElementIsDisabled(),
 			sigCntrToBePersisted, transactionNumberToBePersisted, descriptionOfTheSEAPI);			
+		
+		//7. close the storage, which writes the log messages that are still queued and releases the index directory
+		try {
+			this.storage.close();
+		} catch (ErrorStorageFailure e) {
+			throw new GracefulShutdownFailedException("Closing the storage failed.\n" +e.getMessage(), e);
+		}
+		
+		//8. end the write-ahead journal with the persisted values, every log message has been written
+		if(this.journal != null) {
+			try {
+				this.journal.checkpoint(new PersistedValues(this.securityModule.getCurrentTimeFromCryptoCore(), tseIsInitialized, 
+						securityModule.getSecureElementIsDisabled(), sigCntrToBePersisted, transactionNumberToBePersisted, descriptionOfTheSEAPI));
+			} catch (IOException e) {
+				throw new PersistingFailedException("Writing the persisted values to the write-ahead journal failed.\n" +e.getMessage(), e);
+			}
+			this.securityModule.getCryptoCore().setJournal(null);
+			this.storage.setJournal(null);
+			this.journal.close();
+			this.journal = null;
+		}
+
+		//9. stop the threads that precompute nonces for the signature algorithm
+		this.securityModule.getCryptoCore().shutdown();
 
 		//set all values of this simulator to "null" or their default value
 		//This is done, because a turned off TSE would not be able to function as well
@@ -558,57 +610,132 @@ public class TSEController implements SEAPI {
 		return Constant.EXECUTION_OK;
 	}
 	
+	/**
+	 * Provides what was read from the {@linkplain WriteAheadJournal} when this TSEController was constructed: the log messages that were not finished
+	 * before the last stop and have been checked and, if necessary, written again, and the signature counters that were reserved without a log message.
+	 * <b>NOT INCLUDED IN THE SE API!</b>
+	 * @return the recovery, or null if no write-ahead journal is kept, see {@linkplain ConfigConstants#CFG_TAG_WRITE_AHEAD_JOURNAL}
+	 * @since 1.6
+	 */
+	public WriteAheadJournal.Recovery getJournalRecovery() {
+		return this.journalRecovery;
+	}
+	
 //-----------------------------------Refactored Methods-----------------------------------------------------------
 	/**
-	 * Used internally to make this program more readable. Is reused nearly every time a LogMessage has to be created. 
-	 * logType = <br>
-	 * <ul>
-	 * <li>1 : TransactionLog </li>
-	 * <li>2 : SystemLog </li>
-	 * <li>3 : AuditLog (not yet implemented) </li>
-	 * </ul>
-	 * @param resultingLog the byte array representation of a {@linkplain LogMessage} created via a call of the appropriate {@linkplain SecurityModule} function
-	 * @param logType a number indicating the type of log message that is contained in resultingLog. See above for more information.
-	 * @return either a {@linkplain TransactionLogMessage} or a {@linkplain SystemLogMessage}. Null, if no valid case was selected.
-	 * @throws ErrorRetrieveLogMessageFailed if an error occurs while turning the byte array into a proper LogMessage
+	 * Used internally to make this program more readable. Is reused every time a system log message has been created by the {@linkplain SecurityModule}, 
+	 * to get the values the {@linkplain Storage} needs to store it.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * Replaces <i>createCompleteLogMessageFromByteArray(byte[], short)</i>, which was only used for system logs. Instead of decoding the whole log 
+	 * message into a {@linkplain SystemLogMessage}, a {@linkplain SystemLogMessageView} reads only the fields that are asked for. The signature counter 
+	 * and the log time are checked here, so that a log message that can not be stored does not keep the storage waiting for its signature counter.<br>
+	 * @param resultingLog the byte array representation of a {@linkplain SystemLogMessage} created via a call of the appropriate {@linkplain SecurityModule} function
+	 * @return the view of the system log message
+	 * @throws ErrorRetrieveLogMessageFailed if the byte array is not a system log message
+	 * @version 1.6
 	 */
-	private LogMessage createCompleteLogMessageFromByteArray(byte[] resultingLog, short logType) throws ErrorRetrieveLogMessageFailed {
-		//case 1: transaction log
-		if(logType == 1) {
-			//try to construct a TransactionLogMessage from the resultingLog byte array
-			TransactionLogMessage resultingTransactionLog = null;
-			try {
-				TLVObject[] resultOfTransactionWITHSequenceWrapper = TLVObject.decodeASN1ByteArrayToTLVObjectArray(resultingLog);
-				//the value of the TLVObject[] without the first entry should be the "real" logmessage
-				TLVObject[] resultOfTransactionWITHOUTSequenceWrapper = new TLVObject[resultOfTransactionWITHSequenceWrapper.length-1];
-				System.arraycopy(resultOfTransactionWITHSequenceWrapper, 1, resultOfTransactionWITHOUTSequenceWrapper, 0, resultOfTransactionWITHOUTSequenceWrapper.length);
-				resultingTransactionLog = new TransactionLogMessage(resultOfTransactionWITHOUTSequenceWrapper);
-			} catch (Exception e) {
-				throw new ErrorRetrieveLogMessageFailed(e.getMessage(), e);
+	private SystemLogMessageView createSystemLogMessageView(byte[] resultingLog) throws ErrorRetrieveLogMessageFailed {
+		try {
+			//the view reads the log message from resultingLog without copying, the SEQUENCE wrapper is skipped
+			SystemLogMessageView resultingSysLog = new SystemLogMessageView(resultingLog);
+			resultingSysLog.getSignatureCounter();
+			resultingSysLog.getLogTime();
+			return resultingSysLog;
+		} catch (Exception e) {
+			//the log message will not be stored, the storage must not wait for its signature counter
+			this.securityModule.getCryptoCore().getSequencer().releaseReservationOfCurrentThread();
+			throw new ErrorRetrieveLogMessageFailed(e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Reads the {@linkplain WriteAheadJournal}, if config.properties says that one is kept, see {@linkplain ConfigConstants#CFG_TAG_WRITE_AHEAD_JOURNAL}.
+	 * The counters and the clock of the persisted values are raised to the largest ones recorded in the journal, so that no signature counter and no
+	 * transaction number is used twice after the simulator stopped without a graceful shutdown.
+	 * @param loaded the values read from {@linkplain PersistentStorage}, null if there were none
+	 * @return the values the simulator continues with, null if there are neither persisted values nor a journal
+	 * @throws LoadingFailedException if config.properties or the journal can not be read
+	 * @since 1.6
+	 */
+	private PersistedValues recoverFromJournal(PersistedValues loaded) throws LoadingFailedException {
+		//a missing entry means that no journal is kept
+		String pathToPersistentStorage;
+		try {
+			String journalEntry = PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_WRITE_AHEAD_JOURNAL);
+			if((journalEntry == null) || !journalEntry.trim().equalsIgnoreCase(ConfigConstants.CFG_ENTRY_WRITE_AHEAD_JOURNAL_TRUE)) {
+				return loaded;
 			}
-			return resultingTransactionLog;
+			pathToPersistentStorage = PropertyValues.getInstance().getPathToPersistentStorage();
+		} catch (IOException e) {
+			throw new LoadingFailedException("Failed to load from PropertyValues. Most likely cause: no path to resources set. Original message:\n" +e.getMessage(), e);
+		}
+		
+		this.journal = new WriteAheadJournal(new File(pathToPersistentStorage));
+		try {
+			this.journalRecovery = this.journal.recover(loaded);
+		} catch (IOException e) {
+			throw new LoadingFailedException("Reading the write-ahead journal failed. Original message:\n" +e.getMessage(), e);
 		}
-		//case 2: system log
-		if(logType == 2) {
-			//try to construct a SystemLogMessage from the resultingLog byte array
-			SystemLogMessage resultingSysLog = null;
+		return this.journalRecovery.getValues();
+	}
+	
+	/**
+	 * Writes the log messages again that the {@linkplain WriteAheadJournal} recorded, but not as written, see 
+	 * {@linkplain Storage#restoreLogMessage(String, byte[], long, long)}. Then the journal is started anew with the current values and handed to the 
+	 * {@linkplain CryptoCore} and the {@linkplain Storage}. Does nothing if no journal is kept.
+	 * @throws LoadingFailedException if a log message can not be written or the journal can not be started
+	 * @since 1.6
+	 */
+	private void startJournal() throws LoadingFailedException {
+		if(this.journal == null) {
+			return;
+		}
+		//1. repair the storage
+		for(WriteAheadJournal.UnfinishedLogMessage unfinishedLogMessage : this.journalRecovery.getUnfinishedLogMessages()) {
 			try {
-				TLVObject[] resultOfSysOpWITHSequenceWrapper = TLVObject.decodeASN1ByteArrayToTLVObjectArray(resultingLog);
-				//the value of the TLVObject[] without the first entry should be the part of the Syslog we want (the first entry is just the SEQUENCE wrapper)
-				TLVObject[] resultOfSysOpWITHOUTSequenceWrapper = new TLVObject[resultOfSysOpWITHSequenceWrapper.length-1];
-				System.arraycopy(resultOfSysOpWITHSequenceWrapper, 1, resultOfSysOpWITHOUTSequenceWrapper, 0, resultOfSysOpWITHOUTSequenceWrapper.length);
-				resultingSysLog = new SystemLogMessage(resultOfSysOpWITHOUTSequenceWrapper);
-			} catch (Exception e) {
-				throw new ErrorRetrieveLogMessageFailed(e.getMessage(), e);
-			} 
-			return resultingSysLog;
+				this.storage.restoreLogMessage(unfinishedLogMessage.getFileName(), unfinishedLogMessage.getLogMessage(), unfinishedLogMessage.getLogTime(),
+						unfinishedLogMessage.getSignatureCounter());
+			} catch (ErrorStorageFailure e) {
+				throw new LoadingFailedException("Restoring the log message with the signature counter " +unfinishedLogMessage.getSignatureCounter() 
+						+" from the write-ahead journal failed. Original message:\n" +e.getMessage(), e);
+			}
+		}
+		
+		//2. start the journal with a checkpoint, from now on the reserved signature counters and the log messages are recorded
+		try {
+			this.journal.start(getCurrentValues());
+		} catch (IOException | ErrorSignatureCounterOverflow e) {
+			throw new LoadingFailedException("Starting the write-ahead journal failed. Original message:\n" +e.getMessage(), e);
 		}
-		//case 3: audit log (NOT YET IMPLEMENTED!)
-		if(logType == 3) {
-			return null;
+		this.securityModule.getCryptoCore().setJournal(this.journal);
+		this.storage.setJournal(this.journal);
+	}
+	
+	/**
+	 * Writes the current values to the {@linkplain WriteAheadJournal}, so that a change of the state of the TSE survives a stop without a graceful
+	 * shutdown. Does nothing if no journal is kept.
+	 * @throws ErrorStorageFailure if the journal can not be written
+	 * @since 1.6
+	 */
+	private void checkpointJournal() throws ErrorStorageFailure {
+		if(this.journal == null) {
+			return;
+		}
+		try {
+			this.journal.checkpoint(getCurrentValues());
+		} catch (IOException | ErrorSignatureCounterOverflow e) {
+			throw new ErrorStorageFailure("Writing the state of the TSE to the write-ahead journal failed.\n" +e.getMessage(), e);
 		}
-		//in case something goes wrong: return null
-		return null;
+	}
+	
+	/**
+	 * @return the values that {@linkplain #gracefulShutdown()} would persist at this moment
+	 * @throws ErrorSignatureCounterOverflow if the signature counter of the CryptoCore has an illegal value
+	 * @since 1.6
+	 */
+	private PersistedValues getCurrentValues() throws ErrorSignatureCounterOverflow {
+		return new PersistedValues(this.securityModule.getCurrentTimeFromCryptoCore(), tseIsInitialized, this.securityModule.getSecureElementIsDisabled(),
+				this.securityModule.getCryptoCore().getSignatureCounter(), this.securityModule.getCurrentTransactionCounter(), descriptionOfTheSEAPI);
 	}
 	
 //--------------------------------------------------MAINTENANCE FUNCTIONS---------------------------------------------------------------------	
@@ -669,7 +796,7 @@ public class TSEController implements SEAPI {
 		if(resultOfInitialize == null) {
 			throw new ErrorRetrieveLogMessageFailed();
 		}
-		SystemLogMessage resultingSysLog = (SystemLogMessage) createCompleteLogMessageFromByteArray(resultOfInitialize, (short) 2);
+		SystemLogMessageView resultingSysLog = createSystemLogMessageView(resultOfInitialize);
 	
 	//3. Store the syslog. if that fails, ErrorStoragefailure shall be raised
 		try {
@@ -681,6 +808,7 @@ public class TSEController implements SEAPI {
 	//4. INITIALIZE! SET TSE IS INITIALIZED TO TRUE!!! SET THE DESCRIPTION TO THE PROVIDED ONE!
 		this.tseIsInitialized = true;
 		this.descriptionOfTheSEAPI = description;
+		checkpointJournal();
 		
 	//5. check if the certificate of the TSE is expired. If the certificate is expired, this function MAY throw an exception because at this point, the
 		//TSE has been initialized and a SystemLog has been created to log this.
@@ -744,7 +872,7 @@ public class TSEController implements SEAPI {
 			if(resultOfInitialize == null) {
 				throw new ErrorRetrieveLogMessageFailed();
 			}
-			SystemLogMessage resultingSysLog = (SystemLogMessage) createCompleteLogMessageFromByteArray(resultOfInitialize, (short) 2);
+			SystemLogMessageView resultingSysLog = createSystemLogMessageView(resultOfInitialize);
 		
 		//3. store the syslog. if that fails, ErrorStoragefailure shall be raised
 			try {
@@ -754,6 +882,7 @@ public class TSEController implements SEAPI {
 			}
 		//4. INITIALIZE! SET TSE IS INITIALIZED TO TRUE!!!
 			this.tseIsInitialized = true;
+			checkpointJournal();
 			
 		//5. check if the certificate of the TSE is expired. If the certificate is expired, this function MAY throw an exception because at this point, the
 			//TSE has been initialized and a SystemLog has been created to log this
@@ -817,7 +946,7 @@ public class TSEController implements SEAPI {
 		if(resultOfUpdateTime == null) {
 			throw new ErrorRetrieveLogMessageFailed();
 		}
-		SystemLogMessage resultingSysLog = (SystemLogMessage) createCompleteLogMessageFromByteArray(resultOfUpdateTime, (short) 2);
+		SystemLogMessageView resultingSysLog = createSystemLogMessageView(resultOfUpdateTime);
 		
 	//3. store the data of the SysLog. If that fails, ErrorStoragefailure SHALL be raised
 		try {
@@ -883,7 +1012,7 @@ public class TSEController implements SEAPI {
 		if(resultOfUpdateTime == null) {
 			throw new ErrorRetrieveLogMessageFailed();
 		}
-		SystemLogMessage resultingSysLog = (SystemLogMessage) createCompleteLogMessageFromByteArray(resultOfUpdateTime, (short) 2);
+		SystemLogMessageView resultingSysLog = createSystemLogMessageView(resultOfUpdateTime);
 		
 	//3. store the data of the SysLog. If that fails, ErrorStoragefailure SHALL be raised
 		try {
@@ -944,21 +1073,23 @@ public class TSEController implements SEAPI {
 		if(resultOfDisableSE == null) {
 			throw new ErrorRetrieveLogMessageFailed();
 		}
-		SystemLogMessage resultingSysLog = (SystemLogMessage) createCompleteLogMessageFromByteArray(resultOfDisableSE,(short) 2);
+		SystemLogMessageView resultingSysLog = createSystemLogMessageView(resultOfDisableSE);
 
-	//3. the function shall then invoke the disable method in the Secure Element
-		try {
-			this.securityModule.setDisabled();
-		} catch (Exception e){
-			throw new ErrorDisableSecureElementFailed();
-		}
-		
-	//4. store the SystemLogMessage
+	//3. store the SystemLogMessage. This is done before the secure element is disabled, so that the reserved signature counter is committed 
+		//in any case and the log messages of other threads do not wait for it
 		try {
 			this.storage.storeSystemLog(resultOfDisableSE, resultingSysLog.getLogTime(), resultingSysLog.getSignatureCounter(), resultingSysLog.getOperationType());
 		} catch (Exception e) {
 			throw new ErrorStorageFailure("Storing SystemLogMessage failed.\n",e);
 		}
+		
+	//4. the function shall then invoke the disable method in the Secure Element
+		try {
+			this.securityModule.setDisabled();
+		} catch (Exception e){
+			throw new ErrorDisableSecureElementFailed();
+		}
+		checkpointJournal();
 	//5. check if the certificate of the TSE is expired. If the certificate is expired, this function SHALL throw an exception because at this point, the
 		//TSE has been initialized and a SystemLog has been created to log this.
 		if(securityModule.getCryptoCore().isCertificateExpired()) {
@@ -1010,37 +1141,48 @@ public class TSEController implements SEAPI {
 	//1. Function shall invoke the SecureElement functionality and pass on client ID process type and processData.
 			//SecureElement shall generate a Transaction number
 			// if the execution of the SecureElement functionality fails, ErrorStartTransactionFailed shall be thrown 
-		byte[] resultOfStartTransaction = null;
+		SignedTransactionLog resultOfStartTransaction = null;
+		SignedTransactionLog resultingTransactionLog = null;
+		boolean isStored = false;
 		try {
-			resultOfStartTransaction = this.securityModule.startTransaction(clientId, processData, processType, additionalData);
-			//if anything goes wrong with the creation of the LogMessage throw an ErrorStartTransactionFailed
-		} catch(ErrorTransactionCounterOverflow e) {
-			throw new ErrorTransactionCounterOverflow(e.getMessage(), e);
-		} catch(ErrorSignatureCounterOverflow e) {
-			throw new ErrorSignatureCounterOverflow(e.getMessage(), e);
-		} catch(ValueNullException e) {
-			throw new ErrorStartTransactionFailed("ValueNullException caught.\n" +e.getMessage() +"\n");
-		} catch (ValueTooBigException e) {
-			throw new ErrorStartTransactionFailed("ValueTooBigException caught.\n" +e.getMessage() +"\n");
-		} catch (TooManyOpenTransactionsException e) {
-			throw new ErrorStartTransactionFailed(e.getMessage(), e);
-		} catch(Exception e) {
-			throw new ErrorStartTransactionFailed(e.getMessage(), e);
-		}
+			try {
+				resultOfStartTransaction = this.securityModule.startTransaction(clientId, processData, processType, additionalData);
+				//if anything goes wrong with the creation of the LogMessage throw an ErrorStartTransactionFailed
+			} catch(ErrorTransactionCounterOverflow e) {
+				throw new ErrorTransactionCounterOverflow(e.getMessage(), e);
+			} catch(ErrorSignatureCounterOverflow e) {
+				throw new ErrorSignatureCounterOverflow(e.getMessage(), e);
+			} catch(ValueNullException e) {
+				throw new ErrorStartTransactionFailed("ValueNullException caught.\n" +e.getMessage() +"\n");
+			} catch (ValueTooBigException e) {
+				throw new ErrorStartTransactionFailed("ValueTooBigException caught.\n" +e.getMessage() +"\n");
+			} catch (TooManyOpenTransactionsException e) {
+				throw new ErrorStartTransactionFailed(e.getMessage(), e);
+			} catch(Exception e) {
+				throw new ErrorStartTransactionFailed(e.getMessage(), e);
+			}
 		
-	//2. Next, the function SHALL retrieve the parts of the logmessage determined by the secure element.
-			//if the execution of this functionality fails, an ErrorRetrieveLogMessageFailed SHALL be raised.
-		if(resultOfStartTransaction == null) {
-			throw new ErrorRetrieveLogMessageFailed();
-		}
-		TransactionLogMessage resultingTransactionLog = (TransactionLogMessage) createCompleteLogMessageFromByteArray(resultOfStartTransaction, (short) 1);
-	//3. The input data and the data of the retrieved log message parts SHALL be stored. If the data has not been stored successfully, the 
-			//exception ErrorStorageFailure shall be raised
-		try {
-			this.storage.storeTransactionLog(resultOfStartTransaction, resultingTransactionLog.getLogTime(), resultingTransactionLog.getSignatureCounter(),
-					resultingTransactionLog.getTransactionNumber(), resultingTransactionLog.getOperationType(), resultingTransactionLog.getClientID());
-		} catch(Exception e) {
-			throw new ErrorStorageFailure(e.getMessage());
+		//2. Next, the function SHALL retrieve the parts of the logmessage determined by the secure element.
+				//if the execution of this functionality fails, an ErrorRetrieveLogMessageFailed SHALL be raised.
+			if(resultOfStartTransaction == null) {
+				throw new ErrorRetrieveLogMessageFailed();
+			}
+			//the result carries the values of the log message, it does not have to be decoded
+			resultingTransactionLog = resultOfStartTransaction;
+		//3. The input data and the data of the retrieved log message parts SHALL be stored. If the data has not been stored successfully, the 
+				//exception ErrorStorageFailure shall be raised
+			try {
+				this.storage.storeTransactionLog(resultingTransactionLog.getEncodedSegments(), resultingTransactionLog.getLogTime(), resultingTransactionLog.getSignatureCounter(),
+						resultingTransactionLog.getTransactionNumber(), resultingTransactionLog.getOperationType(), resultingTransactionLog.getClientID());
+			} catch(Exception e) {
+				throw new ErrorStorageFailure(e.getMessage());
+			}
+			isStored = true;
+		} finally {
+			//a log message that was signed but not stored must not keep the storage waiting for its signature counter
+			if(!isStored) {
+				this.securityModule.getCryptoCore().getSequencer().releaseReservationOfCurrentThread();
+			}
 		}
 	
 	//4. return the relevant data in the holder types
@@ -1049,7 +1191,8 @@ public class TSEController implements SEAPI {
 		Instant logTimeFromTransactionLog = Instant.ofEpochSecond(resultingTransactionLog.getLogTime());
 		logTime.setValue(ZonedDateTime.ofInstant(logTimeFromTransactionLog, ZoneId.systemDefault()));
 		
-		serialNumber.setValue(resultingTransactionLog.getSerialNumber());
+		//the serial number of the result is the array used by the TSE itself, the caller gets a copy
+		serialNumber.setValue(resultingTransactionLog.getSerialNumber().clone());
 		signatureCounter.setValue(resultingTransactionLog.getSignatureCounter());
 		//referring to 0., format checks: if signatureValue == null, nothing serious happens, but: do not try to return into an object thats null
 		if(!(signatureValue==null)) {
@@ -1101,30 +1244,41 @@ public class TSEController implements SEAPI {
 	//1. SHALL invoke the functionality of the secure element to update a transaction. If this fails, an ErrorUpdateTransactionFailed SHALL be raised
 	//2. the secure element SHALL check whether the transactionNumber belongs to an open transaction. If no open transaction with that number
 			//exists the function SHALL raise an ErrorNoTransaction
-			byte[] resultOfUpdateTransaction = null;
+			SignedTransactionLog resultOfUpdateTransaction = null;
+			SignedTransactionLog resultingTransactionLog = null;
+			boolean isStored = false;
 			try {
-				resultOfUpdateTransaction = this.securityModule.updateTransaction(clientId, transactionNumber, processData, processType);
-			} catch(ErrorNoTransaction e) {
-				throw new ErrorNoTransaction();
-			} catch(ErrorSignatureCounterOverflow e) {
-				throw new ErrorSignatureCounterOverflow(e.getMessage(), e);
-			} catch(Exception e) {
-				throw new ErrorUpdateTransactionFailed();
-			}
+				try {
+					resultOfUpdateTransaction = this.securityModule.updateTransaction(clientId, transactionNumber, processData, processType);
+				} catch(ErrorNoTransaction e) {
+					throw new ErrorNoTransaction();
+				} catch(ErrorSignatureCounterOverflow e) {
+					throw new ErrorSignatureCounterOverflow(e.getMessage(), e);
+				} catch(Exception e) {
+					throw new ErrorUpdateTransactionFailed();
+				}
 	
-	//3. with signed updates: the parts of the logmessage created by the secure element SHALL be retrieved.
-			//if that fails, the ErrorRetrieveLogMessageFailed SHALL be raised.
-			if(resultOfUpdateTransaction == null) {
-				throw new ErrorRetrieveLogMessageFailed();
-			}
-			TransactionLogMessage resultingTransactionLog = (TransactionLogMessage) createCompleteLogMessageFromByteArray(resultOfUpdateTransaction, (short) 1);
+		//3. with signed updates: the parts of the logmessage created by the secure element SHALL be retrieved.
+				//if that fails, the ErrorRetrieveLogMessageFailed SHALL be raised.
+				if(resultOfUpdateTransaction == null) {
+					throw new ErrorRetrieveLogMessageFailed();
+				}
+				//the result carries the values of the log message, it does not have to be decoded
+				resultingTransactionLog = resultOfUpdateTransaction;
 			
-	//4. the input data and the parts of the logmessage SHALL be stored. If this fails, an ErrorStorageFailure SHALL be raised
-			try {
-				this.storage.storeTransactionLog(resultOfUpdateTransaction, resultingTransactionLog.getLogTime(), resultingTransactionLog.getSignatureCounter(),
-						resultingTransactionLog.getTransactionNumber(), resultingTransactionLog.getOperationType(), resultingTransactionLog.getClientID());
-			} catch(Exception e) {
-				throw new ErrorStorageFailure(e.getMessage());
+		//4. the input data and the parts of the logmessage SHALL be stored. If this fails, an ErrorStorageFailure SHALL be raised
+				try {
+					this.storage.storeTransactionLog(resultingTransactionLog.getEncodedSegments(), resultingTransactionLog.getLogTime(), resultingTransactionLog.getSignatureCounter(),
+							resultingTransactionLog.getTransactionNumber(), resultingTransactionLog.getOperationType(), resultingTransactionLog.getClientID());
+				} catch(Exception e) {
+					throw new ErrorStorageFailure(e.getMessage());
+				}
+				isStored = true;
+			} finally {
+				//a log message that was signed but not stored must not keep the storage waiting for its signature counter
+				if(!isStored) {
+					this.securityModule.getCryptoCore().getSequencer().releaseReservationOfCurrentThread();
+				}
 			}
 			
 	//5. return the relevant data in the holder types
@@ -1181,33 +1335,43 @@ public class TSEController implements SEAPI {
 		
 	//1. the function SHALL invoke the functionality of the secure element to finish a transaction. If the execution of this fails, an ErrorFinishTransactionFailed
 			//SHALL be raised
-		byte[] resultOfFinishTransaction = null;
+		SignedTransactionLog resultOfFinishTransaction = null;
+		SignedTransactionLog resultingTransactionLog = null;
+		boolean isStored = false;
 		try {
-			resultOfFinishTransaction = this.securityModule.finishTransaction(clientId, transactionNumber, processData, processType, additionalData);
-		} catch(ErrorNoTransaction e) {
-			throw new ErrorNoTransaction();
-		} catch(ErrorSignatureCounterOverflow e) {
-			throw new ErrorSignatureCounterOverflow(e.getMessage(), e);
-		} catch(Exception e) {
-			throw new ErrorFinishTransactionFailed();
-		}
-		
-	//2. Next, the function SHALL retrieve the parts of the logmessage determined by the secure element.
-		//if the execution of this functionality fails, an ErrorRetrieveLogMessageFailed SHALL be raised.
-			if(resultOfFinishTransaction == null) {
-				throw new ErrorRetrieveLogMessageFailed();
-			}
-			//try to construct a TransactionLogMessage from the resultOfStartTransaction byte array
-			TransactionLogMessage resultingTransactionLog = (TransactionLogMessage) createCompleteLogMessageFromByteArray(resultOfFinishTransaction, (short) 1);
-			
-	//3. since only signed updates are supported: the parts of the logmessage SHALL be retrieved from the secure element and stored
-			//if this fails, an ErrorStorageFailure SHALL be raised
 			try {
-				this.storage.storeTransactionLog(resultOfFinishTransaction, resultingTransactionLog.getLogTime(), resultingTransactionLog.getSignatureCounter(),
-						resultingTransactionLog.getTransactionNumber(), resultingTransactionLog.getOperationType(), resultingTransactionLog.getClientID());
+				resultOfFinishTransaction = this.securityModule.finishTransaction(clientId, transactionNumber, processData, processType, additionalData);
+			} catch(ErrorNoTransaction e) {
+				throw new ErrorNoTransaction();
+			} catch(ErrorSignatureCounterOverflow e) {
+				throw new ErrorSignatureCounterOverflow(e.getMessage(), e);
 			} catch(Exception e) {
-				throw new ErrorStorageFailure(e.getMessage());
+				throw new ErrorFinishTransactionFailed();
 			}
+		
+		//2. Next, the function SHALL retrieve the parts of the logmessage determined by the secure element.
+			//if the execution of this functionality fails, an ErrorRetrieveLogMessageFailed SHALL be raised.
+				if(resultOfFinishTransaction == null) {
+					throw new ErrorRetrieveLogMessageFailed();
+				}
+				//the result carries the values of the log message, it does not have to be decoded
+				resultingTransactionLog = resultOfFinishTransaction;
+			
+		//3. since only signed updates are supported: the parts of the logmessage SHALL be retrieved from the secure element and stored
+				//if this fails, an ErrorStorageFailure SHALL be raised
+				try {
+					this.storage.storeTransactionLog(resultingTransactionLog.getEncodedSegments(), resultingTransactionLog.getLogTime(), resultingTransactionLog.getSignatureCounter(),
+							resultingTransactionLog.getTransactionNumber(), resultingTransactionLog.getOperationType(), resultingTransactionLog.getClientID());
+				} catch(Exception e) {
+					throw new ErrorStorageFailure(e.getMessage());
+				}
+				isStored = true;
+		} finally {
+			//a log message that was signed but not stored must not keep the storage waiting for its signature counter
+			if(!isStored) {
+				this.securityModule.getCryptoCore().getSequencer().releaseReservationOfCurrentThread();
+			}
+		}
 	//4. return the relevant data in the holder types
 			Instant logTimeFromTransactionLog = Instant.ofEpochSecond(resultingTransactionLog.getLogTime());
 			logTime.setValue(ZonedDateTime.ofInstant(logTimeFromTransactionLog, ZoneId.systemDefault()));
@@ -2299,7 +2463,7 @@ public class TSEController implements SEAPI {
 			if(resultOfAuthenticateUser == null) {
 				throw new ErrorRetrieveLogMessageFailed();
 			}
-			SystemLogMessage resultingSysLog = (SystemLogMessage) createCompleteLogMessageFromByteArray(resultOfAuthenticateUser, (short) 2);
+			SystemLogMessageView resultingSysLog = createSystemLogMessageView(resultOfAuthenticateUser);
 		//3a.b store the data of the SysLog. If that fails, ErrorStoragefailure SHALL be raised
 			try {
 				this.storage.storeSystemLog(resultOfAuthenticateUser, resultingSysLog.getLogTime(), resultingSysLog.getSignatureCounter(), resultingSysLog.getOperationType());
@@ -2340,7 +2504,7 @@ public class TSEController implements SEAPI {
 				throw new ErrorRetrieveLogMessageFailed();
 			}
 			//try to construct a SystemLogMessage from the resultOfUpdateTime byte array
-			SystemLogMessage resultingSysLog = (SystemLogMessage) createCompleteLogMessageFromByteArray(resultOfAuthenticateUser, (short) 2);
+			SystemLogMessageView resultingSysLog = createSystemLogMessageView(resultOfAuthenticateUser);
 		//3b.b store the data of the SysLog. If that fails, ErrorStoragefailure SHALL be raised
 			try {
 				this.storage.storeSystemLog(resultOfAuthenticateUser, resultingSysLog.getLogTime(), resultingSysLog.getSignatureCounter(), resultingSysLog.getOperationType());
@@ -2400,7 +2564,7 @@ public class TSEController implements SEAPI {
 				if(resultOfAuthenticateUser==null) {
 					throw new ErrorRetrieveLogMessageFailed();
 				}
-				SystemLogMessage resultingSysLog = (SystemLogMessage) createCompleteLogMessageFromByteArray(resultOfAuthenticateUser, (short) 2);
+				SystemLogMessageView resultingSysLog = createSystemLogMessageView(resultOfAuthenticateUser);
 				//4.a.c.d: store the log message on the normal storage
 				try {
 					this.storage.storeSystemLog(resultOfAuthenticateUser, resultingSysLog.getLogTime(), resultingSysLog.getSignatureCounter(), resultingSysLog.getOperationType());
@@ -2443,7 +2607,7 @@ public class TSEController implements SEAPI {
 				if(resultOfAuthenticateUser==null) {
 					throw new ErrorRetrieveLogMessageFailed();
 				}
-				SystemLogMessage resultingSysLog = (SystemLogMessage) createCompleteLogMessageFromByteArray(resultOfAuthenticateUser, (short) 2);
+				SystemLogMessageView resultingSysLog = createSystemLogMessageView(resultOfAuthenticateUser);
 				//5.a.c.d: store the log message on the normal storage
 				try {
 					this.storage.storeSystemLog(resultOfAuthenticateUser, resultingSysLog.getLogTime(), resultingSysLog.getSignatureCounter(), resultingSysLog.getOperationType());
@@ -2494,7 +2658,7 @@ public class TSEController implements SEAPI {
 		
 		//7. retrieve parts of the log message from SecureElement. 
 				//(if that fails, throw ErrorRetrieveLogmessageFailed)
-			SystemLogMessage resultingSysLog = (SystemLogMessage) createCompleteLogMessageFromByteArray(resultOfAuthenticateUser, (short) 2);
+			SystemLogMessageView resultingSysLog = createSystemLogMessageView(resultOfAuthenticateUser);
 		//8. store the log message on the normal storage
 				//(if that fails, throw errorStorageFailure)
 			try {
@@ -2544,7 +2708,7 @@ public class TSEController implements SEAPI {
 			throw new ErrorSigningSystemOperationDataFailed("Creating system log failed. Cause: value too big", e);
 		}
 		//5. retrieve log message from secure element. If that fails, raise ErrorRetrieveLogMessageFailed
-		SystemLogMessage resultingSysLog = (SystemLogMessage) createCompleteLogMessageFromByteArray(resultOfLogOut, (short) 2);
+		SystemLogMessageView resultingSysLog = createSystemLogMessageView(resultOfLogOut);
 		//6. store the system log in normal storage. If that fails, raise ErrorStorageFailure
 		try {
 			this.storage.storeSystemLog(resultOfLogOut, resultingSysLog.getLogTime(), resultingSysLog.getSignatureCounter(), resultingSysLog.getOperationType());
@@ -2619,7 +2783,7 @@ public class TSEController implements SEAPI {
 						}
 					}
 				//3.b.c: retrieve log message parts from secure element. If that fails, raise ErrorRetrieveLogMessageFailed:
-				SystemLogMessage resultingSysLog = (SystemLogMessage) createCompleteLogMessageFromByteArray(resultOfUnblockUser, (short) 2);
+				SystemLogMessageView resultingSysLog = createSystemLogMessageView(resultOfUnblockUser);
 				//3.b.d:. store the system log in normal storage. If that fails, raise ErrorStorageFailure
 				try {
 					this.storage.storeSystemLog(resultOfUnblockUser, resultingSysLog.getLogTime(), resultingSysLog.getSignatureCounter(), resultingSysLog.getOperationType());
@@ -2660,7 +2824,7 @@ public class TSEController implements SEAPI {
 					throw new ErrorSigningSystemOperationDataFailed("Creating system log failed. Cause: value too big", e);
 				}
 				//4.a.b.b: retrieve log message
-				SystemLogMessage resultingSysLog = (SystemLogMessage) createCompleteLogMessageFromByteArray(resultOfUnblockUser, (short) 2);
+				SystemLogMessageView resultingSysLog = createSystemLogMessageView(resultOfUnblockUser);
 				//4.a.b.c: store the log message on the normal storage
 				try {
 					this.storage.storeSystemLog(resultOfUnblockUser, resultingSysLog.getLogTime(), resultingSysLog.getSignatureCounter(), resultingSysLog.getOperationType());
@@ -2696,7 +2860,7 @@ public class TSEController implements SEAPI {
 					throw new ErrorSigningSystemOperationDataFailed("Creating system log failed. Cause: value too big", e);
 				}
 				//5.a.b.b: retrieve log message
-				SystemLogMessage resultingSysLog = (SystemLogMessage) createCompleteLogMessageFromByteArray(resultOfUnblockUser, (short) 2);
+				SystemLogMessageView resultingSysLog = createSystemLogMessageView(resultOfUnblockUser);
 				//5.a.b.c: store the log message on the normal storage
 				try {
 					this.storage.storeSystemLog(resultOfUnblockUser, resultingSysLog.getLogTime(), resultingSysLog.getSignatureCounter(), resultingSysLog.getOperationType());
@@ -2726,7 +2890,7 @@ public class TSEController implements SEAPI {
 						throw new ErrorSigningSystemOperationDataFailed("Creating system log failed. Cause: value too big", e);
 					}
 					//retrieve the log message:
-					SystemLogMessage resultingSysLog = (SystemLogMessage) createCompleteLogMessageFromByteArray(resultOfUnblockUser, (short) 2);
+					SystemLogMessageView resultingSysLog = createSystemLogMessageView(resultOfUnblockUser);
 					//store syslog in storage
 					try {
 						this.storage.storeSystemLog(resultOfUnblockUser, resultingSysLog.getLogTime(), resultingSysLog.getSignatureCounter(), resultingSysLog.getOperationType());
@@ -2755,7 +2919,7 @@ public class TSEController implements SEAPI {
 					throw new ErrorSigningSystemOperationDataFailed("Creating system log failed. Cause: value too big", e);
 				}
 				//6.b.c: retrieve the log message:
-				SystemLogMessage resultingSysLog = (SystemLogMessage) createCompleteLogMessageFromByteArray(resultOfUnblockUser, (short) 2);
+				SystemLogMessageView resultingSysLog = createSystemLogMessageView(resultOfUnblockUser);
 				//6.b.d: store syslog in storage
 				try {
 					this.storage.storeSystemLog(resultOfUnblockUser, resultingSysLog.getLogTime(), resultingSysLog.getSignatureCounter(), resultingSysLog.getOperationType());
@@ -2779,7 +2943,7 @@ public class TSEController implements SEAPI {
 			throw new ErrorSigningSystemOperationDataFailed("Creating system log failed. Cause: value too big", e);
 		}
 		//9. retrieve the log message from secure element
-		SystemLogMessage resultingSysLog = (SystemLogMessage) createCompleteLogMessageFromByteArray(resultOfUnblockUser, (short) 2);
+		SystemLogMessageView resultingSysLog = createSystemLogMessageView(resultOfUnblockUser);
 		//10. store the data on normal storage
 		try {
 			this.storage.storeSystemLog(resultOfUnblockUser, resultingSysLog.getLogTime(), resultingSysLog.getSignatureCounter(), resultingSysLog.getOperationType());
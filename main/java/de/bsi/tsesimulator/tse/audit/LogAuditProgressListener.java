@@ -0,0 +1,22 @@
+/**
+ *
+ */
+package main.java.de.bsi.tsesimulator.tse.audit;
+
+/**
+ * Can be passed to {@linkplain LogAuditor#audit(LogAuditProgressListener)} to be informed about the progress of a bulk audit.
+ * The method is called from the thread that started the audit after each chunk of log message files has been verified.
+ *
+ * @since 1.6
+ */
+public interface LogAuditProgressListener {
+
+	/**
+	 * Called after a chunk of log message files has been verified.
+	 * @param filesProcessed the number of log message files processed so far.
+	 * @param filesVerified the number of log message files whose signature could be verified so far.
+	 * @param filesFailed the number of log message files that could not be verified so far.
+	 * @since 1.6
+	 */
+	public void progress(long filesProcessed, long filesVerified, long filesFailed);
+}
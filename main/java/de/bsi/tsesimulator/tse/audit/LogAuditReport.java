@@ -0,0 +1,108 @@
+/**
+ *
+ */
+package main.java.de.bsi.tsesimulator.tse.audit;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The summary of a bulk audit performed by {@linkplain LogAuditor}. Contains the number of verified and failed log message files, the names of the
+ * failed files and the throughput of the audit. Objects of this class are immutable.
+ *
+ * @since 1.6
+ */
+public class LogAuditReport {
+
+	private final long filesVerified;
+	private final long filesFailed;
+	private final List<String> failedFileNames;
+	private final long durationInNanoseconds;
+	private final boolean wasCancelled;
+
+	/**
+	 * Creates the report. Only used by {@linkplain LogAuditor}.
+	 * @param filesVerified number of log message files whose signature could be verified.
+	 * @param filesFailed number of log message files that could not be verified.
+	 * @param failedFileNames the names of the files that could not be verified.
+	 * @param durationInNanoseconds the time the audit took.
+	 * @param wasCancelled true, if the audit was cancelled before all files were processed.
+	 */
+	LogAuditReport(long filesVerified, long filesFailed, List<String> failedFileNames, long durationInNanoseconds, boolean wasCancelled) {
+		this.filesVerified = filesVerified;
+		this.filesFailed = filesFailed;
+		this.failedFileNames = Collections.unmodifiableList(failedFileNames);
+		this.durationInNanoseconds = durationInNanoseconds;
+		this.wasCancelled = wasCancelled;
+	}
+
+	/**
+	 * @return the number of log message files whose signature could be verified.
+	 */
+	public long getFilesVerified() {
+		return filesVerified;
+	}
+
+	/**
+	 * @return the number of log message files that could not be verified. This includes files that could not be read or parsed.
+	 */
+	public long getFilesFailed() {
+		return filesFailed;
+	}
+
+	/**
+	 * @return the number of log message files that were processed.
+	 */
+	public long getFilesProcessed() {
+		return filesVerified + filesFailed;
+	}
+
+	/**
+	 * @return an unmodifiable list of the names of all files that could not be verified.
+	 */
+	public List<String> getFailedFileNames() {
+		return failedFileNames;
+	}
+
+	/**
+	 * @return the time the audit took in nanoseconds.
+	 */
+	public long getDurationInNanoseconds() {
+		return durationInNanoseconds;
+	}
+
+	/**
+	 * @return the number of processed log message files per second.
+	 */
+	public double getFilesPerSecond() {
+		if(durationInNanoseconds <= 0) {
+			return 0;
+		}
+		return getFilesProcessed() / (durationInNanoseconds / 1_000_000_000.0);
+	}
+
+	/**
+	 * @return true, if the audit was cancelled through {@linkplain LogAuditor#cancel()} before all files were processed.
+	 */
+	public boolean wasCancelled() {
+		return wasCancelled;
+	}
+
+	/**
+	 * Creates a human readable summary of the audit.
+	 * @return the summary, with the names of the failed files in the following lines.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder reportBuilder = new StringBuilder("Log audit ");
+		reportBuilder.append(wasCancelled ? "CANCELLED" : "finished");
+		reportBuilder.append(": processed ").append(getFilesProcessed());
+		reportBuilder.append(", verified ").append(filesVerified);
+		reportBuilder.append(", failed ").append(filesFailed);
+		reportBuilder.append(String.format(" in %.3f s (%.1f files/s)", durationInNanoseconds / 1_000_000_000.0, getFilesPerSecond()));
+		for(String failedFileName : failedFileNames) {
+			reportBuilder.append("\nFAILED: ").append(failedFileName);
+		}
+		return reportBuilder.toString();
+	}
+}
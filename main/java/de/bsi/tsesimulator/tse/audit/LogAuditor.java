@@ -0,0 +1,251 @@
+/**
+ *
+ */
+package main.java.de.bsi.tsesimulator.tse.audit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import main.java.de.bsi.tsesimulator.exceptions.VerifyingOperationFailedException;
+import main.java.de.bsi.tsesimulator.preferences.PropertyValues;
+import main.java.de.bsi.tsesimulator.tlv.TLVObject;
+import main.java.de.bsi.tsesimulator.tse.CryptoCore;
+import main.java.de.bsi.tsesimulator.tse.storage.SegmentReader;
+
+/**
+ * Verifies the signatures of all log message files in a storage directory in parallel. Log messages that are stored in segments are verified as well.<br>
+ * The directory is read as a stream, so the file names are never all held in memory at once. They are collected in chunks of {@linkplain #CHUNK_SIZE}
+ * files, and every chunk is verified on a {@linkplain ForkJoinPool} with one thread per available processor. The records of the segments are read
+ * with a {@linkplain SegmentReader} and collected in chunks in the same way. Each single log message is read and verified with
+ * {@linkplain TLVObject#verifyTransactionOrSystemLog(byte[], CryptoCore)}. A log message that can not be read or parsed counts as failed.<br>
+ * After each chunk, an optional {@linkplain LogAuditProgressListener} is informed. {@linkplain #cancel()} stops the audit after the files currently being
+ * verified. Either way, the result is a {@linkplain LogAuditReport}.<br>
+ * <br>
+ * The same rules as for {@linkplain TLVObject#verifyTransactionOrSystemLog(java.io.File, CryptoCore)} apply: the CryptoCore has to use the same algorithm,
+ * curve and keys that were used to sign the log messages.
+ *
+ * @since 1.6
+ */
+public class LogAuditor {
+
+	/**
+	 * Number of file names read from the directory before they are verified in parallel.
+	 */
+	public static final int CHUNK_SIZE = 4096;
+
+	/**
+	 * A task verifies its files itself if it got at most this many, otherwise it splits them in half.
+	 */
+	private static final int FILES_PER_TASK = 32;
+
+	private final Path storageDirectory;
+	private final CryptoCore cryptoCore;
+	private final int parallelism;
+
+	private volatile boolean isCancelled = false;
+
+	/**
+	 * Creates a LogAuditor for the storage directory configured as <i>storageDir</i> in config.properties. It uses as many threads as processors are available.
+	 * @param cryptoCore the CryptoCore used for verifying the signatures.
+	 * @throws IOException if {@linkplain PropertyValues#getInstance()} throws it
+	 * @since 1.6
+	 */
+	public LogAuditor(CryptoCore cryptoCore) throws IOException {
+		this(Paths.get(PropertyValues.getInstance().getPathToNormalStorage()), cryptoCore, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a LogAuditor for an arbitrary directory.
+	 * @param storageDirectory the directory containing the log message files.
+	 * @param cryptoCore the CryptoCore used for verifying the signatures.
+	 * @param parallelism the number of threads verifying signatures. Values smaller than 1 are replaced by 1.
+	 * @since 1.6
+	 */
+	public LogAuditor(Path storageDirectory, CryptoCore cryptoCore, int parallelism) {
+		this.storageDirectory = storageDirectory;
+		this.cryptoCore = cryptoCore;
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Requests the cancellation of a running audit. Files that are currently being verified are finished, no further files are started.
+	 * The report returned by {@linkplain #audit(LogAuditProgressListener)} is marked as cancelled.
+	 * @since 1.6
+	 */
+	public void cancel() {
+		isCancelled = true;
+	}
+
+	/**
+	 * Verifies all files ending with <i>.log</i> in the storage directory and the log messages in its segments and returns the summary. The segments
+	 * are written in the storage mode <i>segments</i>, see {@linkplain main.java.de.bsi.tsesimulator.constants.ConfigConstants#CFG_TAG_STORAGE_MODE}.
+	 * Their records are read with a {@linkplain SegmentReader}, a segment that can not be opened counts as one failed log message with the name of the
+	 * segment.
+	 * @param progressListener is informed after each chunk of files. May be null.
+	 * @return the report of the audit
+	 * @throws IOException if the storage directory or a segment can not be read.
+	 * @since 1.6
+	 */
+	public LogAuditReport audit(LogAuditProgressListener progressListener) throws IOException {
+		isCancelled = false;
+		AtomicLong verified = new AtomicLong(0);
+		AtomicLong failed = new AtomicLong(0);
+		ConcurrentLinkedQueue<String> failedFileNames = new ConcurrentLinkedQueue<String>();
+
+		long startTime = System.nanoTime();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<AuditedLog> chunk = new ArrayList<AuditedLog>(CHUNK_SIZE);
+
+			//1. the log messages in files of their own
+			try(DirectoryStream<Path> logFiles = Files.newDirectoryStream(storageDirectory, "*.log")) {
+				Iterator<Path> logFileIterator = logFiles.iterator();
+				while(logFileIterator.hasNext() && !isCancelled) {
+					//collect the next chunk of file names from the directory stream
+					chunk.clear();
+					while(logFileIterator.hasNext() && (chunk.size() < CHUNK_SIZE)) {
+						Path logFile = logFileIterator.next();
+						if(Files.isRegularFile(logFile)) {
+							chunk.add(new AuditedLog(logFile));
+						}
+					}
+					verifyChunk(pool, chunk, verified, failed, failedFileNames, progressListener);
+				}
+			}
+
+			//2. the log messages in the segments, the records of a segment are collected in chunks as well
+			for(File segment : SegmentReader.listSegments(storageDirectory.toFile())) {
+				if(isCancelled) {
+					break;
+				}
+				SegmentReader reader;
+				try {
+					reader = new SegmentReader(segment);
+				} catch (IOException e) {
+					failed.incrementAndGet();
+					failedFileNames.add(segment.getName());
+					continue;
+				}
+				try {
+					boolean hasNext = reader.next();
+					while(hasNext && !isCancelled) {
+						chunk.clear();
+						while(hasNext && (chunk.size() < CHUNK_SIZE)) {
+							chunk.add(new AuditedLog(segment, reader.getPosition(), reader.getFileName()));
+							hasNext = reader.next();
+						}
+						verifyChunk(pool, chunk, verified, failed, failedFileNames, progressListener);
+					}
+				} finally {
+					reader.close();
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		long duration = System.nanoTime() - startTime;
+
+		return new LogAuditReport(verified.get(), failed.get(), new ArrayList<String>(failedFileNames), duration, isCancelled);
+	}
+
+	/**
+	 * Verifies a chunk in parallel, waits for it to be finished and informs the progress listener.
+	 */
+	private void verifyChunk(ForkJoinPool pool, List<AuditedLog> chunk, AtomicLong verified, AtomicLong failed,
+			ConcurrentLinkedQueue<String> failedFileNames, LogAuditProgressListener progressListener) {
+		pool.invoke(new VerifyTask(chunk, 0, chunk.size(), verified, failed, failedFileNames));
+
+		if(progressListener != null) {
+			progressListener.progress(verified.get() + failed.get(), verified.get(), failed.get());
+		}
+	}
+
+	/**
+	 * A log message that is audited, either a file of its own or a record in a segment.
+	 */
+	private static final class AuditedLog {
+		private final Path logFile;			//null for a record in a segment
+		private final File segment;
+		private final long recordPosition;
+		private final String fileName;
+
+		AuditedLog(Path logFile) {
+			this.logFile = logFile;
+			this.segment = null;
+			this.recordPosition = -1;
+			this.fileName = logFile.getFileName().toString();
+		}
+
+		AuditedLog(File segment, long recordPosition, String fileName) {
+			this.logFile = null;
+			this.segment = segment;
+			this.recordPosition = recordPosition;
+			this.fileName = fileName;
+		}
+
+		byte[] read() throws IOException {
+			return (logFile != null) ? Files.readAllBytes(logFile) : SegmentReader.readLogMessage(segment, recordPosition);
+		}
+	}
+
+	/**
+	 * Verifies the log messages of a part of a chunk. Splits itself in half until at most {@linkplain LogAuditor#FILES_PER_TASK} log messages are left.
+	 */
+	private class VerifyTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<AuditedLog> chunk;
+		private final int from;			//inclusive
+		private final int to;			//exclusive
+		private final AtomicLong verified;
+		private final AtomicLong failed;
+		private final ConcurrentLinkedQueue<String> failedFileNames;
+
+		VerifyTask(List<AuditedLog> chunk, int from, int to, AtomicLong verified, AtomicLong failed, ConcurrentLinkedQueue<String> failedFileNames) {
+			this.chunk = chunk;
+			this.from = from;
+			this.to = to;
+			this.verified = verified;
+			this.failed = failed;
+			this.failedFileNames = failedFileNames;
+		}
+
+		@Override
+		protected void compute() {
+			if((to - from) > FILES_PER_TASK) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new VerifyTask(chunk, from, middle, verified, failed, failedFileNames),
+						new VerifyTask(chunk, middle, to, verified, failed, failedFileNames));
+				return;
+			}
+			for(int i = from; (i < to) && !isCancelled; i++) {
+				AuditedLog log = chunk.get(i);
+				boolean isVerified;
+				try {
+					isVerified = TLVObject.verifyTransactionOrSystemLog(log.read(), cryptoCore);
+				} catch (IOException | VerifyingOperationFailedException | RuntimeException e) {
+					//a file that can not be read or parsed is just as bad as a file with a wrong signature
+					isVerified = false;
+				}
+				if(isVerified) {
+					verified.incrementAndGet();
+				}
+				else {
+					failed.incrementAndGet();
+					failedFileNames.add(log.fileName);
+				}
+			}
+		}
+	}
+}
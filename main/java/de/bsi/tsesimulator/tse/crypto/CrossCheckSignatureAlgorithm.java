@@ -0,0 +1,109 @@
+/**
+ *
+ */
+package main.java.de.bsi.tsesimulator.tse.crypto;
+
+import org.bouncycastle.jce.interfaces.ECPublicKey;
+
+import main.java.de.bsi.tsesimulator.exceptions.ECCException;
+import main.java.de.bsi.tsesimulator.exceptions.TR_03111_ECC_V2_1_Exception;
+import main.java.de.bsi.tsesimulator.tse.CryptoCore;
+
+/**
+ * Runs two implementations of the same signature algorithm side by side and makes each one check the other. Meant for conformance runs, not for speed.<br>
+ * Signing: both implementations sign the message, the signature of the reference implementation is verified by the other implementation and vice versa.
+ * If one of the checks fails, signing fails. The signature of the reference implementation is returned.<br>
+ * Verifying: both implementations verify the signature. If they come to different results, verifying fails.<br>
+ * <br>
+ * Used by {@linkplain CryptoCore} if <i>signatureEngine</i> is set to <i>crossCheck</i> in config.properties.
+ * @see {@linkplain ECDSA}, {@linkplain JcaECDSA}
+ * @since 1.6
+ */
+public class CrossCheckSignatureAlgorithm extends SignatureAlgorithm {
+
+	private final SignatureAlgorithm reference;			//the hand-written implementation of BSI TR-03111
+	private final SignatureAlgorithm other;				//the implementation that is checked against the reference
+
+	/**
+	 * Creates a CrossCheckSignatureAlgorithm. Both implementations have to use the same keys, curve and hash function.
+	 * @param reference the reference implementation. Its signatures, public key and algorithm definition are used.
+	 * @param other the implementation that is checked against the reference.
+	 * @since 1.6
+	 */
+	public CrossCheckSignatureAlgorithm(SignatureAlgorithm reference, SignatureAlgorithm other) {
+		this.reference = reference;
+		this.other = other;
+	}
+
+	/**
+	 * Signs the message with both implementations and lets each verify the signature of the other one.
+	 * @param message the value that shall be signed
+	 * @return the signature created by the reference implementation
+	 * @throws TR_03111_ECC_V2_1_Exception if one of the implementations fails or the signature of one implementation can not be verified by the other one.
+	 * @since 1.6
+	 */
+	@Override
+	public byte[] sign(byte[] message) throws TR_03111_ECC_V2_1_Exception {
+		byte[] referenceSignature = reference.sign(message);
+		byte[] otherSignature = other.sign(message);
+
+		try {
+			if(!other.verify(referenceSignature, message)) {
+				throw new TR_03111_ECC_V2_1_Exception("Cross-check failed: the signature of the reference implementation could not be verified by "
+						+other.getClass().getSimpleName() +".");
+			}
+			if(!reference.verify(otherSignature, message)) {
+				throw new TR_03111_ECC_V2_1_Exception("Cross-check failed: the signature of " +other.getClass().getSimpleName()
+						+" could not be verified by the reference implementation.");
+			}
+		} catch (ECCException e) {
+			throw new TR_03111_ECC_V2_1_Exception("Cross-check failed: " +e.getMessage(), e);
+		}
+		return referenceSignature;
+	}
+
+	/**
+	 * Verifies the signature with both implementations.
+	 * @param signature the signature that shall be verified
+	 * @param message the value that has been signed
+	 * @return the result both implementations agree on
+	 * @throws ECCException if the implementations come to different results or one of them fails.
+	 * @throws TR_03111_ECC_V2_1_Exception if the reference implementation throws it
+	 * @since 1.6
+	 */
+	@Override
+	public boolean verify(byte[] signature, byte[] message) throws ECCException, TR_03111_ECC_V2_1_Exception {
+		boolean isVerifiedByReference = reference.verify(signature, message);
+		boolean isVerifiedByOther = other.verify(signature, message);
+
+		if(isVerifiedByReference != isVerifiedByOther) {
+			throw new ECCException("Cross-check failed: the reference implementation says " +isVerifiedByReference +", "
+					+other.getClass().getSimpleName() +" says " +isVerifiedByOther +".");
+		}
+		return isVerifiedByReference;
+	}
+
+	/**
+	 * @return the public key of the reference implementation
+	 */
+	@Override
+	public ECPublicKey getPublicKey() {
+		return reference.getPublicKey();
+	}
+
+	/**
+	 * @return the algorithm definition of the reference implementation
+	 */
+	@Override
+	public String getAlgorithmDefinition() {
+		return reference.getAlgorithmDefinition();
+	}
+
+	/**
+	 * @return the {@linkplain NoncePool} of the reference implementation or null, if it does not use one.
+	 */
+	@Override
+	public NoncePool getNoncePool() {
+		return reference.getNoncePool();
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ *
+ */
+package main.java.de.bsi.tsesimulator.tse.crypto;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+/**
+ * Holds the hash function and random number generator instances used by one thread in the crypto path of the simulator.<br>
+ * The BouncyCastle provider is resolved exactly once for the whole simulator. Every thread then gets its own CryptoContext through {@linkplain #get()}.
+ * A CryptoContext creates each {@linkplain MessageDigest} only once and resets it before handing it out again, and it owns a single {@linkplain SecureRandom}.
+ * This way, signing and hashing do neither look up providers nor create new random number generators. It also owns a byte array the signature
+ * algorithms encode points into before hashing them ({@linkplain #getEncodingBuffer(int)}).<br>
+ * <br>
+ * A CryptoContext must not be passed to other threads. A digest obtained by {@linkplain #getDigest(String)} has to be completely used (up to
+ * {@linkplain MessageDigest#digest()}) before the same thread asks for the same digest again.
+ *
+ * @see {@linkplain ECDSA}, {@linkplain ECSDSA}, {@linkplain main.java.de.bsi.tsesimulator.tse.CryptoCore#hashByteArray(byte[])}
+ * @since 1.6
+ */
+public final class CryptoContext {
+
+	private static final Provider BOUNCY_CASTLE_PROVIDER = resolveProvider();
+
+	private static final ThreadLocal<CryptoContext> CONTEXT_OF_THREAD = new ThreadLocal<CryptoContext>() {
+		@Override
+		protected CryptoContext initialValue() {
+			return new CryptoContext();
+		}
+	};
+
+	private final Map<String, MessageDigest> digests = new HashMap<String, MessageDigest>();	//stores one digest per hash function name
+	private final SecureRandom random = new SecureRandom();
+	private byte[] encodingBuffer = new byte[0];											//grows to the biggest length requested by the thread
+
+	/**
+	 * Only {@linkplain #get()} shall create CryptoContext objects.
+	 */
+	private CryptoContext() {}
+
+	/**
+	 * Fetches the CryptoContext of the calling thread and creates it, if the thread did not use one before.
+	 * @return the CryptoContext of the calling thread
+	 * @since 1.6
+	 */
+	public static CryptoContext get() {
+		return CONTEXT_OF_THREAD.get();
+	}
+
+	/**
+	 * Fetches the BouncyCastle provider used by the simulator. It is registered at the {@linkplain Security} class if that has not happened before.
+	 * @return the BouncyCastle provider
+	 * @since 1.6
+	 */
+	public static Provider getProvider() {
+		return BOUNCY_CASTLE_PROVIDER;
+	}
+
+	/**
+	 * Fetches the BouncyCastle implementation of the hash function with the given name. The first call for a name creates the digest, every following
+	 * call of the same thread returns the same, freshly reset digest.
+	 * @param hashFunction the name of the hash function as BouncyCastle knows it, e.g. "SHA512" or "SHA3-512"
+	 * @return a reset MessageDigest that belongs to the calling thread
+	 * @throws NoSuchAlgorithmException if BouncyCastle does not provide the hash function
+	 * @since 1.6
+	 */
+	public MessageDigest getDigest(String hashFunction) throws NoSuchAlgorithmException {
+		MessageDigest md = digests.get(hashFunction);
+		if(md == null) {
+			md = MessageDigest.getInstance(hashFunction, BOUNCY_CASTLE_PROVIDER);
+			digests.put(hashFunction, md);
+		}
+		else {
+			md.reset();
+		}
+		return md;
+	}
+
+	/**
+	 * Fetches the random number generator of the calling thread.
+	 * @return the SecureRandom that belongs to the calling thread
+	 * @since 1.6
+	 */
+	public SecureRandom getRandom() {
+		return random;
+	}
+
+	/**
+	 * Fetches a byte array of the calling thread that is at least minimumLength bytes long. The array is reused by every following call of the same thread,
+	 * so its content has to be used before the thread asks for it again. Its content is not cleared.
+	 * @param minimumLength the number of bytes the caller needs
+	 * @return a byte array that belongs to the calling thread
+	 * @since 1.6
+	 */
+	public byte[] getEncodingBuffer(int minimumLength) {
+		if(encodingBuffer.length < minimumLength) {
+			encodingBuffer = new byte[minimumLength];
+		}
+		return encodingBuffer;
+	}
+
+	/**
+	 * Looks the BouncyCastle provider up once. If it is not registered yet, a new one is created and registered.
+	 * @return the BouncyCastle provider
+	 */
+	private static Provider resolveProvider() {
+		Provider provider = Security.getProvider(BouncyCastleProvider.PROVIDER_NAME);
+		if(provider == null) {
+			provider = new BouncyCastleProvider();
+			Security.addProvider(provider);
+		}
+		return provider;
+	}
+}
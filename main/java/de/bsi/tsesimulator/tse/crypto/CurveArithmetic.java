@@ -0,0 +1,84 @@
+/**
+ *
+ */
+package main.java.de.bsi.tsesimulator.tse.crypto;
+
+import java.io.IOException;
+
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.crypto.ec.CustomNamedCurves;
+import org.bouncycastle.jce.spec.ECNamedCurveParameterSpec;
+import org.bouncycastle.jce.spec.ECParameterSpec;
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECPoint;
+
+import main.java.de.bsi.tsesimulator.constants.ConfigConstants;
+import main.java.de.bsi.tsesimulator.preferences.PropertyValues;
+
+/**
+ * Chooses the fastest available point arithmetic for the configured curve.<br>
+ * <ul>
+ * <li>secp256r1 and secp384r1: BouncyCastle ships specialized classes for these curves (SecP256R1Curve, SecP384R1Curve). They are used.</li>
+ * <li>brainpoolP256r1, brainpoolP384r1 and brainpoolP512r1: BouncyCastle only has the generic BigInteger arithmetic for these curves. They are replaced by
+ * a {@linkplain MontgomeryFpCurve}.</li>
+ * </ul>
+ * The result is only meant for the point multiplications of the signature algorithms. Keys are still loaded with the specification from
+ * {@linkplain org.bouncycastle.jce.ECNamedCurveTable}, so that their encoding does not change. Points of the keys are moved onto the specialized curve
+ * with {@linkplain ECCurve#importPoint(ECPoint)}.<br>
+ * The generic arithmetic can be chosen by setting <i>curveArithmetic</i> to <i>generic</i> in config.properties.
+ *
+ * @since 1.6
+ */
+public final class CurveArithmetic {
+
+	/**
+	 * The class only provides static methods.
+	 */
+	private CurveArithmetic() {}
+
+	/**
+	 * Chooses the arithmetic as configured by <i>curveArithmetic</i> in config.properties. If that entry is missing, the specialized arithmetic is used.
+	 * @param standardSpec the specification of the curve as returned by {@linkplain org.bouncycastle.jce.ECNamedCurveTable#getParameterSpec(String)}
+	 * @return a specification with the same domain parameters, possibly on a faster curve implementation
+	 * @throws IOException if {@linkplain PropertyValues#getInstance()} throws it
+	 * @since 1.6
+	 */
+	public static ECParameterSpec select(ECParameterSpec standardSpec) throws IOException {
+		String configValue = PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_CURVE_ARITHMETIC);
+		boolean useSpecialized = (configValue == null) || !configValue.trim().equalsIgnoreCase(ConfigConstants.CFG_ENTRY_CURVE_ARITHMETIC_GENERIC);
+		return select(standardSpec, useSpecialized);
+	}
+
+	/**
+	 * Chooses the arithmetic for the curve.
+	 * @param standardSpec the specification of the curve as returned by {@linkplain org.bouncycastle.jce.ECNamedCurveTable#getParameterSpec(String)}
+	 * @param useSpecialized if false, standardSpec is returned unchanged
+	 * @return a specification with the same domain parameters, possibly on a faster curve implementation
+	 * @since 1.6
+	 */
+	public static ECParameterSpec select(ECParameterSpec standardSpec, boolean useSpecialized) {
+		ECCurve standardCurve = standardSpec.getCurve();
+		//only the generic prime curve is replaced, every other implementation is already specialized
+		if(!useSpecialized || !(standardCurve instanceof ECCurve.Fp)) {
+			return standardSpec;
+		}
+
+		//1. prefer the specialized classes of BouncyCastle
+		ECCurve specializedCurve = null;
+		if(standardSpec instanceof ECNamedCurveParameterSpec) {
+			X9ECParameters customParameters = CustomNamedCurves.getByName(((ECNamedCurveParameterSpec) standardSpec).getName());
+			if(customParameters != null) {
+				specializedCurve = customParameters.getCurve();
+			}
+		}
+		//2. otherwise use the Montgomery arithmetic
+		if(specializedCurve == null) {
+			ECCurve.Fp genericCurve = (ECCurve.Fp) standardCurve;
+			specializedCurve = new MontgomeryFpCurve(genericCurve.getQ(), genericCurve.getA().toBigInteger(), genericCurve.getB().toBigInteger(),
+					standardSpec.getN(), standardSpec.getH());
+		}
+
+		ECPoint generatorG = specializedCurve.importPoint(standardSpec.getG());
+		return new ECParameterSpec(specializedCurve, generatorG, standardSpec.getN(), standardSpec.getH(), standardSpec.getSeed());
+	}
+}
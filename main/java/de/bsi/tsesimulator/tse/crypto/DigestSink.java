@@ -0,0 +1,38 @@
+/**
+ * 
+ */
+package main.java.de.bsi.tsesimulator.tse.crypto;
+
+/**
+ * Receives the bytes of a message that is signed. A {@linkplain SignatureAlgorithm} hands a DigestSink to the {@linkplain SignatureInput} it signs, 
+ * usually one that feeds the bytes straight into the hash function of the algorithm. This way the message does not have to be put together in one
+ * byte array before it is signed.
+ * 
+ * @see {@linkplain SignatureAlgorithm#sign(SignatureInput)}
+ * @since 1.6
+ */
+public interface DigestSink {
+
+	/**
+	 * Takes a single byte of the message.
+	 * @param input the next byte of the message
+	 * @since 1.6
+	 */
+	public void update(byte input);
+	
+	/**
+	 * Takes a whole byte array as the next part of the message.
+	 * @param input the next bytes of the message
+	 * @since 1.6
+	 */
+	public void update(byte[] input);
+	
+	/**
+	 * Takes a part of a byte array as the next part of the message.
+	 * @param input the array containing the next bytes of the message
+	 * @param offset the position of the first byte in input
+	 * @param length the number of bytes
+	 * @since 1.6
+	 */
+	public void update(byte[] input, int offset, int length);
+}
@@ -0,0 +1,57 @@
+/**
+ *
+ */
+package main.java.de.bsi.tsesimulator.tse.crypto;
+
+import java.math.BigInteger;
+
+import org.bouncycastle.math.ec.ECAlgorithms;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.WNafUtil;
+
+/**
+ * Calculates u1*G + u2*Pa for the base point G of a curve and the public point Pa of a {@linkplain SignatureAlgorithm}, as it is needed in every signature
+ * verification.<br>
+ * Instead of two independent scalar multiplications that are normalized and added afterwards, both multiplications are interleaved (Shamir's trick
+ * in the variant of Straus): u1 and u2 are recoded to width-w NAFs and a single chain of point doublings is shared by both scalars.
+ * The tables of odd multiples {P, 3P, 5P, ...} (and their negations) of G and Pa are precomputed once when the object is created. BouncyCastle stores them
+ * inside the points themselves, so every verification reuses them as long as the same point objects are used.<br>
+ * Objects of this class may be used by several threads at once.
+ *
+ * @see {@linkplain ECDSA#verify(byte[], byte[])}, {@linkplain ECSDSA#verify(byte[], byte[])}
+ * @since 1.6
+ */
+public class DoubleBaseMultiplier {
+
+	private final ECPoint generatorG;			//the normalized base point G
+	private final ECPoint publicPoint;			//the normalized public point Pa
+
+	/**
+	 * Creates a DoubleBaseMultiplier and precomputes the tables of odd multiples of G and Pa.
+	 * @param generatorG the base point G of the curve.
+	 * @param publicPoint the public point Pa of the key pair.
+	 * @param bitLengthOfN the bit length tau of the order n of G. Determines the window width of the tables.
+	 * @since 1.6
+	 */
+	public DoubleBaseMultiplier(ECPoint generatorG, ECPoint publicPoint, int bitLengthOfN) {
+		this.generatorG = generatorG.normalize();
+		this.publicPoint = publicPoint.normalize();
+
+		//the scalars u1 and u2 are always reduced mod n, so the window width for scalars of tau bits is sufficient for every verification
+		int windowWidth = WNafUtil.getWindowSize(bitLengthOfN);
+		WNafUtil.precompute(this.generatorG, windowWidth, true);
+		WNafUtil.precompute(this.publicPoint, windowWidth, true);
+	}
+
+	/**
+	 * Calculates Q = u1*G + u2*Pa with one interleaved double-scalar multiplication and normalizes Q.
+	 * @param u1 the scalar G is multiplied with. Has to be out of {0, ... , n-1}.
+	 * @param u2 the scalar Pa is multiplied with. Has to be out of {0, ... , n-1}.
+	 * @return the normalized point Q. May be the point at infinity.
+	 * @since 1.6
+	 */
+	public ECPoint multiplyAndAdd(BigInteger u1, BigInteger u2) {
+		ECPoint Q = ECAlgorithms.sumOfTwoMultiplies(generatorG, u1, publicPoint, u2);
+		return Q.normalize();
+	}
+}
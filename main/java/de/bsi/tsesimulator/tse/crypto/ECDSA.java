@@ -3,42 +3,25 @@
  */
 package main.java.de.bsi.tsesimulator.tse.crypto;
 
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.math.BigInteger;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.security.SecureRandom;
-import java.security.Security;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.PKCS8EncodedKeySpec;
 
 import org.bouncycastle.jce.ECNamedCurveTable;
 import org.bouncycastle.jce.interfaces.ECPrivateKey;
 import org.bouncycastle.jce.interfaces.ECPublicKey;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.jce.spec.ECParameterSpec;
 import org.bouncycastle.math.ec.ECPoint;
 
-import org.bouncycastle.openssl.PEMKeyPair;
-import org.bouncycastle.openssl.PEMParser;
-import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
-
 import main.java.de.bsi.tsesimulator.constants.ConfigConstants;
 import main.java.de.bsi.tsesimulator.exceptions.ECCException;
-import main.java.de.bsi.tsesimulator.exceptions.LoadingFailedException;
 import main.java.de.bsi.tsesimulator.exceptions.TR_03111_ECC_V2_1_Exception;
 import main.java.de.bsi.tsesimulator.preferences.PropertyValues;
 import main.java.de.bsi.tsesimulator.tse.CryptoCore;
 import main.java.de.bsi.tsesimulator.utils.TR_03111_Utils;
-import main.java.de.bsi.tsesimulator.utils.Utils;
 
 /**
  * The class that implements signature creation with the ECDSA. It uses the BouncyCastle library to sign and verify signatures, 
@@ -59,98 +42,42 @@ public class ECDSA extends SignatureAlgorithm{
 	private String hashFunction;						//Stores what hash function shall be used
 	private String curveName;							
 	private ECParameterSpec ecSpec;			 			//save the specs from the chosen named curve for easy access to G, n and H
+	private FixedBaseMultiplier generatorMultiplier;		//calculates k*G, possibly with a precomputed comb table for G
+	private NoncePool noncePool;						//stores precomputed nonces, null if no pool is configured
+	private DoubleBaseMultiplier verificationMultiplier;	//calculates u1*G + u2*Pa with precomputed tables for G and Pa
+	private BigInteger nMinusOne;						//domain parameter n minus 1, calculated once in the constructor
+	private int tau;									//bit length of the order n of the base point, calculated once in the constructor
+	private int l;										//length of r and s in bytes, l = roundedUp(log256(n)), calculated once in the constructor
 	
 	
 	/**
 	 * The new default constructor for ECDSA objects that gets called by {@linkplain CryptoCore} if ECDSA is the desired {@linkplain SignatureAlgorithm}.
 	 * This method relies on the file config.properties to determine the format of the private key and the directory this file is stored in. 
 	 * It fetches the private key and uses it to calculate the public key. Then it saves both values for later use in 
-	 * {@linkplain #sign(byte[])} and {@linkplain #verify(byte[], byte[])}. 
+	 * {@linkplain #sign(byte[])} and {@linkplain #verify(byte[], byte[])}. <br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * The point multiplications use the arithmetic chosen by {@linkplain CurveArithmetic}.
 	 * @since 1.4
 	 * @throws IOException if reading the private key file fails and/or accessing config.properties through {@linkplain PropertyValues} fails.
 	 */
 	public ECDSA() throws IOException {
-		//add the BouncyCastle Provider
-		Security.addProvider(new BouncyCastleProvider());
+		//make sure the BouncyCastle Provider is registered, the CryptoContext only does this once
+		CryptoContext.getProvider();
 		//store curve name and curve specifications for later use
 		curveName = PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_CURVE);
 		ecSpec = ECNamedCurveTable.getParameterSpec(curveName);
+		//the point multiplications use the fastest arithmetic available for the curve, the keys are still loaded with ecSpec
+		ECParameterSpec arithmeticSpec = CurveArithmetic.select(ecSpec);
+		//build the multiplier for the base point G once, it is reused for every signature
+		generatorMultiplier = new FixedBaseMultiplier(arithmeticSpec);
+		//start precomputing nonces in the background if config.properties asks for it
+		noncePool = NoncePool.createFromConfig(generatorMultiplier, ecSpec.getN(), ecSpec.getCurve().getField().getCharacteristic(), true);
 		
-		//the correct file name for the private key has to be present in config.properties
-		//PropertyValues class has path to resource directory, can build the path to privateKey from that resource directory and the entries in config.properties
-		String privKeyFullPath = PropertyValues.getInstance().getPathToPrivateKey();
-		String privKeyEncoding = PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_PRIV_KEY_ENCODING);
+		//load the key pair of the TSE, the format of the private key file is taken from config.properties
+		KeyPair keyPair = ECKeyLoader.loadKeyPair(ecSpec);
+		privateKey = (ECPrivateKey) keyPair.getPrivate();
+		publicKey = (ECPublicKey) keyPair.getPublic();
 		
-		//change behavior depending on the encoding:
-		if(privKeyEncoding.equalsIgnoreCase("DER")) {
-			//1. find the file with the private key and get a reader on that file
-			File privKeyFile = new File(privKeyFullPath);
-			Path path = Paths.get(privKeyFile.toURI());		//.toURI necessary, otherwise Java does not find the file
-			
-			//read all bytes as binary information into a byte array
-			byte[] privKeyCompleteByteArray = Files.readAllBytes(path);
-			
-			//2. do not parse the asn1 DER encoded key, because there seems to be no method to create an ECPrivateKey directly from a BigInteger
-				//instead, use KeyFactory.generatePrivate and KeyFactory.generatePublic
-			try {
-				KeyFactory ecKeyFactory = KeyFactory.getInstance("ECDSA", "BC");
-				//how to get the public and the private key:	
-					//for private keys use PKCS8EncodedKeySpec; for public keys use X509EncodedKeySpec
-					//PKCS8EncodedKeySpec ks = new PKCS8EncodedKeySpec(keyBytes);
-					//PrivateKey pk = kf.generatePrivate(ks);
-				//a conversion from OpenSSL DER EC Key into PKCS8 format is necessary, otherwise, the key can not be read this way:
-				PKCS8EncodedKeySpec privKeySpec = new PKCS8EncodedKeySpec(privKeyCompleteByteArray);
-								
-				privateKey = (ECPrivateKey) ecKeyFactory.generatePrivate(privKeySpec);
-				
-				//calculate public point W (aka Pa in TR-03111) to use it to create a java.security.ECPublicKeySpec and use that to assign the ECPublicKey
-					//Pa = dA*G
-				BigInteger privateKeyInteger = privateKey.getD();				 	//privateKeyInteger = privateKey dA
-				ECPoint generatorG = ecSpec.getG();									//domain parameter G
-				generatorG = generatorG.normalize();								
-				
-				ECPoint Pa = generatorG.multiply(privateKeyInteger);
-				Pa = Pa.normalize();
-				
-				org.bouncycastle.jce.spec.ECPublicKeySpec pubKeySpec = new org.bouncycastle.jce.spec.ECPublicKeySpec(Pa, ecSpec);
-				
-				//use that BC ECPublicKeySpec implements java.security.spec.KeySpec to generate the PublicKey
-				publicKey = (ECPublicKey) ecKeyFactory.generatePublic(pubKeySpec);
-				
-			} catch (NoSuchAlgorithmException | NoSuchProviderException | InvalidKeySpecException e) {
-				System.out.println("Stack trace:\n");
-				e.printStackTrace();
-				System.out.println("+\n\n");
-				throw new LoadingFailedException(e);
-			}
-			
-		}
-		if(privKeyEncoding.equalsIgnoreCase("PEM")) {
-			//1. find the file with the private key and get a reader on that file
-			File privKeyFile = new File(privKeyFullPath);
-			
-			//2. JcaPEMKeyConverter is needed to convert the PEMKeyPair to a java.security.KeyPair
-			JcaPEMKeyConverter keyconverter = new JcaPEMKeyConverter();
-			keyconverter.setProvider("BC");
-	
-			//3. try to extract a PEMKeyPair from the pem file, then convert it to java.security.KeyPair
-			try {
-				PEMKeyPair keypairPEM = readKeyPair(privKeyFile);
-				KeyPair keypair = keyconverter.getKeyPair(keypairPEM);
-				
-				privateKey = (ECPrivateKey) keypair.getPrivate();
-				publicKey = (ECPublicKey) keypair.getPublic();
-			} catch (IOException e) {
-				throw new IOException(e.getMessage());
-			} catch (ECCException e) {
-				throw new LoadingFailedException("Unable to load private key: failed to read PEM-encoded key!", e);
-			}
-		}
-		if((!privKeyEncoding.equalsIgnoreCase("DER")) && (!privKeyEncoding.equalsIgnoreCase("PEM")))  {
-			//throw an exception because clearly, something went wrong!
-			//loading failed is best choice, because it signifies loading something did not work.
-			throw new LoadingFailedException("Unable to load private key: unknown format in config.properties!");
-		}
 		//set the algorithmName to easily access it later
 		StringBuilder algoNameBuilder = new StringBuilder(PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_HASH_METHOD));
 		//check if SHA3 is selected, because BC then requires a "SHA3-xyzWithECDSA" String instead of a "SHAxyzWithECDSA"
@@ -170,36 +97,18 @@ public class ECDSA extends SignatureAlgorithm{
 		}
 		
 		hashNameBuilder.append(PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_HASH_LENGTH));
-		hashFunction = hashNameBuilder.toString();		
+		hashFunction = hashNameBuilder.toString();
+		
+		//precompute the domain constants and the tables of odd multiples of G and Pa that are used by every verification
+		nMinusOne = ecSpec.getN().subtract(BigInteger.ONE);
+		tau = ecSpec.getN().bitLength();
+		l = TR_03111_Utils.octetLength(ecSpec.getN());
+		//Pa is moved onto the curve of G, so that the tables of both points use the same arithmetic
+		ECPoint publicPoint = arithmeticSpec.getCurve().importPoint(publicKey.getQ());
+		verificationMultiplier = new DoubleBaseMultiplier(generatorMultiplier.getGenerator(), publicPoint, tau);
 	}	
 
 	
-	/**
-	 * A little method to help extract a key pair from a pem file. If the private key file that was passed did not 
-	 * contain enough information to form a PEMKeyPair, a method extracting the private and the public key separately should be used.
-	 * @param privateKey a PEM-file containing both a private key and a public key.
-	 * @return the PEMKeyPair extracted from the file.
-	 * @throws IOException if some sort of IOError occurred.
-	 * @throws ECCException if the file passed could not be decoded to a PEMKeyPair.
-	 */
-	private static PEMKeyPair readKeyPair(File privateKey) throws IOException, ECCException {
-        PEMParser pemParser = new PEMParser(new FileReader(privateKey));
-        
-        Object PEMkeyPairParsedFromPemFile = null;
-        try {
-        	PEMkeyPairParsedFromPemFile = pemParser.readObject();
-        	if(!(PEMkeyPairParsedFromPemFile instanceof PEMKeyPair)) {
-        		throw new ECCException("private key file did not yield a PEMKEyPair like it should.");
-        	}
-        } catch (IOException e) {
-            throw new IOException("The private key could not be decrypted", e);
-        } finally {
-        	pemParser.close();
-        }
-        return (PEMKeyPair) PEMkeyPairParsedFromPemFile;
-    }
-	
-
 	/**
 	 * Creates a random BigInteger inside the provided limits. The limits are inclusive.
 	 * Could theoretically run into a seemingly endless loop, if every new randomValue is outside of the specified limits.
@@ -209,12 +118,14 @@ public class ECDSA extends SignatureAlgorithm{
 	 * @return the randomly generated BigInteger
 	 */
 	private static BigInteger calculateRandomK(BigInteger lowerLimit, BigInteger upperLimit) {
+		//use the random number generator of the CryptoContext of this thread instead of creating a new one for each value
+		SecureRandom random = CryptoContext.get().getRandom();
 		//create the first random value
-		BigInteger randomValue = new BigInteger(upperLimit.bitLength(), new SecureRandom());
+		BigInteger randomValue = new BigInteger(upperLimit.bitLength(), random);
 		
 		//check if the random value is in the specified bounds
 		while((randomValue.compareTo(upperLimit) > 0) || (randomValue.compareTo(lowerLimit)) < 0) {
-			randomValue = new BigInteger(upperLimit.bitLength(), new SecureRandom());
+			randomValue = new BigInteger(upperLimit.bitLength(), random);
 		}
 		return randomValue;
 	}
@@ -222,71 +133,87 @@ public class ECDSA extends SignatureAlgorithm{
 
 
 	/**
-	 * The signing operation of the ECDSA class. Uses the BouncyCastle Provider to create a signature. <br>
+	 * Signs a message that is given as one byte array. Delegates to {@linkplain #sign(SignatureInput)}.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * The signature is calculated by {@linkplain #sign(SignatureInput)}, which hashes the message without needing it as one byte array.
 	 * @param message the value that shall be signed by this algorithm object.
 	 * @return the signature bytes that are created by signing the input.
-	 * @version 1.0
+	 * @version 1.6
 	 * @throws TR_03111_ECC_V2_1_Exception if the bit length of the digest of the chosen hash function is less than the bit length
 	 * of the order of the base point of the chosen curve.
 	 */
 	@Override
 	public byte[] sign(byte[] message) throws TR_03111_ECC_V2_1_Exception {
+		return sign(createInput(message));
+	}
+	
+	/**
+	 * The signing operation of the ECDSA class. Uses the BouncyCastle Provider to create a signature. <br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * Q = k*G is calculated by the {@linkplain FixedBaseMultiplier} built in the constructor. If a {@linkplain NoncePool} is configured, k, xQ 
+	 * and the inverse of k are taken from that pool instead.<br>
+	 * n-1, tau and l are no longer calculated on every call. r is calculated directly from xQ, because OS2I(FE2OS(xQ)) = xQ. 
+	 * r and s are written directly into the signature array, Hτ(M) is converted without creating a truncated copy of the hash.<br>
+	 * The message is a {@linkplain SignatureInput} that is written straight into the hash function.
+	 * @param message the value that shall be signed by this algorithm object. It writes itself into the hash function.
+	 * @return the signature bytes that are created by signing the input.
+	 * @version 1.6
+	 * @throws TR_03111_ECC_V2_1_Exception if the bit length of the digest of the chosen hash function is less than the bit length
+	 * of the order of the base point of the chosen curve.
+	 */
+	@Override
+	public byte[] sign(SignatureInput message) throws TR_03111_ECC_V2_1_Exception {
 		BigInteger privateKeyInteger = privateKey.getD();				 	//privateKeyInteger = privateKey dA
 		
 		BigInteger n = ecSpec.getN();										//domain parameter n
-		BigInteger nMinusOne = ecSpec.getN().subtract(BigInteger.ONE); 		//nMinusOne = domain parameter n minus 1
-		ECPoint generatorG = ecSpec.getG();									//domain parameter G
-		BigInteger p = ecSpec.getCurve().getField().getCharacteristic(); 	//domain parameter p
+		//nMinusOne, tau (the bit length of the order of the base point) and l = roundedUp(log256(n)) have already been calculated in the constructor
 		
 		BigInteger k;														//k = RNG{1, ... , (n-1)}
 		ECPoint Q;															//Q = k * generatorG
 		
-		int tau = ecSpec.getN().bitLength(); 								//tau is the bit length of the order of the base point. tau = log2(n)
-		
 		BigInteger r;														//r = OS2I(FE2OS(xQ)) mod n
 		BigInteger s;														//s=kinv·(r·dA+OS2I(Hτ(M))) mod n
-		
-		//create the byte array that will hold the signature value consisting of "r" and "s"
-		//signature byte array should be 2*l long where l = roundedUp(log256(n))
-		double nAsDouble = n.doubleValue();
-		double lAsDouble = (Math.log(nAsDouble)) / Math.log(256);
-		lAsDouble = Math.ceil(lAsDouble);
-		int l = (int) lAsDouble;
-		
-		byte[] signature = new byte[(2*l)];
 
 		//using goto statements in Java with named breakpoints 
 		createNewSignature : while(true) {
+			BigInteger kInverse;
+			
+			//if a nonce pool is used, k, xQ and kInverse have already been calculated by its worker threads
+			if(noncePool != null) {
+				NoncePool.PrecomputedNonce nonce = noncePool.take();
+				k = nonce.getK();
+				kInverse = nonce.getKInverse();
+				
+			//3. r=OS2I(FE2OS(xQ)) mod n
+				r = nonce.getXCoordinateQ().mod(n);
+			}
+			else {
 			//1. calculate k = RNG({1, 2, ... , n-1})
 				k = calculateRandomK(BigInteger.ONE, nMinusOne);
 				
 			//2. Q = k*G
-				Q = generatorG.multiply(k);
-				Q = Q.normalize(); 			//normalize the point
+				Q = generatorMultiplier.multiply(k);		//uses the fixed-base table for G if enabled, Q is already normalized
 				
 			//3. r=OS2I(FE2OS(xQ)) mod n
-				//3.a FE2OS(xQ)
+				//FE2OS only pads xQ with zeroes and OS2I removes them again, so the octet string does not have to be created
 				BigInteger xCoordinateQ = Q.getAffineXCoord().toBigInteger();
-				byte[] xQ = TR_03111_Utils.FE2OS(xCoordinateQ, p);
+				r = xCoordinateQ.mod(n);
 				
-				//3.b OS2I(3.a) mod n
-				r = TR_03111_Utils.OS2BigInt(xQ);
-				r = r.mod(n);
+			//4. kinverse = k.modInverse(n)
+				kInverse = k.modInverse(n);
+			}
 				
 				//3.c if r == 0 goto 1
 				if(r == BigInteger.ZERO) {
 					continue createNewSignature;
 				}
-			
-			//4. kinverse = k.modInverse(n)
-				BigInteger kInverse = k.modInverse(n);
 				
 			//5. s=kinv·(r·dA+OS2I(Hτ(M))) mod n
 				//5.a calculate (Hτ(M)) aka hash truncated to the length of tau of the message m
 				MessageDigest md = null;
 				
 				try {
-					md = MessageDigest.getInstance(hashFunction, "BC");
+					md = CryptoContext.get().getDigest(hashFunction);		//reset digest of this thread, no provider lookup
 					//check, if length of the output of the hash function in bits < bit length of the order of the base point
 					//if yes, that is illegal according to BSI TR-03111 V2.1
 					if((md.getDigestLength()*8) < tau) {
@@ -294,16 +221,12 @@ public class ECDSA extends SignatureAlgorithm{
 					}
 				} catch (NoSuchAlgorithmException e) {
 					e.printStackTrace();
-				} catch (NoSuchProviderException e) {
-					e.printStackTrace();
 				}
-				md.update(message);
+				message.writeTo(new MessageDigestSink(md));
 				byte[] hashByteArray = md.digest();
-				//truncate the hashByteArray
-				byte[] truncatedhashByteArray = TR_03111_Utils.truncatedleftmostBits(hashByteArray, tau);
 				
-				//5.b turn (Hτ(M)) into a BigInteger
-				BigInteger hashTauMessage = TR_03111_Utils.OS2BigInt(truncatedhashByteArray);
+				//5.b turn (Hτ(M)) into a BigInteger, the hashByteArray is truncated while converting it
+				BigInteger hashTauMessage = TR_03111_Utils.truncatedleftmostBitsAsBigInt(hashByteArray, tau);
 				
 				//5.c calculate r*dA
 				BigInteger rDa = r.multiply(privateKeyInteger);
@@ -323,18 +246,15 @@ public class ECDSA extends SignatureAlgorithm{
 				break;
 		}
 		
-		//6.a convert r into byte array with I2OS(rAsBigInt, l)
-		byte[] rAsByteArray = null;
-		rAsByteArray = TR_03111_Utils.I2OS(r, l);
-		
-		
-		//6.b convert s into byte array with I2OS(s, l)
-		byte[] sAsByteArray = null;
-		sAsByteArray = TR_03111_Utils.I2OS(s, l);
+		//create the byte array that will hold the signature value consisting of "r" and "s"
+		//signature byte array should be 2*l long where l = roundedUp(log256(n))
+		byte[] signature = new byte[(2*l)];
 		
+		//6.a write r into the first half of the signature with I2OS(r, l)
+		TR_03111_Utils.I2OS(r, signature, 0, l);
 		
-		//6.c concat rAsByteArray and sAsByteArray to get signature
-		signature = Utils.concatTwoByteArrays(rAsByteArray, sAsByteArray);
+		//6.b write s into the second half of the signature with I2OS(s, l)
+		TR_03111_Utils.I2OS(s, signature, l, l);
 	
 		return signature;
 	}
@@ -342,6 +262,9 @@ public class ECDSA extends SignatureAlgorithm{
 	/**
 	 * Takes a plain text (the notSignedValue) and its supposedly signed counterpart and tries to verify it.
 	 * Please make sure that this method is given the whole signed value by its caller. 
+	 * <b>Changes in version 1.6:</b><br>
+	 * [u1]*G + [u2]*PA is calculated by the {@linkplain DoubleBaseMultiplier} built in the constructor. n-1 and tau are no longer calculated on every call.
+	 * r and s are read directly from the signature, v is calculated directly from xQ.
 	 * @return true if the signed value can be verified using the public key of this ecdsa object and the unsigned plaintext.
 	 * @throws ECCException if something goes wrong with the signature verification.
 	 * @throws TR_03111_ECC_V2_1_Exception 
@@ -350,13 +273,8 @@ public class ECDSA extends SignatureAlgorithm{
 	public boolean verify(byte[] signature, byte[] message) throws ECCException, TR_03111_ECC_V2_1_Exception {
 		boolean isVerified = false;
 		//define everything that can be defined at this point of the program
+		//nMinusOne and tau (the bit length of the order of the base point) have already been calculated in the constructor
 		BigInteger n = ecSpec.getN();										//domain parameter n
-		BigInteger nMinusOne = ecSpec.getN().subtract(BigInteger.ONE); 		//nMinusOne = domain parameter n minus 1
-		ECPoint generatorG = ecSpec.getG();									//domain parameter G
-		BigInteger p = ecSpec.getCurve().getField().getCharacteristic(); 	//domain parameter p
-		
-		
-		int tau = n.bitLength(); 								//tau is the bit length of the order of the base point. tau = log2(n)
 
 		//get the length of each byte array of r and s
 		//should be signature.length / 2
@@ -365,15 +283,9 @@ public class ECDSA extends SignatureAlgorithm{
 		}
 		int l = signature.length / 2;
 		
-		//1.a split the signature into its components r and s
-			byte[] rAsByteArray = new byte[l];
-			byte[] sAsByteArray = new byte[l];
-			System.arraycopy(signature, 0, rAsByteArray, 0, rAsByteArray.length);
-			System.arraycopy(signature, (rAsByteArray.length), sAsByteArray, 0, sAsByteArray.length);
-		
-		//1.b turn rAsByteArray and sAsByteArray into BigIntegers
-			BigInteger r = TR_03111_Utils.OS2BigInt(rAsByteArray);
-			BigInteger s = TR_03111_Utils.OS2BigInt(sAsByteArray);
+		//1. split the signature into its components r and s and turn them into BigIntegers
+			BigInteger r = TR_03111_Utils.OS2BigInt(signature, 0, l);
+			BigInteger s = TR_03111_Utils.OS2BigInt(signature, l, l);
 		
 		//2. verify that r, s e {1,2,...,n−1}
 			//r >= 1 
@@ -400,7 +312,7 @@ public class ECDSA extends SignatureAlgorithm{
 				MessageDigest md = null;
 				
 				try {
-					md = MessageDigest.getInstance(hashFunction, "BC");
+					md = CryptoContext.get().getDigest(hashFunction);		//reset digest of this thread, no provider lookup
 					//check, if length of the output of the hash function in bits < bit length of the order of the base point
 					//if yes, that is illegal according to BSI TR-03111 V2.1
 					if((md.getDigestLength()*8) < tau) {
@@ -408,16 +320,12 @@ public class ECDSA extends SignatureAlgorithm{
 					}
 				} catch (NoSuchAlgorithmException e) {
 					e.printStackTrace();
-				} catch (NoSuchProviderException e) {
-					e.printStackTrace();
 				}
 				md.update(message);
 				byte[] hashByteArray = md.digest();
-				//truncate the hashByteArray
-				byte[] truncatedhashByteArray = TR_03111_Utils.truncatedleftmostBits(hashByteArray, tau);
 				
-				//4.a.b turn (Hτ(M)) into a BigInteger
-				BigInteger hashTauMessage = TR_03111_Utils.OS2BigInt(truncatedhashByteArray);
+				//4.a.b turn (Hτ(M)) into a BigInteger, the hashByteArray is truncated while converting it
+				BigInteger hashTauMessage = TR_03111_Utils.truncatedleftmostBitsAsBigInt(hashByteArray, tau);
 				
 				//4.a.c calculate u1 = sInverse * hashTauMessage
 				BigInteger u1 = sInverse.multiply(hashTauMessage);
@@ -428,18 +336,8 @@ public class ECDSA extends SignatureAlgorithm{
 			u2 = u2.mod(n);
 			
 		//5. calculate Q = [u1]*G + [u2]*PA	
-			//5.a calculate u1TimesG
-			ECPoint u1TimesG = generatorG.multiply(u1);
-			u1TimesG = u1TimesG.normalize(); 						//normalize u1 * G
-			
-			//5.b calculate u2 * PA
-			ECPoint Pa = publicKey.getQ(); 		//get the public point from the public key
-			ECPoint u2TimesPA = Pa.multiply(u2);
-			u2TimesPA = u2TimesPA.normalize(); 						//normalize u2 * PA
-			
-			//5.c calculate u1TimesG + u2TimesPA
-			ECPoint Q = u1TimesG.add(u2TimesPA);
-			Q = Q.normalize();
+			//both multiplications are interleaved and use the precomputed tables of G and PA, Q is already normalized
+			ECPoint Q = verificationMultiplier.multiplyAndAdd(u1, u2);
 			
 			//5.d check if Q == PointInfinity
 			if(Q.isInfinity()) {
@@ -447,13 +345,9 @@ public class ECDSA extends SignatureAlgorithm{
 			}
 			
 		//6. calculate v=OS2I(FE2OS(xQ)) mod n
-			//6.a calculate FE2OS(xQ)
+			//FE2OS only pads xQ with zeroes and OS2I removes them again, so the octet string does not have to be created
 			BigInteger xCoordinateQ = Q.getAffineXCoord().toBigInteger();
-			byte[] xQ = TR_03111_Utils.FE2OS(xCoordinateQ, p);
-			
-			//6.b calculate OS2I(FE2OS(xQ)) mod n
-			BigInteger v = TR_03111_Utils.OS2BigInt(xQ);
-			v = v.mod(n);
+			BigInteger v = xCoordinateQ.mod(n);
 			
 		//7. if v == r return true
 			if(v.equals(r)) {
@@ -464,6 +358,16 @@ public class ECDSA extends SignatureAlgorithm{
 	}
 
 	
+	/**
+	 * Getter method for the nonce pool.
+	 * @return the {@linkplain NoncePool} used by this algorithm or null, if no nonce pool is configured.
+	 * @since 1.6
+	 */
+	@Override
+	public NoncePool getNoncePool() {
+		return this.noncePool;
+	}
+	
 	/**
 	 * Getter method for the public key.
 	 * @return the public key
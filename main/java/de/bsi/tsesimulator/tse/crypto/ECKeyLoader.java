@@ -0,0 +1,157 @@
+/**
+ *
+ */
+package main.java.de.bsi.tsesimulator.tse.crypto;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+
+import org.bouncycastle.jce.interfaces.ECPrivateKey;
+import org.bouncycastle.jce.interfaces.ECPublicKey;
+import org.bouncycastle.jce.spec.ECParameterSpec;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.openssl.PEMKeyPair;
+import org.bouncycastle.openssl.PEMParser;
+import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
+
+import main.java.de.bsi.tsesimulator.constants.ConfigConstants;
+import main.java.de.bsi.tsesimulator.exceptions.ECCException;
+import main.java.de.bsi.tsesimulator.exceptions.LoadingFailedException;
+import main.java.de.bsi.tsesimulator.preferences.PropertyValues;
+
+/**
+ * Loads the key pair of the TSE from the private key file configured in config.properties. The private key may either be DER encoded (PKCS#8) or
+ * PEM encoded. For DER encoded keys, the public key is calculated from the private key as Pa = dA*G.<br>
+ * Used by every {@linkplain SignatureAlgorithm} implementation, so that all of them sign with exactly the same keys.
+ *
+ * @since 1.6
+ */
+final class ECKeyLoader {
+
+	/**
+	 * The class only provides static methods.
+	 */
+	private ECKeyLoader() {}
+
+	/**
+	 * Loads the private key of the TSE and the matching public key.
+	 * This method relies on the file config.properties to determine the format of the private key and the directory this file is stored in.
+	 * @param ecSpec the specification of the curve the keys belong to. Used to calculate the public key from a DER encoded private key.
+	 * @return the key pair. The private key is an {@linkplain ECPrivateKey}, the public key an {@linkplain ECPublicKey}.
+	 * @throws IOException if reading the private key file fails and/or accessing config.properties through {@linkplain PropertyValues} fails.
+	 * @since 1.6
+	 */
+	static KeyPair loadKeyPair(ECParameterSpec ecSpec) throws IOException {
+		ECPrivateKey privateKey = null;
+		ECPublicKey publicKey = null;
+
+		//the correct file name for the private key has to be present in config.properties
+		//PropertyValues class has path to resource directory, can build the path to privateKey from that resource directory and the entries in config.properties
+		String privKeyFullPath = PropertyValues.getInstance().getPathToPrivateKey();
+		String privKeyEncoding = PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_PRIV_KEY_ENCODING);
+
+		//change behavior depending on the encoding:
+		if(privKeyEncoding.equalsIgnoreCase("DER")) {
+			//1. find the file with the private key and get a reader on that file
+			File privKeyFile = new File(privKeyFullPath);
+			Path path = Paths.get(privKeyFile.toURI());		//.toURI necessary, otherwise Java does not find the file
+
+			//read all bytes as binary information into a byte array
+			byte[] privKeyCompleteByteArray = Files.readAllBytes(path);
+
+			//2. do not parse the asn1 DER encoded key, because there seems to be no method to create an ECPrivateKey directly from a BigInteger
+				//instead, use KeyFactory.generatePrivate and KeyFactory.generatePublic
+			try {
+				KeyFactory ecKeyFactory = KeyFactory.getInstance("ECDSA", "BC");
+				//a conversion from OpenSSL DER EC Key into PKCS8 format is necessary, otherwise, the key can not be read this way:
+				PKCS8EncodedKeySpec privKeySpec = new PKCS8EncodedKeySpec(privKeyCompleteByteArray);
+
+				privateKey = (ECPrivateKey) ecKeyFactory.generatePrivate(privKeySpec);
+
+				//calculate public point W (aka Pa in TR-03111) to use it to create a java.security.ECPublicKeySpec and use that to assign the ECPublicKey
+					//Pa = dA*G
+				BigInteger privateKeyInteger = privateKey.getD();				 	//privateKeyInteger = privateKey dA
+				ECPoint generatorG = ecSpec.getG();									//domain parameter G
+				generatorG = generatorG.normalize();
+
+				ECPoint Pa = generatorG.multiply(privateKeyInteger);
+				Pa = Pa.normalize();
+
+				org.bouncycastle.jce.spec.ECPublicKeySpec pubKeySpec = new org.bouncycastle.jce.spec.ECPublicKeySpec(Pa, ecSpec);
+
+				//use that BC ECPublicKeySpec implements java.security.spec.KeySpec to generate the PublicKey
+				publicKey = (ECPublicKey) ecKeyFactory.generatePublic(pubKeySpec);
+
+			} catch (NoSuchAlgorithmException | NoSuchProviderException | InvalidKeySpecException e) {
+				System.out.println("Stack trace:\n");
+				e.printStackTrace();
+				System.out.println("+\n\n");
+				throw new LoadingFailedException(e);
+			}
+
+		}
+		if(privKeyEncoding.equalsIgnoreCase("PEM")) {
+			//1. find the file with the private key and get a reader on that file
+			File privKeyFile = new File(privKeyFullPath);
+
+			//2. JcaPEMKeyConverter is needed to convert the PEMKeyPair to a java.security.KeyPair
+			JcaPEMKeyConverter keyconverter = new JcaPEMKeyConverter();
+			keyconverter.setProvider("BC");
+
+			//3. try to extract a PEMKeyPair from the pem file, then convert it to java.security.KeyPair
+			try {
+				PEMKeyPair keypairPEM = readKeyPair(privKeyFile);
+				KeyPair keypair = keyconverter.getKeyPair(keypairPEM);
+
+				privateKey = (ECPrivateKey) keypair.getPrivate();
+				publicKey = (ECPublicKey) keypair.getPublic();
+			} catch (IOException e) {
+				throw new IOException(e.getMessage());
+			} catch (ECCException e) {
+				throw new LoadingFailedException("Unable to load private key: failed to read PEM-encoded key!", e);
+			}
+		}
+		if((!privKeyEncoding.equalsIgnoreCase("DER")) && (!privKeyEncoding.equalsIgnoreCase("PEM")))  {
+			//throw an exception because clearly, something went wrong!
+			//loading failed is best choice, because it signifies loading something did not work.
+			throw new LoadingFailedException("Unable to load private key: unknown format in config.properties!");
+		}
+		return new KeyPair(publicKey, privateKey);
+	}
+
+	/**
+	 * A little method to help extract a key pair from a pem file. If the private key file that was passed did not
+	 * contain enough information to form a PEMKeyPair, a method extracting the private and the public key separately should be used.
+	 * @param privateKey a PEM-file containing both a private key and a public key.
+	 * @return the PEMKeyPair extracted from the file.
+	 * @throws IOException if some sort of IOError occurred.
+	 * @throws ECCException if the file passed could not be decoded to a PEMKeyPair.
+	 */
+	private static PEMKeyPair readKeyPair(File privateKey) throws IOException, ECCException {
+		PEMParser pemParser = new PEMParser(new FileReader(privateKey));
+
+		Object PEMkeyPairParsedFromPemFile = null;
+		try {
+			PEMkeyPairParsedFromPemFile = pemParser.readObject();
+			if(!(PEMkeyPairParsedFromPemFile instanceof PEMKeyPair)) {
+				throw new ECCException("private key file did not yield a PEMKEyPair like it should.");
+			}
+		} catch (IOException e) {
+			throw new IOException("The private key could not be decrypted", e);
+		} finally {
+			pemParser.close();
+		}
+		return (PEMKeyPair) PEMkeyPairParsedFromPemFile;
+	}
+}
@@ -3,37 +3,21 @@
  */
 package main.java.de.bsi.tsesimulator.tse.crypto;
 
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.math.BigInteger;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.security.SecureRandom;
-import java.security.Security;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.PKCS8EncodedKeySpec;
 
 import org.bouncycastle.jce.ECNamedCurveTable;
 import org.bouncycastle.jce.interfaces.ECPrivateKey;
 import org.bouncycastle.jce.interfaces.ECPublicKey;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.jce.spec.ECParameterSpec;
 import org.bouncycastle.math.ec.ECPoint;
 
-import org.bouncycastle.openssl.PEMKeyPair;
-import org.bouncycastle.openssl.PEMParser;
-import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
-
 import main.java.de.bsi.tsesimulator.constants.ConfigConstants;
 import main.java.de.bsi.tsesimulator.exceptions.ECCException;
-import main.java.de.bsi.tsesimulator.exceptions.LoadingFailedException;
 import main.java.de.bsi.tsesimulator.exceptions.TR_03111_ECC_V2_1_Exception;
 import main.java.de.bsi.tsesimulator.preferences.PropertyValues;
 import main.java.de.bsi.tsesimulator.tse.CryptoCore;
@@ -56,99 +40,44 @@ public class ECSDSA extends SignatureAlgorithm{
 	private String hashFunction;						//Stores what hash function shall be used
 	private String curveName;							
 	private ECParameterSpec ecSpec;			 			//save the specs from the chosen named curve for easy access to G, n and H
+	private FixedBaseMultiplier generatorMultiplier;		//calculates k*G, possibly with a precomputed comb table for G
+	private NoncePool noncePool;						//stores precomputed nonces, null if no pool is configured
+	private DoubleBaseMultiplier verificationMultiplier;	//calculates s*G + (-r)*Pa with precomputed tables for G and Pa
+	private BigInteger nMinusOne;						//domain parameter n minus 1, calculated once in the constructor
+	private int tau;									//bit length of the order n of the base point, calculated once in the constructor
+	private BigInteger twoPowTauMinusOne;				//(2 pow tau) minus 1, calculated once in the constructor
+	private int l;										//length of r and s in bytes, l = roundedUp(log256(n)), calculated once in the constructor
+	private int fieldElementLength;						//length of FE2OS(xQ) and FE2OS(yQ) in bytes, roundedUp(log256(p)), calculated once in the constructor
 	
 	
 	/**
 	 * The new default constructor for ECSDSA objects that gets called by {@linkplain CryptoCore} if ECSDSA is the desired {@linkplain SignatureAlgorithm}.
 	 * This method relies on the file config.properties to determine the format of the private key and the directory this file is stored in. 
 	 * It fetches the private key and uses it to calculate the public key. Then it saves both values for later use in 
-	 * {@linkplain #sign(byte[])} and {@linkplain #verify(byte[], byte[])}. 
+	 * {@linkplain #sign(byte[])} and {@linkplain #verify(byte[], byte[])}. <br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * The point multiplications use the arithmetic chosen by {@linkplain CurveArithmetic}.
 	 * @since 1.4
 	 * @throws IOException if reading the private key file fails
 	 * @version 1.5
 	 */
 	public ECSDSA() throws IOException {
-		//add the BouncyCastle Provider
-		Security.addProvider(new BouncyCastleProvider());
+		//make sure the BouncyCastle Provider is registered, the CryptoContext only does this once
+		CryptoContext.getProvider();
 		//store curve name and curve specifications for later use
 		curveName = PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_CURVE);
 		ecSpec = ECNamedCurveTable.getParameterSpec(curveName);
+		//the point multiplications use the fastest arithmetic available for the curve, the keys are still loaded with ecSpec
+		ECParameterSpec arithmeticSpec = CurveArithmetic.select(ecSpec);
+		//build the multiplier for the base point G once, it is reused for every signature
+		generatorMultiplier = new FixedBaseMultiplier(arithmeticSpec);
+		//start precomputing nonces in the background if config.properties asks for it. ECSDSA does not need the inverse of k.
+		noncePool = NoncePool.createFromConfig(generatorMultiplier, ecSpec.getN(), ecSpec.getCurve().getField().getCharacteristic(), false);
 		
-		//the correct file name for the private key has to be present in config.properties
-		//PropertyValues class has path to resource directory, can build the path to privateKey from that resource directory and the entries in config.properties
-		String privKeyFullPath = PropertyValues.getInstance().getPathToPrivateKey();
-		String privKeyEncoding = PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_PRIV_KEY_ENCODING);
-		
-		//change behavior depending on the encoding:
-		if(privKeyEncoding.equalsIgnoreCase("DER")) {
-			//1. find the file with the private key and get a reader on that file
-			File privKeyFile = new File(privKeyFullPath);
-			Path path = Paths.get(privKeyFile.toURI());			//.toURI necessary, otherwise Java does not find the file
-			
-			//read all bytes as binary information into a byte array
-			byte[] privKeyCompleteByteArray = Files.readAllBytes(path); 
-			
-			//2. do not parse the asn1 DER encoded key, because there seems to be no method to create an ECPrivateKey directly from a BigInteger
-				//instead, use KeyFactory.generatePrivate and KeyFactory.generatePublic
-			try {
-				KeyFactory ecKeyFactory = KeyFactory.getInstance("ECDSA", "BC");
-				//how to get the public and the private key:	
-					//for private keys use PKCS8EncodedKeySpec; for public keys use X509EncodedKeySpec
-					//PKCS8EncodedKeySpec ks = new PKCS8EncodedKeySpec(keyBytes);
-					//PrivateKey pk = kf.generatePrivate(ks);
-				//a conversion from OpenSSL DER EC Key into PKCS8 format is necessary, otherwise, the key can not be read this way:
-				PKCS8EncodedKeySpec privKeySpec = new PKCS8EncodedKeySpec(privKeyCompleteByteArray);
-				
-				privateKey = (ECPrivateKey) ecKeyFactory.generatePrivate(privKeySpec);
-				
-				//calculate public point W (aka Pa in TR-03111) to use it to create a java.security.ECPublicKeySpec and use that to assign the ECPublicKey
-					//Pa = dA*G
-				BigInteger privateKeyInteger = privateKey.getD();				 	//privateKeyInteger = privateKey dA
-				ECPoint generatorG = ecSpec.getG();									//domain parameter G
-				generatorG = generatorG.normalize();								
-				
-				ECPoint Pa = generatorG.multiply(privateKeyInteger);
-				Pa = Pa.normalize();
-				
-				org.bouncycastle.jce.spec.ECPublicKeySpec pubKeySpec = new org.bouncycastle.jce.spec.ECPublicKeySpec(Pa, ecSpec);
-				
-				//use that BC ECPublicKeySpec implements java.security.spec.KeySpec to generate the PublicKey
-				publicKey = (ECPublicKey) ecKeyFactory.generatePublic(pubKeySpec);
-				
-			} catch (NoSuchAlgorithmException | NoSuchProviderException | InvalidKeySpecException e) {
-				System.out.println("Stack trace:\n");
-				e.printStackTrace();
-				System.out.println("+\n\n");
-				throw new LoadingFailedException(e);
-			}
-			
-		}
-		if(privKeyEncoding.equalsIgnoreCase("PEM")) {
-			//1. find the file with the private key and get a reader on that file
-			File privKeyFile = new File(privKeyFullPath);
-			
-			//2. JcaPEMKeyConverter is needed to convert the PEMKeyPair to a java.security.KeyPair
-			JcaPEMKeyConverter keyconverter = new JcaPEMKeyConverter();
-			keyconverter.setProvider("BC");
-	
-			//3. try to extract a PEMKeyPair from the pem file, then convert it to java.security.KeyPair
-			try {
-				PEMKeyPair keypairPEM = readKeyPair(privKeyFile);
-				KeyPair keypair = keyconverter.getKeyPair(keypairPEM);
-				
-				privateKey = (ECPrivateKey) keypair.getPrivate();
-				publicKey = (ECPublicKey) keypair.getPublic();
-			} catch (IOException e) {
-				throw new IOException(e.getMessage());
-			} catch (ECCException e) {
-				throw new LoadingFailedException("Unable to load private key: failed to read PEM-encoded key!", e);
-			}
-		}
-		if((!privKeyEncoding.equalsIgnoreCase("DER")) && (!privKeyEncoding.equalsIgnoreCase("PEM")))  {
-			//throw an exception because clearly, something went wrong!
-			//loading failed is best choice, because it signifies loading something did not work.
-			throw new LoadingFailedException("Unable to load private key: unknown format in config.properties!");
-		}
+		//load the key pair of the TSE, the format of the private key file is taken from config.properties
+		KeyPair keyPair = ECKeyLoader.loadKeyPair(ecSpec);
+		privateKey = (ECPrivateKey) keyPair.getPrivate();
+		publicKey = (ECPublicKey) keyPair.getPublic();
 		
 		//set the hashFunction to easily access it later
 		StringBuilder hashNameBuilder = new StringBuilder(PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_HASH_METHOD));
@@ -159,35 +88,20 @@ public class ECSDSA extends SignatureAlgorithm{
 		
 		hashNameBuilder.append(PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_HASH_LENGTH));
 		hashFunction = hashNameBuilder.toString();
+		
+		//precompute the domain constants and the tables of odd multiples of G and Pa that are used by every verification
+		nMinusOne = ecSpec.getN().subtract(BigInteger.ONE);
+		tau = ecSpec.getN().bitLength();
+		twoPowTauMinusOne = BigInteger.ONE.shiftLeft(tau).subtract(BigInteger.ONE);
+		l = TR_03111_Utils.octetLength(ecSpec.getN());
+		fieldElementLength = TR_03111_Utils.octetLength(ecSpec.getCurve().getField().getCharacteristic());
+		//Pa is moved onto the curve of G, so that the tables of both points use the same arithmetic
+		ECPoint publicPoint = arithmeticSpec.getCurve().importPoint(publicKey.getQ());
+		verificationMultiplier = new DoubleBaseMultiplier(generatorMultiplier.getGenerator(), publicPoint, tau);
 	}
 	
 	
 	
-	/**
-	 * A little method to help extract a key pair from a pem file. If the private key file that was passed did not 
-	 * contain enough information to form a PEMKeyPair, a method extracting the private and the public key separately should be used.
-	 * @param privateKey a PEM-file containing both a private key and a public key.
-	 * @return the PEMKeyPair extracted from the file.
-	 * @throws IOException if some sort of IOError occurred.
-	 * @throws ECCException if the file passed could not be decoded to a PEMKeyPair.
-	 */
-	private static PEMKeyPair readKeyPair(File privateKey) throws IOException, ECCException {
-        PEMParser pemParser = new PEMParser(new FileReader(privateKey));
-        
-        Object PEMkeyPairParsedFromPemFile = null;
-        try {
-        	PEMkeyPairParsedFromPemFile = pemParser.readObject();
-        	if(!(PEMkeyPairParsedFromPemFile instanceof PEMKeyPair)) {
-        		throw new ECCException("private key file did not yield a PEMKEyPair like it should.");
-        	}
-        } catch (IOException e) {
-            throw new IOException("The private key could not be decrypted", e);
-        } finally {
-        	pemParser.close();
-        }
-        return (PEMKeyPair) PEMkeyPairParsedFromPemFile;
-    }
-	
 	/**
 	 * Creates a random BigInteger inside the provided limits. The limits are inclusive.
 	 * Could theoretically run into a seemingly endless loop, if every new randomValue is outside of the specified limits.
@@ -197,70 +111,97 @@ public class ECSDSA extends SignatureAlgorithm{
 	 * @return the randomly generated BigInteger
 	 */
 	private static BigInteger calculateRandomK(BigInteger lowerLimit, BigInteger upperLimit) {
+		//use the random number generator of the CryptoContext of this thread instead of creating a new one for each value
+		SecureRandom random = CryptoContext.get().getRandom();
 		//create the first random value
-		BigInteger randomValue = new BigInteger(upperLimit.bitLength(), new SecureRandom());
+		BigInteger randomValue = new BigInteger(upperLimit.bitLength(), random);
 		
 		//check if the random value is in the specified bounds
 		while((randomValue.compareTo(upperLimit) > 0) || (randomValue.compareTo(lowerLimit)) < 0) {
-			randomValue = new BigInteger(upperLimit.bitLength(), new SecureRandom());
+			randomValue = new BigInteger(upperLimit.bitLength(), random);
 		}
 		return randomValue;
 	}
 	
 	
+	/**
+	 * Signs a message that is given as one byte array. Delegates to {@linkplain #sign(SignatureInput)}.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * The signature is calculated by {@linkplain #sign(SignatureInput)}, which hashes the message without needing it as one byte array.
+	 * @param message the value that shall be signed by this algorithm object.
+	 * @return the signature bytes that are created by signing the input.
+	 * @version 1.6
+	 * @throws TR_03111_ECC_V2_1_Exception if the bit length of the digest of the chosen hash function is less than the bit length
+	 * of the order of the base point of the chosen curve.
+	 */
+	@Override
+	public byte[] sign(byte[] message) throws TR_03111_ECC_V2_1_Exception {
+		return sign(createInput(message));
+	}
+	
 	/**
 	 * Implements the calculation of an ECSDSA signature according to TR-03111 chapter 4.2.3.1.
 	 * Could run into a seemingly endless loop if the conditions ( s == 0 ) or ( r mod n == 0 ) are met too often.
-	 * Note: May not be cryptographically safe to use in other applications!
+	 * Note: May not be cryptographically safe to use in other applications!<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * Q = k*G is calculated by the {@linkplain FixedBaseMultiplier} built in the constructor. If a {@linkplain NoncePool} is configured, k and the
+	 * encoded coordinates of Q are taken from that pool instead.<br>
+	 * n-1, tau and l are no longer calculated on every call. Without a nonce pool, FE2OS(xQ) and FE2OS(yQ) are written into the encoding buffer of
+	 * the {@linkplain CryptoContext} of the thread. r and s are written directly into the signature array, Hτ(M) is converted without creating a 
+	 * truncated copy of the hash.<br>
+	 * The message is a {@linkplain SignatureInput} that is written straight into the hash function after FE2OS(xQ) || FE2OS(yQ). If a new k has to be 
+	 * chosen, the message is written into the hash function again.
+	 * @param message the value that shall be signed by this algorithm object. It writes itself into the hash function.
+	 * @return the signature bytes that are created by signing the input.
 	 * @throws TR_03111_ECC_V2_1_Exception if the bit length of the digest of the chosen hash function is less than the bit length
 	 * of the order of the base point of the chosen curve.
+	 * @version 1.6
 	 */
 	@Override
-	public byte[] sign(byte[] message) throws TR_03111_ECC_V2_1_Exception {
+	public byte[] sign(SignatureInput message) throws TR_03111_ECC_V2_1_Exception {
 		//define everything that does not change, even if the loop has to be run through again.
 		
 		BigInteger privateKeyInteger = privateKey.getD();				 	//privateKeyInteger = privateKey dA
 		
 		BigInteger n = ecSpec.getN();										//domain parameter n
-		BigInteger nMinusOne = ecSpec.getN().subtract(BigInteger.ONE); 		//nMinusOne = domain parameter n minus 1
-		ECPoint generatorG = ecSpec.getG();									//domain parameter G
-		BigInteger p = ecSpec.getCurve().getField().getCharacteristic(); 	//domain parameter p
+		//nMinusOne, tau (the bit length of the order of the base point) and l = roundedUp(log256(n)) have already been calculated in the constructor
 		
 		BigInteger k;														//k = RNG{1, ... , (n-1)}
 		ECPoint Q;															//Q = k * generatorG
 		
-		int tau = ecSpec.getN().bitLength(); 								//tau is the bit length of the order of the base point. tau = log2(n)
-		
 		BigInteger r;														//r = OS2I (hash tau(FE2OS(xQ) || FE2OS(yQ) || M))
 		BigInteger s;														//s = k + r*dA mod n
-		
-		//create the byte array that will hold the signature value consisting of "r" and "s"
-		//signature byte array should be 2*l long where l = roundedUp(log256(n))
-		double nAsDouble = n.doubleValue();
-		double lAsDouble = (Math.log(nAsDouble)) / Math.log(256);
-		lAsDouble = Math.ceil(lAsDouble);
-		int l = (int) lAsDouble;
-		
-		byte[] signature = new byte[(2*l)];
 
 
 		//using goto statements in java with named breakpoints.
 		createNewSignature : while(true) {
 			
+			//FE2OS(xQ) || FE2OS(yQ), either taken from the nonce pool or written into the encoding buffer of this thread
+			byte[] encodedQ;
+			
+			//if a nonce pool is used, steps 1. to 3a.b have already been performed by its worker threads
+			if(noncePool != null) {
+				NoncePool.PrecomputedNonce nonce = noncePool.take();
+				k = nonce.getK();
+				encodedQ = nonce.getEncodedQ();
+			}
+			else {
 			//1... k = RNG({1, 2, 3, ..., n-1}) where n = order of point G in E(Fp)
-			k = calculateRandomK(BigInteger.ONE, nMinusOne);
+				k = calculateRandomK(BigInteger.ONE, nMinusOne);
 
 			//2. Q = k * G
-			Q = generatorG.multiply(k);
-			Q = Q.normalize();			//normalize the point 
+				Q = generatorMultiplier.multiply(k);		//uses the fixed-base table for G if enabled, Q is already normalized
+				
+				encodedQ = CryptoContext.get().getEncodingBuffer(2 * fieldElementLength);
 			
 				//3a.a FE2OS(xQ)
-			BigInteger xCoordinateQ = Q.getAffineXCoord().toBigInteger();
-			byte[] xQ = TR_03111_Utils.FE2OS(xCoordinateQ, p);
+				BigInteger xCoordinateQ = Q.getAffineXCoord().toBigInteger();
+				TR_03111_Utils.FE2OS(xCoordinateQ, encodedQ, 0, fieldElementLength);
 			
 				//3a.b FE2OS(yQ)
-			BigInteger yCoordinateQ = Q.getAffineYCoord().toBigInteger();
-			byte[] yQ = TR_03111_Utils.FE2OS(yCoordinateQ, p);
+				BigInteger yCoordinateQ = Q.getAffineYCoord().toBigInteger();
+				TR_03111_Utils.FE2OS(yCoordinateQ, encodedQ, fieldElementLength, fieldElementLength);
+			}
 			
 				//3a.c toBeHashed = FE2OS(xQ) concat FE2OS(yQ) concat M
 //byte[] toBeHashed = Utils.concatAnyNumberOfByteArrays(xQ, yQ, message);
@@ -269,7 +210,7 @@ public class ECSDSA extends SignatureAlgorithm{
 			MessageDigest md = null;
 					
 					try {
-						md = MessageDigest.getInstance(hashFunction, "BC");
+						md = CryptoContext.get().getDigest(hashFunction);		//reset digest of this thread, no provider lookup
 						//check, if length of the output of the hash function in bits < bit length of the order of the base point
 						//if yes, that is illegal according to BSI TR-03111 V2.1
 						if((md.getDigestLength()*8) < tau) {
@@ -277,24 +218,18 @@ public class ECSDSA extends SignatureAlgorithm{
 						}
 					} catch (NoSuchAlgorithmException e) {
 						e.printStackTrace();
-					} catch (NoSuchProviderException e) {
-						e.printStackTrace();
 					}
 
 					
 					//feed the concatenation of FE2OS(xQ), FE2OS(yQ) and toBeSigned into hash function
-					md.update(xQ);
-					md.update(yQ);
-					md.update(message);
+					md.update(encodedQ, 0, 2 * fieldElementLength);
+					message.writeTo(new MessageDigestSink(md));
 					
 				//3b.b finish the hash calculation
 					byte[] hashByteArray = md.digest();
 		
-				//3c.a truncate the hashByteArray to the tau leftmost bits in accordance with the TR-03111
-					byte[] truncatedHashByteArray = TR_03111_Utils.truncatedleftmostBits(hashByteArray, tau);
-						
-				//3c.b create a BigInteger that can hold the truncated hash value byte array 
-					r = TR_03111_Utils.OS2BigInt(truncatedHashByteArray);
+				//3c. truncate the hashByteArray to the tau leftmost bits in accordance with the TR-03111 and turn them into a BigInteger
+					r = TR_03111_Utils.truncatedleftmostBitsAsBigInt(hashByteArray, tau);
 					
 				//3d if r % n == 0 goto 1.
 					if(r.mod(n) == BigInteger.ZERO){
@@ -319,18 +254,15 @@ public class ECSDSA extends SignatureAlgorithm{
 				break;
 			} 
 		
-		//5a convert r into byte array with I2OS(rAsBigInt, l)
-			byte[] rAsByteArray = null;
-			rAsByteArray = TR_03111_Utils.I2OS(r, l);
-			
-			
-		//5b convert s into byte array with I2OS(s, l)
-			byte[] sAsByteArray = null;
-			sAsByteArray = TR_03111_Utils.I2OS(s, l);
-			
+		//create the byte array that will hold the signature value consisting of "r" and "s"
+		//signature byte array should be 2*l long where l = roundedUp(log256(n))
+			byte[] signature = new byte[(2*l)];
+		
+		//5a write r into the first half of the signature with I2OS(r, l)
+			TR_03111_Utils.I2OS(r, signature, 0, l);
 			
-		//5c concat rAsByteArray and sAsByteArray to get signature
-			signature = Utils.concatTwoByteArrays(rAsByteArray, sAsByteArray);
+		//5b write s into the second half of the signature with I2OS(s, l)
+			TR_03111_Utils.I2OS(s, signature, l, l);
 
 		return signature;
 	}
@@ -339,6 +271,9 @@ public class ECSDSA extends SignatureAlgorithm{
 	/**
 	 * Mainly used for testing purposes, this method uses the public key of a loaded ECSDSA to verify the signature created with that keys
 	 * private counterpart. The caller has to make sure that the keys are correct, otherwise the signature validation will fail.
+	 * <b>Changes in version 1.6:</b><br>
+	 * sG - rPa is calculated by the {@linkplain DoubleBaseMultiplier} built in the constructor. n-1, tau and 2^tau - 1 are no longer calculated on every call.
+	 * r and s are read directly from the signature, FE2OS(xQ) and FE2OS(yQ) are written into the encoding buffer of the {@linkplain CryptoContext} of the thread.
 	 * @param signature the signature as a byte array over the message. Has to be just the signature, without any ASN.1 attachment.
 	 * @param message the message that was fed into the signature creation.
 	 * @throws ECCException
@@ -348,16 +283,8 @@ public class ECSDSA extends SignatureAlgorithm{
 		boolean isVerified = false;
 		
 		//define everything that can be defined at this point of the program
+		//nMinusOne, tau and twoPowTauMinusOne (used for verifying r e {1, ... , 2^tau -1}) have already been calculated in the constructor
 		BigInteger n = ecSpec.getN();										//domain parameter n
-		BigInteger nMinusOne = ecSpec.getN().subtract(BigInteger.ONE); 		//nMinusOne = domain parameter n minus 1
-		ECPoint generatorG = ecSpec.getG();									//domain parameter G
-		BigInteger p = ecSpec.getCurve().getField().getCharacteristic(); 	//domain parameter p
-		
-		int tau = n.bitLength(); 								//tau is the bit length of the order of the base point. tau = log2(n)
-		
-		BigInteger two = new BigInteger("2");
-		BigInteger twoPowTau = two.pow(tau); 								//side calculation for (2 pow tau) minus 1
-		BigInteger twoPowTauMinusOne = twoPowTau.subtract(BigInteger.ONE); 	//used for verifying r e {1, ... , 2^tau -1}
 		
 		
 		//get the length of each byte array of r and s
@@ -367,16 +294,9 @@ public class ECSDSA extends SignatureAlgorithm{
 		}
 		int l = signature.length / 2;
 		
-		//1a. split the signature into its components r and s
-		byte[] rAsByteArray = new byte[l];
-		byte[] sAsByteArray = new byte[l];
-		System.arraycopy(signature, 0, rAsByteArray, 0, rAsByteArray.length);
-		System.arraycopy(signature, (rAsByteArray.length), sAsByteArray, 0, sAsByteArray.length);
-		
-		
-		//1b. turn rAsByteArray and sAsByteArray into BigIntegers
-		BigInteger r = TR_03111_Utils.OS2BigInt(rAsByteArray);
-		BigInteger s = TR_03111_Utils.OS2BigInt(sAsByteArray);
+		//1a. + 1b. split the signature into its components r and s and turn them into BigIntegers
+		BigInteger r = TR_03111_Utils.OS2BigInt(signature, 0, l);
+		BigInteger s = TR_03111_Utils.OS2BigInt(signature, l, l);
 		
 		//1c. verify that r e {1, ... , 2^tau -1} && s e {1, 2, ... , n-1}
 			//1c.a calculate 2pow(r) -1
@@ -395,20 +315,11 @@ public class ECSDSA extends SignatureAlgorithm{
 			return false;
 		}
 		
-		//2a. calculate sG = s*G
-		ECPoint sG = generatorG.multiply(s);
-		sG = sG.normalize(); 		//normalize the point
-		
-		
-		//2b. calculate rPa = r*Pa
-			ECPoint Pa = publicKey.getQ(); 		//get the public point from the public key
-			Pa = Pa.normalize();
-				
-			ECPoint rPa = Pa.multiply(r);
-			rPa = rPa.normalize();
-		//2c. calculate Q = sG - rPa
-			ECPoint Q = sG.subtract(rPa);
-			Q = Q.normalize();
+		//2. calculate Q = sG - rPa
+			//since Pa has the order n, sG - rPa equals sG + ((-r) mod n)*Pa. Both multiplications are interleaved and use the precomputed
+			//tables of G and Pa, Q is already normalized
+			BigInteger minusRModN = r.negate().mod(n);
+			ECPoint Q = verificationMultiplier.multiplyAndAdd(s, minusRModN);
 		
 		//2d check if Q == Point Infinity
 		if(Q.isInfinity()) {	//Q.equals(ecSpec.getG().getCurve().getInfinity()) if Q.isInfinity is not working
@@ -416,41 +327,36 @@ public class ECSDSA extends SignatureAlgorithm{
 			return false;
 		}
 		
+		byte[] encodedQ = CryptoContext.get().getEncodingBuffer(2 * fieldElementLength);
+		
 		//3a.a FE2OS(xQ)
 		BigInteger xCoordinateQ = Q.getAffineXCoord().toBigInteger();
-		byte[] xQ = TR_03111_Utils.FE2OS(xCoordinateQ, p);
+		TR_03111_Utils.FE2OS(xCoordinateQ, encodedQ, 0, fieldElementLength);
 			
 		//3a.b FE2OS(yQ)
 		BigInteger yCoordinateQ = Q.getAffineYCoord().toBigInteger();
-		byte[] yQ = TR_03111_Utils.FE2OS(yCoordinateQ, p);
+		TR_03111_Utils.FE2OS(yCoordinateQ, encodedQ, fieldElementLength, fieldElementLength);
 		
 		//3a.c toBeHashed = FE2OS(xQ) concat FE2OS(yQ) concat M
 
 		//3b.a hash = hash(toBeHashed)
 		MessageDigest md = null;	
 				try {
-					md = MessageDigest.getInstance(hashFunction, "BC");
+					md = CryptoContext.get().getDigest(hashFunction);		//reset digest of this thread, no provider lookup
 					//TODO: throw additional exception? if Hashlength < tau?: Currently not necessary, maybe in the future another exception could be implemented.
 				} catch (NoSuchAlgorithmException e) {
 					e.printStackTrace();
-				} catch (NoSuchProviderException e) {
-					e.printStackTrace();
 				}
 				
 				//feed the concatenation of FE2OS(xQ), FE2OS(yQ) and message into hash function
-				md.update(xQ);
-				md.update(yQ);
+				md.update(encodedQ, 0, 2 * fieldElementLength);
 				md.update(message);
 				
 			//3b.b finish the hash calculation
 				byte[] hashByteArray = md.digest();
 				
-				//3c.a truncate the hashByteArray to the tau leftmost bits in accordance with the TR-03111
-					//TR_03111_Utils.OS2BigInt may throw a TR_03111_ECC_V2_1_Exception
-				byte[] truncatedHashByteArray = TR_03111_Utils.truncatedleftmostBits(hashByteArray, tau);
-			
-			//3d.a v = OS2BigInt(truncatedHashByteArray)
-				BigInteger v = TR_03111_Utils.OS2BigInt(truncatedHashByteArray);
+			//3c. + 3d.a truncate the hashByteArray to the tau leftmost bits in accordance with the TR-03111 and turn them into v
+				BigInteger v = TR_03111_Utils.truncatedleftmostBitsAsBigInt(hashByteArray, tau);
 				
 			//3d.b check if v == r
 				if(v.equals(r)) {
@@ -462,6 +368,16 @@ public class ECSDSA extends SignatureAlgorithm{
 	
 	
 	
+	/**
+	 * Getter method for the nonce pool.
+	 * @return the {@linkplain NoncePool} used by this algorithm or null, if no nonce pool is configured.
+	 * @since 1.6
+	 */
+	@Override
+	public NoncePool getNoncePool() {
+		return this.noncePool;
+	}
+	
 	@Override
 	public ECPublicKey getPublicKey() {
 		return this.publicKey;
@@ -0,0 +1,113 @@
+/**
+ *
+ */
+package main.java.de.bsi.tsesimulator.tse.crypto;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+import org.bouncycastle.jce.spec.ECParameterSpec;
+import org.bouncycastle.math.ec.ECMultiplier;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+import org.bouncycastle.math.ec.FixedPointUtil;
+
+import main.java.de.bsi.tsesimulator.constants.ConfigConstants;
+import main.java.de.bsi.tsesimulator.preferences.PropertyValues;
+
+/**
+ * Calculates scalar multiples k*G of the base point G of a curve. Since G never changes for a {@linkplain SignatureAlgorithm}, a fixed-base comb table
+ * for G can be precomputed once when the SignatureAlgorithm is created. Every following multiplication then only needs a few point additions instead of
+ * a complete variable-base scalar multiplication.<br>
+ * Whether the comb table is used is determined by the value of <i>fixedBasePrecomputation</i> in config.properties. If that entry is missing, the
+ * precomputation is used. If it is set to <i>false</i>, the plain {@linkplain ECPoint#multiply(BigInteger)} of the base point is used instead.<br>
+ * The precomputed table is stored by BouncyCastle inside the base point itself and is only read after it has been built, so one object of this class
+ * may be used by several threads at once.
+ *
+ * @see {@linkplain ECDSA}, {@linkplain ECSDSA}
+ * @since 1.6
+ */
+public class FixedBaseMultiplier {
+
+	private final ECPoint generatorG;					//the normalized base point G of the curve
+	private final ECMultiplier combMultiplier;			//null, if the precomputation is switched off
+
+	/**
+	 * Creates a FixedBaseMultiplier for the base point of the curve described by ecSpec. Reads config.properties to determine whether the
+	 * fixed-base comb table shall be precomputed. If so, the table is built right away so that the first signature does not have to pay for it.
+	 * @param ecSpec the specification of the curve whose base point G shall be multiplied.
+	 * @throws IOException if {@linkplain PropertyValues#getInstance()} throws it
+	 * @since 1.6
+	 */
+	public FixedBaseMultiplier(ECParameterSpec ecSpec) throws IOException {
+		this(ecSpec, isPrecomputationEnabled());
+	}
+
+	/**
+	 * Creates a FixedBaseMultiplier for the base point of the curve described by ecSpec without consulting config.properties.
+	 * @param ecSpec the specification of the curve whose base point G shall be multiplied.
+	 * @param usePrecomputation true, if the fixed-base comb table shall be built and used. False, if the plain multiplication shall be used.
+	 * @since 1.6
+	 */
+	public FixedBaseMultiplier(ECParameterSpec ecSpec, boolean usePrecomputation) {
+		this.generatorG = ecSpec.getG().normalize();
+
+		if(usePrecomputation) {
+			//build the comb table for G once, it is cached in G and reused by every call of FixedPointCombMultiplier.multiply
+			FixedPointUtil.precompute(generatorG);
+			this.combMultiplier = new FixedPointCombMultiplier();
+		}
+		else {
+			this.combMultiplier = null;
+		}
+	}
+
+	/**
+	 * Calculates Q = k*G and normalizes Q.
+	 * @param k the scalar G shall be multiplied with.
+	 * @return the normalized point k*G
+	 * @since 1.6
+	 */
+	public ECPoint multiply(BigInteger k) {
+		ECPoint Q;
+		if(combMultiplier != null) {
+			Q = combMultiplier.multiply(generatorG, k);
+		}
+		else {
+			Q = generatorG.multiply(k);
+		}
+		return Q.normalize();
+	}
+
+	/**
+	 * Fetches the normalized base point G this FixedBaseMultiplier multiplies.
+	 * @return the base point G
+	 * @since 1.6
+	 */
+	public ECPoint getGenerator() {
+		return generatorG;
+	}
+
+	/**
+	 * Used to find out whether this FixedBaseMultiplier uses the precomputed comb table.
+	 * @return true, if the comb table is used, false if the plain multiplication is used.
+	 * @since 1.6
+	 */
+	public boolean usesPrecomputation() {
+		return combMultiplier != null;
+	}
+
+	/**
+	 * Reads the entry <i>fixedBasePrecomputation</i> from config.properties. A missing entry counts as switched on, so that older configuration files
+	 * benefit from the precomputation as well.
+	 * @return false, if the entry is set to false, true otherwise.
+	 * @throws IOException if {@linkplain PropertyValues#getInstance()} throws it
+	 */
+	private static boolean isPrecomputationEnabled() throws IOException {
+		String configValue = PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_FIXED_BASE_PRECOMPUTATION);
+		if(configValue == null) {
+			return true;
+		}
+		return !configValue.trim().equalsIgnoreCase(ConfigConstants.CFG_ENTRY_FIXED_BASE_PRECOMPUTATION_FALSE);
+	}
+}
@@ -0,0 +1,299 @@
+/**
+ *
+ */
+package main.java.de.bsi.tsesimulator.tse.crypto;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.security.SignatureException;
+
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.jce.ECNamedCurveTable;
+import org.bouncycastle.jce.interfaces.ECPrivateKey;
+import org.bouncycastle.jce.interfaces.ECPublicKey;
+import org.bouncycastle.jce.spec.ECParameterSpec;
+
+import main.java.de.bsi.tsesimulator.constants.ConfigConstants;
+import main.java.de.bsi.tsesimulator.exceptions.ECCException;
+import main.java.de.bsi.tsesimulator.exceptions.LoadingFailedException;
+import main.java.de.bsi.tsesimulator.exceptions.TR_03111_ECC_V2_1_Exception;
+import main.java.de.bsi.tsesimulator.preferences.PropertyValues;
+import main.java.de.bsi.tsesimulator.tse.CryptoCore;
+import main.java.de.bsi.tsesimulator.utils.TR_03111_Utils;
+
+/**
+ * Plain ECDSA as a {@linkplain SignatureAlgorithm} that lets the signature engine of the BouncyCastle provider do the work instead of the hand-written
+ * implementation of BSI TR-03111 in {@linkplain ECDSA}. It uses the same keys, curve and hash function as {@linkplain ECDSA} and creates signatures in the
+ * same plain format r||s, so both classes can verify each other's signatures.<br>
+ * If the provider offers a combined engine like "SHA512withPLAIN-ECDSA" for the configured hash function, that engine is used. Otherwise (e.g. for SHA-3),
+ * the message is hashed with the digest of the {@linkplain CryptoContext} and the hash is signed with "NONEwithECDSA". The DER encoded output of that
+ * engine is converted to r||s. Both engines truncate the hash to the bit length tau of the order of the base point, just like TR-03111 does.<br>
+ * Every thread uses its own {@linkplain Signature} objects, so an object of this class may be used by several threads at once.
+ * <br>
+ * Used by {@linkplain CryptoCore} if <i>signatureEngine</i> is set to <i>provider</i> or <i>crossCheck</i> in config.properties.
+ * @see {@linkplain SignatureAlgorithm}, {@linkplain CrossCheckSignatureAlgorithm}
+ * @since 1.6
+ */
+public class JcaECDSA extends SignatureAlgorithm {
+
+	private final ECPrivateKey privateKey;
+	private final ECPublicKey publicKey;
+	private final String hashFunction;					//Stores what hash function shall be used, e.g. "SHA512" or "SHA3-512"
+	private final String engineName;					//the name of the provider engine that is used
+	private final boolean isEngineHashing;				//true if the engine hashes the message itself, false if it signs a precalculated hash
+	private final String algorithmDefinition;			//the key for Constants.ALGORITHM_OID_MAP, e.g. "ECDSA_PLAIN_SHA3_512"
+	private final int l;								//length of r and s in bytes, l = roundedUp(log256(n))
+	private final int tau;								//bit length of the order n of the base point
+	private final int digestBitLength;					//bit length of the output of the hash function
+
+	//every thread gets its own engines, initialized once with the private key respectively the public key
+	private final ThreadLocal<Signature> signerOfThread = new ThreadLocal<Signature>() {
+		@Override
+		protected Signature initialValue() {
+			try {
+				Signature signer = Signature.getInstance(engineName, CryptoContext.getProvider());
+				signer.initSign(privateKey, CryptoContext.get().getRandom());
+				return signer;
+			} catch (GeneralSecurityException e) {
+				throw new IllegalStateException("The signature engine " +engineName +" could not be initialized for signing.", e);
+			}
+		}
+	};
+
+	private final ThreadLocal<Signature> verifierOfThread = new ThreadLocal<Signature>() {
+		@Override
+		protected Signature initialValue() {
+			try {
+				Signature verifier = Signature.getInstance(engineName, CryptoContext.getProvider());
+				verifier.initVerify(publicKey);
+				return verifier;
+			} catch (GeneralSecurityException e) {
+				throw new IllegalStateException("The signature engine " +engineName +" could not be initialized for verifying.", e);
+			}
+		}
+	};
+
+
+	/**
+	 * The default constructor that gets called by {@linkplain CryptoCore} if the provider engine shall be used.
+	 * It loads the keys of the TSE the same way {@linkplain ECDSA#ECDSA()} does and looks up the best engine the provider has for the configured hash function.
+	 * @throws IOException if reading the private key file fails and/or accessing config.properties through {@linkplain PropertyValues} fails.
+	 * @throws LoadingFailedException if the provider neither offers a plain ECDSA engine for the hash function nor the hash function itself.
+	 * @since 1.6
+	 */
+	public JcaECDSA() throws IOException {
+		//make sure the BouncyCastle Provider is registered, the CryptoContext only does this once
+		CryptoContext.getProvider();
+		//store curve specifications for loading the keys
+		String curveName = PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_CURVE);
+		ECParameterSpec ecSpec = ECNamedCurveTable.getParameterSpec(curveName);
+
+		//load the key pair of the TSE, the format of the private key file is taken from config.properties
+		KeyPair keyPair = ECKeyLoader.loadKeyPair(ecSpec);
+		privateKey = (ECPrivateKey) keyPair.getPrivate();
+		publicKey = (ECPublicKey) keyPair.getPublic();
+
+		//set the hashFunction, BC requires a "SHA3-xyz" String instead of a "SHAxyz" for SHA3
+		StringBuilder hashNameBuilder = new StringBuilder(PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_HASH_METHOD));
+		if(PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_HASH_METHOD).equalsIgnoreCase(ConfigConstants.CFG_ENTRY_HASH_METHOD_SHA3)) {
+			hashNameBuilder.append('-');
+		}
+		hashNameBuilder.append(PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_HASH_LENGTH));
+		hashFunction = hashNameBuilder.toString();
+
+		//prefer the engine that hashes and creates the plain format itself, otherwise sign the precalculated hash
+		String combinedEngineName = hashFunction +"withPLAIN-ECDSA";
+		if(CryptoContext.getProvider().getService("Signature", combinedEngineName) != null) {
+			engineName = combinedEngineName;
+			isEngineHashing = true;
+		}
+		else {
+			engineName = "NONEwithECDSA";
+			isEngineHashing = false;
+		}
+
+		//l, tau and the digest length only depend on the configuration, calculate them once
+		BigInteger n = ecSpec.getN();
+		l = TR_03111_Utils.octetLength(n);
+		tau = n.bitLength();
+		try {
+			digestBitLength = CryptoContext.get().getDigest(hashFunction).getDigestLength() * 8;
+		} catch (NoSuchAlgorithmException e) {
+			throw new LoadingFailedException("The hash function " +hashFunction +" is not available.", e);
+		}
+
+		//set the algorithm definition the same way ECDSA does, e.g. "ECDSA_PLAIN_SHA3_512"
+		StringBuilder algorithmDefinitionBuilder = new StringBuilder("ECDSA_PLAIN_");
+		algorithmDefinitionBuilder.append(PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_HASH_METHOD).toUpperCase());
+		algorithmDefinitionBuilder.append('_').append(PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_HASH_LENGTH));
+		algorithmDefinition = algorithmDefinitionBuilder.toString();
+	}
+
+
+	/**
+	 * Signs the message with the provider engine. Delegates to {@linkplain #sign(SignatureInput)}.
+	 * @param message the value that shall be signed by this algorithm object.
+	 * @return the signature r||s, r and s each with a length of l bytes.
+	 * @throws TR_03111_ECC_V2_1_Exception if the bit length of the digest of the chosen hash function is less than the bit length
+	 * of the order of the base point of the chosen curve or if the provider engine fails.
+	 * @since 1.6
+	 */
+	@Override
+	public byte[] sign(byte[] message) throws TR_03111_ECC_V2_1_Exception {
+		return sign(createInput(message));
+	}
+
+	/**
+	 * Signs the message with the provider engine. The message is written straight into the engine if it hashes itself, otherwise into the digest of the 
+	 * {@linkplain CryptoContext} of the calling thread.
+	 * @param message the value that shall be signed by this algorithm object. It writes itself into the engine or the hash function.
+	 * @return the signature r||s, r and s each with a length of l bytes.
+	 * @throws TR_03111_ECC_V2_1_Exception if the bit length of the digest of the chosen hash function is less than the bit length
+	 * of the order of the base point of the chosen curve or if the provider engine fails.
+	 * @since 1.6
+	 */
+	@Override
+	public byte[] sign(SignatureInput message) throws TR_03111_ECC_V2_1_Exception {
+		//the same restriction as in the reference implementation
+		if(digestBitLength < tau) {
+			throw new TR_03111_ECC_V2_1_Exception("The length of the hash function SHOULD NOT be chosen so that digestBitLength < tau");
+		}
+		try {
+			Signature signer = signerOfThread.get();
+			//a combined engine creates r||s itself
+			if(isEngineHashing) {
+				message.writeTo(new SignatureSink(signer));
+				return signer.sign();
+			}
+			//otherwise, sign the hash and convert the DER encoded SEQUENCE of r and s to r||s
+			MessageDigest md = CryptoContext.get().getDigest(hashFunction);
+			message.writeTo(new MessageDigestSink(md));
+			signer.update(md.digest());
+			ASN1Sequence rAndS = ASN1Sequence.getInstance(signer.sign());
+			BigInteger r = ASN1Integer.getInstance(rAndS.getObjectAt(0)).getValue();
+			BigInteger s = ASN1Integer.getInstance(rAndS.getObjectAt(1)).getValue();
+			byte[] signature = new byte[2 * l];
+			TR_03111_Utils.I2OS(r, signature, 0, l);
+			TR_03111_Utils.I2OS(s, signature, l, l);
+			return signature;
+		} catch (GeneralSecurityException | IllegalStateException e) {
+			throw new TR_03111_ECC_V2_1_Exception("The provider engine " +engineName +" failed to sign.", e);
+		}
+	}
+
+	/**
+	 * Verifies a signature r||s with the provider engine.
+	 * @param signature the signature r||s
+	 * @param message the value that has been signed
+	 * @return true if the signature can be verified using the public key of this object and the message.
+	 * @throws ECCException if the signature has an odd length or the provider engine fails.
+	 * @since 1.6
+	 */
+	@Override
+	public boolean verify(byte[] signature, byte[] message) throws ECCException {
+		//get the length of each byte array of r and s, should be signature.length / 2
+		if((signature.length % 2) != 0) {
+			throw new ECCException("total length of r and s combined should be an even value.");
+		}
+		try {
+			Signature verifier = verifierOfThread.get();
+			if(isEngineHashing) {
+				verifier.update(message);
+				return verifier.verify(signature);
+			}
+			//split the signature into r and s and encode them as a DER SEQUENCE, which is what NONEwithECDSA expects
+			int lengthOfRAndS = signature.length / 2;
+			ASN1EncodableVector rAndS = new ASN1EncodableVector();
+			rAndS.add(new ASN1Integer(TR_03111_Utils.OS2BigInt(signature, 0, lengthOfRAndS)));
+			rAndS.add(new ASN1Integer(TR_03111_Utils.OS2BigInt(signature, lengthOfRAndS, lengthOfRAndS)));
+
+			verifier.update(hash(message));
+			return verifier.verify(new DERSequence(rAndS).getEncoded());
+		} catch (GeneralSecurityException | IOException | IllegalStateException e) {
+			throw new ECCException("The provider engine " +engineName +" failed to verify.", e);
+		}
+	}
+
+	/**
+	 * A {@linkplain DigestSink} that feeds the bytes straight into a provider engine that hashes the message itself.
+	 * {@linkplain SignatureException}s of the engine are thrown as {@linkplain IllegalStateException}s, because a DigestSink can not throw checked exceptions.
+	 */
+	private static final class SignatureSink implements DigestSink {
+		private final Signature signer;
+
+		private SignatureSink(Signature signer) {
+			this.signer = signer;
+		}
+
+		@Override
+		public void update(byte input) {
+			try {
+				signer.update(input);
+			} catch (SignatureException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public void update(byte[] input) {
+			update(input, 0, input.length);
+		}
+
+		@Override
+		public void update(byte[] input, int offset, int length) {
+			try {
+				signer.update(input, offset, length);
+			} catch (SignatureException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	/**
+	 * Hashes the message with the digest of the {@linkplain CryptoContext} of the calling thread.
+	 * @param message the message to be hashed
+	 * @return the untruncated hash of the message
+	 * @throws NoSuchAlgorithmException if the hash function is not available
+	 */
+	private byte[] hash(byte[] message) throws NoSuchAlgorithmException {
+		MessageDigest md = CryptoContext.get().getDigest(hashFunction);
+		md.update(message);
+		return md.digest();
+	}
+
+	/**
+	 * Getter method for the public key.
+	 * @return the public key
+	 */
+	@Override
+	public ECPublicKey getPublicKey() {
+		return this.publicKey;
+	}
+
+	/**
+	 * Returns a String of the used signature algorithm so it may be used as a key in the {@linkplain main.java.de.bsi.tsesimulator.constants.Constants#ALGORITHM_OID_MAP}.
+	 * The provider engine creates the same kind of signatures as {@linkplain ECDSA}, so the result is the same as {@linkplain ECDSA#getAlgorithmDefinition()}.
+	 * <br><br>Examples:<br> "ECDSA_PLAIN_SHA3_512" <br> "ECDSA_PLAIN_SHA_512"
+	 */
+	@Override
+	public String getAlgorithmDefinition() {
+		return this.algorithmDefinition;
+	}
+
+	/**
+	 * Getter method for the name of the provider engine.
+	 * @return the name of the engine, e.g. "SHA512withPLAIN-ECDSA" or "NONEwithECDSA"
+	 * @since 1.6
+	 */
+	public String getEngineName() {
+		return this.engineName;
+	}
+}
@@ -0,0 +1,40 @@
+/**
+ * 
+ */
+package main.java.de.bsi.tsesimulator.tse.crypto;
+
+import java.security.MessageDigest;
+
+/**
+ * A {@linkplain DigestSink} that feeds every byte straight into a {@linkplain MessageDigest}. Used by the signature algorithms to hash a 
+ * {@linkplain SignatureInput}.
+ * 
+ * @since 1.6
+ */
+final class MessageDigestSink implements DigestSink {
+
+	private final MessageDigest md;
+	
+	/**
+	 * Creates a sink for the digest. The digest is not reset.
+	 * @param md the digest that shall receive the bytes
+	 */
+	MessageDigestSink(MessageDigest md) {
+		this.md = md;
+	}
+
+	@Override
+	public void update(byte input) {
+		md.update(input);
+	}
+
+	@Override
+	public void update(byte[] input) {
+		md.update(input);
+	}
+
+	@Override
+	public void update(byte[] input, int offset, int length) {
+		md.update(input, offset, length);
+	}
+}
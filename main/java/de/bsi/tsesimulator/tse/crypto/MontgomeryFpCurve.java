@@ -0,0 +1,161 @@
+/**
+ *
+ */
+package main.java.de.bsi.tsesimulator.tse.crypto;
+
+import java.math.BigInteger;
+
+import org.bouncycastle.math.ec.AbstractECLookupTable;
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECFieldElement;
+import org.bouncycastle.math.ec.ECLookupTable;
+import org.bouncycastle.math.ec.ECPoint;
+
+/**
+ * A short Weierstrass curve y^2 = x^3 + a*x + b over a prime field whose field elements are fixed-width limbs in Montgomery form.<br>
+ * BouncyCastle only ships specialized curve classes for primes of a special form (e.g. SecP256R1Curve). The prime of a brainpool curve has no such
+ * form, so BouncyCastle falls back to {@linkplain ECCurve.Fp}, which reduces every product with BigInteger division. This class replaces the division
+ * by the Montgomery reduction of {@linkplain MontgomeryFpField} and uses Jacobian coordinates ({@linkplain MontgomeryFpPoint}).<br>
+ * <br>
+ * The curve is equal to the {@linkplain ECCurve.Fp} with the same parameters, so points can be moved between both with {@linkplain ECCurve#importPoint(ECPoint)}.
+ * Chosen by {@linkplain CurveArithmetic}.
+ *
+ * @since 1.6
+ */
+public class MontgomeryFpCurve extends ECCurve.AbstractFp {
+
+	private final MontgomeryFpField montgomeryField;
+	private final MontgomeryFpPoint infinity;
+	private final boolean isAMinusThree;			//allows a cheaper point doubling
+
+	/**
+	 * Creates the curve y^2 = x^3 + a*x + b over the prime field with characteristic q.
+	 * @param q the odd prime p of the field
+	 * @param a the curve parameter a
+	 * @param b the curve parameter b
+	 * @param order the order n of the base point
+	 * @param cofactor the cofactor h
+	 * @since 1.6
+	 */
+	public MontgomeryFpCurve(BigInteger q, BigInteger a, BigInteger b, BigInteger order, BigInteger cofactor) {
+		super(q);
+
+		this.montgomeryField = new MontgomeryFpField(q, new ECCurve.Fp(q, a, b, order, cofactor));
+
+		this.a = fromBigInteger(a);
+		this.b = fromBigInteger(b);
+		this.order = order;
+		this.cofactor = cofactor;
+		this.coord = COORD_JACOBIAN;
+
+		//the coordinate system has to be set before, because it determines the initial Z coordinates of a point
+		this.infinity = new MontgomeryFpPoint(this, null, null);
+
+		this.isAMinusThree = a.mod(q).equals(q.subtract(BigInteger.valueOf(3)));
+	}
+
+	@Override
+	protected ECCurve cloneCurve() {
+		return new MontgomeryFpCurve(getQ(), a.toBigInteger(), b.toBigInteger(), order, cofactor);
+	}
+
+	@Override
+	public boolean supportsCoordinateSystem(int coord) {
+		return coord == COORD_JACOBIAN;
+	}
+
+	/**
+	 * @return the prime p of the field
+	 */
+	public BigInteger getQ() {
+		return montgomeryField.getQ();
+	}
+
+	@Override
+	public int getFieldSize() {
+		return montgomeryField.getQ().bitLength();
+	}
+
+	@Override
+	public ECFieldElement fromBigInteger(BigInteger x) {
+		return new MontgomeryFpFieldElement(montgomeryField, montgomeryField.toMontgomery(x.mod(montgomeryField.getQ())));
+	}
+
+	@Override
+	protected ECPoint createRawPoint(ECFieldElement x, ECFieldElement y) {
+		return new MontgomeryFpPoint(this, x, y);
+	}
+
+	@Override
+	protected ECPoint createRawPoint(ECFieldElement x, ECFieldElement y, ECFieldElement[] zs) {
+		return new MontgomeryFpPoint(this, x, y, zs);
+	}
+
+	@Override
+	public ECPoint getInfinity() {
+		return infinity;
+	}
+
+	/**
+	 * @return true, if the curve parameter a equals -3 mod p
+	 */
+	boolean isAMinusThree() {
+		return isAMinusThree;
+	}
+
+	/**
+	 * Stores the limbs of the affine points directly, so that a lookup does not have to convert BigIntegers into Montgomery form.
+	 * Like the tables of the BouncyCastle curves, {@linkplain ECLookupTable#lookup(int)} reads every entry, so the access pattern does not depend on the index.
+	 */
+	@Override
+	public ECLookupTable createCacheSafeLookupTable(ECPoint[] points, int off, final int len) {
+		final int length = montgomeryField.getLength();
+		final int[] table = new int[len * length * 2];
+		int pos = 0;
+		for(int i = 0; i < len; i++) {
+			ECPoint point = points[off + i];
+			System.arraycopy(((MontgomeryFpFieldElement) point.getRawXCoord()).getLimbs(), 0, table, pos, length);
+			pos += length;
+			System.arraycopy(((MontgomeryFpFieldElement) point.getRawYCoord()).getLimbs(), 0, table, pos, length);
+			pos += length;
+		}
+
+		return new AbstractECLookupTable() {
+			@Override
+			public int getSize() {
+				return len;
+			}
+
+			@Override
+			public ECPoint lookup(int index) {
+				int[] x = new int[length];
+				int[] y = new int[length];
+				int pos = 0;
+				for(int i = 0; i < len; i++) {
+					//mask is -1 for the requested entry and 0 for every other one
+					int mask = ((i ^ index) - 1) >> 31;
+					for(int j = 0; j < length; j++) {
+						x[j] ^= table[pos + j] & mask;
+						y[j] ^= table[pos + length + j] & mask;
+					}
+					pos += length * 2;
+				}
+				return createPoint(x, y);
+			}
+
+			@Override
+			public ECPoint lookupVar(int index) {
+				int[] x = new int[length];
+				int[] y = new int[length];
+				int pos = index * length * 2;
+				System.arraycopy(table, pos, x, 0, length);
+				System.arraycopy(table, pos + length, y, 0, length);
+				return createPoint(x, y);
+			}
+
+			private ECPoint createPoint(int[] x, int[] y) {
+				return createRawPoint(new MontgomeryFpFieldElement(montgomeryField, x), new MontgomeryFpFieldElement(montgomeryField, y));
+			}
+		};
+	}
+}
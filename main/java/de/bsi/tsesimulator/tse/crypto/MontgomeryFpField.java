@@ -0,0 +1,275 @@
+/**
+ *
+ */
+package main.java.de.bsi.tsesimulator.tse.crypto;
+
+import java.math.BigInteger;
+
+import org.bouncycastle.math.ec.ECCurve;
+
+/**
+ * Fixed-width arithmetic modulo a prime p for the {@linkplain MontgomeryFpCurve}.<br>
+ * A field element is an int array of {@linkplain #getLength()} 32 bit limbs, least significant limb first. Every element is kept in Montgomery form
+ * x*R mod p with R = 2^(32*length) and is always fully reduced, i.e. smaller than p. Multiplication uses the Montgomery reduction (CIOS method), so no
+ * division by p is needed. Addition and subtraction work on the Montgomery form directly.<br>
+ * The methods never change their arguments and always return new arrays.<br>
+ * Addition, subtraction, negation and multiplication take the same time for all elements: the final subtraction of p is done with a mask instead of
+ * a branch on the value. Conversions from and to BigInteger, inversions and square roots are not fixed-time, they are only used for public values or
+ * to normalize points, as in {@linkplain ECCurve.Fp}.
+ *
+ * @since 1.6
+ */
+final class MontgomeryFpField {
+
+	private static final long LIMB_MASK = 0xFFFFFFFFL;
+
+	private final BigInteger q;				//the prime p
+	private final int length;				//number of 32 bit limbs
+	private final int[] p;					//the prime p as limbs
+	private final int pInverse;				//-p^(-1) mod 2^32, needed for the Montgomery reduction
+	private final int[] one;				//1 in Montgomery form = R mod p
+	private final int[] rSquared;			//R^2 mod p, converts a value into Montgomery form
+	private final int[] plainOne;			//the value 1, converts a value out of Montgomery form
+	private final ECCurve.Fp referenceCurve;
+
+	/**
+	 * Creates the arithmetic for the prime field with characteristic q.
+	 * @param q an odd prime
+	 * @param referenceCurve the BouncyCastle curve over the same field, see {@linkplain #getReferenceCurve()}
+	 * @since 1.6
+	 */
+	MontgomeryFpField(BigInteger q, ECCurve.Fp referenceCurve) {
+		this.q = q;
+		this.referenceCurve = referenceCurve;
+		this.length = (q.bitLength() + 31) >>> 5;
+		this.p = toLimbs(q, length);
+
+		//Newton iteration for the inverse of p[0] mod 2^32, every step doubles the number of correct bits
+		int inverse = p[0];
+		for(int i = 0; i < 4; i++) {
+			inverse *= 2 - (p[0] * inverse);
+		}
+		this.pInverse = -inverse;
+
+		BigInteger r = BigInteger.ONE.shiftLeft(32 * length);
+		this.one = toLimbs(r.mod(q), length);
+		this.rSquared = toLimbs(r.multiply(r).mod(q), length);
+		this.plainOne = new int[length];
+		this.plainOne[0] = 1;
+	}
+
+	/**
+	 * @return the prime p
+	 */
+	BigInteger getQ() {
+		return q;
+	}
+
+	/**
+	 * @return the {@linkplain ECCurve.Fp} over the same field, whose field elements do the calculations that are left to BouncyCastle
+	 */
+	ECCurve.Fp getReferenceCurve() {
+		return referenceCurve;
+	}
+
+	/**
+	 * @return the number of 32 bit limbs of a field element
+	 */
+	int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return the value 1 in Montgomery form. Must not be modified.
+	 */
+	int[] getOne() {
+		return one;
+	}
+
+	/**
+	 * Converts a value into Montgomery form.
+	 * @param x a value between 0 and p-1
+	 * @return x*R mod p
+	 */
+	int[] toMontgomery(BigInteger x) {
+		return multiply(toLimbs(x, length), rSquared);
+	}
+
+	/**
+	 * Converts an element out of Montgomery form.
+	 * @param x an element in Montgomery form
+	 * @return the value the element represents
+	 */
+	BigInteger fromMontgomery(int[] x) {
+		return toBigInteger(multiply(x, plainOne));
+	}
+
+	/**
+	 * @return x + y mod p
+	 */
+	int[] add(int[] x, int[] y) {
+		int[] z = new int[length];
+		long carry = 0;
+		for(int i = 0; i < length; i++) {
+			carry += (x[i] & LIMB_MASK) + (y[i] & LIMB_MASK);
+			z[i] = (int) carry;
+			carry >>>= 32;
+		}
+		reduceOnce(z, carry);
+		return z;
+	}
+
+	/**
+	 * @return x - y mod p
+	 */
+	int[] subtract(int[] x, int[] y) {
+		int[] z = new int[length];
+		long borrow = 0;
+		for(int i = 0; i < length; i++) {
+			borrow += (x[i] & LIMB_MASK) - (y[i] & LIMB_MASK);
+			z[i] = (int) borrow;
+			borrow >>= 32;
+		}
+		//a negative difference is brought back into the range by adding p, otherwise 0 is added
+		long mask = borrow & LIMB_MASK;
+		long carry = 0;
+		for(int i = 0; i < length; i++) {
+			carry += (z[i] & LIMB_MASK) + (p[i] & mask);
+			z[i] = (int) carry;
+			carry >>>= 32;
+		}
+		return z;
+	}
+
+	/**
+	 * @return -x mod p
+	 */
+	int[] negate(int[] x) {
+		//p - x, but 0 for x = 0 instead of p
+		int nonZero = 0;
+		for(int i = 0; i < length; i++) {
+			nonZero |= x[i];
+		}
+		int mask = (nonZero | -nonZero) >> 31;
+		int[] z = new int[length];
+		long borrow = 0;
+		for(int i = 0; i < length; i++) {
+			borrow += (p[i] & LIMB_MASK) - (x[i] & LIMB_MASK);
+			z[i] = ((int) borrow) & mask;
+			borrow >>= 32;
+		}
+		return z;
+	}
+
+	/**
+	 * Montgomery multiplication, coarsely integrated operand scanning.
+	 * @return x*y*R^(-1) mod p, which is the Montgomery form of the product if x and y are in Montgomery form
+	 */
+	int[] multiply(int[] x, int[] y) {
+		int[] t = new int[length + 2];
+		for(int i = 0; i < length; i++) {
+			//t = t + x[i]*y
+			long xi = x[i] & LIMB_MASK;
+			long carry = 0;
+			for(int j = 0; j < length; j++) {
+				carry += (t[j] & LIMB_MASK) + (xi * (y[j] & LIMB_MASK));
+				t[j] = (int) carry;
+				carry >>>= 32;
+			}
+			carry += t[length] & LIMB_MASK;
+			t[length] = (int) carry;
+			t[length + 1] = (int) (carry >>> 32);
+
+			//t = (t + m*p) / 2^32 with m chosen so that the lowest limb becomes 0
+			long m = (t[0] * pInverse) & LIMB_MASK;
+			carry = ((t[0] & LIMB_MASK) + (m * (p[0] & LIMB_MASK))) >>> 32;
+			for(int j = 1; j < length; j++) {
+				carry += (t[j] & LIMB_MASK) + (m * (p[j] & LIMB_MASK));
+				t[j - 1] = (int) carry;
+				carry >>>= 32;
+			}
+			carry += t[length] & LIMB_MASK;
+			t[length - 1] = (int) carry;
+			t[length] = t[length + 1] + (int) (carry >>> 32);
+		}
+		//the result is smaller than 2p, at most one subtraction of p is necessary
+		int[] z = new int[length];
+		System.arraycopy(t, 0, z, 0, length);
+		reduceOnce(z, t[length] & LIMB_MASK);
+		return z;
+	}
+
+	/**
+	 * @return x^2 in Montgomery form
+	 */
+	int[] square(int[] x) {
+		return multiply(x, x);
+	}
+
+	/**
+	 * @return true, if all limbs of x are 0
+	 */
+	boolean isZero(int[] x) {
+		for(int i = 0; i < length; i++) {
+			if(x[i] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Splits a non-negative value into limbs.
+	 * @param x a value smaller than 2^(32*length)
+	 * @param length number of limbs
+	 * @return the limbs of x, least significant limb first
+	 */
+	static int[] toLimbs(BigInteger x, int length) {
+		int[] z = new int[length];
+		byte[] bytes = x.toByteArray();
+		//toByteArray is big endian and may have a leading sign byte, which is 0 here
+		for(int i = 0; (i < bytes.length) && (i < (4 * length)); i++) {
+			int b = bytes[bytes.length - 1 - i] & 0xFF;
+			z[i >>> 2] |= b << ((i & 3) << 3);
+		}
+		return z;
+	}
+
+	/**
+	 * Puts limbs back together to a non-negative BigInteger.
+	 * @param x limbs, least significant limb first
+	 * @return the value of x
+	 */
+	static BigInteger toBigInteger(int[] x) {
+		byte[] bytes = new byte[4 * x.length];
+		for(int i = 0; i < x.length; i++) {
+			int limb = x[x.length - 1 - i];
+			bytes[(4 * i)] = (byte) (limb >>> 24);
+			bytes[(4 * i) + 1] = (byte) (limb >>> 16);
+			bytes[(4 * i) + 2] = (byte) (limb >>> 8);
+			bytes[(4 * i) + 3] = (byte) limb;
+		}
+		return new BigInteger(1, bytes);
+	}
+
+	/**
+	 * Subtracts p from the value top*2^(32*length) + z in place if the value is not smaller than p. The difference is always calculated and then
+	 * selected with a mask, so the time does not depend on the value.
+	 * @param z the lower limbs of the value
+	 * @param top the limb above z, 0 or 1
+	 */
+	private void reduceOnce(int[] z, long top) {
+		int[] difference = new int[length];
+		long borrow = 0;
+		for(int i = 0; i < length; i++) {
+			borrow += (z[i] & LIMB_MASK) - (p[i] & LIMB_MASK);
+			difference[i] = (int) borrow;
+			borrow >>= 32;
+		}
+		//borrow is 0 or -1, the value is not smaller than p if top + borrow is not negative
+		int mask = (int) ~((top + borrow) >> 63);
+		for(int i = 0; i < length; i++) {
+			z[i] = (difference[i] & mask) | (z[i] & ~mask);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/**
+ *
+ */
+package main.java.de.bsi.tsesimulator.tse.crypto;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.bouncycastle.math.ec.ECFieldElement;
+
+/**
+ * An element of a prime field, stored as fixed-width limbs in Montgomery form. All calculations are done by the {@linkplain MontgomeryFpField}.
+ * Used by {@linkplain MontgomeryFpCurve} and {@linkplain MontgomeryFpPoint}.<br>
+ * Like every {@linkplain ECFieldElement}, an object of this class is immutable.
+ *
+ * @since 1.6
+ */
+final class MontgomeryFpFieldElement extends ECFieldElement.AbstractFp {
+
+	private final MontgomeryFpField field;
+	private final int[] x;						//the value in Montgomery form, never modified
+
+	/**
+	 * Creates an element from limbs that are already in Montgomery form. The array is not copied.
+	 * @param field the field the element belongs to
+	 * @param x the limbs in Montgomery form
+	 */
+	MontgomeryFpFieldElement(MontgomeryFpField field, int[] x) {
+		this.field = field;
+		this.x = x;
+	}
+
+	/**
+	 * @return the limbs in Montgomery form. Must not be modified.
+	 */
+	int[] getLimbs() {
+		return x;
+	}
+
+	@Override
+	public BigInteger toBigInteger() {
+		return field.fromMontgomery(x);
+	}
+
+	@Override
+	public String getFieldName() {
+		return "Fp";
+	}
+
+	@Override
+	public int getFieldSize() {
+		return field.getQ().bitLength();
+	}
+
+	@Override
+	public ECFieldElement add(ECFieldElement b) {
+		return new MontgomeryFpFieldElement(field, field.add(x, ((MontgomeryFpFieldElement) b).x));
+	}
+
+	@Override
+	public ECFieldElement addOne() {
+		return new MontgomeryFpFieldElement(field, field.add(x, field.getOne()));
+	}
+
+	@Override
+	public ECFieldElement subtract(ECFieldElement b) {
+		return new MontgomeryFpFieldElement(field, field.subtract(x, ((MontgomeryFpFieldElement) b).x));
+	}
+
+	@Override
+	public ECFieldElement multiply(ECFieldElement b) {
+		return new MontgomeryFpFieldElement(field, field.multiply(x, ((MontgomeryFpFieldElement) b).x));
+	}
+
+	@Override
+	public ECFieldElement divide(ECFieldElement b) {
+		return multiply(b.invert());
+	}
+
+	@Override
+	public ECFieldElement negate() {
+		return new MontgomeryFpFieldElement(field, field.negate(x));
+	}
+
+	@Override
+	public ECFieldElement square() {
+		return new MontgomeryFpFieldElement(field, field.square(x));
+	}
+
+	/**
+	 * Inversions are only needed to normalize points, so the inverse is calculated with BigInteger.modInverse instead of a fixed-width algorithm.
+	 */
+	@Override
+	public ECFieldElement invert() {
+		BigInteger inverse = toBigInteger().modInverse(field.getQ());
+		return new MontgomeryFpFieldElement(field, field.toMontgomery(inverse));
+	}
+
+	/**
+	 * Square roots are only needed to decompress points, so the calculation is left to the field elements of the BouncyCastle curve over the
+	 * same field.
+	 */
+	@Override
+	public ECFieldElement sqrt() {
+		ECFieldElement root = field.getReferenceCurve().fromBigInteger(toBigInteger()).sqrt();
+		if(root == null) {
+			return null;
+		}
+		return new MontgomeryFpFieldElement(field, field.toMontgomery(root.toBigInteger()));
+	}
+
+	@Override
+	public boolean isZero() {
+		return field.isZero(x);
+	}
+
+	@Override
+	public boolean isOne() {
+		return Arrays.equals(x, field.getOne());
+	}
+
+	@Override
+	public boolean testBitZero() {
+		return toBigInteger().testBit(0);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if(other == this) {
+			return true;
+		}
+		if(!(other instanceof MontgomeryFpFieldElement)) {
+			return false;
+		}
+		MontgomeryFpFieldElement o = (MontgomeryFpFieldElement) other;
+		//the Montgomery form is unique, because every element is fully reduced
+		return field.getQ().equals(o.field.getQ()) && Arrays.equals(x, o.x);
+	}
+
+	@Override
+	public int hashCode() {
+		return field.getQ().hashCode() ^ Arrays.hashCode(x);
+	}
+}
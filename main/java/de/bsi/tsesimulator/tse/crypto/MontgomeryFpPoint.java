@@ -0,0 +1,183 @@
+/**
+ *
+ */
+package main.java.de.bsi.tsesimulator.tse.crypto;
+
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECFieldElement;
+import org.bouncycastle.math.ec.ECPoint;
+
+/**
+ * A point on a {@linkplain MontgomeryFpCurve} in Jacobian coordinates (X, Y, Z), which stand for the affine point (X/Z^2, Y/Z^3).
+ * The coordinates are {@linkplain MontgomeryFpFieldElement}s. Addition and doubling use the usual Jacobian formulas for curves with an arbitrary
+ * parameter a, doubling is a little cheaper if a = -3.
+ *
+ * @since 1.6
+ */
+final class MontgomeryFpPoint extends ECPoint.AbstractFp {
+
+	/**
+	 * Creates an affine point or the point at infinity (x and y null).
+	 */
+	MontgomeryFpPoint(ECCurve curve, ECFieldElement x, ECFieldElement y) {
+		super(curve, x, y);
+	}
+
+	/**
+	 * Creates a point in Jacobian coordinates. zs contains the Z coordinate.
+	 */
+	MontgomeryFpPoint(ECCurve curve, ECFieldElement x, ECFieldElement y, ECFieldElement[] zs) {
+		super(curve, x, y, zs);
+	}
+
+	@Override
+	protected ECPoint detach() {
+		return new MontgomeryFpPoint(null, getAffineXCoord(), getAffineYCoord());
+	}
+
+	@Override
+	public ECPoint add(ECPoint b) {
+		if(this.isInfinity()) {
+			return b;
+		}
+		if(b.isInfinity()) {
+			return this;
+		}
+		if(this == b) {
+			return twice();
+		}
+
+		ECCurve curve = this.getCurve();
+
+		ECFieldElement X1 = this.x, Y1 = this.y, Z1 = this.zs[0];
+		ECFieldElement X2 = b.getXCoord(), Y2 = b.getYCoord(), Z2 = b.getZCoord(0);
+
+		boolean Z1IsOne = Z1.isOne();
+		boolean Z2IsOne = Z2.isOne();
+
+		//bring both points to the same Z: U1 = X1*Z2^2, S1 = Y1*Z2^3, U2 = X2*Z1^2, S2 = Y2*Z1^3
+		ECFieldElement U1 = X1, S1 = Y1;
+		if(!Z2IsOne) {
+			ECFieldElement Z2Squared = Z2.square();
+			U1 = Z2Squared.multiply(X1);
+			S1 = Z2Squared.multiply(Z2).multiply(Y1);
+		}
+		ECFieldElement U2 = X2, S2 = Y2;
+		if(!Z1IsOne) {
+			ECFieldElement Z1Squared = Z1.square();
+			U2 = Z1Squared.multiply(X2);
+			S2 = Z1Squared.multiply(Z1).multiply(Y2);
+		}
+
+		ECFieldElement H = U1.subtract(U2);
+		ECFieldElement R = S1.subtract(S2);
+
+		//same x coordinate: either the same point or P + (-P)
+		if(H.isZero()) {
+			if(R.isZero()) {
+				return this.twice();
+			}
+			return curve.getInfinity();
+		}
+
+		ECFieldElement HSquared = H.square();
+		ECFieldElement G = HSquared.multiply(H);
+		ECFieldElement V = HSquared.multiply(U1);
+
+		//X3 = R^2 + G - 2V, Y3 = (V - X3)*R - S1*G, Z3 = H*Z1*Z2 (H and R have the opposite sign of the textbook formulas, which cancels out)
+		ECFieldElement X3 = R.square().add(G).subtract(V.add(V));
+		ECFieldElement Y3 = V.subtract(X3).multiply(R).subtract(S1.multiply(G));
+
+		ECFieldElement Z3 = H;
+		if(!Z1IsOne) {
+			Z3 = Z3.multiply(Z1);
+		}
+		if(!Z2IsOne) {
+			Z3 = Z3.multiply(Z2);
+		}
+
+		return new MontgomeryFpPoint(curve, X3, Y3, new ECFieldElement[] {Z3});
+	}
+
+	@Override
+	public ECPoint twice() {
+		if(this.isInfinity()) {
+			return this;
+		}
+
+		ECCurve curve = this.getCurve();
+
+		ECFieldElement Y1 = this.y;
+		if(Y1.isZero()) {
+			return curve.getInfinity();
+		}
+
+		ECFieldElement X1 = this.x, Z1 = this.zs[0];
+		boolean Z1IsOne = Z1.isOne();
+
+		ECFieldElement Y1Squared = Y1.square();
+		ECFieldElement T = Y1Squared.square();
+
+		//M = 3*X1^2 + a*Z1^4
+		ECFieldElement M;
+		ECFieldElement Z1Squared = Z1IsOne ? Z1 : Z1.square();
+		if(((MontgomeryFpCurve) curve).isAMinusThree()) {
+			//3*X1^2 - 3*Z1^4 = 3*(X1 - Z1^2)*(X1 + Z1^2)
+			M = X1.subtract(Z1Squared).multiply(X1.add(Z1Squared));
+			M = M.add(M).add(M);
+		}
+		else {
+			ECFieldElement X1Squared = X1.square();
+			M = X1Squared.add(X1Squared).add(X1Squared);
+			ECFieldElement a = curve.getA();
+			M = M.add(Z1IsOne ? a : Z1Squared.square().multiply(a));
+		}
+
+		//S = 4*X1*Y1^2
+		ECFieldElement S = Y1Squared.multiply(X1);
+		S = S.add(S);
+		S = S.add(S);
+
+		//X3 = M^2 - 2S, Y3 = M*(S - X3) - 8*Y1^4, Z3 = 2*Y1*Z1
+		ECFieldElement X3 = M.square().subtract(S.add(S));
+		ECFieldElement eightT = T.add(T);
+		eightT = eightT.add(eightT);
+		eightT = eightT.add(eightT);
+		ECFieldElement Y3 = S.subtract(X3).multiply(M).subtract(eightT);
+
+		ECFieldElement Z3 = Z1IsOne ? Y1 : Y1.multiply(Z1);
+		Z3 = Z3.add(Z3);
+
+		return new MontgomeryFpPoint(curve, X3, Y3, new ECFieldElement[] {Z3});
+	}
+
+	@Override
+	public ECPoint twicePlus(ECPoint b) {
+		if(this == b) {
+			return threeTimes();
+		}
+		if(this.isInfinity()) {
+			return b;
+		}
+		if(b.isInfinity()) {
+			return twice();
+		}
+		return twice().add(b);
+	}
+
+	@Override
+	public ECPoint threeTimes() {
+		if(this.isInfinity()) {
+			return this;
+		}
+		return twice().add(this);
+	}
+
+	@Override
+	public ECPoint negate() {
+		if(this.isInfinity()) {
+			return this;
+		}
+		return new MontgomeryFpPoint(this.getCurve(), this.x, this.y.negate(), this.zs);
+	}
+}
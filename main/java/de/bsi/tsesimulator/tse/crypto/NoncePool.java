@@ -0,0 +1,392 @@
+/**
+ *
+ */
+package main.java.de.bsi.tsesimulator.tse.crypto;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.math.ec.ECPoint;
+
+import main.java.de.bsi.tsesimulator.constants.ConfigConstants;
+import main.java.de.bsi.tsesimulator.constants.Constants;
+import main.java.de.bsi.tsesimulator.exceptions.TR_03111_ECC_V2_1_Exception;
+import main.java.de.bsi.tsesimulator.preferences.PropertyValues;
+import main.java.de.bsi.tsesimulator.utils.TR_03111_Utils;
+
+/**
+ * A bounded pool of precomputed nonces for {@linkplain ECDSA} and {@linkplain ECSDSA}.<br>
+ * Most of the work of a signature does not depend on the message at all: drawing the random value k, calculating Q = k*G, encoding the coordinates of Q
+ * and, for the ECDSA, calculating the inverse of k. Background worker threads perform this work ahead of time and store the results as
+ * {@linkplain PrecomputedNonce}s in this pool, so that the signature algorithm only has to hash the message and do a few modular multiplications.<br>
+ * <br>
+ * The inverses of a whole batch of k values are calculated with a single modular inversion (Montgomery's trick): the prefix products of the batch are
+ * inverted once, then every single inverse is obtained by two multiplications.<br>
+ * <br>
+ * Every nonce is removed from the pool when it is taken, so a nonce is never used for more than one signature. If the pool is empty,
+ * {@linkplain #take()} calculates a nonce in the calling thread and counts that as a miss.<br>
+ * The pool is configured with the entries <i>noncePoolSize</i>, <i>noncePoolRefillThreshold</i> and <i>noncePoolThreads</i> in config.properties.
+ * If noncePoolSize is missing or smaller than 1, no pool is created at all and the signature algorithms calculate every nonce themselves.
+ *
+ * @see {@linkplain FixedBaseMultiplier}
+ * @since 1.6
+ */
+public class NoncePool {
+
+	/**
+	 * The maximum number of nonces one worker calculates with a single modular inversion.
+	 */
+	private static final int MAX_BATCH_SIZE = 16;
+
+	private final FixedBaseMultiplier generatorMultiplier;		//used to calculate Q = k*G
+	private final BigInteger n;									//order of the base point G
+	private final BigInteger nMinusOne;							//upper limit (inclusive) for k
+	private final int fieldElementLength;						//length of FE2OS(xQ) in bytes, roundedUp(log256(p))
+	private final boolean calculateInverse;						//true, if the algorithm needs k^(-1) mod n (ECDSA)
+
+	private final int capacity;									//maximum number of nonces stored in the pool
+	private final int refillThreshold;							//the workers are started when the pool holds fewer nonces than this
+	private final int numberOfWorkers;							//maximum number of worker threads refilling the pool simultaneously
+
+	private final ArrayBlockingQueue<PrecomputedNonce> nonces;
+	private final ExecutorService workers;
+	private final AtomicInteger activeWorkers = new AtomicInteger(0);
+
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong misses = new AtomicLong(0);
+
+	private volatile boolean isShutDown = false;
+
+	/**
+	 * Holds the message-independent values of one signature. Objects of this class are immutable and are handed out exactly once by the pool.
+	 * @since 1.6
+	 */
+	public static final class PrecomputedNonce {
+		private final BigInteger k;
+		private final BigInteger kInverse;
+		private final BigInteger xCoordinateQ;
+		private final byte[] encodedQ;
+
+		private PrecomputedNonce(BigInteger k, BigInteger kInverse, BigInteger xCoordinateQ, byte[] encodedQ) {
+			this.k = k;
+			this.kInverse = kInverse;
+			this.xCoordinateQ = xCoordinateQ;
+			this.encodedQ = encodedQ;
+		}
+
+		/**
+		 * @return the random value k out of {1, ... , n-1}
+		 */
+		public BigInteger getK() {
+			return k;
+		}
+
+		/**
+		 * @return k^(-1) mod n or null, if the pool was created without inverse calculation.
+		 */
+		public BigInteger getKInverse() {
+			return kInverse;
+		}
+
+		/**
+		 * @return the affine x coordinate of Q = k*G
+		 */
+		public BigInteger getXCoordinateQ() {
+			return xCoordinateQ;
+		}
+
+		/**
+		 * @return FE2OS(xQ) || FE2OS(yQ) where Q = k*G. Both halves are roundedUp(log256(p)) bytes long.
+		 */
+		public byte[] getEncodedQ() {
+			return encodedQ;
+		}
+	}
+
+	/**
+	 * Creates a nonce pool and starts filling it in the background.
+	 * @param generatorMultiplier the multiplier of the signature algorithm used to calculate Q = k*G.
+	 * @param n the order of the base point G.
+	 * @param p the prime p that generates the field Fp.
+	 * @param calculateInverse true, if k^(-1) mod n shall be precomputed as well.
+	 * @param capacity the maximum number of nonces stored in the pool. Has to be at least 1.
+	 * @param refillThreshold the pool is refilled as soon as it holds fewer nonces than this value. Values outside of {1, ... , capacity} are replaced
+	 * by capacity/2 (at least 1).
+	 * @param numberOfWorkers the maximum number of threads refilling the pool. Values smaller than 1 are replaced by 1.
+	 * @since 1.6
+	 */
+	public NoncePool(FixedBaseMultiplier generatorMultiplier, BigInteger n, BigInteger p, boolean calculateInverse, int capacity, int refillThreshold,
+			int numberOfWorkers) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("The capacity of a NoncePool has to be at least 1.");
+		}
+		this.generatorMultiplier = generatorMultiplier;
+		this.n = n;
+		this.nMinusOne = n.subtract(BigInteger.ONE);
+		this.fieldElementLength = TR_03111_Utils.octetLength(p);
+		this.calculateInverse = calculateInverse;
+		this.capacity = capacity;
+
+		if((refillThreshold < 1) || (refillThreshold > capacity)) {
+			refillThreshold = Math.max(1, capacity / 2);
+		}
+		this.refillThreshold = refillThreshold;
+		this.numberOfWorkers = Math.max(1, numberOfWorkers);
+
+		this.nonces = new ArrayBlockingQueue<PrecomputedNonce>(capacity);
+
+		//the worker threads are daemon threads, so that an unfinished refill never keeps the simulator from shutting down
+		this.workers = Executors.newFixedThreadPool(this.numberOfWorkers, new ThreadFactory() {
+			private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread worker = new Thread(r, "NoncePool-worker-" +threadNumber.incrementAndGet());
+				worker.setDaemon(true);
+				return worker;
+			}
+		});
+
+		//fill the pool for the first time
+		startRefillIfNecessary();
+	}
+
+	/**
+	 * Reads <i>noncePoolSize</i>, <i>noncePoolRefillThreshold</i> and <i>noncePoolThreads</i> from config.properties and creates a NoncePool with those values.
+	 * Missing or unparsable entries are replaced by the defaults in {@linkplain Constants}.
+	 * @param generatorMultiplier the multiplier of the signature algorithm used to calculate Q = k*G.
+	 * @param n the order of the base point G.
+	 * @param p the prime p that generates the field Fp.
+	 * @param calculateInverse true, if k^(-1) mod n shall be precomputed as well.
+	 * @return the new NoncePool or null, if the configured pool size is smaller than 1 and therefore no pool shall be used.
+	 * @throws IOException if {@linkplain PropertyValues#getInstance()} throws it
+	 * @since 1.6
+	 */
+	public static NoncePool createFromConfig(FixedBaseMultiplier generatorMultiplier, BigInteger n, BigInteger p, boolean calculateInverse) throws IOException {
+		int poolSize = readIntFromConfig(ConfigConstants.CFG_TAG_NONCE_POOL_SIZE, Constants.DEFAULT_NONCE_POOL_SIZE);
+		if(poolSize < 1) {
+			return null;
+		}
+		int refillThreshold = readIntFromConfig(ConfigConstants.CFG_TAG_NONCE_POOL_REFILL_THRESHOLD, Constants.DEFAULT_NONCE_POOL_REFILL_THRESHOLD);
+		int threads = readIntFromConfig(ConfigConstants.CFG_TAG_NONCE_POOL_THREADS, Constants.DEFAULT_NONCE_POOL_THREADS);
+
+		return new NoncePool(generatorMultiplier, n, p, calculateInverse, poolSize, refillThreshold, threads);
+	}
+
+	/**
+	 * Takes a precomputed nonce out of the pool. If the pool is empty, the nonce is calculated in the calling thread. Either way, the returned nonce is
+	 * never handed out again.
+	 * @return a fresh precomputed nonce
+	 * @since 1.6
+	 */
+	public PrecomputedNonce take() {
+		PrecomputedNonce nonce = nonces.poll();
+		if(nonce != null) {
+			hits.incrementAndGet();
+		}
+		else {
+			misses.incrementAndGet();
+			nonce = calculateBatch(1)[0];
+		}
+		startRefillIfNecessary();
+		return nonce;
+	}
+
+	/**
+	 * Stops the worker threads. Nonces remaining in the pool are discarded. After this method was called, {@linkplain #take()} still works but calculates
+	 * every nonce in the calling thread.
+	 * @since 1.6
+	 */
+	public void shutdown() {
+		isShutDown = true;
+		workers.shutdownNow();
+		nonces.clear();
+	}
+
+	/**
+	 * @return the number of times {@linkplain #take()} could hand out a precomputed nonce.
+	 * @since 1.6
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of times {@linkplain #take()} found the pool empty and had to calculate the nonce itself.
+	 * @since 1.6
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of precomputed nonces that are currently stored in the pool.
+	 * @since 1.6
+	 */
+	public int getNumberOfAvailableNonces() {
+		return nonces.size();
+	}
+
+	/**
+	 * @return the maximum number of nonces stored in the pool.
+	 * @since 1.6
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Starts as many workers as are allowed and not yet running if the pool holds fewer nonces than the refill threshold.
+	 */
+	private void startRefillIfNecessary() {
+		if(isShutDown || (nonces.size() >= refillThreshold)) {
+			return;
+		}
+		while(true) {
+			int running = activeWorkers.get();
+			if(running >= numberOfWorkers) {
+				return;
+			}
+			if(activeWorkers.compareAndSet(running, running+1)) {
+				try {
+					workers.execute(new Runnable() {
+						@Override
+						public void run() {
+							refill();
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					//the pool has been shut down in the meantime, the signature that is created right now calculates its nonce itself
+					activeWorkers.decrementAndGet();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Executed by the worker threads. Calculates batches of nonces until the pool is full.
+	 */
+	private void refill() {
+		try {
+			while(!isShutDown && !Thread.currentThread().isInterrupted()) {
+				int missing = capacity - nonces.size();
+				if(missing <= 0) {
+					return;
+				}
+				//split the missing nonces between the workers so that they finish at about the same time
+				int batchSize = Math.min(MAX_BATCH_SIZE, Math.max(1, missing / numberOfWorkers));
+				for(PrecomputedNonce nonce : calculateBatch(batchSize)) {
+					//if the pool is already full, the remaining nonces of the batch are simply discarded
+					if(!nonces.offer(nonce)) {
+						return;
+					}
+				}
+			}
+		} finally {
+			activeWorkers.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Calculates a batch of nonces. The inverses of all k values are calculated with a single modular inversion.
+	 * @param batchSize the number of nonces that shall be calculated.
+	 * @return an array of batchSize fresh nonces
+	 */
+	private PrecomputedNonce[] calculateBatch(int batchSize) {
+		BigInteger[] kValues = new BigInteger[batchSize];
+		for(int i = 0; i < batchSize; i++) {
+			kValues[i] = calculateRandomK();
+		}
+
+		BigInteger[] kInverses = null;
+		if(calculateInverse) {
+			kInverses = batchInverse(kValues);
+		}
+
+		PrecomputedNonce[] batch = new PrecomputedNonce[batchSize];
+		for(int i = 0; i < batchSize; i++) {
+			//Q = k*G is already normalized by the FixedBaseMultiplier
+			ECPoint Q = generatorMultiplier.multiply(kValues[i]);
+			BigInteger xCoordinateQ = Q.getAffineXCoord().toBigInteger();
+			
+			//FE2OS(xQ) and FE2OS(yQ) are written into one array
+			byte[] encodedQ = new byte[2 * fieldElementLength];
+			try {
+				TR_03111_Utils.FE2OS(xCoordinateQ, encodedQ, 0, fieldElementLength);
+				TR_03111_Utils.FE2OS(Q.getAffineYCoord().toBigInteger(), encodedQ, fieldElementLength, fieldElementLength);
+			} catch (TR_03111_ECC_V2_1_Exception e) {
+				//can not happen, the coordinates of a point on the curve are elements of Fp
+				throw new IllegalStateException("A coordinate of Q is not an element of Fp.", e);
+			}
+
+			batch[i] = new PrecomputedNonce(kValues[i], (kInverses == null) ? null : kInverses[i], xCoordinateQ, encodedQ);
+		}
+		return batch;
+	}
+
+	/**
+	 * Montgomery's trick: calculates the inverses mod n of all values with only one call of {@linkplain BigInteger#modInverse(BigInteger)}.<br>
+	 * prefix[i] = values[0] * ... * values[i] mod n. The inverse of prefix[last] is calculated once, then walking backwards,
+	 * values[i]^(-1) = prefixInverse * prefix[i-1] and prefixInverse is updated to prefixInverse * values[i].
+	 * @param values the values that shall be inverted. Have to be out of {1, ... , n-1}.
+	 * @return the inverses mod n in the same order as values
+	 */
+	private BigInteger[] batchInverse(BigInteger[] values) {
+		BigInteger[] prefix = new BigInteger[values.length];
+		prefix[0] = values[0];
+		for(int i = 1; i < values.length; i++) {
+			prefix[i] = prefix[i-1].multiply(values[i]).mod(n);
+		}
+
+		BigInteger[] inverses = new BigInteger[values.length];
+		BigInteger prefixInverse = prefix[values.length-1].modInverse(n);
+		for(int i = values.length-1; i > 0; i--) {
+			inverses[i] = prefixInverse.multiply(prefix[i-1]).mod(n);
+			prefixInverse = prefixInverse.multiply(values[i]).mod(n);
+		}
+		inverses[0] = prefixInverse;
+		return inverses;
+	}
+
+	/**
+	 * Creates a random BigInteger out of {1, ... , n-1}.
+	 * @return the random value k
+	 */
+	private BigInteger calculateRandomK() {
+		//the worker threads and the threads taking nonces each use the random number generator of their own CryptoContext
+		SecureRandom random = CryptoContext.get().getRandom();
+		BigInteger randomValue = new BigInteger(nMinusOne.bitLength(), random);
+		while((randomValue.compareTo(nMinusOne) > 0) || (randomValue.compareTo(BigInteger.ONE) < 0)) {
+			randomValue = new BigInteger(nMinusOne.bitLength(), random);
+		}
+		return randomValue;
+	}
+
+	/**
+	 * Reads an int value from config.properties.
+	 * @param key the key of the entry in config.properties
+	 * @param defaultValue the value used if the entry is missing or not a number
+	 * @return the value from config.properties or defaultValue
+	 * @throws IOException if {@linkplain PropertyValues#getInstance()} throws it
+	 */
+	private static int readIntFromConfig(String key, int defaultValue) throws IOException {
+		String configValue = PropertyValues.getInstance().getValue(key);
+		if(configValue == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(configValue.trim());
+		} catch(NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+}
@@ -3,6 +3,8 @@
  */
 package main.java.de.bsi.tsesimulator.tse.crypto;
 
+import java.io.ByteArrayOutputStream;
+
 import org.bouncycastle.jce.interfaces.ECPublicKey;
 
 import main.java.de.bsi.tsesimulator.exceptions.ECCException;
@@ -25,10 +27,67 @@ public abstract class SignatureAlgorithm {
 	
 	public abstract byte[] sign(byte[] toBeSigned) throws TR_03111_ECC_V2_1_Exception;
 	
+	/**
+	 * Signs a message that writes itself into the hash function instead of being passed as one byte array. Implementations that hash the message 
+	 * themselves override this method and feed the bytes straight into their digest. This default implementation collects the bytes and calls 
+	 * {@linkplain #sign(byte[])}, so it works for every algorithm.
+	 * @param toBeSigned the message that shall be signed
+	 * @return the signature bytes that are created by signing the message
+	 * @throws TR_03111_ECC_V2_1_Exception if {@linkplain #sign(byte[])} throws it
+	 * @since 1.6
+	 */
+	public byte[] sign(SignatureInput toBeSigned) throws TR_03111_ECC_V2_1_Exception {
+		final ByteArrayOutputStream collectedBytes = new ByteArrayOutputStream();
+		toBeSigned.writeTo(new DigestSink() {
+			@Override
+			public void update(byte input) {
+				collectedBytes.write(input);
+			}
+
+			@Override
+			public void update(byte[] input) {
+				collectedBytes.write(input, 0, input.length);
+			}
+
+			@Override
+			public void update(byte[] input, int offset, int length) {
+				collectedBytes.write(input, offset, length);
+			}
+		});
+		return sign(collectedBytes.toByteArray());
+	}
+	
 	public abstract boolean verify(byte[] signature, byte[] notSignedValue) throws ECCException, TR_03111_ECC_V2_1_Exception;
 	
 	public abstract ECPublicKey getPublicKey();
 	
 	public abstract String getAlgorithmDefinition();
+	
+	/**
+	 * Fetches the {@linkplain NoncePool} the signature algorithm takes its precomputed nonces from. Can be used to read the hit and miss counters of the pool.
+	 * @return the NoncePool of this algorithm or null, if the algorithm does not use one.
+	 * @since 1.6
+	 */
+	public NoncePool getNoncePool() {
+		return null;
+	}
+	
+	/**
+	 * Creates a {@linkplain SignatureInput} that consists of the given byte arrays, one after another. The arrays are not copied, so they must not be 
+	 * changed until signing is finished.
+	 * @param parts the parts of the message in the order they shall be signed
+	 * @return a SignatureInput writing all parts into the sink it is given
+	 * @since 1.6
+	 */
+	public static SignatureInput createInput(final byte[]... parts) {
+		return new SignatureInput() {
+			@Override
+			public void writeTo(DigestSink sink) {
+				for(byte[] part : parts) {
+					sink.update(part);
+				}
+			}
+		};
+	}
 
 }
@@ -0,0 +1,23 @@
+/**
+ * 
+ */
+package main.java.de.bsi.tsesimulator.tse.crypto;
+
+/**
+ * A message that can be signed without being put together in one byte array first. It writes its bytes into the {@linkplain DigestSink} it is given,
+ * e.g. the upper part of a log message followed by the signature counter and the log time.<br>
+ * A {@linkplain SignatureAlgorithm} may call {@linkplain #writeTo(DigestSink)} more than once, e.g. the {@linkplain ECSDSA} has to hash the message again
+ * if it has to choose a new k. Every call has to write exactly the same bytes.
+ * 
+ * @see {@linkplain SignatureAlgorithm#sign(SignatureInput)}, {@linkplain SignatureAlgorithm#createInput(byte[]...)}
+ * @since 1.6
+ */
+public interface SignatureInput {
+
+	/**
+	 * Writes every byte of the message into the sink, in the order they shall be signed.
+	 * @param sink receives the bytes of the message
+	 * @since 1.6
+	 */
+	public void writeTo(DigestSink sink);
+}
@@ -0,0 +1,272 @@
+package main.java.de.bsi.tsesimulator.tse.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import main.java.de.bsi.tsesimulator.tlv.EncodedSegments;
+
+/**
+ * Writes the log messages of the {@linkplain Storage} in a thread of its own and forces them to the disc in groups, see
+ * {@linkplain main.java.de.bsi.tsesimulator.constants.ConfigConstants#CFG_TAG_STORAGE_SYNC}.<br>
+ * The store methods only put the log message into a queue and wait on the returned future. The writer thread takes all log messages that are waiting,
+ * at most the maximum batch size, writes them in the order they were submitted and then forces all of them to the disc at once. Afterwards the futures
+ * of the batch are completed. While the disc is busy with one batch, the next one gathers in the queue, so the more threads store log messages, the
+ * fewer times the disc is forced per log message.<br>
+ * If a maximum delay is set, the writer waits that long for further log messages after it took the first one of a batch.
+ *
+ * @since 1.6
+ */
+final class GroupCommitWriter {
+	/**
+	 * The log messages are not forced to the disc.
+	 */
+	static final int SYNC_NONE = 0;
+	/**
+	 * Every log message is forced to the disc before the store method returns.
+	 */
+	static final int SYNC_WRITE = 1;
+	/**
+	 * The log messages are forced to the disc in groups by a GroupCommitWriter.
+	 */
+	static final int SYNC_GROUP = 2;
+
+	/**
+	 * Writes the log messages of a batch for the GroupCommitWriter.
+	 * @since 1.6
+	 */
+	interface Target {
+		/**
+		 * Called before the log messages of a batch are written, e.g. to force the records of the {@linkplain WriteAheadJournal} to the disc.
+		 * @throws IOException if the batch must not be written. All log messages of the batch fail then.
+		 */
+		void beforeWrite() throws IOException;
+
+		/**
+		 * Writes a log message, but does not force it to the disc.
+		 * @param fileName the file name of the log message
+		 * @param logMessage the whole log message with the SEQUENCE wrapper
+		 * @param logTime the log time of the log message in Unix time
+		 * @param signatureCounter the signature counter of the log message
+		 * @return the channel of the file the log message was written to, which is still open. It is forced and closed by the writer. Null, if the log
+		 * message was not written to a file of its own.
+		 * @throws Exception if the log message could not be written
+		 */
+		FileChannel write(String fileName, EncodedSegments logMessage, long logTime, long signatureCounter) throws Exception;
+
+		/**
+		 * Forces everything that was written for the batch to the disc and is not covered by the returned channels, e.g. the directory entries
+		 * of the new files.
+		 * @throws IOException if forcing fails
+		 */
+		void sync() throws IOException;
+	}
+
+	/**
+	 * A log message waiting in the queue, completed when it is on the disc.
+	 */
+	private static final class PendingLog extends CompletableFuture<Void> {
+		private final String fileName;
+		private final EncodedSegments logMessage;
+		private final long logTime;
+		private final long signatureCounter;
+		private Exception failure;
+
+		private PendingLog(String fileName, EncodedSegments logMessage, long logTime, long signatureCounter) {
+			this.fileName = fileName;
+			this.logMessage = logMessage;
+			this.logTime = logTime;
+			this.signatureCounter = signatureCounter;
+		}
+	}
+
+	/**
+	 * Put into the queue by {@linkplain #close()}, the writer thread ends after it has written the log messages before it.
+	 */
+	private static final PendingLog END_OF_QUEUE = new PendingLog(null, null, 0, 0);
+
+	private final Target target;
+	private final int maxBatchSize;
+	private final long maxDelayNanos;
+	private final LinkedBlockingQueue<PendingLog> queue = new LinkedBlockingQueue<PendingLog>();
+	private final Thread writerThread;
+	private boolean closed = false;			//guarded by this, no log messages are accepted after END_OF_QUEUE
+
+	/**
+	 * Creates the writer and starts its thread. The thread is a daemon thread and runs until {@linkplain #close()} is called, it is idle while no 
+	 * log messages are stored.
+	 * @param target writes the log messages
+	 * @param maxBatchSize the maximum number of log messages that are forced to the disc together. Values smaller than 1 are replaced by 1.
+	 * @param maxDelayMillis the time in milliseconds that the writer waits for further log messages after it took the first one of a batch. 0 means
+	 * that only the log messages that are already waiting are written together.
+	 */
+	GroupCommitWriter(Target target, int maxBatchSize, long maxDelayMillis) {
+		this.target = target;
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+		this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxDelayMillis));
+		writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeBatches();
+			}
+		}, "TSE-storage-writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	/**
+	 * Puts a log message into the queue of the writer. The log messages are written in the order this method is called.
+	 * @param fileName the file name of the log message
+	 * @param logMessage the whole log message with the SEQUENCE wrapper. Its buffers must not be changed until the future is completed.
+	 * @param logTime the log time of the log message in Unix time
+	 * @param signatureCounter the signature counter of the log message
+	 * @return a future that is completed when the log message is on the disc, or completed exceptionally with the reason why it could not be written.
+	 * If the writer has been closed, the future has already failed.
+	 */
+	synchronized CompletableFuture<Void> submit(String fileName, EncodedSegments logMessage, long logTime, long signatureCounter) {
+		PendingLog pendingLog = new PendingLog(fileName, logMessage, logTime, signatureCounter);
+		if(closed) {
+			pendingLog.completeExceptionally(new IOException("The storage has been closed, the log message " +fileName +" is not written."));
+			return pendingLog;
+		}
+		queue.add(pendingLog);
+		return pendingLog;
+	}
+
+	/**
+	 * Writes the log messages that are still in the queue, forces them to the disc and ends the writer thread. Log messages that are submitted
+	 * afterwards fail. Calling this method again only waits for the writer thread.
+	 * @throws InterruptedException if the thread is interrupted while waiting for the writer thread. The writer thread ends nevertheless after it
+	 * has written the queue.
+	 */
+	void close() throws InterruptedException {
+		synchronized(this) {
+			if(!closed) {
+				closed = true;
+				queue.add(END_OF_QUEUE);
+			}
+		}
+		writerThread.join();
+	}
+
+	/**
+	 * Forces a directory to the disc, so that the files that were created in it are found after a crash. Some operating systems, e.g. Windows,
+	 * can not open a directory. There this method does nothing, the file system takes care of the directory entries itself.
+	 * @param directory the directory
+	 */
+	static void forceDirectory(File directory) {
+		try(FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			//the directory can not be opened or forced on this operating system
+		}
+	}
+
+	//-----------------------------------INTERNAL METHODS------------------------------------------------------------------
+
+	/**
+	 * The loop of the writer thread.
+	 */
+	private void writeBatches() {
+		List<PendingLog> batch = new ArrayList<PendingLog>(maxBatchSize);
+		boolean endOfQueue = false;
+		while(!endOfQueue) {
+			//1. take the waiting log messages, wait for the first one and, if a delay is set, for further ones
+			try {
+				batch.add(queue.take());
+				queue.drainTo(batch, maxBatchSize - batch.size());
+				long deadline = System.nanoTime() + maxDelayNanos;
+				while((maxDelayNanos > 0) && (batch.size() < maxBatchSize) && (batch.get(batch.size() - 1) != END_OF_QUEUE)) {
+					PendingLog next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+					if(next == null) {
+						break;
+					}
+					batch.add(next);
+					queue.drainTo(batch, maxBatchSize - batch.size());
+				}
+			} catch (InterruptedException e) {
+				//nobody interrupts the writer thread, the log messages taken so far are written
+			}
+			//nothing is queued after the end, so it is always the last one taken
+			if(!batch.isEmpty() && (batch.get(batch.size() - 1) == END_OF_QUEUE)) {
+				batch.remove(batch.size() - 1);
+				endOfQueue = true;
+			}
+
+			//2. write and force them
+			if(!batch.isEmpty()) {
+				writeBatch(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Writes the log messages of a batch, forces them to the disc and completes their futures. A log message that could not be written fails alone,
+	 * if preparing the batch or forcing fails, all log messages of the batch fail.
+	 */
+	private void writeBatch(List<PendingLog> batch) {
+		//1. prepare the batch, nothing is written if that fails
+		try {
+			target.beforeWrite();
+		} catch (IOException e) {
+			for(PendingLog pendingLog : batch) {
+				pendingLog.completeExceptionally(e);
+			}
+			return;
+		}
+		
+		//2. write the log messages in order
+		List<FileChannel> channels = new ArrayList<FileChannel>(batch.size());
+		for(PendingLog pendingLog : batch) {
+			try {
+				FileChannel channel = target.write(pendingLog.fileName, pendingLog.logMessage, pendingLog.logTime, pendingLog.signatureCounter);
+				if(channel != null) {
+					channels.add(channel);
+				}
+			} catch (Exception e) {
+				pendingLog.failure = e;
+			}
+		}
+
+		//3. force everything that was written, then close the files
+		IOException syncFailure = null;
+		try {
+			for(FileChannel channel : channels) {
+				channel.force(true);
+			}
+			target.sync();
+		} catch (IOException e) {
+			syncFailure = e;
+		} finally {
+			for(FileChannel channel : channels) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					if(syncFailure == null) {
+						syncFailure = e;
+					}
+				}
+			}
+		}
+
+		//4. let the callers continue
+		for(PendingLog pendingLog : batch) {
+			if(pendingLog.failure != null) {
+				pendingLog.completeExceptionally(pendingLog.failure);
+			}
+			else if(syncFailure != null) {
+				pendingLog.completeExceptionally(syncFailure);
+			}
+			else {
+				pendingLog.complete(null);
+			}
+		}
+	}
+}
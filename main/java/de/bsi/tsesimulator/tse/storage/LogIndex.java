@@ -0,0 +1,975 @@
+package main.java.de.bsi.tsesimulator.tse.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import main.java.de.bsi.tsesimulator.tse.storage.LogIndexFiles.Run;
+import main.java.de.bsi.tsesimulator.utils.LongHashMap;
+
+/**
+ * An index of the log message files in the storage directory, so that the {@linkplain Storage} does not have to scan the directory with a regular
+ * expression for every signature counter or transaction number it looks for. The index knows every log message file by its signature counter,
+ * transaction logs additionally by their transaction number, and all log message files by their log time.<br>
+ * The index is filled when the Storage is created and is updated by the Storage for every log message it writes. The values are
+ * taken from the file names described in {@linkplain Storage#storeTransactionLog(byte[], long, long, long, String, String)} and
+ * {@linkplain Storage#storeSystemLog(byte[], long, long, String)}, the log time is the value the <i>last modified</i> attribute of the file is set to.
+ * Files ending with ".log" whose names do not have that format are kept in a separate list and are filtered by their <i>last modified</i>
+ * attribute, like before.<br>
+ * If an index directory is given, the index is also stored there in {@linkplain LogIndexFiles}, so that it does not have to be built from the
+ * storage directory when the simulator is started again. The log messages are then kept in sorted runs that are memory-mapped, only the last
+ * {@value #RUN_LENGTH} log messages at most are kept in memory until a background thread writes them as a new run. After the index has been
+ * opened, the background thread compares it with the storage directory. Files that are missing in the index are added, if files are indexed
+ * that no longer exist, the index is built again. Without an index directory, the whole index is kept in memory and built from the storage
+ * directory every time.<br>
+ * If the log messages are stored in a {@linkplain SegmentStore}, the file names of the log messages in the segments are indexed together with the
+ * files in the storage directory. Their files do not exist, the Storage reads them from the segments.<br>
+ * Files that are changed in the storage directory by other programs while the simulator is running are not noticed. All methods are synchronized.
+ *
+ * @since 1.6
+ */
+final class LogIndex {
+	/**
+	 * The length of the time buckets in seconds.
+	 */
+	static final long BUCKET_SECONDS = 3600;
+
+	/**
+	 * The number of log messages that are kept in memory before they are written to the index directory as a sorted run.
+	 */
+	static final int RUN_LENGTH = 8192;
+
+	//the types of log messages, see IndexedLog
+	static final int TYPE_TRANSACTION_LOG = 0;
+	static final int TYPE_SYSTEM_LOG = 1;
+	static final int TYPE_AUDIT_LOG = 2;
+
+	//the kinds of log messages, which also tell the step of a transaction log
+	static final int KIND_START_TRANSACTION = 0;
+	static final int KIND_UPDATE_TRANSACTION = 1;
+	static final int KIND_FINISH_TRANSACTION = 2;
+	static final int KIND_SYSTEM_LOG = 3;
+	static final int KIND_AUDIT_LOG = 4;
+
+	/**
+	 * The largest file counter of duplicates that can be stored in the index files. Larger ones are read as part of the client ID or operation.
+	 */
+	static final int MAX_FILE_COUNTER = 65534;
+
+	/**
+	 * The record number of a log message that has not been written to the index files.
+	 */
+	static final int NOT_STORED = Integer.MAX_VALUE;
+
+	//the prefixes of the file names, see ConfigConstants.CFG_TAG_TIME_FORMAT
+	private static final String[] TIME_FORMATS = {"Unixt", "Utc", "Gent"};
+
+	//the parts of the file names of transaction logs between the transaction number and the client ID, in the order of the kinds
+	private static final String[] TRANSACTION_STEPS = {"_Start_Client-", "_Update_Client-", "_Finish_Client-"};
+
+	private static final Comparator<IndexedLog> BY_SIGNATURE_COUNTER = new Comparator<IndexedLog>() {
+		@Override
+		public int compare(IndexedLog first, IndexedLog second) {
+			return Long.compare(first.signatureCounter, second.signatureCounter);
+		}
+	};
+
+	private static final Comparator<IndexedLog> BY_TRANSACTION_NUMBER = new Comparator<IndexedLog>() {
+		@Override
+		public int compare(IndexedLog first, IndexedLog second) {
+			return Long.compare(first.transactionNumber, second.transactionNumber);
+		}
+	};
+
+	private static final Comparator<IndexedLog> BY_LOG_TIME = new Comparator<IndexedLog>() {
+		@Override
+		public int compare(IndexedLog first, IndexedLog second) {
+			return Long.compare(first.logTime, second.logTime);
+		}
+	};
+
+	private final File storageDirectory;
+	private final File indexDirectory;								//null, if the index is only kept in memory
+	private final SegmentStore segments;							//null, if every log message is stored in a file of its own
+	private FileLock indexLock;										//held while the index directory is used
+	private LogIndexFiles files;									//null, if the index is only kept in memory
+	private boolean appendToFiles;									//false after writing to the index files failed
+	private ExecutorService maintenance;
+	private boolean runScheduled;
+	private long epoch;												//changes when the index is cleared or built again
+
+	//the log messages that are not part of a run
+	private final List<IndexedLog> allLogs = new ArrayList<IndexedLog>();					//in the order they were added
+	private final LongHashMap<IndexedLog> bySignatureCounter = new LongHashMap<IndexedLog>(1024);			//further logs with the same counter are linked
+	private final LongHashMap<List<IndexedLog>> byTransactionNumber = new LongHashMap<List<IndexedLog>>(1024);
+	private final TreeMap<Long, List<IndexedLog>> byTimeBucket = new TreeMap<Long, List<IndexedLog>>();
+	private final List<File> otherLogFiles = new ArrayList<File>();						//".log" files whose names could not be parsed
+
+	/**
+	 * Creates an empty index. {@linkplain #load()} has to be called to fill it with the files that are already in the storage directory.
+	 * @param storageDirectory the directory that contains the log message files
+	 * @param indexDirectory the directory in which the index is stored. If null, the index is only kept in memory.
+	 * @param segments the segments that contain further log messages, or null if every log message is stored in a file of its own
+	 */
+	LogIndex(File storageDirectory, File indexDirectory, SegmentStore segments) {
+		this.storageDirectory = storageDirectory;
+		this.indexDirectory = indexDirectory;
+		this.segments = segments;
+	}
+
+	/**
+	 * Fills the index with the log message files in the storage directory. If an index directory has been given, the index is opened from the
+	 * files in it and compared with the storage directory in the background. If there are no such files yet, the index is built from the storage
+	 * directory and stored in the index directory. If the index directory can not be used, e.g. because another index uses it, the index is built
+	 * from the storage directory and only kept in memory.
+	 */
+	synchronized void load() {
+		if(indexDirectory != null) {
+			try {
+				indexLock = LogIndexFiles.lock(indexDirectory);
+				if(indexLock != null) {
+					LogIndexFiles openedFiles = LogIndexFiles.openLatest(indexDirectory);
+					if(openedFiles != null) {
+						open(openedFiles);
+						return;
+					}
+				}
+			} catch (IOException e) {
+				//the index is built from the storage directory below
+				closeFiles();
+			}
+		}
+		rebuild();
+	}
+
+	/**
+	 * Empties the index and fills it with the log message files in the storage directory and the log messages in the segments. The directory is
+	 * listed once, only the file names are read. The log messages are added in the order of their signature counters. If the index directory is
+	 * used, the index is written to it as a new generation.
+	 */
+	synchronized void rebuild() {
+		epoch++;
+		clearMemory();
+		otherLogFiles.clear();
+		List<String> fileNames = new ArrayList<String>();
+		String[] directoryFileNames = storageDirectory.list();
+		if(directoryFileNames != null) {
+			fileNames.addAll(Arrays.asList(directoryFileNames));
+		}
+		if(segments != null) {
+			try {
+				fileNames.addAll(segments.getFileNames());
+			} catch (IOException e) {
+				//the log messages in the segments are missing until the index is built again
+			}
+		}
+
+		//1. parse the names, files that are no log messages are ignored
+		List<IndexedLog> parsedLogs = new ArrayList<IndexedLog>(fileNames.size());
+		for(String fileName : fileNames) {
+			if(!fileName.endsWith(".log")) {
+				continue;
+			}
+			File file = new File(storageDirectory, fileName);
+			IndexedLog parsed = parse(file);
+			if(parsed != null) {
+				parsedLogs.add(parsed);
+			}
+			else if(exists(file)) {
+				otherLogFiles.add(file);
+			}
+		}
+
+		//2. add them in the order of their signature counters, so that the index lists them in the same order as the ones that are stored later
+		Collections.sort(parsedLogs, new Comparator<IndexedLog>() {
+			@Override
+			public int compare(IndexedLog first, IndexedLog second) {
+				int bySignatureCounter = Long.compare(first.signatureCounter, second.signatureCounter);
+				if(bySignatureCounter != 0) {
+					return bySignatureCounter;
+				}
+				return first.file.getName().compareTo(second.file.getName());
+			}
+		});
+		if(indexLock != null) {
+			try {
+				replaceFiles(LogIndexFiles.create(indexDirectory, parsedLogs, getOtherLogFileNames()));
+				return;
+			} catch (IOException e) {
+				//the index is only kept in memory
+				closeFiles();
+			}
+		}
+		for(IndexedLog parsed : parsedLogs) {
+			addToMemory(parsed);
+		}
+	}
+
+	/**
+	 * Removes all log messages from the index, e.g. after the content of the storage directory has been deleted.
+	 */
+	synchronized void clear() {
+		epoch++;
+		clearMemory();
+		otherLogFiles.clear();
+		if(indexLock != null) {
+			try {
+				replaceFiles(LogIndexFiles.create(indexDirectory, new ArrayList<IndexedLog>(), new ArrayList<String>()));
+			} catch (IOException e) {
+				//the index is only kept in memory
+				closeFiles();
+			}
+		}
+	}
+
+	/**
+	 * Adds a log message file that has just been written. Files that are already in the index are not added again.
+	 * @param file the file of the log message
+	 */
+	synchronized void add(File file) {
+		IndexedLog log = parse(file);
+		if(log == null) {
+			addOtherLogFile(file);
+		}
+		else if(find(log) < 0) {
+			append(log);
+		}
+	}
+
+	/**
+	 * @return all log message files, including the ".log" files whose names could not be parsed
+	 */
+	synchronized List<File> getAllFiles() {
+		int coveredRecords = (files == null) ? 0 : files.getNumberOfCoveredRecords();
+		List<File> allFiles = new ArrayList<File>(coveredRecords + allLogs.size() + otherLogFiles.size());
+		for(int recordNumber = 0; recordNumber < coveredRecords; recordNumber++) {
+			allFiles.add(files.readRecord(recordNumber, storageDirectory).file);
+		}
+		for(IndexedLog log : allLogs) {
+			allFiles.add(log.file);
+		}
+		allFiles.addAll(otherLogFiles);
+		return allFiles;
+	}
+
+	/**
+	 * Lists the log message files with signature counters in an interval. The runs are searched with binary search. If the interval is longer than
+	 * the number of log messages in memory, these log messages are searched instead of the signature counters of the interval.
+	 * @param startSignatureCounter the first signature counter of the interval
+	 * @param endSignatureCounter the last signature counter of the interval
+	 * @param excludedSignatureCounters signature counters that shall not be listed, sorted in ascending order. May be empty.
+	 * @param onlySystemAndAuditLogs true, if transaction logs shall not be listed
+	 * @return the files in the order of their signature counters. Empty, if none were found.
+	 */
+	synchronized List<File> getFilesBySignatureCounter(long startSignatureCounter, long endSignatureCounter, long[] excludedSignatureCounters,
+			boolean onlySystemAndAuditLogs) {
+		List<IndexedLog> logs = new ArrayList<IndexedLog>();
+		if(startSignatureCounter > endSignatureCounter) {
+			return new ArrayList<File>();
+		}
+
+		//1. the log messages in the runs
+		if(files != null) {
+			for(Run run : files.getRuns()) {
+				for(int i = files.lowerBoundBySignatureCounter(run, startSignatureCounter); i < run.size(); i++) {
+					int recordNumber = run.bySignatureCounter(i);
+					long signatureCounter = files.signatureCounter(recordNumber);
+					if(signatureCounter > endSignatureCounter) {
+						break;
+					}
+					if((!onlySystemAndAuditLogs || (files.type(recordNumber) != TYPE_TRANSACTION_LOG))
+							&& (Arrays.binarySearch(excludedSignatureCounters, signatureCounter) < 0)) {
+						logs.add(files.readRecord(recordNumber, storageDirectory));
+					}
+				}
+			}
+		}
+
+		//2. look up the counters of the interval one after another, or go through all log messages in memory if there are fewer of them
+		if(endSignatureCounter - startSignatureCounter < allLogs.size()) {
+			for(long signatureCounter = startSignatureCounter; signatureCounter <= endSignatureCounter; signatureCounter++) {
+				if(Arrays.binarySearch(excludedSignatureCounters, signatureCounter) >= 0) {
+					continue;
+				}
+				for(IndexedLog log = bySignatureCounter.get(signatureCounter); log != null; log = log.nextWithSameSignatureCounter) {
+					if(!onlySystemAndAuditLogs || (log.type != TYPE_TRANSACTION_LOG)) {
+						logs.add(log);
+					}
+				}
+			}
+		}
+		else {
+			for(IndexedLog log : allLogs) {
+				if((log.signatureCounter >= startSignatureCounter) && (log.signatureCounter <= endSignatureCounter)
+						&& (!onlySystemAndAuditLogs || (log.type != TYPE_TRANSACTION_LOG))
+						&& (Arrays.binarySearch(excludedSignatureCounters, log.signatureCounter) < 0)) {
+					logs.add(log);
+				}
+			}
+		}
+		return toFiles(logs, BY_SIGNATURE_COUNTER);
+	}
+
+	/**
+	 * Lists the transaction log files with transaction numbers in an interval. The runs are searched with binary search. If the interval is longer
+	 * than the number of transactions in memory, these transactions are searched instead of the transaction numbers of the interval.
+	 * @param startTransactionNumber the first transaction number of the interval
+	 * @param endTransactionNumber the last transaction number of the interval
+	 * @return the files in the order of their transaction numbers. Empty, if none were found.
+	 */
+	synchronized List<File> getFilesByTransactionNumber(long startTransactionNumber, long endTransactionNumber) {
+		List<IndexedLog> logs = new ArrayList<IndexedLog>();
+		if(startTransactionNumber > endTransactionNumber) {
+			return new ArrayList<File>();
+		}
+
+		//1. the transaction logs in the runs
+		if(files != null) {
+			for(Run run : files.getRuns()) {
+				for(int i = files.lowerBoundByTransactionNumber(run, startTransactionNumber); i < run.transactionLogs; i++) {
+					int recordNumber = run.byTransactionNumber(i);
+					if(files.transactionNumber(recordNumber) > endTransactionNumber) {
+						break;
+					}
+					logs.add(files.readRecord(recordNumber, storageDirectory));
+				}
+			}
+		}
+
+		//2. the transaction logs in memory
+		if(endTransactionNumber - startTransactionNumber < byTransactionNumber.size()) {
+			for(long transactionNumber = startTransactionNumber; transactionNumber <= endTransactionNumber; transactionNumber++) {
+				List<IndexedLog> logsOfTransaction = byTransactionNumber.get(transactionNumber);
+				if(logsOfTransaction != null) {
+					logs.addAll(logsOfTransaction);
+				}
+			}
+		}
+		else {
+			for(IndexedLog log : allLogs) {
+				if((log.type == TYPE_TRANSACTION_LOG) && (log.transactionNumber >= startTransactionNumber)
+						&& (log.transactionNumber <= endTransactionNumber)) {
+					logs.add(log);
+				}
+			}
+		}
+		return toFiles(logs, BY_TRANSACTION_NUMBER);
+	}
+
+	/**
+	 * Lists the log message files whose log time lies in an interval. The bounds are the ones of the {@linkplain org.apache.commons.io.filefilter.AgeFileFilter}s
+	 * used before, so the log time in milliseconds has to be greater than the lower bound and at most the upper bound.
+	 * @param afterMillis the lower bound in milliseconds since the epoch, not included. Long.MIN_VALUE if there is none.
+	 * @param untilMillis the upper bound in milliseconds since the epoch, included. Long.MAX_VALUE if there is none.
+	 * @return the files in the order of their log times, followed by the ".log" files whose names could not be parsed. Empty, if none were found.
+	 */
+	synchronized List<File> getFilesByLogTime(long afterMillis, long untilMillis) {
+		List<IndexedLog> logs = new ArrayList<IndexedLog>();
+		if(afterMillis >= untilMillis) {
+			return new ArrayList<File>();
+		}
+
+		//1. the log messages in the runs, the bounds in seconds are the first and the last log time that lie in the interval
+		if(files != null) {
+			long firstLogTime = Math.floorDiv(afterMillis, 1000) + 1;
+			long lastLogTime = Math.floorDiv(untilMillis, 1000);
+			for(Run run : files.getRuns()) {
+				for(int i = files.lowerBoundByLogTime(run, firstLogTime); i < run.size(); i++) {
+					int recordNumber = run.byLogTime(i);
+					if(files.logTime(recordNumber) > lastLogTime) {
+						break;
+					}
+					logs.add(files.readRecord(recordNumber, storageDirectory));
+				}
+			}
+		}
+
+		//2. only the buckets that overlap the interval have to be looked at
+		Long firstBucket = (afterMillis == Long.MIN_VALUE) ? Long.MIN_VALUE : Math.floorDiv(Math.floorDiv(afterMillis, 1000), BUCKET_SECONDS);
+		Long lastBucket = (untilMillis == Long.MAX_VALUE) ? Long.MAX_VALUE : Math.floorDiv(Math.floorDiv(untilMillis, 1000), BUCKET_SECONDS);
+		for(Map.Entry<Long, List<IndexedLog>> bucket : byTimeBucket.subMap(firstBucket, true, lastBucket, true).entrySet()) {
+			for(IndexedLog log : bucket.getValue()) {
+				long logTimeMillis = log.logTime * 1000;
+				if((logTimeMillis > afterMillis) && (logTimeMillis <= untilMillis)) {
+					logs.add(log);
+				}
+			}
+		}
+		List<File> filesInInterval = toFiles(logs, BY_LOG_TIME);
+
+		//3. the files whose names could not be parsed are filtered by their last modified attribute
+		for(File other : otherLogFiles) {
+			long lastModified = lastModified(other);
+			if((lastModified > afterMillis) && (lastModified <= untilMillis)) {
+				filesInInterval.add(other);
+			}
+		}
+		return filesInInterval;
+	}
+
+	/**
+	 * Stops the background thread, closes the index files and releases the lock of the index directory, so that another LogIndex of this or another
+	 * Java VM can use the directory. A comparison with the storage directory that is still running is stopped, it is done again on the next start.
+	 * A run that is being written is discarded. The log messages that are not part of a run have already been written to the records file and are 
+	 * read from it again on the next start.<br>
+	 * The index must not be used afterwards.
+	 * @throws InterruptedException if the thread is interrupted while waiting for the background thread. The index files are closed nevertheless.
+	 */
+	void close() throws InterruptedException {
+		//1. let the comparison and the run that are running stop early and wait for the background thread, which needs the lock of this object
+		ExecutorService stoppedMaintenance;
+		synchronized(this) {
+			epoch++;
+			stoppedMaintenance = maintenance;
+			maintenance = null;
+		}
+		try {
+			if(stoppedMaintenance != null) {
+				stoppedMaintenance.shutdown();
+				stoppedMaintenance.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			}
+		} finally {
+			//2. close the files and release the directory
+			synchronized(this) {
+				closeFiles();
+				if(indexLock != null) {
+					try {
+						indexLock.channel().close();
+					} catch (IOException e) {
+						//closing the channel of the lock file releases the lock in any case
+					}
+					indexLock = null;
+				}
+			}
+		}
+	}
+
+	//-----------------------------------INTERNAL METHODS------------------------------------------------------------------
+
+	/**
+	 * Uses index files that have just been opened. The records that are not part of a run are read into memory, the comparison with the
+	 * storage directory is started in the background.
+	 */
+	private void open(LogIndexFiles openedFiles) throws IOException {
+		files = openedFiles;
+		appendToFiles = true;
+		for(IndexedLog log : files.readRecords(files.getNumberOfCoveredRecords(), files.getNumberOfRecords(), storageDirectory)) {
+			addToMemory(log);
+		}
+		for(String fileName : files.getOtherLogFileNames()) {
+			otherLogFiles.add(new File(storageDirectory, fileName));
+		}
+		final long validationEpoch = epoch;
+		getMaintenance().execute(new Runnable() {
+			@Override
+			public void run() {
+				validate(validationEpoch);
+			}
+		});
+		scheduleRunIfNecessary();
+	}
+
+	/**
+	 * Uses a new generation of index files, whose runs contain all log messages, and deletes the old one.
+	 */
+	private void replaceFiles(LogIndexFiles newFiles) {
+		LogIndexFiles oldFiles = files;
+		files = newFiles;
+		appendToFiles = true;
+		if(oldFiles != null) {
+			oldFiles.closeAndDelete();
+		}
+	}
+
+	private void closeFiles() {
+		if(files != null) {
+			files.close();
+			files = null;
+		}
+		appendToFiles = false;
+	}
+
+	/**
+	 * Adds a log message to the index files and to memory. If writing to the index files fails, the log message and all that follow are only
+	 * kept in memory. They are written to the index directory when the index is built again, at the latest on the next start.
+	 */
+	private void append(IndexedLog log) {
+		if(appendToFiles) {
+			try {
+				files.append(log);
+			} catch (IOException e) {
+				appendToFiles = false;
+			}
+		}
+		addToMemory(log);
+		scheduleRunIfNecessary();
+	}
+
+	private void addOtherLogFile(File file) {
+		if(otherLogFiles.contains(file)) {
+			return;
+		}
+		otherLogFiles.add(file);
+		if(appendToFiles) {
+			try {
+				files.setOtherLogFileNames(getOtherLogFileNames());
+			} catch (IOException e) {
+				appendToFiles = false;
+			}
+		}
+	}
+
+	private List<String> getOtherLogFileNames() {
+		List<String> fileNames = new ArrayList<String>(otherLogFiles.size());
+		for(File other : otherLogFiles) {
+			fileNames.add(other.getName());
+		}
+		return fileNames;
+	}
+
+	/**
+	 * @return the record number of a log message with the same file name, {@linkplain #NOT_STORED} if it is only in memory, or -1 if it is not
+	 * in the index
+	 */
+	private int find(IndexedLog log) {
+		for(IndexedLog indexed = bySignatureCounter.get(log.signatureCounter); indexed != null; indexed = indexed.nextWithSameSignatureCounter) {
+			if(indexed.file.getName().equals(log.file.getName())) {
+				return indexed.recordNumber;
+			}
+		}
+		return (files == null) ? -1 : files.find(log);
+	}
+
+	private void addToMemory(IndexedLog log) {
+		allLogs.add(log);
+
+		//link further logs with the same signature counter (files with "_Fc-") behind the first one
+		log.nextWithSameSignatureCounter = null;
+		IndexedLog sameSignatureCounter = bySignatureCounter.get(log.signatureCounter);
+		if(sameSignatureCounter == null) {
+			bySignatureCounter.put(log.signatureCounter, log);
+		}
+		else {
+			while(sameSignatureCounter.nextWithSameSignatureCounter != null) {
+				sameSignatureCounter = sameSignatureCounter.nextWithSameSignatureCounter;
+			}
+			sameSignatureCounter.nextWithSameSignatureCounter = log;
+		}
+
+		if(log.type == TYPE_TRANSACTION_LOG) {
+			List<IndexedLog> logsOfTransaction = byTransactionNumber.get(log.transactionNumber);
+			if(logsOfTransaction == null) {
+				logsOfTransaction = new ArrayList<IndexedLog>(2);
+				byTransactionNumber.put(log.transactionNumber, logsOfTransaction);
+			}
+			logsOfTransaction.add(log);
+		}
+
+		Long bucketKey = Math.floorDiv(log.logTime, BUCKET_SECONDS);
+		List<IndexedLog> bucket = byTimeBucket.get(bucketKey);
+		if(bucket == null) {
+			bucket = new ArrayList<IndexedLog>();
+			byTimeBucket.put(bucketKey, bucket);
+		}
+		bucket.add(log);
+	}
+
+	private void clearMemory() {
+		allLogs.clear();
+		bySignatureCounter.clear();
+		byTransactionNumber.clear();
+		byTimeBucket.clear();
+	}
+
+	/**
+	 * Sorts log messages found in the runs and in memory, if they are not in order yet. The sort is stable, so log messages with the same key
+	 * keep the order in which they were found.
+	 */
+	private static List<File> toFiles(List<IndexedLog> logs, Comparator<IndexedLog> order) {
+		for(int i = 1; i < logs.size(); i++) {
+			if(order.compare(logs.get(i - 1), logs.get(i)) > 0) {
+				Collections.sort(logs, order);
+				break;
+			}
+		}
+		List<File> logFiles = new ArrayList<File>(logs.size());
+		for(IndexedLog log : logs) {
+			logFiles.add(log.file);
+		}
+		return logFiles;
+	}
+
+	private ExecutorService getMaintenance() {
+		if(maintenance == null) {
+			maintenance = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread worker = new Thread(r, "LogIndex-maintenance");
+					worker.setDaemon(true);
+					return worker;
+				}
+			});
+		}
+		return maintenance;
+	}
+
+	private void scheduleRunIfNecessary() {
+		if(!appendToFiles || runScheduled || (allLogs.size() < RUN_LENGTH)) {
+			return;
+		}
+		runScheduled = true;
+		getMaintenance().execute(new Runnable() {
+			@Override
+			public void run() {
+				writeRun();
+			}
+		});
+	}
+
+	/**
+	 * Writes the log messages in memory as a new run. Writing and merging runs happens without holding the lock, log messages that are
+	 * stored in the meantime stay in memory.
+	 */
+	private void writeRun() {
+		LogIndexFiles runFiles;
+		long runEpoch;
+		List<Run> currentRuns;
+		int from;
+		List<IndexedLog> logs;
+		synchronized(this) {
+			runScheduled = false;
+			if(!appendToFiles || (allLogs.size() < RUN_LENGTH)) {
+				return;
+			}
+			runFiles = files;
+			runEpoch = epoch;
+			currentRuns = files.getRuns();
+			from = files.getNumberOfCoveredRecords();
+			logs = new ArrayList<IndexedLog>(allLogs);
+		}
+
+		try {
+			List<Run> newRuns = runFiles.writeRuns(currentRuns, from, logs);
+			synchronized(this) {
+				if((epoch != runEpoch) || (files != runFiles)) {
+					runFiles.discardRuns(newRuns);
+					return;
+				}
+				files.installRuns(newRuns);
+				List<IndexedLog> remainingLogs = new ArrayList<IndexedLog>(allLogs.subList(logs.size(), allLogs.size()));
+				clearMemory();
+				for(IndexedLog log : remainingLogs) {
+					addToMemory(log);
+				}
+				scheduleRunIfNecessary();
+			}
+		} catch (IOException e) {
+			synchronized(this) {
+				//the log messages stay in memory, the index is written again when it is built the next time
+				if(files == runFiles) {
+					appendToFiles = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compares the index that has been opened from the index directory with the storage directory and the segments. The directory is read as a
+	 * stream, so that its names are not held in memory at once. Log message files that are not in the index are added, e.g. if the simulator was
+	 * stopped before the index files were written. If fewer indexed log messages are found than the index contains, files have been removed and
+	 * the index is built again.
+	 */
+	private void validate(long validationEpoch) {
+		int indexedRecords;
+		synchronized(this) {
+			if((epoch != validationEpoch) || !appendToFiles) {
+				return;
+			}
+			indexedRecords = files.getNumberOfRecords();
+		}
+
+		//1. look up every file of the storage directory
+		int foundRecords = 0;
+		Set<String> foundOtherLogFiles = new HashSet<String>();
+		try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(storageDirectory.toPath(), "*.log")) {
+			for(Path path : directoryStream) {
+				int found = compareWithIndex(path.getFileName().toString(), validationEpoch, indexedRecords, foundOtherLogFiles);
+				if(found < 0) {
+					return;
+				}
+				foundRecords += found;
+			}
+			if(segments != null) {
+				for(String fileName : segments.getFileNames()) {
+					int found = compareWithIndex(fileName, validationEpoch, indexedRecords, foundOtherLogFiles);
+					if(found < 0) {
+						return;
+					}
+					foundRecords += found;
+				}
+			}
+		} catch (IOException | DirectoryIteratorException e) {
+			//the index is compared again on the next start
+			return;
+		}
+
+		//2. remove what no longer exists
+		synchronized(this) {
+			if(epoch != validationEpoch) {
+				return;
+			}
+			if(foundRecords < indexedRecords) {
+				rebuild();
+				return;
+			}
+			boolean removed = false;
+			for(Iterator<File> iterator = otherLogFiles.iterator(); iterator.hasNext();) {
+				File other = iterator.next();
+				if(!foundOtherLogFiles.contains(other.getName()) && !exists(other)) {
+					iterator.remove();
+					removed = true;
+				}
+			}
+			if(removed && appendToFiles) {
+				try {
+					files.setOtherLogFileNames(getOtherLogFileNames());
+				} catch (IOException e) {
+					appendToFiles = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Looks up a file of the storage directory or a log message of the segments in the index and adds it if it is missing.
+	 * @return 1 if it is one of the first indexedRecords records, 0 if not, or -1 if the index has been cleared or built again in the meantime
+	 */
+	private synchronized int compareWithIndex(String fileName, long validationEpoch, int indexedRecords, Set<String> foundOtherLogFiles) {
+		if(epoch != validationEpoch) {
+			return -1;
+		}
+		File file = new File(storageDirectory, fileName);
+		IndexedLog log = parse(file);
+		if(log == null) {
+			if(exists(file)) {
+				foundOtherLogFiles.add(fileName);
+				addOtherLogFile(file);
+			}
+			return 0;
+		}
+		int recordNumber = find(log);
+		if(recordNumber < 0) {
+			append(log);
+		}
+		else if(recordNumber < indexedRecords) {
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * @return true, if the file exists in the storage directory or a log message with its name is stored in the segments
+	 */
+	private boolean exists(File file) {
+		if(file.isFile()) {
+			return true;
+		}
+		try {
+			return (segments != null) && segments.contains(file.getName());
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return the last modified attribute of the file, or the log time of the log message with its name in the segments in milliseconds
+	 */
+	private long lastModified(File file) {
+		if((segments == null) || file.isFile()) {
+			return file.lastModified();
+		}
+		try {
+			return Math.max(segments.getLogTime(file.getName()), 0) * 1000;
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * @return the type of a kind of log message
+	 */
+	static int typeOfKind(int kind) {
+		if(kind <= KIND_FINISH_TRANSACTION) {
+			return TYPE_TRANSACTION_LOG;
+		}
+		return (kind == KIND_SYSTEM_LOG) ? TYPE_SYSTEM_LOG : TYPE_AUDIT_LOG;
+	}
+
+	/**
+	 * Reads the values of a log message from its file name.<br>
+	 * (Unixt||Utc||Gent)_(logtime)_Sig-(signatureCounter)_Log-Tra_No-(transactionNumber)_(Start||Update||Finish)_Client-(clientId)[_Fc-(x)].log<br>
+	 * (Unixt||Utc||Gent)_(logtime)_Sig-(signatureCounter)_Log-Sys_(operationType)[_Fc-(x)].log<br>
+	 * (Unixt||Utc||Gent)_(logtime)_Sig-(signatureCounter)_Log-Aud[_Fc-(x)].log
+	 * @param file the file of the log message
+	 * @return the values of the log message, or null if the file name does not have one of the formats above or can not be built from the values
+	 * again, e.g. because a number has leading zeros
+	 */
+	static IndexedLog parse(File file) {
+		String name = file.getName();
+		if(!name.endsWith(".log")) {
+			return null;
+		}
+		//the name without ".log" and without the "_Fc-(x)" of duplicates
+		int end = name.length() - 4;
+		int fileCounter = -1;
+		int fileCounterStart = name.lastIndexOf("_Fc-", end);
+		if(fileCounterStart > 0) {
+			long parsedFileCounter = parseNumber(name, fileCounterStart + 4, end);
+			if((parsedFileCounter >= 0) && (parsedFileCounter <= MAX_FILE_COUNTER)) {
+				fileCounter = (int) parsedFileCounter;
+				end = fileCounterStart;
+			}
+		}
+
+		//1. time format and log time
+		int firstSeparator = name.indexOf('_');
+		if(firstSeparator < 0) {
+			return null;
+		}
+		int format = Arrays.asList(TIME_FORMATS).indexOf(name.substring(0, firstSeparator));
+		int secondSeparator = name.indexOf('_', firstSeparator + 1);
+		if((format < 0) || (secondSeparator < 0)) {
+			return null;
+		}
+		long logTime = parseNumber(name, firstSeparator + 1, secondSeparator);
+
+		//2. signature counter
+		if(!name.startsWith("_Sig-", secondSeparator)) {
+			return null;
+		}
+		int thirdSeparator = name.indexOf('_', secondSeparator + 5);
+		if((logTime < 0) || (thirdSeparator < 0) || (thirdSeparator > end)) {
+			return null;
+		}
+		long signatureCounter = parseNumber(name, secondSeparator + 5, thirdSeparator);
+		if(signatureCounter < 0) {
+			return null;
+		}
+
+		//3. the type and the values that depend on it
+		IndexedLog parsed = null;
+		if(name.startsWith("_Log-Tra_No-", thirdSeparator)) {
+			int fourthSeparator = name.indexOf('_', thirdSeparator + 12);
+			if((fourthSeparator < 0) || (fourthSeparator > end)) {
+				return null;
+			}
+			long transactionNumber = parseNumber(name, thirdSeparator + 12, fourthSeparator);
+			int kind = 0;
+			while((kind < TRANSACTION_STEPS.length) && !name.startsWith(TRANSACTION_STEPS[kind], fourthSeparator)) {
+				kind++;
+			}
+			if((transactionNumber < 0) || (kind == TRANSACTION_STEPS.length) || (fourthSeparator + TRANSACTION_STEPS[kind].length() >= end)) {
+				return null;
+			}
+			parsed = new IndexedLog(file, format, kind, logTime, signatureCounter, transactionNumber,
+					name.substring(fourthSeparator + TRANSACTION_STEPS[kind].length(), end), fileCounter);
+		}
+		else if(name.startsWith("_Log-Sys_", thirdSeparator) && (thirdSeparator + 9 < end)) {
+			parsed = new IndexedLog(file, format, KIND_SYSTEM_LOG, logTime, signatureCounter, 0, name.substring(thirdSeparator + 9, end), fileCounter);
+		}
+		else if(name.startsWith("_Log-Aud", thirdSeparator) && (thirdSeparator + 8 == end)) {
+			parsed = new IndexedLog(file, format, KIND_AUDIT_LOG, logTime, signatureCounter, 0, null, fileCounter);
+		}
+
+		//the index files only store the values, so the name has to be the one that is built from them
+		if((parsed == null) || !parsed.getFileName().equals(name)) {
+			return null;
+		}
+		return parsed;
+	}
+
+	/**
+	 * @return the decimal number between start and end, or -1 if there is none or it has more than 18 digits
+	 */
+	private static long parseNumber(String name, int start, int end) {
+		if((start >= end) || (end - start > 18)) {
+			return -1;
+		}
+		long value = 0;
+		for(int i = start; i < end; i++) {
+			char digit = name.charAt(i);
+			if((digit < '0') || (digit > '9')) {
+				return -1;
+			}
+			value = value * 10 + (digit - '0');
+		}
+		return value;
+	}
+
+	/**
+	 * What the index knows about one log message file.
+	 */
+	static final class IndexedLog {
+		File file;							//set when the log message is read from the index files
+		final int type;						//TYPE_TRANSACTION_LOG, TYPE_SYSTEM_LOG or TYPE_AUDIT_LOG
+		final int kind;						//KIND_START_TRANSACTION to KIND_AUDIT_LOG
+		final int format;					//the position in TIME_FORMATS
+		final long logTime;					//Unix time
+		final long signatureCounter;
+		final long transactionNumber;		//only for transaction logs
+		final String text;					//the client ID of transaction logs or the operation of system logs
+		final int fileCounter;				//-1 if the file is no duplicate
+		int recordNumber = NOT_STORED;
+		IndexedLog nextWithSameSignatureCounter;
+
+		IndexedLog(File file, int format, int kind, long logTime, long signatureCounter, long transactionNumber, String text, int fileCounter) {
+			this.file = file;
+			this.type = typeOfKind(kind);
+			this.kind = kind;
+			this.format = format;
+			this.logTime = logTime;
+			this.signatureCounter = signatureCounter;
+			this.transactionNumber = transactionNumber;
+			this.text = text;
+			this.fileCounter = fileCounter;
+		}
+
+		/**
+		 * @return the file name built from the values, see {@linkplain LogIndex#parse(File)}
+		 */
+		String getFileName() {
+			StringBuilder name = new StringBuilder(80).append(TIME_FORMATS[format]).append('_').append(logTime).append("_Sig-").append(signatureCounter);
+			if(type == TYPE_TRANSACTION_LOG) {
+				name.append("_Log-Tra_No-").append(transactionNumber).append(TRANSACTION_STEPS[kind]).append(text);
+			}
+			else if(type == TYPE_SYSTEM_LOG) {
+				name.append("_Log-Sys_").append(text);
+			}
+			else {
+				name.append("_Log-Aud");
+			}
+			if(fileCounter >= 0) {
+				name.append("_Fc-").append(fileCounter);
+			}
+			return name.append(".log").toString();
+		}
+	}
+}
@@ -0,0 +1,982 @@
+package main.java.de.bsi.tsesimulator.tse.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import main.java.de.bsi.tsesimulator.tse.storage.LogIndex.IndexedLog;
+
+/**
+ * The files of a persistent {@linkplain LogIndex} in the directory denoted by
+ * {@linkplain main.java.de.bsi.tsesimulator.constants.ConfigConstants#CFG_TAG_STORAGE_INDEX_DIR}. They allow the index to be opened without
+ * listing the storage directory.<br>
+ * A generation of the index consists of the following files:
+ * <ul>
+ * <li><b>records-(generation).idx</b>: one record of {@value #RECORD_WIDTH} bytes for every log message, in the order they were stored. A record
+ * holds the signature counter, the log time, the transaction number, the client ID or operation as a number in the strings file, the file counter
+ * of duplicates, the time format and the kind of log message. The file name of the log message is built from these values.</li>
+ * <li><b>strings-(generation).idx</b>: the client IDs and operations of the records, each stored as its length and its UTF-8 bytes.</li>
+ * <li><b>other-(generation).idx</b>: the names of the ".log" files whose names could not be parsed, one per line.</li>
+ * <li><b>run-(generation)-(from)-(to).idx</b>: a sorted run for the records from (included) to (excluded). It lists the numbers of these records
+ * ordered by signature counter, ordered by transaction number (only transaction logs) and ordered by log time. The first list is left out if the
+ * records are already ordered by signature counter, which is the case if the log messages are written in the order of their signature counters.</li>
+ * </ul>
+ * New records are appended to the records file. Once enough of them have been collected, the {@linkplain LogIndex} writes a run for them and
+ * merges it with the previous run, if that one is not much longer. The runs are memory-mapped and searched with binary search, the records that are
+ * not part of a run yet are kept in memory by the LogIndex.<br>
+ * Files are never changed after they have been written, apart from appending to the records and strings file. Runs and generations are written to
+ * temporary files and renamed when they are complete, files that are no longer needed are deleted, or if that is not possible because they are still
+ * mapped, when the index is opened the next time.<br>
+ * This class is not thread-safe, the LogIndex synchronizes the access to it. Only {@linkplain #writeRuns(List, int, List)} may be called without
+ * holding the lock of the LogIndex.
+ *
+ * @since 1.6
+ */
+final class LogIndexFiles {
+	/**
+	 * The length of a record in bytes.
+	 */
+	static final int RECORD_WIDTH = 32;
+
+	//the header of the records and run files
+	private static final int HEADER_LENGTH = 32;
+	private static final long RECORDS_MAGIC = 0x5453452D4C4F4731L;		//"TSE-LOG1"
+	private static final long RUN_MAGIC = 0x5453452D52554E31L;			//"TSE-RUN1"
+	private static final int RUN_ORDERED_BY_SIGNATURE_COUNTER = 1;
+
+	//the orders of the lists in a run
+	private static final int BY_SIGNATURE_COUNTER = 0;
+	private static final int BY_TRANSACTION_NUMBER = 1;
+	private static final int BY_LOG_TIME = 2;
+
+	private static final String RECORDS_PREFIX = "records-";
+	private static final String STRINGS_PREFIX = "strings-";
+	private static final String OTHER_PREFIX = "other-";
+	private static final String RUN_PREFIX = "run-";
+	private static final String SUFFIX = ".idx";
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+	private static final String LOCK_FILE_NAME = "index.lock";
+
+	private final File directory;
+	private final int generation;
+	private final FileChannel recordsChannel;
+	private final FileChannel stringsChannel;
+	private final List<String> strings = new ArrayList<String>();
+	private final Map<String, Integer> stringNumbers = new HashMap<String, Integer>();
+	private final ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_WIDTH);
+	private List<String> otherLogFileNames;
+	private int numberOfRecords;
+	private List<Run> runs;
+	private Records coveredRecords;						//the records that are part of a run
+
+	private LogIndexFiles(File directory, int generation, FileChannel recordsChannel, FileChannel stringsChannel) {
+		this.directory = directory;
+		this.generation = generation;
+		this.recordsChannel = recordsChannel;
+		this.stringsChannel = stringsChannel;
+	}
+
+	/**
+	 * Locks the index directory, so that only one {@linkplain LogIndex} uses the files in it. The lock is held until the {@linkplain LogIndex} is 
+	 * closed, see {@linkplain LogIndex#close()}, or the Java VM exits.
+	 * @param directory the index directory, is created if it does not exist
+	 * @return the lock, or null if the directory is already locked by another LogIndex of this or another process
+	 * @throws IOException if the directory or the lock file could not be created
+	 */
+	static FileLock lock(File directory) throws IOException {
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("The index directory " +directory.getAbsolutePath() +" could not be created.");
+		}
+		FileChannel lockChannel = FileChannel.open(new File(directory, LOCK_FILE_NAME).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		try {
+			FileLock lock = lockChannel.tryLock();
+			if(lock == null) {
+				lockChannel.close();
+			}
+			return lock;
+		} catch (OverlappingFileLockException e) {
+			lockChannel.close();
+			return null;
+		}
+	}
+
+	/**
+	 * Opens the newest complete generation in the index directory. Records at the end of the records file that were not written completely are cut off.
+	 * Files of other generations and runs that are not needed are deleted.
+	 * @param directory the index directory
+	 * @return the opened generation, or null if there is none
+	 * @throws IOException if the files of the generation can not be read
+	 */
+	static LogIndexFiles openLatest(File directory) throws IOException {
+		//the records file is renamed last when a generation is written, so its existence marks a complete generation
+		int latestGeneration = -1;
+		for(String fileName : list(directory)) {
+			int generation = parseGeneration(fileName, RECORDS_PREFIX);
+			if(fileName.endsWith(SUFFIX) && (generation > latestGeneration)) {
+				latestGeneration = generation;
+			}
+		}
+		if(latestGeneration < 0) {
+			return null;
+		}
+		return open(directory, latestGeneration);
+	}
+
+	/**
+	 * Writes a new generation with the given log messages and opens it. The log messages are numbered in the given order and all of them are
+	 * put into one run. The files of older generations are deleted if possible.
+	 * @param directory the index directory
+	 * @param logs the log messages, usually ordered by signature counter
+	 * @param otherLogFileNames the names of the ".log" files whose names could not be parsed
+	 * @return the new generation
+	 * @throws IOException if writing the files fails
+	 */
+	static LogIndexFiles create(File directory, List<IndexedLog> logs, List<String> otherLogFileNames) throws IOException {
+		//1. the next generation number, files that are left over from an incomplete generation are overwritten
+		int generation = 0;
+		for(String fileName : list(directory)) {
+			for(String prefix : new String[] {RECORDS_PREFIX, STRINGS_PREFIX, OTHER_PREFIX, RUN_PREFIX}) {
+				generation = Math.max(generation, parseGeneration(fileName, prefix) + 1);
+			}
+		}
+
+		//2. the strings, the other log files and the run
+		Map<String, Integer> stringNumbers = new HashMap<String, Integer>();
+		IndexFileWriter stringsWriter = new IndexFileWriter(directory, STRINGS_PREFIX + generation + SUFFIX);
+		for(int i = 0; i < logs.size(); i++) {
+			IndexedLog log = logs.get(i);
+			log.recordNumber = i;
+			if((log.text != null) && !stringNumbers.containsKey(log.text)) {
+				stringNumbers.put(log.text, stringNumbers.size());
+				byte[] text = log.text.getBytes(StandardCharsets.UTF_8);
+				stringsWriter.out.writeInt(text.length);
+				stringsWriter.out.write(text);
+			}
+		}
+		stringsWriter.finish();
+		writeOtherLogFileNames(directory, generation, otherLogFileNames);
+		if(!logs.isEmpty()) {
+			writeRun(directory, generation, 0, logs);
+		}
+
+		//3. the records file, renaming it completes the generation
+		IndexFileWriter recordsWriter = new IndexFileWriter(directory, RECORDS_PREFIX + generation + SUFFIX);
+		writeHeader(recordsWriter.out, RECORDS_MAGIC, 1, RECORD_WIDTH, 0, 0);
+		ByteBuffer record = ByteBuffer.allocate(RECORD_WIDTH);
+		for(IndexedLog log : logs) {
+			record.clear();
+			encode(record, log, (log.text == null) ? -1 : stringNumbers.get(log.text).intValue());
+			recordsWriter.out.write(record.array());
+		}
+		recordsWriter.finish();
+		return open(directory, generation);
+	}
+
+	/**
+	 * @return the number of records, including the ones that are not part of a run yet
+	 */
+	int getNumberOfRecords() {
+		return numberOfRecords;
+	}
+
+	/**
+	 * @return the number of records that are part of a run. These are the records 0 to this number (excluded).
+	 */
+	int getNumberOfCoveredRecords() {
+		return coveredRecords.count;
+	}
+
+	/**
+	 * @return the runs in the order of the records they contain
+	 */
+	List<Run> getRuns() {
+		return runs;
+	}
+
+	/**
+	 * @return the names of the ".log" files whose names could not be parsed
+	 */
+	List<String> getOtherLogFileNames() {
+		return otherLogFileNames;
+	}
+
+	/**
+	 * Replaces the list of ".log" files whose names could not be parsed.
+	 * @param otherLogFileNames the file names
+	 * @throws IOException if writing the file fails
+	 */
+	void setOtherLogFileNames(List<String> otherLogFileNames) throws IOException {
+		writeOtherLogFileNames(directory, generation, otherLogFileNames);
+		this.otherLogFileNames = new ArrayList<String>(otherLogFileNames);
+	}
+
+	/**
+	 * Appends a record for a log message and sets the record number of the log message.
+	 * @param log the log message
+	 * @throws IOException if writing to the records or strings file fails, or if the index can not hold more records
+	 */
+	void append(IndexedLog log) throws IOException {
+		if(numberOfRecords == Integer.MAX_VALUE) {
+			throw new IOException("The storage index can not hold more log messages.");
+		}
+		//1. the number of the client ID or operation, new ones are appended to the strings file
+		int stringNumber = -1;
+		if(log.text != null) {
+			Integer knownNumber = stringNumbers.get(log.text);
+			if(knownNumber == null) {
+				byte[] text = log.text.getBytes(StandardCharsets.UTF_8);
+				ByteBuffer entry = ByteBuffer.allocate(4 + text.length);
+				entry.putInt(text.length).put(text).flip();
+				writeFully(stringsChannel, entry, stringsChannel.size());
+				knownNumber = addString(log.text);
+			}
+			stringNumber = knownNumber.intValue();
+		}
+
+		//2. the record
+		recordBuffer.clear();
+		encode(recordBuffer, log, stringNumber);
+		recordBuffer.flip();
+		writeFully(recordsChannel, recordBuffer, HEADER_LENGTH + (long) numberOfRecords * RECORD_WIDTH);
+		log.recordNumber = numberOfRecords;
+		numberOfRecords++;
+	}
+
+	/**
+	 * Reads records that are not part of a run, e.g. after the index has been opened.
+	 * @param from the first record
+	 * @param to the record after the last one
+	 * @param storageDirectory the directory that contains the log message files
+	 * @return the log messages of the records
+	 * @throws IOException if reading the records file fails
+	 */
+	List<IndexedLog> readRecords(int from, int to, File storageDirectory) throws IOException {
+		List<IndexedLog> logs = new ArrayList<IndexedLog>(to - from);
+		ByteBuffer buffer = ByteBuffer.allocate(4096 * RECORD_WIDTH);
+		int recordNumber = from;
+		while(recordNumber < to) {
+			buffer.clear();
+			buffer.limit(Math.min(buffer.capacity(), (to - recordNumber) * RECORD_WIDTH));
+			long position = HEADER_LENGTH + (long) recordNumber * RECORD_WIDTH;
+			while(buffer.hasRemaining()) {
+				if(recordsChannel.read(buffer, position + buffer.position()) < 0) {
+					throw new IOException("The records file of the storage index ended unexpectedly.");
+				}
+			}
+			buffer.flip();
+			while(buffer.hasRemaining()) {
+				IndexedLog log = decode(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getInt(), (buffer.getShort() & 0xFFFF) - 1,
+						buffer.get(), buffer.get(), storageDirectory);
+				log.recordNumber = recordNumber++;
+				logs.add(log);
+			}
+		}
+		return logs;
+	}
+
+	/**
+	 * Reads a record that is part of a run.
+	 * @param recordNumber the number of the record
+	 * @param storageDirectory the directory that contains the log message files
+	 * @return the log message of the record
+	 */
+	IndexedLog readRecord(int recordNumber, File storageDirectory) {
+		Records records = coveredRecords;
+		IndexedLog log = decode(records.signatureCounter(recordNumber), records.logTime(recordNumber), records.transactionNumber(recordNumber),
+				records.stringNumber(recordNumber), records.fileCounter(recordNumber), records.format(recordNumber), records.kind(recordNumber),
+				storageDirectory);
+		log.recordNumber = recordNumber;
+		return log;
+	}
+
+	/**
+	 * @return the signature counter of a record that is part of a run
+	 */
+	long signatureCounter(int recordNumber) {
+		return coveredRecords.signatureCounter(recordNumber);
+	}
+
+	/**
+	 * @return the transaction number of a record that is part of a run
+	 */
+	long transactionNumber(int recordNumber) {
+		return coveredRecords.transactionNumber(recordNumber);
+	}
+
+	/**
+	 * @return the log time of a record that is part of a run
+	 */
+	long logTime(int recordNumber) {
+		return coveredRecords.logTime(recordNumber);
+	}
+
+	/**
+	 * @return the type of a record that is part of a run, see {@linkplain LogIndex#TYPE_TRANSACTION_LOG}
+	 */
+	int type(int recordNumber) {
+		return LogIndex.typeOfKind(coveredRecords.kind(recordNumber));
+	}
+
+	/**
+	 * Searches the runs for a record of a log message.
+	 * @param log the log message
+	 * @return the number of the record, or -1 if no run contains it
+	 */
+	int find(IndexedLog log) {
+		Records records = coveredRecords;
+		for(Run run : runs) {
+			for(int i = lowerBound(records, run, BY_SIGNATURE_COUNTER, log.signatureCounter); i < run.length(BY_SIGNATURE_COUNTER); i++) {
+				int recordNumber = run.get(BY_SIGNATURE_COUNTER, i);
+				if(records.signatureCounter(recordNumber) != log.signatureCounter) {
+					break;
+				}
+				if((records.logTime(recordNumber) == log.logTime) && (records.transactionNumber(recordNumber) == log.transactionNumber)
+						&& (records.kind(recordNumber) == log.kind) && (records.format(recordNumber) == log.format)
+						&& (records.fileCounter(recordNumber) == log.fileCounter) && sameString(records.stringNumber(recordNumber), log.text)) {
+					return recordNumber;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the position of the first record of the run whose signature counter is not smaller than the given one
+	 */
+	int lowerBoundBySignatureCounter(Run run, long signatureCounter) {
+		return lowerBound(coveredRecords, run, BY_SIGNATURE_COUNTER, signatureCounter);
+	}
+
+	/**
+	 * @return the position of the first transaction log of the run whose transaction number is not smaller than the given one
+	 */
+	int lowerBoundByTransactionNumber(Run run, long transactionNumber) {
+		return lowerBound(coveredRecords, run, BY_TRANSACTION_NUMBER, transactionNumber);
+	}
+
+	/**
+	 * @return the position of the first record of the run whose log time is not smaller than the given one
+	 */
+	int lowerBoundByLogTime(Run run, long logTime) {
+		return lowerBound(coveredRecords, run, BY_LOG_TIME, logTime);
+	}
+
+	/**
+	 * Writes a run for records that are not part of a run yet and merges it with the previous runs as long as the last run is at least half as long
+	 * as the one before it. The result is not used until it is passed to {@linkplain #installRuns(List)}.<br>
+	 * May be called without holding the lock of the {@linkplain LogIndex}, because it only reads records that have been written before and
+	 * runs that are not changed.
+	 * @param currentRuns the runs when the log messages were taken from the LogIndex
+	 * @param from the number of the first record of the new run, the first record that is not part of currentRuns
+	 * @param logs the log messages of the records from this number on, in the order of their record numbers
+	 * @return the runs that contain the records up to the last of the given log messages
+	 * @throws IOException if writing a run fails
+	 */
+	List<Run> writeRuns(List<Run> currentRuns, int from, List<IndexedLog> logs) throws IOException {
+		List<Run> newRuns = new ArrayList<Run>(currentRuns);
+		newRuns.add(writeRun(directory, generation, from, logs));
+		Records records = mapRecords(from + logs.size());
+		while(newRuns.size() >= 2) {
+			Run last = newRuns.get(newRuns.size() - 1);
+			Run previous = newRuns.get(newRuns.size() - 2);
+			if(2L * last.size() < previous.size()) {
+				break;
+			}
+			Run merged = merge(records, previous, last);
+			newRuns.remove(newRuns.size() - 1);
+			newRuns.set(newRuns.size() - 1, merged);
+			//the previous run is still used by the LogIndex until the new runs are installed
+			if(!currentRuns.contains(previous)) {
+				previous.delete();
+			}
+			last.delete();
+		}
+		return newRuns;
+	}
+
+	/**
+	 * Uses runs written by {@linkplain #writeRuns(List, int, List)} from now on and deletes the runs that are no longer needed.
+	 * @param newRuns the runs
+	 * @throws IOException if mapping the records fails
+	 */
+	void installRuns(List<Run> newRuns) throws IOException {
+		coveredRecords = mapRecords(newRuns.isEmpty() ? 0 : newRuns.get(newRuns.size() - 1).to);
+		for(Run run : runs) {
+			if(!newRuns.contains(run)) {
+				run.delete();
+			}
+		}
+		runs = Collections.unmodifiableList(new ArrayList<Run>(newRuns));
+	}
+
+	/**
+	 * Deletes runs written by {@linkplain #writeRuns(List, int, List)} that are not going to be installed.
+	 * @param newRuns the runs
+	 */
+	void discardRuns(List<Run> newRuns) {
+		for(Run run : newRuns) {
+			if(!runs.contains(run)) {
+				run.delete();
+			}
+		}
+	}
+
+	/**
+	 * Closes the records and strings file and deletes all files of this generation, if possible. Files that are still mapped may not be deleted
+	 * on every operating system, they are deleted when the index is opened the next time.
+	 */
+	void closeAndDelete() {
+		close();
+		for(String fileName : list(directory)) {
+			if(belongsToGeneration(fileName, generation)) {
+				new File(directory, fileName).delete();
+			}
+		}
+	}
+
+	/**
+	 * Closes the records and strings file.
+	 */
+	void close() {
+		try {
+			recordsChannel.close();
+		} catch (IOException e) {
+			//nothing is written when closing
+		}
+		try {
+			stringsChannel.close();
+		} catch (IOException e) {
+			//nothing is written when closing
+		}
+	}
+
+	//-----------------------------------INTERNAL METHODS------------------------------------------------------------------
+
+	private static LogIndexFiles open(File directory, int generation) throws IOException {
+		//1. the records file, a record at the end that was not written completely is cut off
+		FileChannel recordsChannel = FileChannel.open(new File(directory, RECORDS_PREFIX + generation + SUFFIX).toPath(), StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		FileChannel stringsChannel = null;
+		try {
+			ByteBuffer header = readHeader(recordsChannel);
+			if((header.remaining() < HEADER_LENGTH) || (header.getLong() != RECORDS_MAGIC) || (header.getInt() != 1) || (header.getInt() != RECORD_WIDTH)) {
+				throw new IOException("The records file of the storage index has an unknown format.");
+			}
+			long records = Math.min((recordsChannel.size() - HEADER_LENGTH) / RECORD_WIDTH, Integer.MAX_VALUE);
+			if(recordsChannel.size() != HEADER_LENGTH + records * RECORD_WIDTH) {
+				recordsChannel.truncate(HEADER_LENGTH + records * RECORD_WIDTH);
+			}
+
+			//2. the strings, an entry at the end that was not written completely is cut off
+			stringsChannel = FileChannel.open(new File(directory, STRINGS_PREFIX + generation + SUFFIX).toPath(), StandardOpenOption.READ,
+					StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+			LogIndexFiles files = new LogIndexFiles(directory, generation, recordsChannel, stringsChannel);
+			files.numberOfRecords = (int) records;
+			ByteBuffer stringsBuffer = ByteBuffer.wrap(Files.readAllBytes(new File(directory, STRINGS_PREFIX + generation + SUFFIX).toPath()));
+			while(stringsBuffer.remaining() >= 4) {
+				int length = stringsBuffer.getInt(stringsBuffer.position());
+				if((length < 0) || (stringsBuffer.remaining() - 4 < length)) {
+					break;
+				}
+				files.addString(new String(stringsBuffer.array(), stringsBuffer.position() + 4, length, StandardCharsets.UTF_8));
+				stringsBuffer.position(stringsBuffer.position() + 4 + length);
+			}
+			if(stringsBuffer.hasRemaining()) {
+				stringsChannel.truncate(stringsBuffer.position());
+			}
+
+			//3. the other log files
+			files.otherLogFileNames = new ArrayList<String>();
+			File otherFile = new File(directory, OTHER_PREFIX + generation + SUFFIX);
+			if(otherFile.isFile()) {
+				for(String fileName : Files.readAllLines(otherFile.toPath(), StandardCharsets.UTF_8)) {
+					if(!fileName.isEmpty()) {
+						files.otherLogFileNames.add(fileName);
+					}
+				}
+			}
+
+			//4. the runs, starting with record 0 the longest run that continues the previous ones is used
+			Map<Integer, Run> longestRunByStart = new HashMap<Integer, Run>();
+			for(String fileName : list(directory)) {
+				if(!fileName.startsWith(RUN_PREFIX + generation + "-") || !fileName.endsWith(SUFFIX)) {
+					continue;
+				}
+				Run run = openRun(new File(directory, fileName), files.numberOfRecords);
+				if(run == null) {
+					continue;
+				}
+				Run known = longestRunByStart.get(run.from);
+				if((known == null) || (known.to < run.to)) {
+					longestRunByStart.put(run.from, run);
+				}
+			}
+			List<Run> runs = new ArrayList<Run>();
+			int covered = 0;
+			for(Run run = longestRunByStart.get(covered); run != null; run = longestRunByStart.get(covered)) {
+				runs.add(run);
+				covered = run.to;
+			}
+			files.runs = Collections.unmodifiableList(runs);
+			files.coveredRecords = files.mapRecords(covered);
+
+			//5. everything else in the directory is left over from earlier generations, runs or interrupted writes
+			for(String fileName : list(directory)) {
+				if(LOCK_FILE_NAME.equals(fileName) || fileName.equals(RECORDS_PREFIX + generation + SUFFIX)
+						|| fileName.equals(STRINGS_PREFIX + generation + SUFFIX) || fileName.equals(OTHER_PREFIX + generation + SUFFIX)) {
+					continue;
+				}
+				boolean used = false;
+				for(Run run : runs) {
+					used |= run.file.getName().equals(fileName);
+				}
+				if(!used) {
+					new File(directory, fileName).delete();
+				}
+			}
+			return files;
+		} catch (IOException | RuntimeException e) {
+			recordsChannel.close();
+			if(stringsChannel != null) {
+				stringsChannel.close();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the run in the file, or null if the file is not complete or refers to records that do not exist
+	 */
+	private static Run openRun(File file, int numberOfRecords) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			ByteBuffer header = readHeader(channel);
+			if((header.remaining() < HEADER_LENGTH) || (header.getLong() != RUN_MAGIC)) {
+				return null;
+			}
+			int from = header.getInt();
+			int to = header.getInt();
+			int flags = header.getInt();
+			int transactionLogs = header.getInt();
+			boolean ordered = (flags & RUN_ORDERED_BY_SIGNATURE_COUNTER) != 0;
+			long entries = (ordered ? 0L : (long) to - from) + transactionLogs + ((long) to - from);
+			if((from < 0) || (from >= to) || (to > numberOfRecords) || (transactionLogs < 0) || (transactionLogs > to - from)
+					|| !file.getName().equals(RUN_PREFIX + parseGeneration(file.getName(), RUN_PREFIX) + "-" + from + "-" + to + SUFFIX)
+					|| (channel.size() != HEADER_LENGTH + 4 * entries)) {
+				return null;
+			}
+			return new Run(file, from, to, ordered, transactionLogs, new MappedRegion(channel, HEADER_LENGTH, 4 * entries));
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes a run for log messages whose keys are known, either because they have just been stored or because a generation is created.
+	 */
+	private static Run writeRun(File directory, int generation, int from, List<IndexedLog> logs) throws IOException {
+		int to = from + logs.size();
+		boolean ordered = true;
+		List<IndexedLog> transactionLogs = new ArrayList<IndexedLog>();
+		for(int i = 0; i < logs.size(); i++) {
+			IndexedLog log = logs.get(i);
+			ordered &= (i == 0) || (logs.get(i - 1).signatureCounter <= log.signatureCounter);
+			if(log.type == LogIndex.TYPE_TRANSACTION_LOG) {
+				transactionLogs.add(log);
+			}
+		}
+
+		IndexFileWriter writer = new IndexFileWriter(directory, RUN_PREFIX + generation + "-" + from + "-" + to + SUFFIX);
+		writeHeader(writer.out, RUN_MAGIC, from, to, ordered ? RUN_ORDERED_BY_SIGNATURE_COUNTER : 0, transactionLogs.size());
+		if(!ordered) {
+			writeRecordNumbers(writer.out, logs, BY_SIGNATURE_COUNTER);
+		}
+		writeRecordNumbers(writer.out, transactionLogs, BY_TRANSACTION_NUMBER);
+		writeRecordNumbers(writer.out, logs, BY_LOG_TIME);
+		return openRun(writer.finish(), to);
+	}
+
+	private static void writeRecordNumbers(DataOutputStream out, List<IndexedLog> logs, final int order) throws IOException {
+		List<IndexedLog> sorted = new ArrayList<IndexedLog>(logs);
+		Collections.sort(sorted, new Comparator<IndexedLog>() {
+			@Override
+			public int compare(IndexedLog first, IndexedLog second) {
+				int byKey = Long.compare(key(first, order), key(second, order));
+				return (byKey != 0) ? byKey : Integer.compare(first.recordNumber, second.recordNumber);
+			}
+		});
+		for(IndexedLog log : sorted) {
+			out.writeInt(log.recordNumber);
+		}
+	}
+
+	/**
+	 * Merges two consecutive runs. Records with the same key keep the order of their record numbers.
+	 */
+	private Run merge(Records records, Run first, Run second) throws IOException {
+		boolean ordered = first.ordered && second.ordered
+				&& (records.signatureCounter(first.to - 1) <= records.signatureCounter(second.from));
+		IndexFileWriter writer = new IndexFileWriter(directory, RUN_PREFIX + generation + "-" + first.from + "-" + second.to + SUFFIX);
+		writeHeader(writer.out, RUN_MAGIC, first.from, second.to, ordered ? RUN_ORDERED_BY_SIGNATURE_COUNTER : 0,
+				first.transactionLogs + second.transactionLogs);
+		for(int order = BY_SIGNATURE_COUNTER; order <= BY_LOG_TIME; order++) {
+			if(ordered && (order == BY_SIGNATURE_COUNTER)) {
+				continue;
+			}
+			int firstLength = first.length(order);
+			int secondLength = second.length(order);
+			int i = 0;
+			int j = 0;
+			long firstKey = (firstLength > 0) ? records.key(first.get(order, 0), order) : 0;
+			long secondKey = (secondLength > 0) ? records.key(second.get(order, 0), order) : 0;
+			while((i < firstLength) && (j < secondLength)) {
+				//all records of the first run have smaller record numbers, so they come first if the keys are equal
+				if(secondKey < firstKey) {
+					writer.out.writeInt(second.get(order, j++));
+					secondKey = (j < secondLength) ? records.key(second.get(order, j), order) : 0;
+				}
+				else {
+					writer.out.writeInt(first.get(order, i++));
+					firstKey = (i < firstLength) ? records.key(first.get(order, i), order) : 0;
+				}
+			}
+			for(; i < firstLength; i++) {
+				writer.out.writeInt(first.get(order, i));
+			}
+			for(; j < secondLength; j++) {
+				writer.out.writeInt(second.get(order, j));
+			}
+		}
+		return openRun(writer.finish(), second.to);
+	}
+
+	private static int lowerBound(Records records, Run run, int order, long key) {
+		int low = 0;
+		int high = run.length(order);
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(records.key(run.get(order, middle), order) < key) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private Records mapRecords(int count) throws IOException {
+		return new Records(new MappedRegion(recordsChannel, HEADER_LENGTH, (long) count * RECORD_WIDTH), count);
+	}
+
+	private Integer addString(String text) {
+		Integer number = Integer.valueOf(strings.size());
+		strings.add(text);
+		stringNumbers.put(text, number);
+		return number;
+	}
+
+	private boolean sameString(int stringNumber, String text) {
+		if(stringNumber < 0) {
+			return text == null;
+		}
+		return (stringNumber < strings.size()) && strings.get(stringNumber).equals(text);
+	}
+
+	private IndexedLog decode(long signatureCounter, long logTime, long transactionNumber, int stringNumber, int fileCounter, int format, int kind,
+			File storageDirectory) {
+		String text = ((stringNumber >= 0) && (stringNumber < strings.size())) ? strings.get(stringNumber) : null;
+		IndexedLog log = new IndexedLog(null, format, kind, logTime, signatureCounter, transactionNumber, text, fileCounter);
+		log.file = new File(storageDirectory, log.getFileName());
+		return log;
+	}
+
+	private static void encode(ByteBuffer record, IndexedLog log, int stringNumber) {
+		record.putLong(log.signatureCounter).putLong(log.logTime).putLong(log.transactionNumber).putInt(stringNumber)
+				.putShort((short) (log.fileCounter + 1)).put((byte) log.format).put((byte) log.kind);
+	}
+
+	private static long key(IndexedLog log, int order) {
+		switch(order) {
+			case BY_SIGNATURE_COUNTER:
+				return log.signatureCounter;
+			case BY_TRANSACTION_NUMBER:
+				return log.transactionNumber;
+			default:
+				return log.logTime;
+		}
+	}
+
+	private static void writeHeader(DataOutputStream out, long magic, int first, int second, int third, int fourth) throws IOException {
+		out.writeLong(magic);
+		out.writeInt(first);
+		out.writeInt(second);
+		out.writeInt(third);
+		out.writeInt(fourth);
+		out.writeLong(0);
+	}
+
+	/**
+	 * @return the header of a records or run file, fewer bytes if the file is shorter
+	 */
+	private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+		while(header.hasRemaining()) {
+			if(channel.read(header, header.position()) < 0) {
+				break;
+			}
+		}
+		header.flip();
+		return header;
+	}
+
+	private static void writeOtherLogFileNames(File directory, int generation, List<String> otherLogFileNames) throws IOException {
+		IndexFileWriter writer = new IndexFileWriter(directory, OTHER_PREFIX + generation + SUFFIX);
+		for(String fileName : otherLogFileNames) {
+			writer.out.write((fileName + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+		writer.finish();
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	private static String[] list(File directory) {
+		String[] fileNames = directory.list();
+		return (fileNames == null) ? new String[0] : fileNames;
+	}
+
+	/**
+	 * @return the generation in a file name that starts with the prefix, or -1 if it has no generation
+	 */
+	private static int parseGeneration(String fileName, String prefix) {
+		if(!fileName.startsWith(prefix)) {
+			return -1;
+		}
+		int end = prefix.length();
+		while((end < fileName.length()) && (end - prefix.length() < 9) && Character.isDigit(fileName.charAt(end))) {
+			end++;
+		}
+		return (end == prefix.length()) ? -1 : Integer.parseInt(fileName.substring(prefix.length(), end));
+	}
+
+	private static boolean belongsToGeneration(String fileName, int generation) {
+		for(String prefix : new String[] {RECORDS_PREFIX, STRINGS_PREFIX, OTHER_PREFIX, RUN_PREFIX}) {
+			if(parseGeneration(fileName, prefix) == generation) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A sorted run, see {@linkplain LogIndexFiles}.
+	 */
+	static final class Run {
+		final File file;
+		final int from;
+		final int to;
+		final boolean ordered;					//the records are ordered by signature counter, the first list is left out
+		final int transactionLogs;
+		private final MappedRegion region;
+
+		private Run(File file, int from, int to, boolean ordered, int transactionLogs, MappedRegion region) {
+			this.file = file;
+			this.from = from;
+			this.to = to;
+			this.ordered = ordered;
+			this.transactionLogs = transactionLogs;
+			this.region = region;
+		}
+
+		/**
+		 * @return the number of records in the run
+		 */
+		int size() {
+			return to - from;
+		}
+
+		/**
+		 * @return the number of records in the list with the given order
+		 */
+		int length(int order) {
+			return (order == BY_TRANSACTION_NUMBER) ? transactionLogs : size();
+		}
+
+		/**
+		 * @return the record number at a position of the list with the given order
+		 */
+		int get(int order, int position) {
+			int orderedBySignatureCounter = ordered ? 0 : size();
+			switch(order) {
+				case BY_SIGNATURE_COUNTER:
+					return ordered ? from + position : region.getInt(4L * position);
+				case BY_TRANSACTION_NUMBER:
+					return region.getInt(4L * (orderedBySignatureCounter + position));
+				default:
+					return region.getInt(4L * ((long) orderedBySignatureCounter + transactionLogs + position));
+			}
+		}
+
+		/**
+		 * @return the record number at a position of the list ordered by signature counter
+		 */
+		int bySignatureCounter(int position) {
+			return get(BY_SIGNATURE_COUNTER, position);
+		}
+
+		/**
+		 * @return the record number at a position of the list of transaction logs ordered by transaction number
+		 */
+		int byTransactionNumber(int position) {
+			return get(BY_TRANSACTION_NUMBER, position);
+		}
+
+		/**
+		 * @return the record number at a position of the list ordered by log time
+		 */
+		int byLogTime(int position) {
+			return get(BY_LOG_TIME, position);
+		}
+
+		private void delete() {
+			file.delete();
+		}
+	}
+
+	/**
+	 * A read-only view on the first records of the records file.
+	 */
+	private static final class Records {
+		private final MappedRegion region;
+		private final int count;
+
+		private Records(MappedRegion region, int count) {
+			this.region = region;
+			this.count = count;
+		}
+
+		long signatureCounter(int recordNumber) {
+			return region.getLong((long) recordNumber * RECORD_WIDTH);
+		}
+
+		long logTime(int recordNumber) {
+			return region.getLong((long) recordNumber * RECORD_WIDTH + 8);
+		}
+
+		long transactionNumber(int recordNumber) {
+			return region.getLong((long) recordNumber * RECORD_WIDTH + 16);
+		}
+
+		int stringNumber(int recordNumber) {
+			return region.getInt((long) recordNumber * RECORD_WIDTH + 24);
+		}
+
+		int fileCounter(int recordNumber) {
+			return (region.getShort((long) recordNumber * RECORD_WIDTH + 28) & 0xFFFF) - 1;
+		}
+
+		byte format(int recordNumber) {
+			return region.get((long) recordNumber * RECORD_WIDTH + 30);
+		}
+
+		byte kind(int recordNumber) {
+			return region.get((long) recordNumber * RECORD_WIDTH + 31);
+		}
+
+		long key(int recordNumber, int order) {
+			switch(order) {
+				case BY_SIGNATURE_COUNTER:
+					return signatureCounter(recordNumber);
+				case BY_TRANSACTION_NUMBER:
+					return transactionNumber(recordNumber);
+				default:
+					return logTime(recordNumber);
+			}
+		}
+	}
+
+	/**
+	 * A region of a file that is mapped in chunks of 1 GiB, because a single mapping can not be larger than 2 GiB. The values that are read never
+	 * cross the border of a chunk, because the records and lists start at the beginning of the region and the chunk size is a multiple of their size.
+	 */
+	private static final class MappedRegion {
+		private static final int CHUNK_SHIFT = 30;
+		private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+
+		private final MappedByteBuffer[] chunks;
+
+		private MappedRegion(FileChannel channel, long start, long length) throws IOException {
+			chunks = new MappedByteBuffer[(int) ((length + CHUNK_SIZE - 1) >>> CHUNK_SHIFT)];
+			for(int i = 0; i < chunks.length; i++) {
+				long offset = (long) i << CHUNK_SHIFT;
+				chunks[i] = channel.map(MapMode.READ_ONLY, start + offset, Math.min(CHUNK_SIZE, length - offset));
+			}
+		}
+
+		long getLong(long position) {
+			return chunks[(int) (position >>> CHUNK_SHIFT)].getLong((int) (position & (CHUNK_SIZE - 1)));
+		}
+
+		int getInt(long position) {
+			return chunks[(int) (position >>> CHUNK_SHIFT)].getInt((int) (position & (CHUNK_SIZE - 1)));
+		}
+
+		short getShort(long position) {
+			return chunks[(int) (position >>> CHUNK_SHIFT)].getShort((int) (position & (CHUNK_SIZE - 1)));
+		}
+
+		byte get(long position) {
+			return chunks[(int) (position >>> CHUNK_SHIFT)].get((int) (position & (CHUNK_SIZE - 1)));
+		}
+	}
+
+	/**
+	 * Writes a file of the index to a temporary file and renames it when it is complete.
+	 */
+	private static final class IndexFileWriter {
+		private final File target;
+		private final File temporary;
+		private final FileOutputStream fileOut;
+		private final DataOutputStream out;
+
+		private IndexFileWriter(File directory, String fileName) throws IOException {
+			this.target = new File(directory, fileName);
+			this.temporary = new File(directory, fileName + TEMPORARY_SUFFIX);
+			this.fileOut = new FileOutputStream(temporary);
+			this.out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+		}
+
+		private File finish() throws IOException {
+			try {
+				out.flush();
+				fileOut.getFD().sync();
+			} finally {
+				out.close();
+			}
+			Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			return target;
+		}
+	}
+}
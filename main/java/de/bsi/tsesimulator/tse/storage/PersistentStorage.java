@@ -192,12 +192,16 @@ public class PersistentStorage {
 	/**
 	 * Deletes persisted values for the simulator. Is only useful in the TSE-Simulator context, should not be implemented in a real TSE.
 	 * <br>Does not delete any user related files! Use the separate method {@linkplain TSEController#removeAllUsersFromSimulator()} to delete all users.
+	 * <br><b>Changes in version 1.6:</b><br>
+	 * Deletes the {@linkplain WriteAheadJournal} as well, otherwise the values recorded in it would be used on the next start.
+	 * @version 1.6
 	 */
 	public void deletePersistedValues() {
 		File persistenceFile = new File(pathToPersistentStorageDir, Constants.FILE_NAME_PERSISTEDVALUES_SER);
 		if(persistenceFile.exists()) {
 			persistenceFile.delete();
 		}
+		WriteAheadJournal.delete(new File(pathToPersistentStorageDir));
 	}
 	
 //-------------------------------------------------USER FILE MANAGEMENT---------------------------------------------------------------------------------------
@@ -0,0 +1,152 @@
+package main.java.de.bsi.tsesimulator.tse.storage;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads the records of a segment written by the storage mode <i>segments</i>, see
+ * {@linkplain main.java.de.bsi.tsesimulator.constants.ConfigConstants#CFG_TAG_STORAGE_MODE}, e.g. to audit the log messages in it.<br>
+ * The segment is only opened for reading and its records are read one after another, the footer is not needed. So segments that are still written
+ * to by a running TSE can be read as well, an incomplete record at the end is treated like the end of the records. Nothing in the segment is
+ * changed, an incomplete record is only cut off when the storage of the TSE is opened the next time.
+ *
+ * @since 1.6
+ */
+public final class SegmentReader implements Closeable {
+	private final File segment;
+	private final FileChannel channel;
+	private final DataInputStream in;
+	private final long size;
+	private long nextPosition = SegmentStore.HEADER_LENGTH;		//the position of the next record
+	private long position = -1;										//the position of the current record
+	private String fileName;
+
+	/**
+	 * Opens a segment for reading and checks its header.
+	 * @param segment a segment file, see {@linkplain #listSegments(File)}
+	 * @throws IOException if the segment can not be read or does not start with the header of a segment
+	 */
+	public SegmentReader(File segment) throws IOException {
+		this.segment = segment;
+		this.channel = FileChannel.open(segment.toPath(), StandardOpenOption.READ);
+		try {
+			this.size = channel.size();
+			if((size < SegmentStore.HEADER_LENGTH) || (SegmentStore.readLong(channel, 0) != SegmentStore.SEGMENT_MAGIC)) {
+				throw new IOException(segment.getName() +" is not a segment of log messages.");
+			}
+			this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(SegmentStore.HEADER_LENGTH)), 1 << 16));
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Finds the segments in a storage directory.
+	 * @param directory the storage directory
+	 * @return the segment files ordered by their numbers, an empty list if there are none
+	 */
+	public static List<File> listSegments(File directory) {
+		List<File> segments = new ArrayList<File>();
+		File[] files = directory.listFiles();
+		if(files != null) {
+			for(File file : files) {
+				if(file.isFile() && (SegmentStore.parseSegmentNumber(file.getName()) > 0)) {
+					segments.add(file);
+				}
+			}
+		}
+		Collections.sort(segments, new Comparator<File>() {
+			@Override
+			public int compare(File first, File second) {
+				return Integer.compare(SegmentStore.parseSegmentNumber(first.getName()), SegmentStore.parseSegmentNumber(second.getName()));
+			}
+		});
+		return segments;
+	}
+
+	/**
+	 * Reads the DER encoding of a log message from a segment.
+	 * @param segment the segment file
+	 * @param recordPosition the position of the record as given by {@linkplain #getPosition()}
+	 * @return the DER encoding of the log message
+	 * @throws IOException if the segment can not be read
+	 */
+	public static byte[] readLogMessage(File segment, long recordPosition) throws IOException {
+		try(FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.READ)) {
+			return SegmentStore.readLogMessage(channel, recordPosition);
+		}
+	}
+
+	/**
+	 * Moves to the next record. The log message itself is skipped, it is read with {@linkplain #readLogMessage(File, long)}.
+	 * @return true, if there is a next record. False at the end of the records or if the next record has not been written completely.
+	 * @throws IOException if the segment can not be read
+	 */
+	public boolean next() throws IOException {
+		try {
+			//0 marks the end of the records, a record that does not fit into the file has not been written completely
+			if(nextPosition + 4 > size) {
+				return false;
+			}
+			int recordLength = in.readInt();
+			if((recordLength < SegmentStore.RECORD_HEADER_LENGTH - 4) || (nextPosition + 4 + recordLength > size)) {
+				return false;
+			}
+			in.readLong();								//the signature counter
+			in.readLong();								//the log time
+			int fileNameLength = in.readUnsignedShort();
+			if(SegmentStore.RECORD_HEADER_LENGTH - 4 + fileNameLength > recordLength) {
+				return false;
+			}
+			byte[] fileNameBytes = new byte[fileNameLength];
+			in.readFully(fileNameBytes);
+			SegmentStore.skipFully(in, recordLength - (SegmentStore.RECORD_HEADER_LENGTH - 4) - fileNameLength);
+			fileName = new String(fileNameBytes, StandardCharsets.UTF_8);
+			position = nextPosition;
+			nextPosition += 4 + recordLength;
+			return true;
+		} catch (EOFException e) {
+			//the records end before the file does
+			return false;
+		}
+	}
+
+	/**
+	 * @return the segment file that is read
+	 */
+	public File getSegment() {
+		return segment;
+	}
+
+	/**
+	 * @return the file name of the log message in the current record
+	 */
+	public String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * @return the position of the current record in the segment
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
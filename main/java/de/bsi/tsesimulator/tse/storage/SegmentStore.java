@@ -0,0 +1,594 @@
+package main.java.de.bsi.tsesimulator.tse.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import main.java.de.bsi.tsesimulator.tlv.EncodedSegments;
+import main.java.de.bsi.tsesimulator.utils.TARUtils;
+
+/**
+ * Stores log messages one after another in a few large segment files instead of creating a file for every log message, see
+ * {@linkplain main.java.de.bsi.tsesimulator.constants.ConfigConstants#CFG_TAG_STORAGE_MODE}. The log messages keep the file names described in
+ * {@linkplain Storage#storeTransactionLog(byte[], long, long, long, String, String)} and {@linkplain Storage#storeSystemLog(byte[], long, long, String)},
+ * they are only used as keys in the segments and as the names of the entries in the TAR archive that is exported.<br>
+ * The segments are the files <b>segment-(number).seg</b> in the storage directory. A segment consists of
+ * <ul>
+ * <li>a header of {@value #HEADER_LENGTH} bytes: "TSE-SEG1" and the version of the format.</li>
+ * <li>the records of the log messages in the order they were stored. A record starts with its length as an int, followed by the signature counter
+ * and the log time as longs, the length of the file name as an unsigned short, the UTF-8 bytes of the file name and the DER encoding of the log
+ * message.</li>
+ * <li>an int 0 that marks the end of the records.</li>
+ * <li>the footer index, which is only written when the segment is full: an entry for every record ordered by file name, that is the length of the
+ * file name as an unsigned short, the file name, the position of the record and the log time. It is followed by the positions of the entries as
+ * longs, so that the footer can be searched with binary search, and a trailer of {@value #TRAILER_LENGTH} bytes with the number of records, the
+ * smallest and the largest signature counter in the segment, the position of the table and "TSE-END1".</li>
+ * </ul>
+ * Only the last segment is written to. The footers of the full segments are read from disc when a log message is looked up, for the last segment
+ * the positions of the records are kept in memory. If the simulator is stopped while a record is written, the incomplete record is cut off when the
+ * store is opened the next time.<br>
+ * Log messages that are not found in the segments are read from their own file in the storage directory, so that log messages that were stored
+ * before the storage mode was changed can still be exported. All methods are synchronized.
+ *
+ * @since 1.6
+ */
+final class SegmentStore implements TARUtils.LogfileSource {
+	/**
+	 * The default size in bytes above which no further log messages are appended to a segment.
+	 */
+	static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+
+	static final int HEADER_LENGTH = 16;
+	private static final int TRAILER_LENGTH = 40;
+	static final long SEGMENT_MAGIC = 0x5453452D53454731L;		//"TSE-SEG1"
+	private static final long FOOTER_MAGIC = 0x5453452D454E4431L;		//"TSE-END1"
+	private static final int VERSION = 1;
+	private static final int MAX_FILE_NAME_LENGTH = 0xFFFF;
+	static final int RECORD_HEADER_LENGTH = 4 + 8 + 8 + 2;			//without the file name
+
+	private static final String PREFIX = "segment-";
+	private static final String SUFFIX = ".seg";
+
+	private final File directory;
+	private final long segmentSize;
+	private final boolean durable;											//true, if full segments and new directory entries are forced to the disc
+	private final List<Segment> fullSegments = new ArrayList<Segment>();		//the segments with a footer, oldest first
+	private Segment lastSegment;											//null until a log message is stored after opening
+	private FileChannel lastChannel;
+	private long lastEnd;													//the position after the last record of the last segment
+	private final Map<String, Location> lastLocations = new HashMap<String, Location>();		//the records of the last segment
+	private int nextSegmentNumber;
+
+	/**
+	 * Creates a store without reading the segments, {@linkplain #open()} has to be called before it is used.
+	 * @param directory the storage directory that contains the segments
+	 * @param segmentSize the size in bytes above which no further log messages are appended to a segment. A single log message that is larger
+	 * gets a segment of its own.
+	 * @param durable true, if a segment is forced to the disc when it gets its footer and the storage directory is forced when a segment is created.
+	 * The records of the last segment are only forced by {@linkplain #force()}.
+	 */
+	SegmentStore(File directory, long segmentSize, boolean durable) {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.durable = durable;
+	}
+
+	/**
+	 * Reads the trailers of the segments in the storage directory. The records of the last segment are read if it has no footer yet.
+	 * An incomplete record at its end is cut off. Earlier segments without footer, e.g. if the simulator was stopped while a footer was written,
+	 * get their footer now.
+	 * @throws IOException if the segments can not be read
+	 */
+	synchronized void open() throws IOException {
+		close();
+		fullSegments.clear();
+		nextSegmentNumber = 1;
+
+		//1. find the segments, ordered by their numbers
+		List<Segment> segments = new ArrayList<Segment>();
+		String[] fileNames = directory.list();
+		if(fileNames != null) {
+			for(String fileName : fileNames) {
+				int number = parseSegmentNumber(fileName);
+				if(number > 0) {
+					segments.add(new Segment(new File(directory, fileName), number));
+				}
+			}
+		}
+		Collections.sort(segments, new Comparator<Segment>() {
+			@Override
+			public int compare(Segment first, Segment second) {
+				return Integer.compare(first.number, second.number);
+			}
+		});
+
+		//2. full segments only need their trailer, segments without footer are read record by record
+		for(int i = 0; i < segments.size(); i++) {
+			Segment segment = segments.get(i);
+			nextSegmentNumber = segment.number + 1;
+			if(segment.readTrailer()) {
+				fullSegments.add(segment);
+				continue;
+			}
+			recover(segment);
+			if(i < segments.size() - 1) {
+				writeFooter();
+			}
+		}
+	}
+
+	/**
+	 * Closes the last segment, e.g. before the storage directory is emptied. {@linkplain #open()} has to be called before the store is used again.
+	 */
+	synchronized void close() {
+		if(lastChannel != null) {
+			try {
+				lastChannel.close();
+			} catch (IOException e) {
+				//nothing is written after closing
+			}
+		}
+		lastChannel = null;
+		lastSegment = null;
+		lastLocations.clear();
+	}
+
+	/**
+	 * Appends a log message to the last segment. If the segment would become larger than the segment size, it gets its footer and
+	 * the log message is stored in a new segment. The segments of the log message are written with one gathering write together with the header
+	 * of the record.
+	 * @param fileName the file name of the log message, see {@linkplain Storage#storeTransactionLog(byte[], long, long, long, String, String)}
+	 * @param signatureCounter the signature counter of the log message, which is also part of the file name
+	 * @param logTime the log time in Unix time
+	 * @param logMessage the DER encoding of the log message
+	 * @throws IOException if writing fails. The segment is then cut back to the end of the previous record.
+	 */
+	synchronized void append(String fileName, long signatureCounter, long logTime, EncodedSegments logMessage) throws IOException {
+		byte[] fileNameBytes = fileName.getBytes(StandardCharsets.UTF_8);
+		if(fileNameBytes.length > MAX_FILE_NAME_LENGTH) {
+			throw new IOException("The file name of the log message is too long: " +fileName);
+		}
+		long recordLength = RECORD_HEADER_LENGTH - 4 + fileNameBytes.length + (long) logMessage.getLength();
+		if(recordLength > Integer.MAX_VALUE - 4) {
+			throw new IOException("The log message is too long to be stored in a segment.");
+		}
+
+		//1. start a new segment if the last one is full
+		if((lastSegment != null) && !lastLocations.isEmpty() && (lastEnd + 4 + recordLength > segmentSize)) {
+			writeFooter();
+		}
+		if(lastSegment == null) {
+			createSegment();
+		}
+
+		//2. write the header of the record and the log message with one gathering write
+		ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_LENGTH + fileNameBytes.length);
+		recordHeader.putInt((int) recordLength).putLong(signatureCounter).putLong(logTime).putShort((short) fileNameBytes.length).put(fileNameBytes);
+		recordHeader.flip();
+		ByteBuffer[] logMessageSegments = logMessage.getSegments();
+		ByteBuffer[] buffers = new ByteBuffer[logMessageSegments.length + 1];
+		buffers[0] = recordHeader;
+		System.arraycopy(logMessageSegments, 0, buffers, 1, logMessageSegments.length);
+		try {
+			lastChannel.position(lastEnd);
+			long remaining = 4 + recordLength;
+			//a gathering write may write only a part of the buffers, they remember how far they have been written
+			while(remaining > 0) {
+				remaining -= lastChannel.write(buffers);
+			}
+		} catch (IOException e) {
+			try {
+				lastChannel.truncate(lastEnd);
+			} catch (IOException e2) {
+				//the incomplete record is cut off when the store is opened again
+			}
+			throw e;
+		}
+
+		//3. remember where the record is
+		lastLocations.put(fileName, new Location(lastSegment, lastEnd, logTime));
+		lastSegment.addSignatureCounter(signatureCounter);
+		lastEnd += 4 + recordLength;
+	}
+
+	/**
+	 * Forces the records that were appended to the last segment to the disc.
+	 * @throws IOException if forcing fails
+	 */
+	synchronized void force() throws IOException {
+		if(lastChannel != null) {
+			lastChannel.force(false);
+		}
+	}
+
+	/**
+	 * @param fileName the file name of a log message
+	 * @return true, if a log message with that file name is stored in the segments
+	 * @throws IOException if a footer can not be read
+	 */
+	synchronized boolean contains(String fileName) throws IOException {
+		return find(fileName) != null;
+	}
+
+	/**
+	 * @param fileName the file name of a log message
+	 * @return the log time of the log message in Unix time, or -1 if it is not stored in the segments
+	 * @throws IOException if a footer can not be read
+	 */
+	synchronized long getLogTime(String fileName) throws IOException {
+		Location location = find(fileName);
+		return (location == null) ? -1 : location.logTime;
+	}
+
+	/**
+	 * Reads the file names of all log messages in the segments. The footers are read as a whole, the names of each full segment are ordered by
+	 * name, the ones of the last segment are in no particular order.
+	 * @return the file names of all log messages in the segments
+	 * @throws IOException if a footer can not be read
+	 */
+	synchronized List<String> getFileNames() throws IOException {
+		List<String> fileNames = new ArrayList<String>();
+		for(Segment segment : fullSegments) {
+			if(segment.numberOfRecords == 0) {
+				continue;
+			}
+			try(FileChannel channel = FileChannel.open(segment.file.toPath(), StandardOpenOption.READ)) {
+				long entriesPosition = readLong(channel, segment.tablePosition);
+				ByteBuffer entries = read(channel, entriesPosition, (int) (segment.tablePosition - entriesPosition));
+				for(int i = 0; i < segment.numberOfRecords; i++) {
+					byte[] fileNameBytes = new byte[entries.getShort() & 0xFFFF];
+					entries.get(fileNameBytes);
+					fileNames.add(new String(fileNameBytes, StandardCharsets.UTF_8));
+					entries.position(entries.position() + 16);
+				}
+			}
+		}
+		fileNames.addAll(lastLocations.keySet());
+		return fileNames;
+	}
+
+	/**
+	 * Reads the DER encoding of a log message. Log messages that are not stored in the segments are read from their own file.
+	 * @see main.java.de.bsi.tsesimulator.utils.TARUtils.LogfileSource#read(java.io.File)
+	 */
+	@Override
+	public synchronized byte[] read(File logfile) throws IOException {
+		Location location = find(logfile.getName());
+		if(location == null) {
+			return Files.readAllBytes(logfile.toPath());
+		}
+		if(location.segment == lastSegment) {
+			return readLogMessage(lastChannel, location.position);
+		}
+		try(FileChannel channel = FileChannel.open(location.segment.file.toPath(), StandardOpenOption.READ)) {
+			return readLogMessage(channel, location.position);
+		}
+	}
+
+	/**
+	 * Gives the segment of a log message, so that its entry in the TAR archive gets the same owner and permissions as the files of log messages.
+	 * @see main.java.de.bsi.tsesimulator.utils.TARUtils.LogfileSource#getAttributeFile(java.io.File)
+	 */
+	@Override
+	public synchronized File getAttributeFile(File logfile) throws IOException {
+		Location location = find(logfile.getName());
+		return (location == null) ? logfile : location.segment.file;
+	}
+
+	//-----------------------------------INTERNAL METHODS------------------------------------------------------------------
+
+	/**
+	 * Looks up a log message in the last segment and then in the footers of the full segments, newest first. Only segments whose signature
+	 * counters include the one in the file name are searched, all of them if the file name does not have the format of a log message.
+	 */
+	private Location find(String fileName) throws IOException {
+		Location location = lastLocations.get(fileName);
+		if(location != null) {
+			return location;
+		}
+		LogIndex.IndexedLog parsed = LogIndex.parse(new File(fileName));
+		for(int i = fullSegments.size() - 1; i >= 0; i--) {
+			Segment segment = fullSegments.get(i);
+			if((parsed == null) || segment.mayContain(parsed.signatureCounter)) {
+				location = segment.find(fileName);
+				if(location != null) {
+					return location;
+				}
+			}
+		}
+		return null;
+	}
+
+	private void createSegment() throws IOException {
+		File file = new File(directory, String.format("%s%08d%s", PREFIX, nextSegmentNumber, SUFFIX));
+		if(!directory.exists()) {
+			directory.mkdirs();
+		}
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+		header.putLong(SEGMENT_MAGIC).putInt(VERSION).putInt(0);
+		header.flip();
+		try {
+			while(header.hasRemaining()) {
+				channel.write(header);
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		if(durable) {
+			GroupCommitWriter.forceDirectory(directory);
+		}
+		lastSegment = new Segment(file, nextSegmentNumber);
+		lastChannel = channel;
+		lastEnd = HEADER_LENGTH;
+		nextSegmentNumber++;
+	}
+
+	/**
+	 * Reads the records of a segment without footer, which becomes the last segment. The file is cut off after the last complete record.
+	 */
+	private void recover(Segment segment) throws IOException {
+		FileChannel channel = FileChannel.open(segment.file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			lastSegment = segment;
+			lastChannel = channel;
+			lastEnd = HEADER_LENGTH;
+
+			//1. a segment whose header is incomplete is written again from the start
+			if((channel.size() < HEADER_LENGTH) || (readLong(channel, 0) != SEGMENT_MAGIC)) {
+				channel.truncate(0);
+				ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+				header.putLong(SEGMENT_MAGIC).putInt(VERSION).putInt(0);
+				header.flip();
+				while(header.hasRemaining()) {
+					channel.write(header, header.position());
+				}
+				return;
+			}
+
+			//2. read the headers of the records one after another and skip the log messages
+			long size = channel.size();
+			DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(HEADER_LENGTH)), 1 << 16));
+			try {
+				while(lastEnd + 4 <= size) {
+					int recordLength = in.readInt();
+					//0 marks the end of the records, a record that does not fit into the file has not been written completely
+					if((recordLength < RECORD_HEADER_LENGTH - 4) || (lastEnd + 4 + recordLength > size)) {
+						break;
+					}
+					long signatureCounter = in.readLong();
+					long logTime = in.readLong();
+					int fileNameLength = in.readUnsignedShort();
+					if(RECORD_HEADER_LENGTH - 4 + fileNameLength > recordLength) {
+						break;
+					}
+					byte[] fileNameBytes = new byte[fileNameLength];
+					in.readFully(fileNameBytes);
+					skipFully(in, recordLength - (RECORD_HEADER_LENGTH - 4) - fileNameLength);
+					lastLocations.put(new String(fileNameBytes, StandardCharsets.UTF_8), new Location(segment, lastEnd, logTime));
+					segment.addSignatureCounter(signatureCounter);
+					lastEnd += 4 + recordLength;
+				}
+			} catch (EOFException e) {
+				//the records end before the file does
+			}
+			channel.truncate(lastEnd);
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the footer of the last segment, which then becomes a full segment. The next log message is stored in a new segment.
+	 */
+	private void writeFooter() throws IOException {
+		List<String> fileNames = new ArrayList<String>(lastLocations.keySet());
+		Collections.sort(fileNames);
+		long[] entryPositions = new long[fileNames.size()];
+		lastChannel.truncate(lastEnd);
+		lastChannel.position(lastEnd);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(lastChannel), 1 << 16));
+
+		//1. the end of the records and the entries ordered by file name
+		out.writeInt(0);
+		long position = lastEnd + 4;
+		for(int i = 0; i < fileNames.size(); i++) {
+			byte[] fileNameBytes = fileNames.get(i).getBytes(StandardCharsets.UTF_8);
+			Location location = lastLocations.get(fileNames.get(i));
+			entryPositions[i] = position;
+			out.writeShort(fileNameBytes.length);
+			out.write(fileNameBytes);
+			out.writeLong(location.position);
+			out.writeLong(location.logTime);
+			position += 2 + fileNameBytes.length + 16;
+		}
+
+		//2. the table for the binary search and the trailer
+		long tablePosition = position;
+		for(long entryPosition : entryPositions) {
+			out.writeLong(entryPosition);
+		}
+		out.writeInt(fileNames.size());
+		out.writeInt(0);							//reserved
+		out.writeLong(lastSegment.smallestSignatureCounter);
+		out.writeLong(lastSegment.largestSignatureCounter);
+		out.writeLong(tablePosition);
+		out.writeLong(FOOTER_MAGIC);
+		out.flush();
+		if(durable) {
+			lastChannel.force(false);
+		}
+
+		lastSegment.numberOfRecords = fileNames.size();
+		lastSegment.tablePosition = tablePosition;
+		fullSegments.add(lastSegment);
+		close();
+	}
+
+	static byte[] readLogMessage(FileChannel channel, long recordPosition) throws IOException {
+		ByteBuffer recordHeader = read(channel, recordPosition, RECORD_HEADER_LENGTH);
+		int recordLength = recordHeader.getInt();
+		int fileNameLength = recordHeader.getShort(RECORD_HEADER_LENGTH - 2) & 0xFFFF;
+		int logMessageLength = recordLength - (RECORD_HEADER_LENGTH - 4) - fileNameLength;
+		return read(channel, recordPosition + RECORD_HEADER_LENGTH + fileNameLength, logMessageLength).array();
+	}
+
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("The segment ends unexpectedly.");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	static long readLong(FileChannel channel, long position) throws IOException {
+		return read(channel, position, 8).getLong();
+	}
+
+	static void skipFully(DataInputStream in, int length) throws IOException {
+		int remaining = length;
+		while(remaining > 0) {
+			int skipped = in.skipBytes(remaining);
+			if(skipped <= 0) {
+				throw new EOFException();
+			}
+			remaining -= skipped;
+		}
+	}
+
+	/**
+	 * @return the number of a segment file, or -1 if the name is not the one of a segment
+	 */
+	static int parseSegmentNumber(String fileName) {
+		if(!fileName.startsWith(PREFIX) || !fileName.endsWith(SUFFIX)) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(fileName.substring(PREFIX.length(), fileName.length() - SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * A segment file and what its trailer tells about it.
+	 */
+	private static final class Segment {
+		final File file;
+		final int number;
+		int numberOfRecords;
+		long tablePosition;
+		long smallestSignatureCounter = Long.MAX_VALUE;
+		long largestSignatureCounter = Long.MIN_VALUE;
+
+		Segment(File file, int number) {
+			this.file = file;
+			this.number = number;
+		}
+
+		void addSignatureCounter(long signatureCounter) {
+			smallestSignatureCounter = Math.min(smallestSignatureCounter, signatureCounter);
+			largestSignatureCounter = Math.max(largestSignatureCounter, signatureCounter);
+		}
+
+		/**
+		 * @param signatureCounter the signature counter in the file name of a log message
+		 * @return false, if the segment can not contain a log message with that file name
+		 */
+		boolean mayContain(long signatureCounter) {
+			return (signatureCounter >= smallestSignatureCounter) && (signatureCounter <= largestSignatureCounter);
+		}
+
+		/**
+		 * @return true, if the segment has a complete footer. Its values are then read from the trailer.
+		 */
+		boolean readTrailer() throws IOException {
+			try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				long size = channel.size();
+				if(size < HEADER_LENGTH + 4 + TRAILER_LENGTH) {
+					return false;
+				}
+				ByteBuffer trailer = read(channel, size - TRAILER_LENGTH, TRAILER_LENGTH);
+				int records = trailer.getInt();
+				trailer.getInt();						//reserved
+				long smallest = trailer.getLong();
+				long largest = trailer.getLong();
+				long table = trailer.getLong();
+				if((trailer.getLong() != FOOTER_MAGIC) || (records < 0) || (table + 8L * records != size - TRAILER_LENGTH)) {
+					return false;
+				}
+				numberOfRecords = records;
+				smallestSignatureCounter = smallest;
+				largestSignatureCounter = largest;
+				tablePosition = table;
+				return true;
+			}
+		}
+
+		/**
+		 * Searches the entries of the footer with binary search.
+		 * @return where the log message is stored, or null if it is not in this segment
+		 */
+		Location find(String fileName) throws IOException {
+			try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				int low = 0;
+				int high = numberOfRecords - 1;
+				while(low <= high) {
+					int middle = (low + high) >>> 1;
+					long entryPosition = readLong(channel, tablePosition + 8L * middle);
+					int fileNameLength = read(channel, entryPosition, 2).getShort() & 0xFFFF;
+					ByteBuffer entry = read(channel, entryPosition + 2, fileNameLength + 16);
+					int comparison = new String(entry.array(), 0, fileNameLength, StandardCharsets.UTF_8).compareTo(fileName);
+					if(comparison < 0) {
+						low = middle + 1;
+					}
+					else if(comparison > 0) {
+						high = middle - 1;
+					}
+					else {
+						entry.position(fileNameLength);
+						long position = entry.getLong();
+						return new Location(this, position, entry.getLong());
+					}
+				}
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Where a log message is stored.
+	 */
+	private static final class Location {
+		final Segment segment;
+		final long position;			//of the record in the segment
+		final long logTime;
+
+		Location(Segment segment, long position, long logTime) {
+			this.segment = segment;
+			this.position = position;
+			this.logTime = logTime;
+		}
+	}
+}
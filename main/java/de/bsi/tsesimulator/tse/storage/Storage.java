@@ -7,12 +7,14 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -21,16 +23,14 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Stream;
 
 import org.apache.commons.compress.utils.IOUtils;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.AgeFileFilter;
-import org.apache.commons.io.filefilter.AndFileFilter;
-import org.apache.commons.io.filefilter.IOFileFilter;
 import org.apache.commons.io.filefilter.RegexFileFilter;
-import org.apache.commons.io.filefilter.SuffixFileFilter;
 
 import main.java.de.bsi.seapi.exceptions.ErrorDeleteStoredDataFailed;
 import main.java.de.bsi.seapi.exceptions.ErrorExportCertFailed;
@@ -43,6 +43,8 @@ import main.java.de.bsi.tsesimulator.exceptions.LoadingFailedException;
 import main.java.de.bsi.tsesimulator.exceptions.SignatureCounterException;
 import main.java.de.bsi.tsesimulator.msg.LogMessage;
 import main.java.de.bsi.tsesimulator.preferences.PropertyValues;
+import main.java.de.bsi.tsesimulator.tlv.EncodedSegments;
+import main.java.de.bsi.tsesimulator.tse.SignatureCounterSequencer;
 import main.java.de.bsi.tsesimulator.tse.TSEController;
 import main.java.de.bsi.tsesimulator.utils.TARUtils;
 import main.java.de.bsi.tsesimulator.utils.filefilters.LogmessageFileFilter;
@@ -52,34 +54,184 @@ import main.java.de.bsi.tsesimulator.utils.filefilters.LogmessageFileFilter;
  * The Storage class manages this export in addition to the actual storing on disc of each log. It also manages all the other export functions that require 
  * fetching and filtering of log files, certificate files or similar.
  * 
- * It does, however, <b>not</b> manage how persistent values are stored between shutdowns of the simulator.
+ * It does, however, <b>not</b> manage how persistent values are stored between shutdowns of the simulator.<br>
+ * <b>Changes in version 1.6:</b><br>
+ * The log message files are looked up in a {@linkplain LogIndex} instead of scanning the storage directory with a regular expression for every 
+ * signature counter or transaction number.
+ * If {@linkplain ConfigConstants#CFG_TAG_STORAGE_INDEX_DIR} is set, the LogIndex is stored in that directory, so that it does not have to be built
+ * from the storage directory on every start.
+ * If {@linkplain ConfigConstants#CFG_TAG_STORAGE_MODE} is set to {@linkplain ConfigConstants#CFG_ENTRY_STORAGE_MODE_SEGMENTS}, the log messages
+ * are appended to the segments of a {@linkplain SegmentStore} instead of being written to a file each. They keep their file names, which are used
+ * for the entries of the TAR archive that is exported.
+ * {@linkplain ConfigConstants#CFG_TAG_STORAGE_SYNC} chooses whether the log messages are forced to the disc, each on its own or in groups by a
+ * {@linkplain GroupCommitWriter}.
+ * If a {@linkplain WriteAheadJournal} is set, every log message is recorded in it before it is written and recorded as written afterwards.
  * @see PersistentStorage 
  * @see PersistedValues
  * 
  * @author dpottkaemper
- * @version 1.5
+ * @version 1.6
  */
 public class Storage {
 	
 	private String pathToStorageDir;
+	private SignatureCounterSequencer sequencer = null;		//if set, log messages are written in the order of their signature counters
+	private final LogIndex logIndex;						//the log message files in the storage directory
+	private final SegmentStore segmentStore;				//null, if every log message is stored in a file of its own
+	private final Object segmentWriteLock = new Object();	//chooses the file name and appends a log message to the segments at once
+	private final int syncPolicy;							//one of the SYNC constants of the GroupCommitWriter
+	private final GroupCommitWriter groupCommitWriter;		//writes the log messages if they are forced to the disc in groups, null otherwise
+	private volatile WriteAheadJournal journal = null;		//records the log messages before they are written, if a journal is kept
 	
 	/**
 	 * Creates a Storage object which serves as the TSE's storage during its runtime. Each Storage is created with a path that points to the actual directory
 	 * on disc which stores the files. That path is built by {@linkplain PropertyValues} and fetched via {@linkplain PropertyValues#getPathToNormalStorage()}.
 	 * It is therefore necessary, that {@linkplain PropertyValues#setPathToResourceDirectory(String)} has been called before constructing a Storage.
-	 * @throws LoadingFailedException if constructing the path in {@linkplain PropertyValues} fails. 
-	 * @version 1.5
+	 * <b>Changes in version 1.6:</b><br>
+	 * Builds the {@linkplain LogIndex} from the names of the log message files that are already in the storage directory, or opens it from the 
+	 * directory denoted by {@linkplain ConfigConstants#CFG_TAG_STORAGE_INDEX_DIR} if that entry is set. Opens the {@linkplain SegmentStore} if
+	 * {@linkplain ConfigConstants#CFG_TAG_STORAGE_MODE} is set to {@linkplain ConfigConstants#CFG_ENTRY_STORAGE_MODE_SEGMENTS}. Starts the
+	 * {@linkplain GroupCommitWriter} if {@linkplain ConfigConstants#CFG_TAG_STORAGE_SYNC} is set to {@linkplain ConfigConstants#CFG_ENTRY_STORAGE_SYNC_GROUP}.
+	 * @throws LoadingFailedException if constructing the path in {@linkplain PropertyValues} fails or if the segments can not be read. 
+	 * @version 1.6
 	 */
 	public Storage() throws LoadingFailedException {
 		//reads the path to the storage directory from the config.properties file and stores it in pathToStorageDir
+		String pathToStorageIndexDir;
+		String storageMode;
+		String storageSync;
+		int groupCommitMaxBatch;
+		int groupCommitMaxDelay;
 		try {
 			pathToStorageDir = PropertyValues.getInstance().getPathToNormalStorage();
+			pathToStorageIndexDir = PropertyValues.getInstance().getPathToStorageIndex();
+			storageMode = PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_STORAGE_MODE);
+			storageSync = PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_STORAGE_SYNC);
+			groupCommitMaxBatch = readIntFromConfig(ConfigConstants.CFG_TAG_STORAGE_GROUP_COMMIT_MAX_BATCH, Constants.DEFAULT_STORAGE_GROUP_COMMIT_MAX_BATCH);
+			groupCommitMaxDelay = readIntFromConfig(ConfigConstants.CFG_TAG_STORAGE_GROUP_COMMIT_MAX_DELAY, Constants.DEFAULT_STORAGE_GROUP_COMMIT_MAX_DELAY);
 		} catch (IOException e) {
 			throw new LoadingFailedException("Reading path to storage from config.properties failed. Original message:\n" +e.getMessage(), e);
 		}
+		//a missing entry means that the log messages are not forced to the disc
+		if((storageSync != null) && storageSync.trim().equalsIgnoreCase(ConfigConstants.CFG_ENTRY_STORAGE_SYNC_WRITE)) {
+			syncPolicy = GroupCommitWriter.SYNC_WRITE;
+		}
+		else if((storageSync != null) && storageSync.trim().equalsIgnoreCase(ConfigConstants.CFG_ENTRY_STORAGE_SYNC_GROUP)) {
+			syncPolicy = GroupCommitWriter.SYNC_GROUP;
+		}
+		else {
+			syncPolicy = GroupCommitWriter.SYNC_NONE;
+		}
+		//a missing entry means that every log message is stored in a file of its own
+		if((storageMode != null) && storageMode.trim().equalsIgnoreCase(ConfigConstants.CFG_ENTRY_STORAGE_MODE_SEGMENTS)) {
+			segmentStore = new SegmentStore(new File(pathToStorageDir), SegmentStore.SEGMENT_SIZE, syncPolicy != GroupCommitWriter.SYNC_NONE);
+			try {
+				segmentStore.open();
+			} catch (IOException e) {
+				throw new LoadingFailedException("Reading the segments of the storage failed. Original message:\n" +e.getMessage(), e);
+			}
+		}
+		else {
+			segmentStore = null;
+		}
+		//open the index from the index directory, or list the storage directory once. Later the log message files are found in the index
+		logIndex = new LogIndex(new File(pathToStorageDir), (pathToStorageIndexDir == null) ? null : new File(pathToStorageIndexDir), segmentStore);
+		logIndex.load();
+		
+		//the writer thread calls back into this Storage for every log message of a batch and forces them to the disc together
+		if(syncPolicy == GroupCommitWriter.SYNC_GROUP) {
+			groupCommitWriter = new GroupCommitWriter(new GroupCommitWriter.Target() {
+				@Override
+				public void beforeWrite() throws IOException {
+					forceJournal();
+				}
+				
+				@Override
+				public FileChannel write(String fileName, EncodedSegments logMessage, long logTime, long signatureCounter) throws Exception {
+					return writeLogMessage(fileName, logMessage, logTime, signatureCounter);
+				}
+				
+				@Override
+				public void sync() throws IOException {
+					forceStorage();
+				}
+			}, groupCommitMaxBatch, groupCommitMaxDelay);
+		}
+		else {
+			groupCommitWriter = null;
+		}
 	}
 	
 	
+	/**
+	 * Sets the {@linkplain SignatureCounterSequencer} of the {@linkplain main.java.de.bsi.tsesimulator.tse.CryptoCore} whose log messages are stored here.
+	 * From then on, {@linkplain #storeTransactionLog(byte[], long, long, long, String, String)} and {@linkplain #storeSystemLog(byte[], long, long, String)}
+	 * only write a log message after all log messages with smaller signature counters have been written. Log messages that are signed at the same time
+	 * by several threads therefore appear in the storage without gaps.
+	 * @param sequencer the sequencer of the CryptoCore. If null, log messages are written in the order the store methods are called.
+	 * @since 1.6
+	 */
+	public void setSequencer(SignatureCounterSequencer sequencer) {
+		this.sequencer = sequencer;
+	}
+	
+	/**
+	 * Sets the {@linkplain WriteAheadJournal} in which the log messages are recorded before they are written. If the log messages are forced to the
+	 * disc, see {@linkplain ConfigConstants#CFG_TAG_STORAGE_SYNC}, the journal is forced to the disc before them.
+	 * @param journal the started journal, or null if no journal is kept
+	 * @since 1.6
+	 */
+	public void setJournal(WriteAheadJournal journal) {
+		this.journal = journal;
+	}
+	
+	/**
+	 * Closes the storage when the simulator is shut down, see {@linkplain TSEController#gracefulShutdown()}. The {@linkplain GroupCommitWriter} 
+	 * writes the log messages that are still in its queue and ends its thread, the last segment of the {@linkplain SegmentStore} is forced to the 
+	 * disc and closed. The {@linkplain LogIndex} stops its background thread and releases its index directory, so that another Storage in this 
+	 * Java VM can open it again.<br>
+	 * The Storage must not be used afterwards.
+	 * @throws ErrorStorageFailure if the last segment can not be forced to the disc or if the thread is interrupted while closing. The remaining
+	 * parts are closed nevertheless.
+	 * @since 1.6
+	 */
+	public void close() throws ErrorStorageFailure {
+		ErrorStorageFailure failure = null;
+		//1. write what is still in the queue of the writer and end its thread
+		if(groupCommitWriter != null) {
+			try {
+				groupCommitWriter.close();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				failure = new ErrorStorageFailure("Interrupted while waiting for the log messages that are still written.", e);
+			}
+		}
+		//2. the last segment is forced, its records are complete without a footer
+		if(segmentStore != null) {
+			try {
+				segmentStore.force();
+			} catch (IOException e) {
+				if(failure == null) {
+					failure = new ErrorStorageFailure("Forcing the last segment to the disc failed.", e);
+				}
+			} finally {
+				segmentStore.close();
+			}
+		}
+		//3. stop the index and release its directory
+		try {
+			logIndex.close();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			if(failure == null) {
+				failure = new ErrorStorageFailure("Interrupted while closing the index of the storage.", e);
+			}
+		}
+		if(failure != null) {
+			throw failure;
+		}
+	}
+	
 //----------------------------------------------STORE DATA-----------------------------------------------------------------------------
 	
 	/**
@@ -105,11 +257,57 @@ public class Storage {
 	 * @param clientId - the clientID of the TranasctionLogMessage.
 	 * @throws ErrorStorageFailure <blockquote>- if the TransactionLogMessage had an unknown operationType associated with it and it could therefore not be
 	 * stored under a legal file name. <br>
-	 * - if writing to the file that shall store the log message fails because of IOExceptions or other Exceptions.
-	 * @version 1.5
+	 * - if writing to the file that shall store the log message fails because of IOExceptions or other Exceptions.<br>
+	 * - if the thread is interrupted while waiting for the log messages with smaller signature counters.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * If a {@linkplain SignatureCounterSequencer} is set, the log message is only written after all log messages with smaller signature counters.
+	 * Depending on {@linkplain ConfigConstants#CFG_TAG_STORAGE_SYNC}, the method returns after the log message has been forced to the disc.
+	 * If a {@linkplain WriteAheadJournal} is set, the log message is recorded in it before it is written and recorded as written afterwards.
+	 * @version 1.6
 	 */
 	public void storeTransactionLog(byte[] transactionLogCompleteTLVByteArray, long logtime, long signatureCounter, long transactionNumber,
 			String operationType, String clientId) throws ErrorStorageFailure {
+		storeTransactionLog(EncodedSegments.of(transactionLogCompleteTLVByteArray), logtime, signatureCounter, transactionNumber, operationType, clientId);
+	}
+	
+	/**
+	 * Same as {@linkplain #storeTransactionLog(byte[], long, long, long, String, String)}, but the log message is given in segments, see 
+	 * {@linkplain EncodedSegments}. The segments are written with one gathering write, so big process data is written to the file from where it is 
+	 * and is not put together with the rest of the log message in one array first.
+	 * @param transactionLog - the whole TransactionLogMessage with the SEQUENCE wrapper.
+	 * @param logtime - the logTime value of the log message in UnixTime format.
+	 * @param signatureCounter - the signatureCounter value of the TransactionLogMessage.
+	 * @param transactionNumber - the transactionNumber value of the log message.
+	 * @param operationType - the operationType of the log message.
+	 * @param clientId - the clientID of the TranasctionLogMessage.
+	 * @throws ErrorStorageFailure see {@linkplain #storeTransactionLog(byte[], long, long, long, String, String)}
+	 * @since 1.6
+	 */
+	public void storeTransactionLog(EncodedSegments transactionLog, long logtime, long signatureCounter, long transactionNumber,
+			String operationType, String clientId) throws ErrorStorageFailure {
+		//wait until all log messages with smaller signature counters are stored, then write this one and let the next one in
+		awaitTurnOfSignatureCounter(signatureCounter);
+		CompletableFuture<Void> pendingWrite = null;
+		try {
+			pendingWrite = writeTransactionLog(transactionLog, logtime, signatureCounter, transactionNumber, operationType, clientId);
+		} finally {
+			if(sequencer != null) {
+				sequencer.committed(signatureCounter);
+			}
+		}
+		//the writer keeps the order of the log messages, so the next one may already be handed to it while this one waits for the disc
+		awaitPendingWrite(pendingWrite);
+		journalCommitted(signatureCounter);
+	}
+	
+	/**
+	 * Writes a TransactionLogMessage to a file, as described in {@linkplain #storeTransactionLog(byte[], long, long, long, String, String)}.
+	 * The segments of the log message are written with a gathering write.
+	 * @return the pending write, if the log message is written by the {@linkplain GroupCommitWriter}. Null, if it has already been written.
+	 * @throws ErrorStorageFailure if the log message could not be written
+	 */
+	private CompletableFuture<Void> writeTransactionLog(EncodedSegments transactionLog, long logtime, long signatureCounter, long transactionNumber,
+			String operationType, String clientId) throws ErrorStorageFailure {
 		//create the file name for the storage of the logmessage 
 		StringBuilder fileNameBuilder = null;
 		//surround with try-catch because of PropertyValues maybe not knowing where to find config.properties
@@ -142,52 +340,7 @@ public class Storage {
 		//append the clientId and the ".log"
 		fileNameBuilder.append(clientId).append(".log");
 		
-		//create a new file to store the logmessage in
-		File logmessageFile = new File(pathToStorageDir, fileNameBuilder.toString());
-		//if there's no parent file in the pathToStorageDir present, create one:
-		if(!logmessageFile.getParentFile().exists()) {
-			logmessageFile.getParentFile().mkdirs();
-		} 
-		//if there's already a file with the same name the number of files with that same name has to be counted.
-		else if(logmessageFile.exists()) {
-			//NEVER EVER DELETE logmessageFile if it existed before. this just deletes the old log message. we do not want that!
-			
-			
-			//create a substring to scan for equal file names without the possible "_Fc-FILE-COUNTER" part
-				//first get only the new file name without the ".log" part. Necessary, because one wants to scan for files containing the 
-				//same (Unixt||Utc||Gent)_(logtime)_Sig-(signatureCounter)_Log-Tra_No-(transactionNumber)_(Start||Update||Finish)_Client-(clientId)
-				//part, but maybe have different "_Fc-FILE-COUNTER.log" endings
-			String[] splitFileName = fileNameBuilder.toString().split(".log");
-			
-			//create a new LogmessageFileFilter and feed the beginning of the duplicate name into it
-			LogmessageFileFilter fileNameFilter = new LogmessageFileFilter();
-			fileNameFilter.setFileName(splitFileName[0]);
-			//this should filter all logmessages with almost the same name as the new logmessage from the storageDir
-			File[] filesWithAlmostSameName = logmessageFile.getParentFile().listFiles(fileNameFilter);
-			//get the number of files that are named similarly
-			int fileCounter = filesWithAlmostSameName.length;
-			
-			//create a new file name for the logmessage file (add an _Fc-x) and then create a new File to store the contents in 
-			String filenameNew = splitFileName[0] +"_Fc-" +(fileCounter) +".log";
-			logmessageFile = new File(pathToStorageDir, filenameNew);
-		}
-		
-		//create a FileOutputStream to write the logmessage byte array to the file
-		try {
-			FileOutputStream outputStream = new FileOutputStream(logmessageFile);
-			//attempt to write the TLV byte array to the file
-			outputStream.write(transactionLogCompleteTLVByteArray);
-			outputStream.close();
-		} catch (FileNotFoundException e) {
-			throw new ErrorStorageFailure("FileNotFoundException caught.\n" +e.getMessage() +"\n");
-		} catch (IOException e) {
-			throw new ErrorStorageFailure("IOException caught.\n" +e.getMessage() +"\n");
-		} catch(Exception e) {
-			throw new ErrorStorageFailure();
-		}
-		//last, set the "lastModifiedTime" to the value of logTime
-		//multiply logtime with 1000 because 1 second = 1000 milliseconds? "setLasModified" expects milliseconds since unix epoch
-		logmessageFile.setLastModified((logtime*1000));
+		return storeLogMessage(fileNameBuilder.toString(), transactionLog, logtime, signatureCounter, transactionNumber);
 	}
 	
 	/**
@@ -208,9 +361,58 @@ public class Storage {
 	 * @param logTime - the logTime value of the logmessage in UnixTime format. Currently, ONLY UnixTime is supported. Is used to set the attribute <i>last modified</i> as well.
 	 * @param signatureCounter - the signatureCounter value of the SystemLogMessage.
 	 * @param operationType - the operationType of the logmessage. Should be exactly in the format that TR-03151 wants it to be.
-	 * @throws ErrorStorageFailure if writing to the file that shall store the logmessage fails because of IOExceptions or other Exceptions.
+	 * @throws ErrorStorageFailure if writing to the file that shall store the logmessage fails because of IOExceptions or other Exceptions or if the thread
+	 * is interrupted while waiting for the log messages with smaller signature counters.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * If a {@linkplain SignatureCounterSequencer} is set, the log message is only written after all log messages with smaller signature counters.
+	 * Depending on {@linkplain ConfigConstants#CFG_TAG_STORAGE_SYNC}, the method returns after the log message has been forced to the disc.
+	 * If a {@linkplain WriteAheadJournal} is set, the log message is recorded in it before it is written and recorded as written afterwards.
+	 * @version 1.6
 	 */
 	public void storeSystemLog(byte[] systemLogCompleteTLVByteArray, long logTime, long signatureCounter, String operationType) throws ErrorStorageFailure {
+		//wait until all log messages with smaller signature counters are stored, then write this one and let the next one in
+		awaitTurnOfSignatureCounter(signatureCounter);
+		CompletableFuture<Void> pendingWrite = null;
+		try {
+			pendingWrite = writeSystemLog(systemLogCompleteTLVByteArray, logTime, signatureCounter, operationType);
+		} finally {
+			if(sequencer != null) {
+				sequencer.committed(signatureCounter);
+			}
+		}
+		awaitPendingWrite(pendingWrite);
+		journalCommitted(signatureCounter);
+	}
+	
+	/**
+	 * Waits at the {@linkplain SignatureCounterSequencer} until the log message with the given signature counter may be written. Returns immediately
+	 * if no sequencer is set.
+	 * @param signatureCounter the signature counter of the log message that shall be written
+	 * @throws ErrorStorageFailure if the thread is interrupted while waiting. The log message is not written and its signature counter is released, so 
+	 * that the following log messages do not wait for it. The signature counter is lost: it is listed by 
+	 * {@linkplain SignatureCounterSequencer#getLostSignatureCounters()} and, if a {@linkplain WriteAheadJournal} is kept, reported by the next recovery
+	 * as reserved without a log message.
+	 */
+	private void awaitTurnOfSignatureCounter(long signatureCounter) throws ErrorStorageFailure {
+		if(sequencer == null) {
+			return;
+		}
+		try {
+			sequencer.awaitTurn(signatureCounter);
+		} catch (InterruptedException e) {
+			sequencer.released(signatureCounter);
+			Thread.currentThread().interrupt();
+			throw new ErrorStorageFailure("Interrupted while waiting for the log messages with smaller signature counters. The signature counter " 
+					+signatureCounter +" is lost, no log message is stored with it.", e);
+		}
+	}
+	
+	/**
+	 * Writes a SystemLogMessage to a file, as described in {@linkplain #storeSystemLog(byte[], long, long, String)}.
+	 * @return the pending write, if the log message is written by the {@linkplain GroupCommitWriter}. Null, if it has already been written.
+	 * @throws ErrorStorageFailure if the log message could not be written
+	 */
+	private CompletableFuture<Void> writeSystemLog(byte[] systemLogCompleteTLVByteArray, long logTime, long signatureCounter, String operationType) throws ErrorStorageFailure {
 		//create the file name for the storage of the logmessage 
 		StringBuilder fileNameBuilder = null;
 		//surround with try-catch because of PropertyValues maybe not knowing where to find config.properties
@@ -222,21 +424,129 @@ public class Storage {
 		fileNameBuilder.append('_').append(logTime).append("_Sig-");
 		fileNameBuilder.append(signatureCounter).append("_Log-Sys_").append(operationType).append(".log");
 		
+		return storeLogMessage(fileNameBuilder.toString(), EncodedSegments.of(systemLogCompleteTLVByteArray), logTime, signatureCounter, -1);
+	}
+	
+	/**
+	 * Writes a log message under the given file name and forces it to the disc according to {@linkplain ConfigConstants#CFG_TAG_STORAGE_SYNC}. If the
+	 * log messages are forced to the disc in groups, it is only handed to the {@linkplain GroupCommitWriter}. If a {@linkplain WriteAheadJournal} is set,
+	 * the log message is recorded in it first.
+	 * @param fileName the file name of the log message as built by the write methods
+	 * @param logMessage the whole log message with the SEQUENCE wrapper
+	 * @param logTime the log time of the log message in Unix time
+	 * @param signatureCounter the signature counter of the log message
+	 * @param transactionNumber the transaction number of a transaction log, -1 for other log messages
+	 * @return the pending write, if the log message is written by the {@linkplain GroupCommitWriter}. Null, if it has already been written.
+	 * @throws ErrorStorageFailure if the log message could not be recorded in the journal, written or forced to the disc
+	 */
+	private CompletableFuture<Void> storeLogMessage(String fileName, EncodedSegments logMessage, long logTime, long signatureCounter, 
+			long transactionNumber) throws ErrorStorageFailure {
+		//the journal records the log messages in the order of their signature counters, because the caller holds the turn of the sequencer
+		WriteAheadJournal currentJournal = this.journal;
+		if(currentJournal != null) {
+			try {
+				currentJournal.logMessage(fileName, signatureCounter, logTime, transactionNumber, logMessage);
+			} catch (IOException e) {
+				throw new ErrorStorageFailure("Recording the log message in the write-ahead journal failed.\n" +e.getMessage() +"\n", e);
+			}
+		}
+		if(groupCommitWriter != null) {
+			return groupCommitWriter.submit(fileName, logMessage, logTime, signatureCounter);
+		}
+		FileChannel channel = null;
+		try {
+			//the record in the journal has to be on the disc before the log message, so that a log message that is cut off can be repaired
+			if(syncPolicy == GroupCommitWriter.SYNC_WRITE) {
+				forceJournal();
+			}
+			channel = writeLogMessage(fileName, logMessage, logTime, signatureCounter);
+			if(syncPolicy == GroupCommitWriter.SYNC_WRITE) {
+				if(channel != null) {
+					channel.force(true);
+				}
+				forceStorage();
+			}
+		} catch (IOException e) {
+			throw new ErrorStorageFailure("IOException caught.\n" +e.getMessage() +"\n", e);
+		} catch (RuntimeException e) {
+			throw new ErrorStorageFailure("Writing the log message failed.", e);
+		} finally {
+			if(channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					//the log message has been written completely
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Waits until the {@linkplain GroupCommitWriter} has written a log message. The thread is not interrupted while waiting, because the log message
+	 * is written anyway, but its interrupt status is restored afterwards.
+	 * @param pendingWrite the future returned by the GroupCommitWriter, or null if the log message has already been written
+	 * @throws ErrorStorageFailure if the log message could not be written or forced to the disc
+	 */
+	private static void awaitPendingWrite(CompletableFuture<Void> pendingWrite) throws ErrorStorageFailure {
+		if(pendingWrite == null) {
+			return;
+		}
+		boolean interrupted = false;
+		try {
+			while(true) {
+				try {
+					pendingWrite.get();
+					return;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					if(e.getCause() instanceof ErrorStorageFailure) {
+						throw (ErrorStorageFailure) e.getCause();
+					}
+					if(e.getCause() instanceof IOException) {
+						throw new ErrorStorageFailure("IOException caught.\n" +e.getCause().getMessage() +"\n", e.getCause());
+					}
+					throw new ErrorStorageFailure("Writing the log message failed.", e.getCause());
+				}
+			}
+		} finally {
+			if(interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Writes a log message under the given file name, to the segments or to a file of its own, but does not force it to the disc. If a file with 
+	 * the same name exists, the name gets the "_Fc-y" part described in {@linkplain #storeTransactionLog(byte[], long, long, long, String, String)}.
+	 * The <i>last modified</i> attribute of the file is set to the log time and the log message is added to the {@linkplain LogIndex}.
+	 * @return the channel of the file, which is still open, so that it can be forced to the disc. Null, if the log message was appended to the segments.
+	 * @throws IOException if the log message could not be written
+	 */
+	private FileChannel writeLogMessage(String fileName, EncodedSegments logMessage, long logTime, long signatureCounter) throws IOException {
+		//in the segment mode the log message is appended to the segments under this name
+		if(segmentStore != null) {
+			writeToSegments(fileName, logMessage, logTime, signatureCounter);
+			return null;
+		}
+		
 		//create a new file to store the logmessage in
-		File logmessageFile = new File(pathToStorageDir, fileNameBuilder.toString());
+		File logmessageFile = new File(pathToStorageDir, fileName);
 		//if there's no parent file in the pathToStorageDir present, create one:
 		if(!logmessageFile.getParentFile().exists()) {
 			logmessageFile.getParentFile().mkdirs();
 		} 
 		//if there's already a file with the same name the number of files with that same name has to be counted.
 		else if(logmessageFile.exists()) {
-			//NEVER EVER DELETE logmessageFile if it existed before. this just deletes the old logmessage. we do not want that!
+			//NEVER EVER DELETE logmessageFile if it existed before. this just deletes the old log message. we do not want that!
+			
 			
 			//create a substring to scan for equal file names without the possible "_Fc-FILE-COUNTER" part
 				//first get only the new file name without the ".log" part. Necessary, because one wants to scan for files containing the 
 				//same (Unixt||Utc||Gent)_(logtime)_Sig-(signatureCounter)_Log-Tra_No-(transactionNumber)_(Start||Update||Finish)_Client-(clientId)
 				//part, but maybe have different "_Fc-FILE-COUNTER.log" endings
-			String[] splitFileName = fileNameBuilder.toString().split(".log");
+			String[] splitFileName = fileName.split(".log");
 			
 			//create a new LogmessageFileFilter and feed the beginning of the duplicate name into it
 			LogmessageFileFilter fileNameFilter = new LogmessageFileFilter();
@@ -246,28 +556,212 @@ public class Storage {
 			//get the number of files that are named similarly
 			int fileCounter = filesWithAlmostSameName.length;
 			
-			//create a new file name for the logmessage file (add an _Fc-x) and then create a new File to Store the contents in 
+			//create a new file name for the logmessage file (add an _Fc-x) and then create a new File to store the contents in 
 			String filenameNew = splitFileName[0] +"_Fc-" +(fileCounter) +".log";
 			logmessageFile = new File(pathToStorageDir, filenameNew);
 		}
 		
-		//create a FileOutputStream to write the logmessage byte array to the file
+		return writeLogMessageFile(logmessageFile, logMessage, logTime);
+	}
+	
+	/**
+	 * Writes a log message to the given file, replacing what the file contained. The <i>last modified</i> attribute of the file is set to the log time
+	 * and the file is added to the {@linkplain LogIndex}.
+	 * @return the channel of the file, which is still open, so that it can be forced to the disc
+	 * @throws IOException if the log message could not be written
+	 */
+	private FileChannel writeLogMessageFile(File logmessageFile, EncodedSegments logMessage, long logTime) throws IOException {
+		//open a FileChannel and write the segments of the log message to the file, the process data directly from the array of the caller
+		FileChannel channel = FileChannel.open(logmessageFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, 
+				StandardOpenOption.TRUNCATE_EXISTING);
 		try {
-			FileOutputStream outputStream = new FileOutputStream(logmessageFile);
-			//attempt to write the TLV byte array to the file
-			outputStream.write(systemLogCompleteTLVByteArray);
-			outputStream.close();
-		} catch (FileNotFoundException e) {
-			throw new ErrorStorageFailure("FileNotFoundException caught.\n" +e.getMessage() +"\n");
+			ByteBuffer[] segments = logMessage.getSegments();
+			long remaining = logMessage.getLength();
+			//a gathering write may write only a part of the segments, the buffers remember how far they have been written
+			while(remaining > 0) {
+				remaining -= channel.write(segments);
+			}
 		} catch (IOException e) {
-			throw new ErrorStorageFailure("IOException caught.\n" +e.getMessage() +"\n");
-		} catch(Exception e) {
-			throw new ErrorStorageFailure();
+			channel.close();
+			throw e;
 		}
-		
 		//last, set the "lastModifiedTime" to the value of logTime
 		//multiply logtime with 1000 because 1 second = 1000 milliseconds? "setLasModified" expects milliseconds since unix epoch
 		logmessageFile.setLastModified((logTime*1000));
+		logIndex.add(logmessageFile);
+		return channel;
+	}
+	
+	/**
+	 * Forces what is not covered by the channels of the log message files to the disc: the last segment in the segment mode, the directory entries
+	 * of the new files otherwise.
+	 * @throws IOException if forcing the segment fails
+	 */
+	private void forceStorage() throws IOException {
+		if(segmentStore != null) {
+			segmentStore.force();
+		}
+		else {
+			GroupCommitWriter.forceDirectory(new File(pathToStorageDir));
+		}
+	}
+	
+	/**
+	 * Forces the records of the {@linkplain WriteAheadJournal} to the disc, if a journal is set.
+	 * @throws IOException if forcing the journal fails
+	 */
+	private void forceJournal() throws IOException {
+		WriteAheadJournal currentJournal = this.journal;
+		if(currentJournal != null) {
+			currentJournal.force();
+		}
+	}
+	
+	/**
+	 * Records in the {@linkplain WriteAheadJournal} that a log message has been written, if a journal is set.
+	 * @param signatureCounter the signature counter of the log message
+	 */
+	private void journalCommitted(long signatureCounter) {
+		WriteAheadJournal currentJournal = this.journal;
+		if(currentJournal != null) {
+			currentJournal.committed(signatureCounter);
+		}
+	}
+	
+	/**
+	 * Writes a log message again that was recorded in the {@linkplain WriteAheadJournal} before the simulator stopped, but was not recorded as written.
+	 * Nothing is written if the storage contains a log message with the same signature counter and the same name, possibly with a "_Fc-y" part, and 
+	 * the same content. A file with exactly the file name that only contains the beginning of the log message, because the simulator stopped while 
+	 * writing it, is overwritten. Otherwise the log message is stored like a duplicate. The restored log message is forced to the disc.
+	 * @param fileName the file name the log message was stored under
+	 * @param logMessage the whole log message with the SEQUENCE wrapper
+	 * @param logTime the log time of the log message in Unix time
+	 * @param signatureCounter the signature counter of the log message
+	 * @return true, if the log message was written, false if it was found in the storage
+	 * @throws ErrorStorageFailure if the storage could not be read or the log message could not be written
+	 * @since 1.6
+	 */
+	public boolean restoreLogMessage(String fileName, byte[] logMessage, long logTime, long signatureCounter) throws ErrorStorageFailure {
+		String fileNameWithoutExtension = fileName.split(".log")[0];
+		File logmessageFile = new File(pathToStorageDir, fileName);
+		FileChannel channel = null;
+		try {
+			//1. look for the log message among the ones with the same signature counter
+			for(File sameSignatureCounter : logIndex.getFilesBySignatureCounter(signatureCounter, signatureCounter, new long[0], false)) {
+				if(sameSignatureCounter.getName().startsWith(fileNameWithoutExtension) 
+						&& Arrays.equals(readStoredLogMessage(sameSignatureCounter), logMessage)) {
+					return false;
+				}
+			}
+			
+			//2. a file that exists, but is not in the index yet, is checked on its own
+			if((segmentStore == null) && logmessageFile.isFile()) {
+				byte[] storedLogMessage = Files.readAllBytes(logmessageFile.toPath());
+				if(Arrays.equals(storedLogMessage, logMessage)) {
+					logIndex.add(logmessageFile);
+					return false;
+				}
+				//the file was cut off while the log message was written, it is written again under the same name
+				if(isBeginningOf(storedLogMessage, logMessage)) {
+					channel = writeLogMessageFile(logmessageFile, EncodedSegments.of(logMessage), logTime);
+				}
+			}
+			
+			//3. write the log message like a new one, it gets an "_Fc-y" name if the file name is taken
+			if(channel == null) {
+				channel = writeLogMessage(fileName, EncodedSegments.of(logMessage), logTime, signatureCounter);
+			}
+			if(channel != null) {
+				channel.force(true);
+			}
+			forceStorage();
+		} catch (IOException e) {
+			throw new ErrorStorageFailure("IOException caught.\n" +e.getMessage() +"\n", e);
+		} finally {
+			if(channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					//the log message has been forced to the disc
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Reads a log message from its file or from the segments.
+	 * @return the DER encoding of the log message, null if it is not found
+	 * @throws IOException if the log message exists but can not be read
+	 */
+	private byte[] readStoredLogMessage(File logfile) throws IOException {
+		if(segmentStore != null) {
+			if(segmentStore.contains(logfile.getName())) {
+				return segmentStore.read(logfile);
+			}
+		}
+		return logfile.isFile() ? Files.readAllBytes(logfile.toPath()) : null;
+	}
+	
+	/**
+	 * @return true, if the stored content is not longer than the log message and every byte is either the byte of the log message or 0, which is 
+	 * what a file looks like that was cut off while it was written
+	 */
+	private static boolean isBeginningOf(byte[] storedContent, byte[] logMessage) {
+		if(storedContent.length > logMessage.length) {
+			return false;
+		}
+		for(int i = 0; i < storedContent.length; i++) {
+			if((storedContent[i] != logMessage[i]) && (storedContent[i] != 0)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Appends a log message to the segments of the {@linkplain SegmentStore} instead of writing it to a file. Duplicates get the same "_Fc-y" names 
+	 * as files, the names that are already taken are looked up in the {@linkplain LogIndex} and in the segments.
+	 * @param fileName the file name of the log message as built by the write methods
+	 * @param logMessage the whole log message with the SEQUENCE wrapper
+	 * @param logTime the log time of the log message in Unix time. It is stored with the log message instead of the <i>last modified</i> attribute.
+	 * @param signatureCounter the signature counter of the log message
+	 * @throws IOException if appending to the segments fails
+	 */
+	private void writeToSegments(String fileName, EncodedSegments logMessage, long logTime, long signatureCounter) throws IOException {
+		synchronized(segmentWriteLock) {
+			String segmentFileName = fileName;
+			if(segmentStore.contains(fileName) || isIndexed(fileName, signatureCounter)) {
+				//count the log messages with the same name without the possible "_Fc-FILE-COUNTER" part, like the files of duplicates
+				String fileNameWithoutExtension = fileName.split(".log")[0];
+				int fileCounter = 0;
+				for(File sameSignatureCounter : logIndex.getFilesBySignatureCounter(signatureCounter, signatureCounter, new long[0], false)) {
+					if(sameSignatureCounter.getName().startsWith(fileNameWithoutExtension) && sameSignatureCounter.getName().endsWith(".log")) {
+						fileCounter++;
+					}
+				}
+				//names that can not be parsed are not found by their signature counter, so the counter is increased until the name is free
+				fileCounter = Math.max(fileCounter, 1);
+				do {
+					segmentFileName = fileNameWithoutExtension +"_Fc-" +fileCounter +".log";
+					fileCounter++;
+				} while(segmentStore.contains(segmentFileName));
+			}
+			segmentStore.append(segmentFileName, signatureCounter, logTime, logMessage);
+			logIndex.add(new File(pathToStorageDir, segmentFileName));
+		}
+	}
+	
+	/**
+	 * @return true, if the LogIndex contains a log message with the file name, e.g. a file that was stored before the segment mode was chosen
+	 */
+	private boolean isIndexed(String fileName, long signatureCounter) {
+		for(File sameSignatureCounter : logIndex.getFilesBySignatureCounter(signatureCounter, signatureCounter, new long[0], false)) {
+			if(sameSignatureCounter.getName().equals(fileName)) {
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	/**
@@ -299,9 +793,12 @@ public class Storage {
 	 * this has to be provided by the TSEController at the time of the exportData call
 	 * @param filesThatShallBeExported an array of the files that shall be exported
 	 * @return the byte array representation of the TAR archive containing an info.csv file, the certificate of the public key used for signature
-	 * creation and the log files that are exported.
+	 * creation and the log files that are exported.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * In the segment mode, the content of the log files is read from the {@linkplain SegmentStore}. The entries in the TAR archive are the same as 
+	 * for files.
 	 * @since 1.4 
-	 * @version 1.5
+	 * @version 1.6
 	 */
 	public byte[] exportData(String seapiDescription, String manufacturerInfo, String versionInfo, long unixTimeAtCallingOfStoreMethod, 
 			File[] filesThatShallBeExported) {
@@ -347,7 +844,8 @@ public class Storage {
 		
 		//create the TAR archive that will be returned with all necessary files
 		try {
-			TARUtils.createTARArchiveForExportData(infoCSV, filesThatShallBeExported, fileNameList, certificateFiles, certFileNameList, unixTimeAtCallingOfStoreMethod);
+			TARUtils.createTARArchiveForExportData(infoCSV, filesThatShallBeExported, fileNameList, certificateFiles, certFileNameList, unixTimeAtCallingOfStoreMethod,
+					segmentStore);
 		} catch (IOException e) {
 			//according to TR-03151 no IOException can occur when exporting data (or at least there is no Exception defined for that.
 				//workaround: if IOException occurs, return an error byte array
@@ -485,7 +983,10 @@ public class Storage {
 	 * 
 	 * The method is synchronized so no two processes try to delete data at the same time.<br>
 	 * 
-	 * Note: if an error arises during the deletion process, there is no measure in place to ensure the storage is left in a consistent state.
+	 * Note: if an error arises during the deletion process, there is no measure in place to ensure the storage is left in a consistent state.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * Empties the {@linkplain LogIndex}, or builds it again if the deletion fails. In the segment mode, the log messages in the segments have to be
+	 * on the list of exported files as well, then the segments are deleted together with the rest of the storage directory.
 	 * @throws ErrorUnexportedStoredData if data is present in the storageDir but not on the list of exported files
 	 * @throws ErrorDeleteStoredDataFailed if something happens during the deletion process that messes the deletion process up, this is thrown
 	 */
@@ -521,19 +1022,58 @@ public class Storage {
 				throw new ErrorUnexportedStoredData();
 			}
 		}
+		//the same for the log messages in the segments
+		if(segmentStore != null) {
+			HashSet<String> exportedFileNames = new HashSet<String>(fileNamesList);
+			try {
+				for(String segmentFileName : segmentStore.getFileNames()) {
+					if(!exportedFileNames.contains(segmentFileName)) {
+						throw new ErrorUnexportedStoredData();
+					}
+				}
+			} catch (IOException e) {
+				throw new ErrorDeleteStoredDataFailed("Failed to read the segments!\n", e);
+			}
+		}
 		
 		//if no exception was thrown, all data can be deleted!
 		try {
+			if(segmentStore != null) {
+				segmentStore.close();
+			}
 			FileUtils.cleanDirectory(storageDirectory);
 		} catch (IOException e) {
+			//some files may have been deleted, so the segments and the index have to look at the directory again
+			try {
+				reopenSegmentStore();
+			} finally {
+				logIndex.rebuild();
+			}
 			throw new ErrorDeleteStoredDataFailed("Deleting content of the storage directory was unsuccessful!", e);
 		}
+		reopenSegmentStore();
+		logIndex.clear();
 	}
 	
 	
 	
 //------------------------------------------------UTILITY------------------------------------------------------------------
 	
+	/**
+	 * Reads the segments again after the storage directory has been emptied, so that the next log message starts a new segment.
+	 * @throws ErrorDeleteStoredDataFailed if the segments that are left can not be read
+	 */
+	private void reopenSegmentStore() throws ErrorDeleteStoredDataFailed {
+		if(segmentStore == null) {
+			return;
+		}
+		try {
+			segmentStore.open();
+		} catch (IOException e) {
+			throw new ErrorDeleteStoredDataFailed("Reading the segments after deleting the content of the storage directory failed!", e);
+		}
+	}
+	
 //------------------------------------------------FILE LIST MAKERS------------------------------------------------------
 	/**
 	 * Method for filtering log files created between two points in time. The length of the array returned can also be used to be compared
@@ -544,69 +1084,27 @@ public class Storage {
 	 * 
 	 * The caller has to be aware of the fact, that in case of a quick running simulator, calling this method <b>directly after</b> creating a {@linkplain LogMessage} may cause issues.
 	 * 
+	 * <b>Changes in version 1.6:</b><br>
+	 * The files are looked up in the time buckets of the {@linkplain LogIndex} instead of reading the <i>last modified</i> attribute of every file.
 	 * @param startDate the date after which logs shall be filtered. Is optional, if endDate has been provided.
 	 * @param endDate the date before which logs shall be filtered. Is optional, if startDate is present.
 	 * @return a list containing all the files that match the desired time frame and end with .log
+	 * @version 1.6
 	 */
 	public File[] listFilesStartDateEndDate(ZonedDateTime startDate, ZonedDateTime endDate) {
 		//check which one of the two is present.
 		boolean startDateNull = (startDate == null);
 		boolean endDateNull = (endDate == null);
-		
-		//create a SuffixFileFilter filtering .log files
-		SuffixFileFilter dotLog = new SuffixFileFilter(".log");
-		
-		//create a Collection<File> that stores the filtered files
-		Collection<File> fileCollection = null;
-		
-		//if both startDate AND endDate are present, the time between them (inclusive endDate) has to be considered
-			if((!startDateNull) && (!endDateNull)) {
-				//1. make a file filter which accepts files created AFTER the startDate
-				AgeFileFilter youngerThanStartDate = new AgeFileFilter((startDate.toInstant().toEpochMilli() - 50), false);	//has to be EpochMilli, otherwise this is not working as it should!
-																															//'-50' must be present to assert that [startDate,endDate] is an inclusive interval
-				//2. make a file filter which accepts files created BEFORE the endDate (inclusive)
-				AgeFileFilter olderOrEqualToEndDate = new AgeFileFilter(endDate.toInstant().toEpochMilli(), true);
-				//3. create a List<IOFileFilter>
-				List<IOFileFilter> filterList = new ArrayList<IOFileFilter>();
-				filterList.add(dotLog);
-				filterList.add(youngerThanStartDate);
-				filterList.add(olderOrEqualToEndDate);
-				//4. create an AndFileFilter from the list
-				AndFileFilter combinationFilter = new AndFileFilter(filterList);
-				//5. fill the fileCollection
-				fileCollection = FileUtils.listFiles(new File(pathToStorageDir), combinationFilter, null);
-				
-				//return the Collection as an array
-				return fileCollection.toArray(new File[0]);
-			}
-		//if only startDate is present, log files after this date shall be filtered
-			if((!startDateNull) && endDateNull) {
-				//1. make a file filter which accepts files created AFTER the startDate
-				AgeFileFilter youngerThanStartDate = new AgeFileFilter((startDate.toInstant().toEpochMilli() - 50), false);	//has to be EpochMilli, otherwise this is not working as it should!
-																															//'-50' must be present to assert that [startDate,endDate] is an inclusive interval
-				//2. create an AndFileFilter combining dotLog and youngerThanStartdate
-				AndFileFilter combinationFilter = new AndFileFilter(dotLog, youngerThanStartDate);
-				//3. fill the fileCollection
-				fileCollection = FileUtils.listFiles(new File(pathToStorageDir), combinationFilter, null);
-				
-				//return the Collection as an array
-				return fileCollection.toArray(new File[0]);
-			}
-		//if only endDate is present, log files before this date inclusive shall be filtered
-			if(startDateNull && (!endDateNull)) {
-				//1. make a file filter which accepts files created BEFORE the endDate (inclusive)
-				AgeFileFilter olderOrEqualToEndDate = new AgeFileFilter(endDate.toInstant().toEpochMilli(), true);
-				//2. create an AndFileFilter combining dotLog and olderOrEqualToEndDate
-				AndFileFilter combinationFilter = new AndFileFilter(dotLog, olderOrEqualToEndDate);
-				//3. fill the fileCollection
-				fileCollection = FileUtils.listFiles(new File(pathToStorageDir), combinationFilter, null);
-				
-				//return the Collection as an array
-				return fileCollection.toArray(new File[0]);
-			}
-			
 		//if everything went wrong, return null
-		return null;
+		if(startDateNull && endDateNull) {
+			return null;
+		}
+		
+		//the log times have to be after the startDate and before the endDate (inclusive)
+		//'-50' must be present to assert that [startDate,endDate] is an inclusive interval, like with the AgeFileFilter used before
+		long afterMillis = startDateNull ? Long.MIN_VALUE : (startDate.toInstant().toEpochMilli() - 50);
+		long untilMillis = endDateNull ? Long.MAX_VALUE : endDate.toInstant().toEpochMilli();
+		return logIndex.getFilesByLogTime(afterMillis, untilMillis).toArray(new File[0]);
 	}
 	
 	/**
@@ -624,7 +1122,10 @@ public class Storage {
 	 * @param endSigCntr - upper bound of the interval, > 0.
 	 * @return an array containing all the files whose signature counter lies in the provided interval. The array is empty, if no 
 	 * log messages with the specified signature counters could be found.
-	 * @throws SignatureCounterException - one or both signature counters provided are not truly positive.
+	 * @throws SignatureCounterException - one or both signature counters provided are not truly positive.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * The files are looked up in the {@linkplain LogIndex} instead of scanning the storage directory once for every signature counter of the interval.
+	 * @version 1.6
 	 */
 	public File[] listFilesSignatureCounter(long startSigCntr, long endSigCntr) throws SignatureCounterException {
 		//check if both counter are non-negative. Signature counters MUST be unsigned integers according to BSI TR-03153.
@@ -635,68 +1136,13 @@ public class Storage {
 			throw new SignatureCounterException(startSigCntr +" > " +endSigCntr +" should be the other way around.");
 		}
 		
-		//there should be a filter for the case of startSigCntr == endSigCntr. This has no use case in the actual TSE Sim, but could be handy in development.
-		if(startSigCntr==endSigCntr) {		
-			//create a simple filter for filtering the files with the specified signature counter. Note: this could be ANY logfile! not just transaction logs!
-			String regEx = "^(Gent|Unixt|Utc){1}_{1}((\\d{14}(\\.\\d\\d\\d){0,1})|(\\d{10}(\\d\\d){0,1}Z{1})|(\\d{1,19})){1}_Sig-" +startSigCntr+"{1}_Log-(Sys_(Initialize|UpdateTime|DisableSecureElement|AuthenticateUser|LogOut|UnblockUser){1}|Aud|Tra_No-(\\d{1,19})_(Start|Update|Finish){1}_Client-(\\S)+){1}(_Fc-(\\d)+){0,1}\\.log$";
-			//if audit logs are implemented but not found, try the regex below:
-			//String regEx = "^(Gent|Unixt|Utc){1}_{1}((\\d{14}(\\.\\d\\d\\d){0,1})|(\\d{10}(\\d\\d){0,1}Z{1})|(\\d{1,19})){1}_Sig-" +startSigCntr+"{1}_Log-(Sys_(Initialize|UpdateTime|DisableSecureElement|AuthenticateUser|LogOut|UnblockUser){1}|(Aud){1}|Tra_No-(\\d{1,19})_(Start|Update|Finish){1}_Client-(\\S)+){1}(_Fc-(\\d)+){0,1}\\.log$";
-
-			//create a Collection, because a good filter can be used:
-			RegexFileFilter logsWithSignatureCounter = new RegexFileFilter(regEx);
-					
-			//create a collection containing the filtered files
-			Collection<File> fileCollection = null;
-			
-			fileCollection = FileUtils.listFiles(new File(pathToStorageDir), logsWithSignatureCounter, null);
-			//check if any Files were found with the specified signatureCounter, return null if there are no logs with the specified counter.
-			if(fileCollection.isEmpty()) {
-				return null;
-			}
-			else {
-				return fileCollection.toArray(new File[0]);
-			}
-		}
-		
-		//this problem will be solved using a similar approach to the filter that searches for log messages in an interval of transaction numbers.
-		else {
-			//create a Collection which will store all the log files:
-			Collection<File> intervalCollection = null;
-			
-			//create a RegExFileFilter for the first log message matching this signature counter
-			String regExStart = "^(Gent|Unixt|Utc){1}_{1}((\\d{14}(\\.\\d\\d\\d){0,1})|(\\d{10}(\\d\\d){0,1}Z{1})|(\\d{1,19})){1}_Sig-" +startSigCntr+"{1}_Log-(Sys_(Initialize|UpdateTime|DisableSecureElement|AuthenticateUser|LogOut|UnblockUser){1}|Aud|Tra_No-(\\d{1,19})_(Start|Update|Finish){1}_Client-(\\S)+){1}(_Fc-(\\d)+){0,1}\\.log$";
-			//if audit logs are implemented but not found, try the regex below:
-			//String regEx = "^(Gent|Unixt|Utc){1}_{1}((\\d{14}(\\.\\d\\d\\d){0,1})|(\\d{10}(\\d\\d){0,1}Z{1})|(\\d{1,19})){1}_Sig-" +startSigCntr+"{1}_Log-(Sys_(Initialize|UpdateTime|DisableSecureElement|AuthenticateUser|LogOut|UnblockUser){1}|(Aud){1}|Tra_No-(\\d{1,19})_(Start|Update|Finish){1}_Client-(\\S)+){1}(_Fc-(\\d)+){0,1}\\.log$";
-
-			RegexFileFilter logWithStartCounter = new RegexFileFilter(regExStart);
-			//use the regex to fill the collection, preventing NullPointerExceptions in the loop
-			intervalCollection = FileUtils.listFiles(new File(pathToStorageDir), logWithStartCounter, null);
-			
-			//go through the signature counters contained in the interval, starting at the second one (because the first has already been filtered!)
-			for(long currentSigCntr=(startSigCntr+1); currentSigCntr<=endSigCntr; currentSigCntr++) {
-				//create a temporary collection which stores the files filtered temporarily
-				Collection<File> filesForCurrentCounter = null;
-				String regExTemp = "^(Gent|Unixt|Utc){1}_{1}((\\d{14}(\\.\\d\\d\\d){0,1})|(\\d{10}(\\d\\d){0,1}Z{1})|(\\d{1,19})){1}_Sig-" +currentSigCntr+"{1}_Log-(Sys_(Initialize|UpdateTime|DisableSecureElement|AuthenticateUser|LogOut|UnblockUser){1}|Aud|Tra_No-(\\d{1,19})_(Start|Update|Finish){1}_Client-(\\S)+){1}(_Fc-(\\d)+){0,1}\\.log$";
-				//if audit logs are implemented but not found, try the regex below:
-				//String regEx = "^(Gent|Unixt|Utc){1}_{1}((\\d{14}(\\.\\d\\d\\d){0,1})|(\\d{10}(\\d\\d){0,1}Z{1})|(\\d{1,19})){1}_Sig-" +currentSigCntr+"{1}_Log-(Sys_(Initialize|UpdateTime|DisableSecureElement|AuthenticateUser|LogOut|UnblockUser){1}|(Aud){1}|Tra_No-(\\d{1,19})_(Start|Update|Finish){1}_Client-(\\S)+){1}(_Fc-(\\d)+){0,1}\\.log$";
-
-				RegexFileFilter currentCounterFilter = new RegexFileFilter(regExTemp);
-				
-				//use the filter to add the log messages to the collection
-				filesForCurrentCounter = FileUtils.listFiles(new File(pathToStorageDir), currentCounterFilter, null);
-				//check if the collection is empty. If its not, add the content to the intervalCollection
-				if(!filesForCurrentCounter.isEmpty()) {
-					intervalCollection.addAll(filesForCurrentCounter);
-				}
-			}
-			//if the intervalCollection is empty, return null
-			if(intervalCollection.isEmpty()) {
-				return null;
-			}
-			else {
-				return intervalCollection.toArray(new File[0]);
-			}
+		//look up the log files of all types with signature counters from the interval in the index
+		List<File> filesInInterval = logIndex.getFilesBySignatureCounter(startSigCntr, endSigCntr, new long[0], false);
+		//if no log files were found, return null
+		if(filesInInterval.isEmpty()) {
+			return null;
 		}
+		return filesInInterval.toArray(new File[0]);
 	}
 	
 	/**
@@ -714,7 +1160,11 @@ public class Storage {
 	 * @param startNumber - the lower bound of the interval. Has to be truly greater than zero.
 	 * @param endNumber - the upper bound of the interval. Has to be truly greater than zero.
 	 * @return a collection of files containing all Transaction-Logs with the specified transaction number(s). Null, if none were found.
-	 * @throws ErrorParameterMismatch if one or both transaction numbers are <= 0 or if startNumber < endNumber.
+	 * @throws ErrorParameterMismatch if one or both transaction numbers are <= 0 or if startNumber < endNumber.<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * The files are looked up in the {@linkplain LogIndex} instead of scanning the storage directory once for every transaction number of the interval.
+	 * The returned collection may be modified by the caller.
+	 * @version 1.6
 	 */
 	public Collection<File> listFilesTransactionNumbers(long startNumber, long endNumber) throws ErrorParameterMismatch {
 		//check if one or both counters are <= 0. If that's the case, throw an exception.
@@ -725,66 +1175,15 @@ public class Storage {
 			throw new ErrorParameterMismatch(startNumber +" > " +endNumber +" should be the other way around.");
 		}
 		
-		//check if both numbers are the same
-		if(startNumber==endNumber) {
-			//create a simple filter for filtering the files
-			String regEx = "^(Gent|Unixt|Utc){1}_{1}((\\d{14}(\\.\\d\\d\\d){0,1})|(\\d{10}(\\d\\d){0,1}Z{1})|(\\d{1,19})){1}_Sig-{1}(\\d{1,19})_Log-Tra_No-"+startNumber +"{1}_{1}(Start|Update|Finish)_Client-{1}(\\S)+\\.log{1}$";
-			//create a Collection, because a good filter can be used:
-			RegexFileFilter transactionLogsWithTransactionNumber = new RegexFileFilter(regEx);
-					
-			//create a collection containing the filtered files
-			Collection<File> fileCollection = null;
-					//List<File> fileCollection = null;
-			
-			fileCollection = FileUtils.listFiles(new File(pathToStorageDir), transactionLogsWithTransactionNumber, null);
-			//check if any Files were found with the specified transactionNumber, return null if there are no transactionLogs with the specified number
-			if(fileCollection.isEmpty()) {
-				return null;
-			}
-			else {
-				return fileCollection;
-			}
-		}
-		
-		//if the startNumber < endNumber, a more complex filter has to be used
-		else {
-			//create a more advanced filter, then use that
-			//idea: create a Collection. Then create a regEx for each transaction number, use a RegesFileFilter to filter for those files and add the result of each transaction 
-			//number to the existing collection. Check if the collection is empty. If yes -> return null. If no -> return collection.toArray
-			Collection<File> intervalCollection = null;
-			
-			//this part has to be here, to prevent NullPointerException. 
-				String regExStartNumber = "^(Gent|Unixt|Utc){1}_{1}((\\d{14}(\\.\\d\\d\\d){0,1})|(\\d{10}(\\d\\d){0,1}Z{1})|(\\d{1,19})){1}_Sig-{1}(\\d{1,19})_Log-Tra_No-"+startNumber +"{1}_{1}(Start|Update|Finish)_Client-{1}(\\S)+\\.log{1}$";
-				//create a Collection, because a good filter can be used:
-				RegexFileFilter transactionLogsWithStartNumber = new RegexFileFilter(regExStartNumber);
-				intervalCollection = FileUtils.listFiles(new File(pathToStorageDir), transactionLogsWithStartNumber, null);
-				
-			//loop through the transaction numbers contained in the interval.
-			for(long currentTransactionNumber=(startNumber+1); currentTransactionNumber <= endNumber; currentTransactionNumber++) {
-				Collection<File> filesForCurrentNumber = null;
-				String regExTemp = "^(Gent|Unixt|Utc){1}_{1}((\\d{14}(\\.\\d\\d\\d){0,1})|(\\d{10}(\\d\\d){0,1}Z{1})|(\\d{1,19})){1}_Sig-{1}(\\d{1,19})_Log-Tra_No-"+currentTransactionNumber +"{1}_{1}(Start|Update|Finish)_Client-{1}(\\S)+\\.log{1}$";			
-				
-				RegexFileFilter currentNumberFilter = new RegexFileFilter(regExTemp);
-				
-				//use the filter to list all the files corresponding to the current transaction number
-				filesForCurrentNumber = FileUtils.listFiles(new File(pathToStorageDir), currentNumberFilter, null);
-							
-				//check whether filesForCurrentNumber != null. If thats the case, add it to the intervalCollection
-				//attention: one can NOT conclude, that if one transaction number from the interval is missing, then all following transaction numbers should be missing and
-					//therefore, the loop can be terminated. This would cause errors, if the function "deleteStorage" in the TSE was called. 
-					//This method could have caused the deletion of the earlier transaction logs from the interval, leaving the newer ones intact.
-				if(!filesForCurrentNumber.isEmpty()) {
-					intervalCollection.addAll(filesForCurrentNumber);
-				}
-			}	
-			//if there were no transaction logs found for the specified interval, return null
-			if(intervalCollection.isEmpty()) {
-				return null;
-			}
-			else {
-				return intervalCollection;
-			}
+		//look up the transaction logs of all transaction numbers in the interval in the index
+		//attention: one can NOT conclude, that if one transaction number from the interval is missing, then all following transaction numbers should be missing.
+			//This would cause errors, if the function "deleteStorage" in the TSE was called. 
+		Collection<File> intervalCollection = logIndex.getFilesByTransactionNumber(startNumber, endNumber);
+		//if there were no transaction logs found for the specified interval, return null
+		if(intervalCollection.isEmpty()) {
+			return null;
 		}
+		return intervalCollection;
 	}
 	
 	
@@ -802,7 +1201,10 @@ public class Storage {
 	 * 
 	 * @param sigCntrsAlreadyPresent a list of signature counters that form an interval 
 	 * @return a collection of files, more specifically, a linked list, of the System and AuditLogs missing from the signature counter interval passed in. Null, if no such log files were found.
-	 * @throws SignatureCounterException if the interval is too short or not present at all (null)
+	 * @throws SignatureCounterException if the interval is too short or not present at all (null)<br>
+	 * <b>Changes in version 1.6:</b><br>
+	 * The files are looked up in the {@linkplain LogIndex} instead of scanning the storage directory once for every missing signature counter.
+	 * @version 1.6
 	 */
 	public Collection<File> listFilesAuditLogsSystemLogsSignatureCounter(List<Long> sigCntrsAlreadyPresent) throws SignatureCounterException {
 		if(sigCntrsAlreadyPresent == null || sigCntrsAlreadyPresent.isEmpty()) {
@@ -816,35 +1218,16 @@ public class Storage {
 			throw new SignatureCounterException("Interval consists of too few signature counters that are consecutive as well.");
 		}
 		
-		//go through the list of signature counters. Whenever one is missing for a continuous interval, search for the corresponding log message, but 
-			//search only for system and audit logs. 
+		//go through the signature counters between the first and the last one. Whenever one is missing for a continuous interval, look up the
+			//corresponding log message in the index, but only system and audit logs. 
 			//Because the transaction logs with the specified number have already been filtered, we now only need the other types of logs
-		Collection<File> missingSysAudLogs = new LinkedList<File>();
-		
-		//maybe change this so that currentSigCntr < endSigCntr
-		for(long currentSigCntr=(startSigCntr+1); currentSigCntr<endSigCntr; currentSigCntr++) {		
-			//if the signature counter is already present, continue
-			if(sigCntrsAlreadyPresent.contains(currentSigCntr)) {
-				continue;
-			}
-			//else, search for the log with currentSigCntr, if that is not a transaction log (those would have already been filtered)
-			else {
-				//create the FileFilter to get that exact system or audit log
-				Collection<File> filesForCurrentCounter = null;	
-				String regExTemp ="^(Gent|Unixt|Utc){1}_{1}((\\d{14}(\\.\\d\\d\\d){0,1})|(\\d{10}(\\d\\d){0,1}Z{1})|(\\d{1,19})){1}_Sig-"+(currentSigCntr) +"{1}_Log-(Sys_(Initialize|UpdateTime|DisableSecureElement|AuthenticateUser|LogOut|UnblockUser){1}|(Aud){1}){1}(_Fc-(\\d)+){0,1}\\.log$";
-				RegexFileFilter currentCounterFilter = new RegexFileFilter(regExTemp);
-				
-				//use the filter to add the log messages to the collection
-				filesForCurrentCounter = FileUtils.listFiles(new File(pathToStorageDir), currentCounterFilter, null);
-
-				//if that log message exists and is not an transaction log, add it to the missingSysAudLogs Collection and insert its signature counter 
-				//into the sigCntrsAlreadyPresent List so that the iterator can iterate correctly
-				if(!filesForCurrentCounter.isEmpty()) {
-					missingSysAudLogs.addAll(filesForCurrentCounter);
-				}
-			}
-			
+		long[] sortedSigCntrsAlreadyPresent = new long[sigCntrsAlreadyPresent.size()];
+		for(int i = 0; i < sortedSigCntrsAlreadyPresent.length; i++) {
+			sortedSigCntrsAlreadyPresent[i] = sigCntrsAlreadyPresent.get(i);
 		}
+		Arrays.sort(sortedSigCntrsAlreadyPresent);
+		Collection<File> missingSysAudLogs = new LinkedList<File>(logIndex.getFilesBySignatureCounter(startSigCntr + 1, endSigCntr - 1, 
+				sortedSigCntrsAlreadyPresent, true));
 		
 		//if no additional files were found, return nothing. Else, return the files found.
 		if(missingSysAudLogs.isEmpty()) {
@@ -869,16 +1252,20 @@ public class Storage {
 	 * 
 	 * Please be aware, that unlike with the predecessor of this method, the caller has to make sure, that it does not continue working with a null value.
 	 * 
+	 * <b>Changes in version 1.6:</b><br>
+	 * The files are taken from the {@linkplain LogIndex} instead of listing the storage directory.
 	 * @return all log message files in the storage directory, if there are any. Null otherwise.
 	 * @since 1.4
+	 * @version 1.6
 	 */
 	public File[] listLogFilesOLD() {
-		//create a File object of the storage dir
-		 File storageDirectory = new File(pathToStorageDir);
-		 //create a FileFilter which returns only the real logmessage files. this means, all files in the storageDirectory ending with .log .
-		 LogmessageFileFilter onlyLogmessagesFilter = new LogmessageFileFilter("");
-		//use that filter to get all the logmessages in a list
-		File[] fileList = storageDirectory.listFiles(onlyLogmessagesFilter);
+		//create a File object of the storage dir. If it does not exist, return null like File.listFiles() did before
+		File storageDirectory = new File(pathToStorageDir);
+		if(!storageDirectory.isDirectory()) {
+			return null;
+		}
+		//get all the logmessages from the index
+		File[] fileList = logIndex.getAllFiles().toArray(new File[0]);
 		
 		//return the list. TSEController has to check whether the list is null or has a length of zero.
 		return fileList;
@@ -1143,5 +1530,23 @@ public class Storage {
 		return infoCSV;
 	}
 	
+	/**
+	 * Reads an integer from config.properties.
+	 * @param key the key of the entry
+	 * @param defaultValue the value returned if the entry is missing or not an integer
+	 * @return the value of the entry or the default value
+	 * @throws IOException if {@linkplain PropertyValues#getInstance()} throws it
+	 */
+	private static int readIntFromConfig(String key, int defaultValue) throws IOException {
+		String configValue = PropertyValues.getInstance().getValue(key);
+		if(configValue == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(configValue.trim());
+		} catch(NumberFormatException e) {
+			return defaultValue;
+		}
+	}
 	
 }
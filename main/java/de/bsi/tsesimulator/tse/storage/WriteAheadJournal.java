@@ -0,0 +1,665 @@
+package main.java.de.bsi.tsesimulator.tse.storage;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+import main.java.de.bsi.tsesimulator.constants.Constants;
+import main.java.de.bsi.tsesimulator.tlv.EncodedSegments;
+
+/**
+ * A write-ahead journal that makes the signature counter, the transaction number and the log messages survive a crash of the simulator, see
+ * {@linkplain main.java.de.bsi.tsesimulator.constants.ConfigConstants#CFG_TAG_WRITE_AHEAD_JOURNAL}.<br>
+ * The {@linkplain PersistedValues} are only written to persistentValues.ser by a graceful shutdown. If the simulator dies before, the next start would
+ * use signature counters and transaction numbers again that are already part of stored log messages, and a log message whose file was being written
+ * would be lost or cut off. Therefore the journal records
+ * <ul>
+ * <li>every signature counter reserved by the {@linkplain main.java.de.bsi.tsesimulator.tse.CryptoCore}, together with its log time,</li>
+ * <li>every log message before the {@linkplain Storage} writes it, with its file name and its DER encoding,</li>
+ * <li>every log message that has been written completely,</li>
+ * <li>checkpoints with all persisted values, written at the start of the simulator, when the state of the TSE changes, at a graceful shutdown and
+ * whenever the journal is started anew.</li>
+ * </ul>
+ * When the simulator is started, {@linkplain #recover(PersistedValues)} reads the journal. The counters of the simulator continue after the largest
+ * recorded ones, and the log messages that have not been recorded as written are given to the Storage, which writes them again if their files are
+ * missing or cut off. Afterwards {@linkplain #start(PersistedValues)} starts a new journal with a checkpoint.<br>
+ * <br>
+ * The journal is the file {@value main.java.de.bsi.tsesimulator.constants.Constants#FILE_NAME_WRITE_AHEAD_JOURNAL} in the persistent storage directory. It starts with a header of {@value #HEADER_LENGTH} bytes, "TSE-WAL1"
+ * and the version of the format. Each record consists of its length as an int, the type as a byte, the content and the CRC32 of type and content.
+ * A record that is cut off or whose checksum does not match ends the journal.<br>
+ * The records are written without forcing them to the disc, so they survive if the process dies. Whether they also survive a crash of the operating
+ * system depends on {@linkplain main.java.de.bsi.tsesimulator.constants.ConfigConstants#CFG_TAG_STORAGE_SYNC}: the Storage calls {@linkplain #force()}
+ * before it writes log messages that have to be forced to the disc.<br>
+ * When the journal grows beyond {@value #MAX_SIZE} bytes, it is started anew with a checkpoint and the log messages that are still being written.
+ *
+ * @since 1.6
+ */
+public class WriteAheadJournal {
+	/**
+	 * The size in bytes above which the journal is started anew.
+	 */
+	static final long MAX_SIZE = 16L * 1024 * 1024;
+
+	private static final int HEADER_LENGTH = 16;
+	private static final long MAGIC = 0x5453452D57414C31L;		//"TSE-WAL1"
+	private static final int VERSION = 1;
+	private static final int MAX_RECORD_LENGTH = Integer.MAX_VALUE - 16;
+
+	private static final byte RECORD_CHECKPOINT = 1;
+	private static final byte RECORD_RESERVED = 2;
+	private static final byte RECORD_LOG_MESSAGE = 3;
+	private static final byte RECORD_COMMITTED = 4;
+
+	/**
+	 * A log message recorded in the journal whose file was not recorded as written.
+	 * @since 1.6
+	 */
+	public static final class UnfinishedLogMessage {
+		private final String fileName;
+		private final long signatureCounter;
+		private final long logTime;
+		private final long transactionNumber;
+		private final EncodedSegments logMessage;
+
+		private UnfinishedLogMessage(String fileName, long signatureCounter, long logTime, long transactionNumber, EncodedSegments logMessage) {
+			this.fileName = fileName;
+			this.signatureCounter = signatureCounter;
+			this.logTime = logTime;
+			this.transactionNumber = transactionNumber;
+			this.logMessage = logMessage;
+		}
+
+		/**
+		 * @return the file name the log message was stored under, without a possible "_Fc-y" part
+		 */
+		public String getFileName() {
+			return fileName;
+		}
+
+		/**
+		 * @return the signature counter of the log message
+		 */
+		public long getSignatureCounter() {
+			return signatureCounter;
+		}
+
+		/**
+		 * @return the log time of the log message in Unix time
+		 */
+		public long getLogTime() {
+			return logTime;
+		}
+
+		/**
+		 * @return the transaction number of a transaction log, -1 for other log messages
+		 */
+		public long getTransactionNumber() {
+			return transactionNumber;
+		}
+
+		/**
+		 * @return the DER encoding of the whole log message
+		 */
+		public byte[] getLogMessage() {
+			return logMessage.toByteArray();
+		}
+	}
+
+	/**
+	 * The result of reading the journal when the simulator is started.
+	 * @since 1.6
+	 */
+	public static final class Recovery {
+		private final PersistedValues values;
+		private final List<UnfinishedLogMessage> unfinishedLogMessages;
+		private final List<Long> lostSignatureCounters;
+		private final boolean cutOff;
+
+		private Recovery(PersistedValues values, List<UnfinishedLogMessage> unfinishedLogMessages, List<Long> lostSignatureCounters, boolean cutOff) {
+			this.values = values;
+			this.unfinishedLogMessages = unfinishedLogMessages;
+			this.lostSignatureCounters = lostSignatureCounters;
+			this.cutOff = cutOff;
+		}
+
+		/**
+		 * @return the persisted values the simulator shall continue with: the signature counter and the transaction number are at least the largest ones
+		 * recorded in the journal, the clock at least the largest log time. Null, if neither persisted values nor a journal exist.
+		 */
+		public PersistedValues getValues() {
+			return values;
+		}
+
+		/**
+		 * @return the log messages that were recorded before they were written, but not recorded as written, in the order of the journal
+		 */
+		public List<UnfinishedLogMessage> getUnfinishedLogMessages() {
+			return unfinishedLogMessages;
+		}
+
+		/**
+		 * @return the signature counters that were reserved without a log message being recorded, e.g. because the simulator died while signing.
+		 * They are not used again.
+		 */
+		public List<Long> getLostSignatureCounters() {
+			return lostSignatureCounters;
+		}
+
+		/**
+		 * @return true, if the last record of the journal was incomplete or damaged and has been ignored
+		 */
+		public boolean wasCutOff() {
+			return cutOff;
+		}
+	}
+
+	private final File file;
+	private final long maxSize;
+	private FileChannel channel;											//null until the journal is started
+	private long end;														//the size of the journal
+	private IOException failure;											//set if a record could not be written by a method that does not throw
+	private ByteBuffer pendingCommits = ByteBuffer.allocate(1024);			//COMMITTED records, written together with the next record
+
+	private PersistedValues state;											//the values of the last checkpoint
+	private long largestSignatureCounter;
+	private long largestTransactionNumber;
+	private long largestLogTime;
+	private final Map<Long, UnfinishedLogMessage> unfinished = new LinkedHashMap<Long, UnfinishedLogMessage>();	//recorded, not yet written
+
+	/**
+	 * Creates a journal without reading or writing the file. {@linkplain #recover(PersistedValues)} and {@linkplain #start(PersistedValues)} have to be
+	 * called before records are written.
+	 * @param directory the persistent storage directory
+	 */
+	public WriteAheadJournal(File directory) {
+		this(new File(directory, Constants.FILE_NAME_WRITE_AHEAD_JOURNAL), MAX_SIZE);
+	}
+
+	/**
+	 * @param file the journal file
+	 * @param maxSize the size in bytes above which the journal is started anew
+	 */
+	WriteAheadJournal(File file, long maxSize) {
+		this.file = file;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Reads the journal left behind by the last run of the simulator. The records after the last checkpoint are combined with the persisted values
+	 * read from persistentValues.ser: the signature counter, the transaction number and the clock are the largest of both, the TSE is initialized or
+	 * disabled if one of them says so. Records after an incomplete or damaged record are ignored.
+	 * @param persistedValues the values read from persistentValues.ser, or null if there is no such file
+	 * @return the values to continue with and the log messages that may have to be written again
+	 * @throws IOException if the journal exists but can not be read
+	 */
+	public synchronized Recovery recover(PersistedValues persistedValues) throws IOException {
+		PersistedValues checkpoint = null;
+		long signatureCounter = -1;
+		long transactionNumber = -1;
+		long logTime = -1;
+		Map<Long, UnfinishedLogMessage> logMessages = new LinkedHashMap<Long, UnfinishedLogMessage>();
+		Set<Long> reserved = new TreeSet<Long>();
+		Set<Long> committed = new HashSet<Long>();
+		boolean cutOff = false;
+		long position = 0;
+
+		//1. read the records until the end of the file or until a record is damaged
+		if(file.exists()) {
+			try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+				if((in.readLong() != MAGIC) || (in.readInt() != VERSION)) {
+					throw new IOException("The file " +file.getName() +" is not a write-ahead journal.");
+				}
+				in.readInt();				//reserved
+				position = HEADER_LENGTH;
+				CRC32 crc = new CRC32();
+				while(true) {
+					int recordLength = in.readInt();
+					if((recordLength < 1) || (recordLength > MAX_RECORD_LENGTH) || (recordLength > file.length())) {
+						cutOff = true;
+						break;
+					}
+					byte[] record = new byte[recordLength];
+					in.readFully(record);
+					int checksum = in.readInt();
+					crc.reset();
+					crc.update(record, 0, record.length);
+					if((int) crc.getValue() != checksum) {
+						cutOff = true;
+						break;
+					}
+					position += 4 + recordLength + 4;
+
+					//2. evaluate the record
+					ByteBuffer content = ByteBuffer.wrap(record, 1, record.length - 1);
+					switch(record[0]) {
+						case RECORD_CHECKPOINT:
+							checkpoint = readCheckpoint(content);
+							break;
+						case RECORD_RESERVED: {
+							long reservedSignatureCounter = content.getLong();
+							reserved.add(Long.valueOf(reservedSignatureCounter));
+							signatureCounter = Math.max(signatureCounter, reservedSignatureCounter);
+							logTime = Math.max(logTime, content.getLong());
+							break;
+						}
+						case RECORD_LOG_MESSAGE: {
+							long logSignatureCounter = content.getLong();
+							long logLogTime = content.getLong();
+							long logTransactionNumber = content.getLong();
+							byte[] fileNameBytes = new byte[content.getShort() & 0xFFFF];
+							content.get(fileNameBytes);
+							byte[] logMessage = new byte[content.remaining()];
+							content.get(logMessage);
+							logMessages.put(Long.valueOf(logSignatureCounter), new UnfinishedLogMessage(new String(fileNameBytes, StandardCharsets.UTF_8),
+									logSignatureCounter, logLogTime, logTransactionNumber, EncodedSegments.of(logMessage)));
+							signatureCounter = Math.max(signatureCounter, logSignatureCounter);
+							transactionNumber = Math.max(transactionNumber, logTransactionNumber);
+							logTime = Math.max(logTime, logLogTime);
+							break;
+						}
+						case RECORD_COMMITTED:
+							committed.add(Long.valueOf(content.getLong()));
+							break;
+						default:
+							cutOff = true;
+					}
+					if(cutOff) {
+						break;
+					}
+				}
+			} catch (EOFException e) {
+				//the journal ends here. A record that was cut off while it was written is ignored
+				cutOff = position < file.length();
+			}
+		}
+
+		//3. the log messages that were not written completely and the signature counters that were never used for a log message
+		List<UnfinishedLogMessage> unfinishedLogMessages = new ArrayList<UnfinishedLogMessage>();
+		for(UnfinishedLogMessage logMessage : logMessages.values()) {
+			if(!committed.contains(Long.valueOf(logMessage.signatureCounter))) {
+				unfinishedLogMessages.add(logMessage);
+			}
+		}
+		List<Long> lostSignatureCounters = new ArrayList<Long>();
+		for(Long reservedSignatureCounter : reserved) {
+			if(!logMessages.containsKey(reservedSignatureCounter) && !committed.contains(reservedSignatureCounter)) {
+				lostSignatureCounters.add(reservedSignatureCounter);
+			}
+		}
+
+		//4. combine the values of the journal with the persisted ones
+		PersistedValues values = combine(persistedValues, checkpoint);
+		if((values == null) && (signatureCounter >= 0)) {
+			values = new PersistedValues(logTime, false, false, 0, 0, null);
+		}
+		if(values != null) {
+			values = new PersistedValues(Math.max(values.getCryptoCoreClockStatus(), logTime), values.getTseIsInitialized(), values.getSeIsDisabled(),
+					Math.max(values.getSignatureCounterStatus(), signatureCounter), Math.max(values.getTransactionNumberStatus(), transactionNumber),
+					values.getDescriptionOfTheSEAPI());
+		}
+		return new Recovery(values, Collections.unmodifiableList(unfinishedLogMessages), Collections.unmodifiableList(lostSignatureCounters), cutOff);
+	}
+
+	/**
+	 * Starts a new journal with a checkpoint of the given values. The old journal is replaced at once, after the new one has been forced to the disc.
+	 * Has to be called after the log messages returned by {@linkplain #recover(PersistedValues)} have been written.
+	 * @param values the values the simulator continues with
+	 * @throws IOException if the journal can not be written
+	 */
+	public synchronized void start(PersistedValues values) throws IOException {
+		unfinished.clear();
+		failure = null;
+		largestSignatureCounter = values.getSignatureCounterStatus();
+		largestTransactionNumber = values.getTransactionNumberStatus();
+		largestLogTime = values.getCryptoCoreClockStatus();
+		checkpoint(values);
+	}
+
+	/**
+	 * Records a signature counter that has been reserved for a log message. Does not throw if the record can not be written, the next call of
+	 * {@linkplain #logMessage(String, long, long, long, EncodedSegments)} does.
+	 * @param signatureCounter the reserved signature counter
+	 * @param logTime the log time reserved with it, in Unix time
+	 */
+	public synchronized void reserved(long signatureCounter, long logTime) {
+		if(channel == null) {
+			return;
+		}
+		largestSignatureCounter = Math.max(largestSignatureCounter, signatureCounter);
+		largestLogTime = Math.max(largestLogTime, logTime);
+		ByteBuffer content = ByteBuffer.allocate(16);
+		content.putLong(signatureCounter).putLong(logTime);
+		content.flip();
+		writeWithoutThrowing(RECORD_RESERVED, content);
+	}
+
+	/**
+	 * Records a log message before it is written to the storage. If the journal has grown too big, it is started anew first.
+	 * @param fileName the file name the log message is stored under
+	 * @param signatureCounter the signature counter of the log message
+	 * @param logTime the log time of the log message in Unix time
+	 * @param transactionNumber the transaction number of a transaction log, -1 for other log messages
+	 * @param logMessage the whole log message with the SEQUENCE wrapper
+	 * @throws IOException if the record, or an earlier one, could not be written
+	 */
+	public synchronized void logMessage(String fileName, long signatureCounter, long logTime, long transactionNumber, EncodedSegments logMessage)
+			throws IOException {
+		if(channel == null) {
+			throw new IOException("The write-ahead journal has not been started.");
+		}
+		if(failure != null) {
+			throw failure;
+		}
+		if(end > maxSize) {
+			checkpoint(state);
+		}
+		UnfinishedLogMessage unfinishedLogMessage = new UnfinishedLogMessage(fileName, signatureCounter, logTime, transactionNumber, logMessage);
+		try {
+			writeLogMessage(channel, unfinishedLogMessage);
+		} catch (IOException e) {
+			failure = e;
+			throw e;
+		}
+		unfinished.put(Long.valueOf(signatureCounter), unfinishedLogMessage);
+		largestSignatureCounter = Math.max(largestSignatureCounter, signatureCounter);
+		largestTransactionNumber = Math.max(largestTransactionNumber, transactionNumber);
+		largestLogTime = Math.max(largestLogTime, logTime);
+	}
+
+	/**
+	 * Records that a log message has been written completely. The record is not written on its own, but together with the next record, so that a 
+	 * transaction costs two writes to the journal instead of three. If the simulator stops before, the log message is only checked once more when 
+	 * the simulator is started the next time.
+	 * @param signatureCounter the signature counter of the log message
+	 */
+	public synchronized void committed(long signatureCounter) {
+		if((channel == null) || (unfinished.remove(Long.valueOf(signatureCounter)) == null)) {
+			return;
+		}
+		ByteBuffer content = ByteBuffer.allocate(8);
+		content.putLong(signatureCounter);
+		content.flip();
+		ByteBuffer[] record = encodeRecord(RECORD_COMMITTED, content);
+		int recordLength = 0;
+		for(ByteBuffer buffer : record) {
+			recordLength += buffer.remaining();
+		}
+		if(pendingCommits.remaining() < recordLength) {
+			ByteBuffer biggerPendingCommits = ByteBuffer.allocate(2 * pendingCommits.capacity());
+			pendingCommits.flip();
+			biggerPendingCommits.put(pendingCommits);
+			pendingCommits = biggerPendingCommits;
+		}
+		for(ByteBuffer buffer : record) {
+			pendingCommits.put(buffer);
+		}
+	}
+
+	/**
+	 * Forces the records written so far to the disc. Records can be written by other threads in the meantime, they are not blocked while the disc
+	 * is busy.
+	 * @throws IOException if forcing fails
+	 */
+	public void force() throws IOException {
+		FileChannel current;
+		synchronized(this) {
+			current = channel;
+		}
+		if(current == null) {
+			return;
+		}
+		try {
+			current.force(false);
+		} catch (ClosedChannelException e) {
+			//the journal has been started anew in the meantime, the new journal was forced when it was created
+		}
+	}
+
+	/**
+	 * Starts the journal anew with a checkpoint of the given values. The log messages that have been recorded but not yet written are copied to the new
+	 * journal. Used when the state of the TSE changes and at a graceful shutdown.
+	 * @param values the values of the simulator. The signature counter, the transaction number and the clock are raised to the largest ones recorded
+	 * since the journal was started.
+	 * @throws IOException if the new journal can not be written. The old one is kept then.
+	 */
+	public synchronized void checkpoint(PersistedValues values) throws IOException {
+		PersistedValues checkpoint = new PersistedValues(Math.max(values.getCryptoCoreClockStatus(), largestLogTime), values.getTseIsInitialized(),
+				values.getSeIsDisabled(), Math.max(values.getSignatureCounterStatus(), largestSignatureCounter),
+				Math.max(values.getTransactionNumberStatus(), largestTransactionNumber), values.getDescriptionOfTheSEAPI());
+		File newFile = new File(file.getParentFile(), file.getName() +".tmp");
+		if(!file.getParentFile().exists()) {
+			file.getParentFile().mkdirs();
+		}
+
+		//1. write the header, the checkpoint and the unfinished log messages to a new file and force it to the disc
+		FileChannel newChannel = FileChannel.open(newFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+			header.putLong(MAGIC).putInt(VERSION).putInt(0);
+			header.flip();
+			while(header.hasRemaining()) {
+				newChannel.write(header);
+			}
+			writeRecord(newChannel, RECORD_CHECKPOINT, writeCheckpoint(checkpoint));
+			for(UnfinishedLogMessage unfinishedLogMessage : unfinished.values()) {
+				writeLogMessage(newChannel, unfinishedLogMessage);
+			}
+			newChannel.force(true);
+		} catch (IOException e) {
+			newChannel.close();
+			newFile.delete();
+			throw e;
+		}
+
+		//2. replace the old journal
+		try {
+			Files.move(newFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			newChannel.close();
+			newFile.delete();
+			throw e;
+		}
+		GroupCommitWriter.forceDirectory(file.getParentFile());
+		if(channel != null) {
+			channel.close();
+		}
+		channel = newChannel;
+		end = newChannel.position();
+		state = checkpoint;
+		failure = null;
+		pendingCommits.clear();				//the new journal only contains the log messages that have not been written
+	}
+
+	/**
+	 * Closes the journal. Nothing is recorded afterwards until {@linkplain #start(PersistedValues)} is called.
+	 */
+	public synchronized void close() {
+		if(channel != null) {
+			try {
+				writeRecords(channel);
+				channel.close();
+			} catch (IOException e) {
+				//the records have been written, closing does not change them
+			}
+		}
+		channel = null;
+	}
+
+	/**
+	 * Deletes the journal, e.g. together with the persisted values.
+	 * @param directory the persistent storage directory
+	 */
+	public static void delete(File directory) {
+		File journal = new File(directory, Constants.FILE_NAME_WRITE_AHEAD_JOURNAL);
+		if(journal.exists()) {
+			journal.delete();
+		}
+	}
+
+	//-----------------------------------INTERNAL METHODS------------------------------------------------------------------
+
+	/**
+	 * Combines the persisted values with the ones of the last checkpoint in the journal. Either may be null.
+	 */
+	private static PersistedValues combine(PersistedValues persistedValues, PersistedValues checkpoint) {
+		if(checkpoint == null) {
+			return persistedValues;
+		}
+		if(persistedValues == null) {
+			return checkpoint;
+		}
+		String description = (persistedValues.getDescriptionOfTheSEAPI() != null) ? persistedValues.getDescriptionOfTheSEAPI()
+				: checkpoint.getDescriptionOfTheSEAPI();
+		return new PersistedValues(Math.max(persistedValues.getCryptoCoreClockStatus(), checkpoint.getCryptoCoreClockStatus()),
+				persistedValues.getTseIsInitialized() || checkpoint.getTseIsInitialized(), persistedValues.getSeIsDisabled() || checkpoint.getSeIsDisabled(),
+				Math.max(persistedValues.getSignatureCounterStatus(), checkpoint.getSignatureCounterStatus()),
+				Math.max(persistedValues.getTransactionNumberStatus(), checkpoint.getTransactionNumberStatus()), description);
+	}
+
+	private void writeWithoutThrowing(byte type, ByteBuffer content) {
+		if(failure != null) {
+			return;
+		}
+		try {
+			writeRecord(channel, type, content);
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	private void writeLogMessage(FileChannel target, UnfinishedLogMessage logMessage) throws IOException {
+		byte[] fileNameBytes = logMessage.fileName.getBytes(StandardCharsets.UTF_8);
+		if(fileNameBytes.length > 0xFFFF) {
+			throw new IOException("The file name of the log message is too long: " +logMessage.fileName);
+		}
+		if(1L + 24 + 2 + fileNameBytes.length + logMessage.logMessage.getLength() > MAX_RECORD_LENGTH) {
+			throw new IOException("The log message is too long to be written to the write-ahead journal.");
+		}
+		ByteBuffer head = ByteBuffer.allocate(24 + 2 + fileNameBytes.length);
+		head.putLong(logMessage.signatureCounter).putLong(logMessage.logTime).putLong(logMessage.transactionNumber);
+		head.putShort((short) fileNameBytes.length).put(fileNameBytes);
+		head.flip();
+		ByteBuffer[] logMessageSegments = logMessage.logMessage.getSegments();
+		ByteBuffer[] content = new ByteBuffer[logMessageSegments.length + 1];
+		content[0] = head;
+		System.arraycopy(logMessageSegments, 0, content, 1, logMessageSegments.length);
+		writeRecord(target, RECORD_LOG_MESSAGE, content);
+	}
+
+	private void writeRecord(FileChannel target, byte type, ByteBuffer... content) throws IOException {
+		writeRecords(target, encodeRecord(type, content));
+	}
+
+	/**
+	 * @return the length, the type, the content and the checksum of a record, ready for a gathering write
+	 */
+	private static ByteBuffer[] encodeRecord(byte type, ByteBuffer... content) {
+		//the checksum is calculated on duplicates, so the buffers can be written afterwards
+		long contentLength = 0;
+		CRC32 crc = new CRC32();
+		crc.update(type);
+		for(ByteBuffer buffer : content) {
+			contentLength += buffer.remaining();
+			crc.update(buffer.duplicate());
+		}
+		ByteBuffer[] buffers = new ByteBuffer[content.length + 2];
+		buffers[0] = ByteBuffer.allocate(5);
+		buffers[0].putInt((int) contentLength + 1).put(type);
+		buffers[0].flip();
+		System.arraycopy(content, 0, buffers, 1, content.length);
+		buffers[buffers.length - 1] = ByteBuffer.allocate(4);
+		buffers[buffers.length - 1].putInt((int) crc.getValue());
+		buffers[buffers.length - 1].flip();
+		return buffers;
+	}
+
+	/**
+	 * Writes records with one gathering write. The COMMITTED records that are waiting are written in front of them, if the target is the journal.
+	 * If the write fails, the journal is cut back to the end of the last record.
+	 */
+	private void writeRecords(FileChannel target, ByteBuffer... record) throws IOException {
+		ByteBuffer[] buffers = record;
+		boolean withPendingCommits = (target == channel) && (pendingCommits.position() > 0);
+		if(withPendingCommits) {
+			buffers = new ByteBuffer[record.length + 1];
+			ByteBuffer pending = pendingCommits.duplicate();
+			pending.flip();
+			buffers[0] = pending;
+			System.arraycopy(record, 0, buffers, 1, record.length);
+		}
+		long remaining = 0;
+		for(ByteBuffer buffer : buffers) {
+			remaining += buffer.remaining();
+		}
+		long start = target.position();
+		try {
+			while(remaining > 0) {
+				remaining -= target.write(buffers);
+			}
+		} catch (IOException e) {
+			try {
+				target.truncate(start);
+				target.position(start);
+			} catch (IOException e2) {
+				//the incomplete record is ignored by the next recovery
+			}
+			throw e;
+		}
+		if(withPendingCommits) {
+			pendingCommits.clear();
+		}
+		if(target == channel) {
+			end = target.position();
+		}
+	}
+
+	private static ByteBuffer writeCheckpoint(PersistedValues values) {
+		byte[] description = (values.getDescriptionOfTheSEAPI() == null) ? null : values.getDescriptionOfTheSEAPI().getBytes(StandardCharsets.UTF_8);
+		ByteBuffer content = ByteBuffer.allocate(8 + 8 + 8 + 1 + 1 + 4 + ((description == null) ? 0 : description.length));
+		content.putLong(values.getCryptoCoreClockStatus()).putLong(values.getSignatureCounterStatus()).putLong(values.getTransactionNumberStatus());
+		content.put((byte) (values.getTseIsInitialized() ? 1 : 0)).put((byte) (values.getSeIsDisabled() ? 1 : 0));
+		if(description == null) {
+			content.putInt(-1);
+		}
+		else {
+			content.putInt(description.length).put(description);
+		}
+		content.flip();
+		return content;
+	}
+
+	private static PersistedValues readCheckpoint(ByteBuffer content) {
+		long clock = content.getLong();
+		long signatureCounter = content.getLong();
+		long transactionNumber = content.getLong();
+		boolean initialized = content.get() != 0;
+		boolean disabled = content.get() != 0;
+		int descriptionLength = content.getInt();
+		String description = null;
+		if(descriptionLength >= 0) {
+			byte[] descriptionBytes = new byte[descriptionLength];
+			content.get(descriptionBytes);
+			description = new String(descriptionBytes, StandardCharsets.UTF_8);
+		}
+		return new PersistedValues(clock, initialized, disabled, signatureCounter, transactionNumber, description);
+	}
+}
@@ -0,0 +1,186 @@
+package main.java.de.bsi.tsesimulator.utils;
+
+import java.util.Arrays;
+
+/**
+ * A hash map with primitive long keys that uses open addressing with linear probing. Unlike a <i>Map&lt;Long, V&gt;</i> it does not create a
+ * Long and an entry object for every key, the keys and values are stored in two arrays.<br>
+ * null values are not supported, a slot without value is a free slot. The map is not thread-safe, the caller has to synchronize the access.
+ *
+ * @param <V> the type of the values
+ * @since 1.6
+ */
+public final class LongHashMap<V> {
+	private static final int MINIMUM_CAPACITY = 16;
+
+	private long[] keys;
+	private Object[] values;			//null marks a free slot
+	private int size;
+	private int mask;					//capacity - 1, the capacity is always a power of 2
+
+	/**
+	 * Creates an empty map.
+	 * @param expectedSize the number of entries the map shall hold without growing
+	 * @since 1.6
+	 */
+	public LongHashMap(int expectedSize) {
+		//at most half of the slots are used, so the probe sequences stay short
+		int capacity = MINIMUM_CAPACITY;
+		while((capacity < (1 << 30)) && (capacity / 2 < expectedSize)) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	/**
+	 * @param key the key
+	 * @return the value stored for the key, or null if there is none
+	 * @since 1.6
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int slot = findSlot(key);
+		return (V) values[slot];
+	}
+
+	/**
+	 * @param key the key
+	 * @return true, if a value is stored for the key
+	 * @since 1.6
+	 */
+	public boolean containsKey(long key) {
+		return values[findSlot(key)] != null;
+	}
+
+	/**
+	 * Stores a value for the key and replaces the old value, if there is one.
+	 * @param key the key
+	 * @param value the value, must not be null
+	 * @return the old value, or null if there was none
+	 * @throws NullPointerException if value is null
+	 * @since 1.6
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if(value == null) {
+			throw new NullPointerException("LongHashMap does not support null values");
+		}
+		int slot = findSlot(key);
+		V oldValue = (V) values[slot];
+		keys[slot] = key;
+		values[slot] = value;
+		if(oldValue == null) {
+			size++;
+			//keep at most half of the slots used
+			if(size > (mask + 1) / 2) {
+				rehash((mask + 1) << 1);
+			}
+		}
+		return oldValue;
+	}
+
+	/**
+	 * Removes the value stored for the key.
+	 * @param key the key
+	 * @return the removed value, or null if there was none
+	 * @since 1.6
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int slot = findSlot(key);
+		V oldValue = (V) values[slot];
+		if(oldValue == null) {
+			return null;
+		}
+		values[slot] = null;
+		size--;
+
+		//move the following entries of the probe sequence back, so that no entry is behind a free slot that is not its own
+		int free = slot;
+		int current = (slot + 1) & mask;
+		while(values[current] != null) {
+			int home = hash(keys[current]);
+			//the entry may be moved to the free slot if its home slot is not between the free slot and its current slot (cyclically)
+			if(((current - home) & mask) >= ((current - free) & mask)) {
+				keys[free] = keys[current];
+				values[free] = values[current];
+				values[current] = null;
+				free = current;
+			}
+			current = (current + 1) & mask;
+		}
+		return oldValue;
+	}
+
+	/**
+	 * @return the number of entries
+	 * @since 1.6
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return a new array with all keys, in no particular order
+	 * @since 1.6
+	 */
+	public long[] keys() {
+		long[] result = new long[size];
+		int index = 0;
+		for(int slot = 0; slot < values.length; slot++) {
+			if(values[slot] != null) {
+				result[index++] = keys[slot];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Removes all entries. The capacity is kept.
+	 * @since 1.6
+	 */
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	//-----------------------------------INTERNAL METHODS------------------------------------------------------------------
+
+	/**
+	 * @return the slot that holds the key, or the free slot where the probe sequence of the key ends
+	 */
+	private int findSlot(long key) {
+		int slot = hash(key);
+		while((values[slot] != null) && (keys[slot] != key)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Spreads the bits of the key, transaction numbers and signature counters are consecutive and would otherwise fill neighbouring slots.
+	 */
+	private int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	private void rehash(int newCapacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(newCapacity);
+		for(int slot = 0; slot < oldValues.length; slot++) {
+			if(oldValues[slot] != null) {
+				int newSlot = findSlot(oldKeys[slot]);
+				keys[newSlot] = oldKeys[slot];
+				values[newSlot] = oldValues[slot];
+			}
+		}
+	}
+}
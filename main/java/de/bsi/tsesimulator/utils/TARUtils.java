@@ -9,7 +9,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
-import org.apache.commons.compress.archivers.ArchiveOutputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.commons.compress.utils.IOUtils;
@@ -39,14 +38,33 @@ public class TARUtils {
 	 */
 	public static void createTARArchiveForExportData(File infoFile, File[] logfilesToBeExported, String[] logfileFileNames, File[] certificatefilesToBeExported, 
 			String[] certificateFileNames,long desiredMTime) throws IOException {	
+		createTARArchiveForExportData(infoFile, logfilesToBeExported, logfileFileNames, certificatefilesToBeExported, certificateFileNames, desiredMTime, null);
+	}
+	
+	/**
+	 * Same as {@linkplain #createTARArchiveForExportData(File, File[], String[], File[], String[], long)}, but the content of the logfiles is read
+	 * from a {@linkplain LogfileSource}, e.g. if the log messages are not stored in files of their own. The entries of the logfiles get the same names,
+	 * sizes and attributes as with files, so the TAR archive does not change.
+	 * @param infoFile info.csv file a a Java File object
+	 * @param logfilesToBeExported an array of the logfiles that are to be exported
+	 * @param logfileFileNames an array containing the names of said logfiles. Has to be in the same order as the logfiles in the logfilesToBeExported array
+	 * @param certificatefilesToBeExported an array of all certificate files used by the TSE-Simulator
+	 * @param certificateFileNames an array containing the names of said certificate files. Has to be in the same order as the certificate files in the certificatefilesToBeExported array
+	 * @param desiredMTime the time the archive was created, in this case, the export operation was started
+	 * @param logfileSource where the content of the logfiles is read from. If null, the logfiles are read as files.
+	 * @throws IOException if either reading the content of a file fails and/or if writing to the TAR archive file fails.
+	 * @since 1.6
+	 */
+	public static void createTARArchiveForExportData(File infoFile, File[] logfilesToBeExported, String[] logfileFileNames, File[] certificatefilesToBeExported, 
+			String[] certificateFileNames, long desiredMTime, LogfileSource logfileSource) throws IOException {	
 		//create the file that shall store the tar archive
 		File tarArchiveFile = new File(PropertyValues.getInstance().getPathToNormalStorage(), Constants.FILE_NAME_EXPORT_LOGS_TAR);
 		//check if that file already exists, if yes, delete
 		if(tarArchiveFile.exists()) {
 			tarArchiveFile.delete();
 		}
-		//create an ArchiveOutputStream to the tar file
-		ArchiveOutputStream outToTAR = new TarArchiveOutputStream(new FileOutputStream(tarArchiveFile));
+		//create a TarArchiveOutputStream to the tar file
+		TarArchiveOutputStream outToTAR = new TarArchiveOutputStream(new FileOutputStream(tarArchiveFile));
 		
 		//create an ArchiveEntry for the info.csv file and name it info.csv in the TAR archive (do not use the whole path name!)
 		TarArchiveEntry infoEntry = new TarArchiveEntry(infoFile, Constants.FILE_NAME_INFO_CSV);
@@ -64,6 +82,19 @@ public class TARUtils {
 			int fileLoopVar = 0;
 			//iterate through the logFilesToBeExported
 			for(File logfile : logfilesToBeExported) {
+				//log messages that are not stored in files of their own are read from the source
+				if(logfileSource != null) {
+					//the entry takes its attributes from a file of the source and gets the size of the content
+					byte[] logfileContent = logfileSource.read(logfile);
+					TarArchiveEntry logfileEntry = new TarArchiveEntry(logfileSource.getAttributeFile(logfile), logfileFileNames[fileLoopVar]);
+					logfileEntry.setSize(logfileContent.length);
+					logfileEntry.setModTime((desiredMTime*1000));
+					outToTAR.putArchiveEntry(logfileEntry);
+					outToTAR.write(logfileContent);
+					outToTAR.closeArchiveEntry();
+					fileLoopVar ++;
+					continue;
+				}
 				//create archive entries for each logfile to be exported in the same manner as above
 				TarArchiveEntry logfileEntry = new TarArchiveEntry(logfile, logfileFileNames[fileLoopVar]);
 				logfileEntry.setModTime((desiredMTime*1000));
@@ -122,8 +153,8 @@ public class TARUtils {
 		if(tarArchiveFile.exists()) {
 			tarArchiveFile.delete();
 		}
-		//create an ArchiveOutputStream to the tar file
-		ArchiveOutputStream outToTAR = new TarArchiveOutputStream(new FileOutputStream(tarArchiveFile));
+		//create a TarArchiveOutputStream to the tar file
+		TarArchiveOutputStream outToTAR = new TarArchiveOutputStream(new FileOutputStream(tarArchiveFile));
 				
 		//write all the certificate files to the TAR archive
 		int fileLoopVar = 0;
@@ -147,6 +178,25 @@ public class TARUtils {
 	outToTAR.finish();
 	outToTAR.close();
 	}
-
 	
+	/**
+	 * Gives access to logfiles that are not stored as files of their own, see
+	 * {@linkplain TARUtils#createTARArchiveForExportData(File, File[], String[], File[], String[], long, LogfileSource)}.
+	 * @since 1.6
+	 */
+	public interface LogfileSource {
+		/**
+		 * @param logfile a logfile that shall be exported
+		 * @return the content of the logfile
+		 * @throws IOException if the content can not be read
+		 */
+		byte[] read(File logfile) throws IOException;
+		
+		/**
+		 * @param logfile a logfile that shall be exported
+		 * @return an existing file whose owner and permissions the entry of the logfile in the TAR archive shall get
+		 * @throws IOException if the logfile can not be looked up
+		 */
+		File getAttributeFile(File logfile) throws IOException;
+	}
 }
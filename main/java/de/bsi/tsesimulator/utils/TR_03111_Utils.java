@@ -34,30 +34,52 @@ public class TR_03111_Utils {
 	 * @since 1.0
 	 */
 	public static byte[] I2OS(BigInteger x, int length) throws TR_03111_ECC_V2_1_Exception {
-		if(x.compareTo(BigInteger.ZERO) < 0) {
+		//create what will be returned and let the buffer variant fill it
+		byte[] toBeReturned = new byte[length];
+		I2OS(x, toBeReturned, 0, length);
+		return toBeReturned;
+	}
+	
+	/**
+	 * Variant of {@linkplain #I2OS(BigInteger, int)} that writes the octet string into a buffer supplied by the caller instead of creating a new array.
+	 * The octet string is written big endian and padded with zeroes from the left, so that exactly length bytes are written.<br>
+	 * The only array that is created is the one returned by {@linkplain BigInteger#toByteArray()}, BigInteger does not offer a way to avoid it.
+	 * @param x a positive BigInteger to be converted.
+	 * @param out the buffer the octet string is written into
+	 * @param offset the position in out where the octet string starts
+	 * @param length the desired length of the octet string.
+	 * @throws TR_03111_ECC_V2_1_Exception if x is negative or the desired length of the octet string is too short for x.
+	 * @since 1.6
+	 */
+	public static void I2OS(BigInteger x, byte[] out, int offset, int length) throws TR_03111_ECC_V2_1_Exception {
+		if(x.signum() < 0) {
 			throw new TR_03111_ECC_V2_1_Exception("x has to be positive in order to be converted!");
 		}
-		
-		BigInteger limit = new BigInteger("256");
-		limit = limit.pow(length);
-		
-		if(x.compareTo(limit) >= 0) {
+		//256^length > x is the same as: x has at most 8*length bits. This check does not need to calculate 256^length.
+		if(x.bitLength() > (8 * length)) {
 			throw new TR_03111_ECC_V2_1_Exception("Length l has to satisfy 256^l > x.");
 		}
 		
-		//create what will be returned
-		byte[] toBeReturned = new byte[length];
-		byte nothing = 0;
-		Arrays.fill(toBeReturned, nothing);
-		
-		//convert the BigInteger into a byte array
+		//convert the BigInteger into a byte array, it may contain one leading sign byte that is 0
 		byte[] xAsByteArray = x.toByteArray();
+		int bytesOfX = Math.min(xAsByteArray.length, length);
 		
-		//go from the lsb to the msb through x and assign the lsb of x to the lsb of toBeReturned, ...
-		for(int positionsGoneLeft = 0; (positionsGoneLeft <= xAsByteArray.length-1) && (positionsGoneLeft <= toBeReturned.length-1); positionsGoneLeft++) {
-			toBeReturned[toBeReturned.length-1-positionsGoneLeft] = xAsByteArray[xAsByteArray.length-1-positionsGoneLeft];
-		}
-		return toBeReturned;
+		//pad with zeroes from the left, then copy the least significant bytes of x to the end of the octet string
+		Arrays.fill(out, offset, offset + length - bytesOfX, (byte) 0);
+		System.arraycopy(xAsByteArray, xAsByteArray.length - bytesOfX, out, offset + length - bytesOfX, bytesOfX);
+	}
+	
+	/**
+	 * Calculates l = roundedUp(log256(x)), the number of octets needed to represent x. Used for the length of field elements (x = p) and of the 
+	 * components r and s of a signature (x = n).<br>
+	 * Calculated exactly from the bit length of x instead of with floating point logarithms. For the values it is meant for, primes and orders of 
+	 * base points, which are never a power of 256, the result is the same.
+	 * @param x a positive BigInteger, e.g. the prime p or the order n
+	 * @return the number of octets of x
+	 * @since 1.6
+	 */
+	public static int octetLength(BigInteger x) {
+		return (x.bitLength() + 7) / 8;
 	}
 	
 	
@@ -121,6 +143,26 @@ public class TR_03111_Utils {
 	}
 	
 	
+	/**
+	 * Variant of {@linkplain #OS2BigInt(byte[])} that reads the octet string from a part of a bigger array, e.g. r or s out of a signature.
+	 * @param octetString a byte array containing the octet string
+	 * @param offset the position of the most significant byte of the octet string
+	 * @param length the length of the octet string
+	 * @return a positive BigInteger representing the octet string
+	 * @since 1.6
+	 */
+	public static BigInteger OS2BigInt(byte[] octetString, int offset, int length) {
+		if(length == 0) {
+			return BigInteger.ZERO;
+		}
+		//a copy is only necessary if the octet string is just a part of the array
+		if((offset == 0) && (length == octetString.length)) {
+			return new BigInteger(1, octetString);
+		}
+		return new BigInteger(1, Arrays.copyOfRange(octetString, offset, offset + length));
+	}
+	
+	
 	/**
 	 * An interpretation of the TR-03111 FE2OS function. <br> Uses the {@linkplain #I2OS(BigInteger, int)} method, more precise:<br>
 	 * Field element x e Fp is converted to octet string of length l = roundedUp(log256(p))
@@ -131,17 +173,8 @@ public class TR_03111_Utils {
 	 * @since 1.0
 	 */
 	public static byte[] FE2OS(BigInteger fieldElementCoordinate, BigInteger p) {
-		//length l = log256(p)
-		//convert BigInt p into a double
-		double pAsDouble = p.doubleValue();
-		
-		//calculate log256(p) = log(p) / log(256)
-		double lAsDouble = (Math.log(pAsDouble) / Math.log(256));
-
-		//round up to next integer because otherwise, length could be too small
-		lAsDouble = Math.ceil(lAsDouble);
-		
-		int l = (int) lAsDouble;
+		//length l = roundedUp(log256(p))
+		int l = octetLength(p);
 		
 		try {
 			byte[] feAsOs = I2OS(fieldElementCoordinate, l);	
@@ -151,6 +184,20 @@ public class TR_03111_Utils {
 		} 
 		return null;
 	}
+	
+	/**
+	 * Variant of {@linkplain #FE2OS(BigInteger, BigInteger)} that writes the octet string into a buffer supplied by the caller. The length
+	 * l = roundedUp(log256(p)) is not calculated on each call, it has to be calculated once with {@linkplain #octetLength(BigInteger)}.
+	 * @param fieldElementCoordinate coordinate of an ECPoint
+	 * @param out the buffer the octet string is written into
+	 * @param offset the position in out where the octet string starts
+	 * @param l the length of a field element, roundedUp(log256(p))
+	 * @throws TR_03111_ECC_V2_1_Exception if the coordinate is negative or does not fit into l octets, i.e. is not an element of Fp.
+	 * @since 1.6
+	 */
+	public static void FE2OS(BigInteger fieldElementCoordinate, byte[] out, int offset, int l) throws TR_03111_ECC_V2_1_Exception {
+		I2OS(fieldElementCoordinate, out, offset, l);
+	}
 
 	/**
 	 * An interpretation of the TR-03111 OS2FE function. <br> Uses the {@linkplain #OS2BigInt(byte[])} method.
@@ -167,6 +214,26 @@ public class TR_03111_Utils {
 	
 	
 	
+	/**
+	 * Calculates OS2I(truncatedleftmostBits(originalValue, leftmostBitsCount)) without creating the truncated array. Used for OS2I(Hτ(M)).<br>
+	 * The leftmost bits of the octet string interpreted as an integer are the integer value of the whole octet string shifted right by the number of 
+	 * surplus bits. If the octet string has exactly leftmostBitsCount bits, like SHA-512 with a 512 bit order n, it is converted without any shift.<br>
+	 * Unlike {@linkplain #truncatedleftmostBits(byte[], int)}, this method does not pad: if the octet string is shorter than leftmostBitsCount, its
+	 * whole value is returned, which is the value the padded octet string would have.
+	 * @param originalValue the octet string, e.g. a hash value, with the most significant byte at position 0
+	 * @param leftmostBitsCount the number of bits that shall be used beginning at the MSB, e.g. tau
+	 * @return a positive BigInteger representing the leftmost bits
+	 * @since 1.6
+	 */
+	public static BigInteger truncatedleftmostBitsAsBigInt(byte[] originalValue, int leftmostBitsCount) {
+		BigInteger x = OS2BigInt(originalValue);
+		int surplusBits = (8 * originalValue.length) - leftmostBitsCount;
+		if(surplusBits > 0) {
+			x = x.shiftRight(surplusBits);
+		}
+		return x;
+	}
+	
 	/**
 	 * Truncates the contents of a byte array to its x leftmost bits where x is determined by the value of leftmostBitsCount.<br>
 	 * To achieve this, the method calculates how many bytes are needed and returns a cropped byte array.<br>
@@ -0,0 +1,115 @@
+package main.java.de.bsi.tsesimulator.msg;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import main.java.de.bsi.tsesimulator.constants.Constants;
+
+/**
+ * Checks that log messages encoded with a {@linkplain LogMessageTemplate} are byte for byte the same as the ones encoded without it by
+ * {@linkplain TransactionLogMessage#toMinorTLVByteArray()} and {@linkplain SystemLogMessage#toMinorTLVByteArray()}.<br>
+ * Log messages are created with random values for every signature algorithm in {@linkplain Constants#ALGORITHM_OID_MAP}. Each one is encoded with a
+ * template that fits it and with templates that do not fit it, because of another certified data type, serial number or algorithm. In the second
+ * case {@linkplain LogMessageTemplate#matches(LogMessage)} has to fail and the log message has to be encoded without the template.<br>
+ * Run with the compiled simulator and the BouncyCastle libraries on the class path. Ends with an exception if one encoding differs.
+ *
+ * @since 1.6
+ */
+public class LogMessageTemplateCheck {
+	private static final int LOG_MESSAGES_PER_ALGORITHM = 2000;
+
+	/**
+	 * @param args an optional seed for the random values
+	 * @throws Exception if a log message can not be encoded or an encoding differs
+	 */
+	public static void main(String[] args) throws Exception {
+		long seed = (args.length > 0) ? Long.parseLong(args[0]) : 7;
+		Random random = new Random(seed);
+		byte[] serialNumber = new byte[32];
+		random.nextBytes(serialNumber);
+		byte[] otherSerialNumber = serialNumber.clone();
+		otherSerialNumber[31] ^= 1;
+
+		int checked = 0;
+		int fallbacks = 0;
+		for(String algorithm : Constants.ALGORITHM_OID_MAP.values()) {
+			//1. the templates of the ERSSpecificModule and one that does not fit in each of its values
+			LogMessageTemplate transactionTemplate = new LogMessageTemplate(Constants.VERSION, Constants.TRANSACTION_LOG_OID, serialNumber, algorithm);
+			LogMessageTemplate systemTemplate = new LogMessageTemplate(Constants.VERSION, Constants.SYSTEM_LOG_OID, serialNumber, algorithm);
+			LogMessageTemplate otherSerialTemplate = new LogMessageTemplate(Constants.VERSION, Constants.TRANSACTION_LOG_OID, otherSerialNumber, algorithm);
+			LogMessageTemplate otherAlgorithmTemplate = new LogMessageTemplate(Constants.VERSION, Constants.TRANSACTION_LOG_OID, serialNumber, 
+					otherAlgorithm(algorithm));
+
+			for(int i = 0; i < LOG_MESSAGES_PER_ALGORITHM; i++) {
+				//2. a transaction log with random values, sometimes with process data that is referenced by the segments
+				byte[] processData = new byte[random.nextInt((i % 10 == 0) ? 70000 : 300)];
+				random.nextBytes(processData);
+				byte[] additionalData = random.nextBoolean() ? null : new byte[random.nextInt(200)];
+				long transactionNumber = random.nextBoolean() ? random.nextInt(1000) : (random.nextLong() >>> 1);
+				TransactionLogMessage transactionLog = new TransactionLogMessage("client" +i, processData, "Kassenbeleg-V1", additionalData, 
+						transactionNumber, serialNumber.clone());
+				transactionLog.setAlgorithm(algorithm);
+				transactionLog.setOperationtype((i % 3 == 0) ? "StartTransaction" : ((i % 3 == 1) ? "UpdateTransaction" : "FinishTransaction"));
+				if(random.nextInt(5) == 0) {
+					transactionLog.setAdditionalIntData(new byte[random.nextInt(50)]);
+				}
+				byte[] expected = transactionLog.toMinorTLVByteArray();
+				check(transactionTemplate.matches(transactionLog), "The transaction template does not match transaction log " +i);
+				compare(expected, transactionLog.toMinorTLVByteArray(transactionTemplate), "transaction log " +i +" with template", algorithm);
+				compare(expected, transactionLog.toMinorTLVSegments(transactionTemplate).toByteArray(), "transaction log " +i +" in segments", algorithm);
+				checked += 2;
+
+				//3. templates that do not fit must be ignored
+				LogMessageTemplate[] mismatchingTemplates = {systemTemplate, otherSerialTemplate, otherAlgorithmTemplate, null};
+				for(LogMessageTemplate mismatching : mismatchingTemplates) {
+					check((mismatching == null) || !mismatching.matches(transactionLog), "A mismatching template matches transaction log " +i);
+					compare(expected, transactionLog.toMinorTLVByteArray(mismatching), "transaction log " +i +" with mismatching template", algorithm);
+					fallbacks++;
+				}
+
+				//4. a system log with and without system operation data
+				SystemLogMessage systemLog = random.nextBoolean() ? new SystemLogMessage("Op" +i, serialNumber.clone()) 
+						: new SystemLogMessage("Op" +i, processData, serialNumber.clone());
+				systemLog.setAlgorithm(algorithm);
+				expected = systemLog.toMinorTLVByteArray();
+				check(systemTemplate.matches(systemLog), "The system template does not match system log " +i);
+				compare(expected, systemLog.toMinorTLVByteArray(systemTemplate), "system log " +i +" with template", algorithm);
+				checked++;
+				check(!transactionTemplate.matches(systemLog), "The transaction template matches system log " +i);
+				compare(expected, systemLog.toMinorTLVByteArray(transactionTemplate), "system log " +i +" with the transaction template", algorithm);
+				fallbacks++;
+			}
+		}
+		System.out.println("LogMessageTemplateCheck: " +checked +" encodings with template and " +fallbacks +" fallbacks are equal (seed " +seed +").");
+	}
+
+	/**
+	 * @return an algorithm from {@linkplain Constants#ALGORITHM_OID_MAP} that is not the given one
+	 */
+	private static String otherAlgorithm(String algorithm) {
+		for(String other : Constants.ALGORITHM_OID_MAP.values()) {
+			if(!other.equals(algorithm)) {
+				return other;
+			}
+		}
+		throw new IllegalStateException("Constants.ALGORITHM_OID_MAP contains only one algorithm.");
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition) {
+			throw new IllegalStateException(message);
+		}
+	}
+
+	private static void compare(byte[] expected, byte[] actual, String what, String algorithm) {
+		if(Arrays.equals(expected, actual)) {
+			return;
+		}
+		int offset = 0;
+		while((offset < expected.length) && (offset < actual.length) && (expected[offset] == actual[offset])) {
+			offset++;
+		}
+		throw new IllegalStateException("The encoding of " +what +" differs for algorithm " +algorithm +" at offset " +offset +". Expected " 
+				+expected.length +" octets, got " +actual.length +".");
+	}
+}
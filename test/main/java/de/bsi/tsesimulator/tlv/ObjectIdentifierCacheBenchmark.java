@@ -0,0 +1,163 @@
+package main.java.de.bsi.tsesimulator.tlv;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+
+import main.java.de.bsi.tsesimulator.constants.Constants;
+
+/**
+ * Checks and measures the OID cache of {@linkplain ObjectIdentifier}.<br>
+ * First the OIDs from {@linkplain Constants} and random OIDs, more than {@value ObjectIdentifier#MAX_CACHED_OIDS} so that the cache overflows, are
+ * converted in both directions several times. Cached and not cached OIDs have to give the same results as the conversion without cache on every
+ * pass, also when they are decoded from the middle of a larger buffer. The OIDs from Constants additionally have to be encoded like the BouncyCastle
+ * {@linkplain ASN1ObjectIdentifier} does and decoded to themselves. An encoding that is not DER, with a leading 0x80 octet, has to be decoded the 
+ * same way every time and must not end up in the cache for the other direction.
+ * The array returned by {@linkplain ObjectIdentifier#convertOIDtoTLVValue(String)} may be modified without changing later results.<br>
+ * Then the conversion of the constant OIDs is timed. The allocated heap is measured with the HotSpot extension of {@linkplain ThreadMXBean}, on
+ * other Java VMs only the time is printed.<br>
+ * Run with the compiled simulator and the BouncyCastle libraries on the class path. Arguments: the number of conversions per round (default 2000000).
+ * Ends with an exception if a conversion differs.
+ *
+ * @since 1.6
+ */
+public class ObjectIdentifierCacheBenchmark {
+	private static final int RANDOM_OIDS = 300;
+	private static final int PASSES = 3;
+	private static final int ROUNDS = 3;
+
+	/**
+	 * @param args the number of conversions per round
+	 * @throws Exception if a conversion differs
+	 */
+	public static void main(String[] args) throws Exception {
+		int conversions = (args.length > 0) ? Integer.parseInt(args[0]) : 2000000;
+
+		//1. the OIDs the simulator uses and random ones
+		List<String> constantOIDs = new ArrayList<String>();
+		constantOIDs.add(Constants.TRANSACTION_LOG_OID);
+		constantOIDs.add(Constants.SYSTEM_LOG_OID);
+		constantOIDs.add(Constants.AUDIT_LOG_OID);
+		constantOIDs.addAll(Constants.ALGORITHM_OID_MAP.values());
+		List<String> oids = new ArrayList<String>(constantOIDs);
+		Random random = new Random(7);
+		for(int i = 0; i < RANDOM_OIDS; i++) {
+			oids.add(randomOID(random));
+		}
+
+		//2. every pass must give the results of the conversion without cache, whether the OID is cached or not
+		Method encodeWithoutCache = ObjectIdentifier.class.getDeclaredMethod("encodeOID", String.class);
+		Method decodeWithoutCache = ObjectIdentifier.class.getDeclaredMethod("decodeOID", byte[].class, int.class, int.class);
+		encodeWithoutCache.setAccessible(true);
+		decodeWithoutCache.setAccessible(true);
+		for(int pass = 0; pass < PASSES; pass++) {
+			for(String oid : oids) {
+				byte[] expected = (byte[]) encodeWithoutCache.invoke(null, oid);
+				byte[] encoded = ObjectIdentifier.convertOIDtoTLVValue(oid);
+				check(Arrays.equals(expected, encoded), "The encoding of " +oid +" differs in pass " +pass);
+				check(Arrays.equals(expected, ObjectIdentifier.getSharedEncoding(oid)), "The shared encoding of " +oid +" differs in pass " +pass);
+				String expectedOID = (String) decodeWithoutCache.invoke(null, expected, 0, expected.length);
+				check(expectedOID.equals(ObjectIdentifier.convertTLVValueToOID(encoded)), "Decoding " +oid +" differs in pass " +pass);
+				byte[] padded = new byte[encoded.length + 5];
+				System.arraycopy(encoded, 0, padded, 3, encoded.length);
+				check(expectedOID.equals(ObjectIdentifier.convertTLVValueToOID(padded, 3, encoded.length)), 
+						"Decoding " +oid +" at an offset differs in pass " +pass);
+				if(constantOIDs.contains(oid)) {
+					check(Arrays.equals(valueOf(new ASN1ObjectIdentifier(oid).getEncoded()), encoded), "The encoding of " +oid +" differs from BouncyCastle");
+					check(oid.equals(expectedOID), oid +" is not decoded to itself");
+				}
+
+				//the returned array belongs to the caller
+				Arrays.fill(encoded, (byte) 0x55);
+				check(Arrays.equals(expected, ObjectIdentifier.convertOIDtoTLVValue(oid)), "Modifying the encoding of " +oid +" changed the cache");
+			}
+		}
+
+		//3. encodings that are not DER are decoded like before and the result is not cached as their encoding
+		byte[] notDER = {0x04, (byte) 0x80, 0x05};
+		String decodedNotDER = ObjectIdentifier.convertTLVValueToOID(notDER);
+		for(int pass = 0; pass < PASSES; pass++) {
+			check(decodedNotDER.equals(ObjectIdentifier.convertTLVValueToOID(notDER)), "Decoding a non-DER encoding differs in pass " +pass);
+		}
+		check(!Arrays.equals(notDER, ObjectIdentifier.convertOIDtoTLVValue(decodedNotDER)), "The non-DER encoding was cached for " +decodedNotDER);
+		System.out.println("ObjectIdentifierCacheBenchmark: " +oids.size() +" OIDs converted " +PASSES +" times, equal to the conversion without cache.");
+
+		//4. time the conversions of the constant OIDs
+		String[] hotOIDs = constantOIDs.toArray(new String[0]);
+		byte[][] hotEncodings = new byte[hotOIDs.length][];
+		for(int i = 0; i < hotOIDs.length; i++) {
+			hotEncodings[i] = ObjectIdentifier.convertOIDtoTLVValue(hotOIDs[i]);
+		}
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocations = (threads instanceof com.sun.management.ThreadMXBean) ? (com.sun.management.ThreadMXBean) threads
+				: null;
+		long threadID = Thread.currentThread().getId();
+		long sink = 0;
+		for(int round = 0; round < ROUNDS; round++) {
+			long[] allocated = new long[4];
+			long[] times = new long[4];
+			allocated[0] = (allocations != null) ? allocations.getThreadAllocatedBytes(threadID) : 0;
+			times[0] = System.nanoTime();
+			for(int i = 0; i < conversions; i++) {
+				sink += ObjectIdentifier.convertOIDtoTLVValue(hotOIDs[i % hotOIDs.length]).length;
+			}
+			allocated[1] = (allocations != null) ? allocations.getThreadAllocatedBytes(threadID) : 0;
+			times[1] = System.nanoTime();
+			for(int i = 0; i < conversions; i++) {
+				sink += ObjectIdentifier.getSharedEncoding(hotOIDs[i % hotOIDs.length]).length;
+			}
+			allocated[2] = (allocations != null) ? allocations.getThreadAllocatedBytes(threadID) : 0;
+			times[2] = System.nanoTime();
+			for(int i = 0; i < conversions; i++) {
+				byte[] encoding = hotEncodings[i % hotEncodings.length];
+				sink += ObjectIdentifier.convertTLVValueToOID(encoding, 0, encoding.length).length();
+			}
+			allocated[3] = (allocations != null) ? allocations.getThreadAllocatedBytes(threadID) : 0;
+			times[3] = System.nanoTime();
+			System.out.printf("round %d: encode %.1f ns/op %s | shared encoding %.1f ns/op %s | decode %.1f ns/op %s%n", round,
+					(times[1] - times[0]) / (double) conversions, perOperation(allocations, allocated[1] - allocated[0], conversions),
+					(times[2] - times[1]) / (double) conversions, perOperation(allocations, allocated[2] - allocated[1], conversions),
+					(times[3] - times[2]) / (double) conversions, perOperation(allocations, allocated[3] - allocated[2], conversions));
+		}
+		if(sink == 42) {
+			System.out.println();
+		}
+	}
+
+	/**
+	 * @return an OID whose first two arcs fit in one octet, with some arcs bigger than 127
+	 */
+	private static String randomOID(Random random) {
+		StringBuilder oid = new StringBuilder();
+		oid.append(1 + random.nextInt(2)).append('.').append(1 + random.nextInt(39));
+		int arcs = 1 + random.nextInt(8);
+		for(int i = 0; i < arcs; i++) {
+			int arc = (random.nextInt(4) == 0) ? 1 + random.nextInt(100000) : 1 + random.nextInt(127);
+			oid.append('.').append(arc);
+		}
+		return oid.toString();
+	}
+
+	/**
+	 * @return the value octets of a DER encoded OBJECT IDENTIFIER shorter than 128 octets
+	 */
+	private static byte[] valueOf(byte[] tlv) {
+		return Arrays.copyOfRange(tlv, 2, tlv.length);
+	}
+
+	private static String perOperation(com.sun.management.ThreadMXBean allocations, long allocated, int conversions) {
+		return (allocations == null) ? "" : String.format("%.1f B/op", allocated / (double) conversions);
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition) {
+			throw new IllegalStateException(message);
+		}
+	}
+}
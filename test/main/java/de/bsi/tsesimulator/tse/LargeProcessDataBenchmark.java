@@ -0,0 +1,151 @@
+package main.java.de.bsi.tsesimulator.tse;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Random;
+
+import main.java.de.bsi.seapi.holdertypes.AuthenticationResultHolder;
+import main.java.de.bsi.seapi.holdertypes.ByteArrayHolder;
+import main.java.de.bsi.seapi.holdertypes.LongHolder;
+import main.java.de.bsi.seapi.holdertypes.ShortHolder;
+import main.java.de.bsi.seapi.holdertypes.ZonedDateTimeHolder;
+import main.java.de.bsi.tsesimulator.preferences.PropertyValues;
+import main.java.de.bsi.tsesimulator.tlv.EncodedSegments;
+
+/**
+ * Measures {@linkplain TSEController#updateTransaction(String, long, byte[], String, ZonedDateTimeHolder, ByteArrayHolder, LongHolder)} with
+ * large process data. Since version 1.6 the process data is referenced by the {@linkplain EncodedSegments} of the log message, it is hashed and
+ * written to the storage without being copied. It is only copied once into the log message that {@linkplain SecurityModule#getLatestLogMessage()}
+ * keeps. The benchmark ends with an exception if a call allocates twice as much heap as the process data or more, as version 1.5 did.<br>
+ * After every size the stored log message is read from the storage directory and its process data is compared with the one that was passed.
+ * This is skipped if the log messages are stored in segments, see
+ * {@linkplain main.java.de.bsi.tsesimulator.constants.ConfigConstants#CFG_TAG_STORAGE_MODE}.<br>
+ * Arguments: the directory with config.properties of a TSE that may be initialized and written to, the number of calls per size (default 8) and
+ * the sizes of the process data in MB (default 1 4 16). The users and the PINs of the standard configuration are used. The allocated heap is
+ * measured with the HotSpot extension of {@linkplain ThreadMXBean}, on other Java VMs only the time is printed.
+ *
+ * @since 1.6
+ */
+public class LargeProcessDataBenchmark {
+	private static final String CLIENT_ID = "benchmarkClient";
+	private static final String PROCESS_TYPE = "Kassenbeleg-V1";
+
+	/**
+	 * @param args the configuration directory, the number of calls per size and the sizes of the process data in MB
+	 * @throws Exception if the TSE can not be used or a call allocates twice as much heap as the process data
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length < 1) {
+			System.out.println("Usage: LargeProcessDataBenchmark <config directory> [calls per size] [MB ...]");
+			return;
+		}
+		int calls = (args.length > 1) ? Integer.parseInt(args[1]) : 8;
+		int[] sizes = {1, 4, 16};
+		if(args.length > 2) {
+			sizes = new int[args.length - 2];
+			for(int i = 2; i < args.length; i++) {
+				sizes[i - 2] = Integer.parseInt(args[i]);
+			}
+		}
+
+		//1. prepare the TSE and start the transaction that is updated
+		TSEController controller = new TSEController(args[0]);
+		AuthenticationResultHolder authenticationResult = new AuthenticationResultHolder();
+		ShortHolder remainingRetries = new ShortHolder();
+		controller.authenticateUser("root", new byte[] {1, 2, 3, 4, 5, 6}, authenticationResult, remainingRetries);
+		try {
+			controller.initialize("TSE-Simulator benchmark");
+		} catch (Exception e) {
+			//the TSE has already been initialized
+		}
+		controller.logOut("root");
+		controller.authenticateUser("timekeeper", new byte[] {0, 9, 8, 7, 6, 5}, authenticationResult, remainingRetries);
+		controller.updateTime(ZonedDateTime.now());
+		controller.logOut("timekeeper");
+		controller.authenticateUser("root", new byte[] {1, 2, 3, 4, 5, 6}, authenticationResult, remainingRetries);
+		try {
+			controller.registerClient(CLIENT_ID);
+		} catch (Exception e) {
+			//the client is still registered
+		}
+		LongHolder transactionNumber = new LongHolder();
+		LongHolder signatureCounter = new LongHolder();
+		ZonedDateTimeHolder logTime = new ZonedDateTimeHolder();
+		ByteArrayHolder serialNumber = new ByteArrayHolder();
+		ByteArrayHolder signatureValue = new ByteArrayHolder();
+		controller.startTransaction(CLIENT_ID, new byte[] {1}, PROCESS_TYPE, null, transactionNumber, logTime, serialNumber, signatureCounter,
+				signatureValue);
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocations = (threads instanceof com.sun.management.ThreadMXBean) ? (com.sun.management.ThreadMXBean) threads
+				: null;
+		long threadID = Thread.currentThread().getId();
+		File storageDirectory = new File(PropertyValues.getInstance().getPathToNormalStorage());
+
+		//2. update the transaction with each size, after two calls to warm up
+		System.out.println("process data     time per call     heap allocated per call     stored process data");
+		for(int size : sizes) {
+			byte[] processData = new byte[size << 20];
+			new Random(size).nextBytes(processData);
+			for(int i = 0; i < 2; i++) {
+				controller.updateTransaction(CLIENT_ID, transactionNumber.getValue(), processData, PROCESS_TYPE, logTime, signatureValue, signatureCounter);
+			}
+			long allocatedBefore = (allocations != null) ? allocations.getThreadAllocatedBytes(threadID) : 0;
+			long start = System.nanoTime();
+			for(int i = 0; i < calls; i++) {
+				controller.updateTransaction(CLIENT_ID, transactionNumber.getValue(), processData, PROCESS_TYPE, logTime, signatureValue, signatureCounter);
+			}
+			long duration = System.nanoTime() - start;
+			long allocated = (allocations != null) ? (allocations.getThreadAllocatedBytes(threadID) - allocatedBefore) / calls : -1;
+
+			String stored = checkStoredProcessData(storageDirectory, signatureCounter.getValue(), processData);
+			System.out.printf("%8d MB     %9.1f ms     %s     %s%n", size, duration / 1e6 / calls,
+					(allocated < 0) ? "        not measured" : String.format("%8.2f MB (%.2f x)", allocated / 1048576.0, allocated / (double) processData.length),
+					stored);
+			if(allocated >= 2L * processData.length) {
+				throw new IllegalStateException("updateTransaction allocates " +allocated +" octets per call for " +processData.length
+						+" octets of process data, the process data is copied more than once.");
+			}
+		}
+
+		//3. leave the TSE as it was
+		controller.finishTransaction(CLIENT_ID, transactionNumber.getValue(), new byte[] {1}, PROCESS_TYPE, null, logTime, signatureValue,
+				signatureCounter);
+		controller.deregisterClient(CLIENT_ID);
+		controller.logOut("root");
+		controller.gracefulShutdown();
+	}
+
+	/**
+	 * Looks for the process data in the file of the log message with the signature counter.
+	 * @return "ok" if the file contains the process data, "skipped" if there is no such file because the log messages are stored in segments
+	 * @throws IllegalStateException if the file does not contain the process data
+	 */
+	private static String checkStoredProcessData(File storageDirectory, long signatureCounter, byte[] processData) throws Exception {
+		File[] logFiles = storageDirectory.listFiles();
+		File logFile = null;
+		if(logFiles != null) {
+			for(File file : logFiles) {
+				if(file.getName().contains("_Sig-" +signatureCounter +"_")) {
+					logFile = file;
+				}
+			}
+		}
+		if(logFile == null) {
+			return "skipped";
+		}
+		byte[] stored = Files.readAllBytes(logFile.toPath());
+		byte[] start = Arrays.copyOf(processData, 64);
+		for(int offset = 0; offset + processData.length <= stored.length; offset++) {
+			if((stored[offset] == processData[0]) && Arrays.equals(Arrays.copyOfRange(stored, offset, offset + 64), start)
+					&& Arrays.equals(Arrays.copyOfRange(stored, offset, offset + processData.length), processData)) {
+				return "ok";
+			}
+		}
+		throw new IllegalStateException("The stored log message " +logFile.getName() +" does not contain the process data.");
+	}
+}
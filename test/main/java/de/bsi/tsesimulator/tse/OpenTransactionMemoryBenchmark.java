@@ -0,0 +1,115 @@
+package main.java.de.bsi.tsesimulator.tse;
+
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Random;
+
+import main.java.de.bsi.tsesimulator.constants.ASN1Constants;
+import main.java.de.bsi.tsesimulator.constants.Constants;
+import main.java.de.bsi.tsesimulator.msg.TransactionLogMessage;
+import main.java.de.bsi.tsesimulator.tlv.DerWriter;
+import main.java.de.bsi.tsesimulator.tlv.TLVView;
+import main.java.de.bsi.tsesimulator.utils.LongHashMap;
+
+/**
+ * Measures the heap that the {@linkplain ERSSpecificModule} keeps for open transactions. The current layout, an {@linkplain OpenTransaction} per
+ * transaction in a {@linkplain LongHashMap}, is compared with the layout of version 1.5, which kept the decoded start log message of every open
+ * transaction in a <i>Hashtable&lt;Long, TLVView[]&gt;</i>. The start log messages are real encoded transaction logs with a dummy signature.<br>
+ * The retained heap is the used heap after garbage collection with all open transactions, minus the used heap before they were created. It is only
+ * an approximation, run with a fixed heap size, e.g. -Xms1g -Xmx1g, to get stable numbers.<br>
+ * Arguments: the number of open transactions (default 100000) followed by the lengths of the process data (default 20 200 1000).
+ *
+ * @since 1.6
+ */
+public class OpenTransactionMemoryBenchmark {
+
+	/**
+	 * @param args the number of open transactions, then the lengths of the process data
+	 * @throws Exception if a log message can not be encoded
+	 */
+	public static void main(String[] args) throws Exception {
+		int numberOfTransactions = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+		int[] processDataLengths = {20, 200, 1000};
+		if(args.length > 1) {
+			processDataLengths = new int[args.length - 1];
+			for(int i = 1; i < args.length; i++) {
+				processDataLengths[i - 1] = Integer.parseInt(args[i]);
+			}
+		}
+
+		System.out.println("open transactions: " +numberOfTransactions);
+		System.out.println("process data     Hashtable<Long, TLVView[]>          LongHashMap<OpenTransaction>");
+		for(int processDataLength : processDataLengths) {
+			long before = usedHeap();
+			Map<Long, TLVView[]> startLogs = createStartLogs(numberOfTransactions, processDataLength);
+			long retainedByStartLogs = usedHeap() - before;
+			check(startLogs.size() == numberOfTransactions);
+			startLogs = null;
+
+			before = usedHeap();
+			LongHashMap<OpenTransaction> openTransactions = createOpenTransactions(numberOfTransactions);
+			long retainedByOpenTransactions = usedHeap() - before;
+			check(openTransactions.size() == numberOfTransactions);
+			openTransactions = null;
+
+			System.out.printf("%8d B     %8.1f MB (%5d B/transaction)     %8.1f MB (%5d B/transaction)%n", processDataLength,
+					retainedByStartLogs / 1e6, retainedByStartLogs / numberOfTransactions,
+					retainedByOpenTransactions / 1e6, retainedByOpenTransactions / numberOfTransactions);
+		}
+	}
+
+	/**
+	 * The layout of version 1.5: the start log message of every open transaction, decoded into its TLVs.
+	 */
+	private static Map<Long, TLVView[]> createStartLogs(int numberOfTransactions, int processDataLength) throws Exception {
+		Random random = new Random(1);
+		byte[] serialNumber = new byte[32];
+		String algorithm = Constants.ALGORITHM_OID_MAP.values().iterator().next();
+		Map<Long, TLVView[]> startLogs = new Hashtable<Long, TLVView[]>();
+		for(long transactionNumber = 1; transactionNumber <= numberOfTransactions; transactionNumber++) {
+			byte[] processData = new byte[processDataLength];
+			random.nextBytes(processData);
+			TransactionLogMessage startLog = new TransactionLogMessage("client1", processData, "Kassenbeleg-V1", null, transactionNumber, serialNumber);
+			startLog.setAlgorithm(algorithm);
+			startLog.setOperationtype("StartTransaction");
+			byte[] upperPart = startLog.toMinorTLVByteArray();
+
+			//the signature counter, the log time and a dummy signature value complete the log message
+			DerWriter writer = DerWriter.get();
+			writer.startConstructed(ASN1Constants.UNIVERSAL_SEQUENCE);
+			writer.writeEncoded(upperPart, 0, upperPart.length);
+			writer.writeInteger(ASN1Constants.UNIVERSAL_INTEGER, transactionNumber);
+			writer.writeInteger(ASN1Constants.UNIVERSAL_INTEGER, 1700000000L + transactionNumber);
+			writer.writeOctets(ASN1Constants.UNIVERSAL_OCTET_STRING, new byte[64]);
+			writer.endConstructed();
+			startLogs.put(Long.valueOf(transactionNumber), TLVView.decodeWithoutSEQUENCEWrapper(writer.toByteArray()));
+		}
+		return startLogs;
+	}
+
+	/**
+	 * The current layout of the ERSSpecificModule.
+	 */
+	private static LongHashMap<OpenTransaction> createOpenTransactions(int numberOfTransactions) {
+		LongHashMap<OpenTransaction> openTransactions = new LongHashMap<OpenTransaction>(64);
+		for(long transactionNumber = 1; transactionNumber <= numberOfTransactions; transactionNumber++) {
+			openTransactions.put(transactionNumber, new OpenTransaction("client1", transactionNumber, 1700000000L + transactionNumber));
+		}
+		return openTransactions;
+	}
+
+	private static long usedHeap() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0; i < 5; i++) {
+			System.gc();
+			Thread.sleep(80);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static void check(boolean condition) {
+		if(!condition) {
+			throw new IllegalStateException("Not all open transactions were created.");
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package main.java.de.bsi.tsesimulator.tse.crypto;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+/**
+ * Measures the heap allocated and the time needed to get a hash function and a random number generator with {@linkplain CryptoContext}, compared with
+ * the way version 1.5 got them in the crypto path.<br>
+ * One operation gets the digest, hashes a message of the size of a transaction log message and draws a random value, like a signature does. It is
+ * measured in three ways:
+ * <ul>
+ * <li>1.5 hashByteArray: registers a new BouncyCastleProvider, then like 1.5 sign. Only every 100th round is done, it is very slow.</li>
+ * <li>1.5 sign: looks up the digest by the provider name and creates a new {@linkplain SecureRandom}.</li>
+ * <li>CryptoContext: uses the digest and the SecureRandom of the CryptoContext of the thread.</li>
+ * </ul>
+ * All three have to give the same hash values. Before that, the benchmark checks that the CryptoContext hands out the same, reset digest to its
+ * thread, also after a hash was not completed, and another CryptoContext to every other thread. The allocated heap is measured with the HotSpot
+ * extension of {@linkplain ThreadMXBean}, on other Java VMs only the time is printed. If it is measured, the benchmark ends with an exception if an
+ * operation with the CryptoContext allocates 1 KB or more.<br>
+ * Run with the compiled simulator and the BouncyCastle libraries on the class path. Arguments: the number of operations per round (default 20000).
+ *
+ * @since 1.6
+ */
+public class CryptoContextBenchmark {
+	private static final String HASH_FUNCTION = "SHA3-512";
+	private static final int MESSAGE_LENGTH = 300;
+	private static final int ROUNDS = 3;
+	private static final int MAX_ALLOCATION_PER_OPERATION = 1024;
+
+	/**
+	 * @param args the number of operations per round
+	 * @throws Exception if the hash values differ or the CryptoContext allocates too much
+	 */
+	public static void main(String[] args) throws Exception {
+		int operations = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+		checkContext();
+
+		byte[] message = new byte[MESSAGE_LENGTH];
+		new Random(17).nextBytes(message);
+		byte[] expected = MessageDigest.getInstance(HASH_FUNCTION, CryptoContext.getProvider()).digest(message);
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocations = (threads instanceof com.sun.management.ThreadMXBean) ? (com.sun.management.ThreadMXBean) threads
+				: null;
+		long threadID = Thread.currentThread().getId();
+		long sink = 0;
+		for(int round = 0; round < ROUNDS; round++) {
+			long[] allocated = new long[3];
+			double[] times = new double[3];
+			int[] counts = {Math.max(1, operations / 100), operations, operations};
+			for(int way = 0; way < 3; way++) {
+				long allocatedBefore = (allocations != null) ? allocations.getThreadAllocatedBytes(threadID) : 0;
+				long start = System.nanoTime();
+				for(int i = 0; i < counts[way]; i++) {
+					MessageDigest md;
+					SecureRandom random;
+					if(way == 0) {
+						Security.addProvider(new BouncyCastleProvider());
+					}
+					if(way < 2) {
+						md = MessageDigest.getInstance(HASH_FUNCTION, BouncyCastleProvider.PROVIDER_NAME);
+						random = new SecureRandom();
+					}
+					else {
+						CryptoContext context = CryptoContext.get();
+						md = context.getDigest(HASH_FUNCTION);
+						random = context.getRandom();
+					}
+					md.update(message);
+					byte[] hash = md.digest();
+					if(i == 0) {
+						check(Arrays.equals(expected, hash), "the hash value differs in round " +round);
+					}
+					sink += hash[0] + random.nextInt();
+				}
+				times[way] = (System.nanoTime() - start) / 1e3 / counts[way];
+				allocated[way] = (allocations != null) ? (allocations.getThreadAllocatedBytes(threadID) - allocatedBefore) / counts[way] : -1;
+			}
+			System.out.printf("round %d: 1.5 hashByteArray %.1f us/op %s | 1.5 sign %.1f us/op %s | CryptoContext %.1f us/op %s%n", round,
+					times[0], perOperation(allocated[0]), times[1], perOperation(allocated[1]), times[2], perOperation(allocated[2]));
+			//the first round also contains the creation of the digest of the CryptoContext
+			if((round > 0) && (allocated[2] >= MAX_ALLOCATION_PER_OPERATION)) {
+				throw new IllegalStateException("An operation with the CryptoContext allocates " +allocated[2] +" octets.");
+			}
+		}
+		if(sink == 42) {
+			System.out.println();
+		}
+	}
+
+	/**
+	 * The CryptoContext of a thread always returns the same digest and random number generator, another thread gets other ones.
+	 */
+	private static void checkContext() throws Exception {
+		final CryptoContext context = CryptoContext.get();
+		check(context == CryptoContext.get(), "the thread got another CryptoContext");
+		MessageDigest md = context.getDigest(HASH_FUNCTION);
+		byte[] empty = md.digest();
+		//a hash that is not completed must not change the next one
+		md.update(new byte[] {1, 2, 3});
+		MessageDigest again = context.getDigest(HASH_FUNCTION);
+		check(md == again, "the digest was created again");
+		check(Arrays.equals(empty, again.digest()), "the digest was not reset");
+		check(context.getRandom() == CryptoContext.get().getRandom(), "the thread got another SecureRandom");
+
+		final CryptoContext[] otherContext = new CryptoContext[1];
+		Thread other = new Thread() {
+			@Override
+			public void run() {
+				otherContext[0] = CryptoContext.get();
+			}
+		};
+		other.start();
+		other.join();
+		check((otherContext[0] != null) && (otherContext[0] != context), "another thread got the same CryptoContext");
+		check(Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == CryptoContext.getProvider(), "the provider is not registered");
+	}
+
+	private static String perOperation(long allocated) {
+		return (allocated < 0) ? "" : String.format("%d B/op", allocated);
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition) {
+			throw new IllegalStateException(message);
+		}
+	}
+}
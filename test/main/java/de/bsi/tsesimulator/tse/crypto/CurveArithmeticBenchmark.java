@@ -0,0 +1,156 @@
+package main.java.de.bsi.tsesimulator.tse.crypto;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import main.java.de.bsi.tsesimulator.constants.ConfigConstants;
+import main.java.de.bsi.tsesimulator.preferences.PropertyValues;
+
+/**
+ * Compares the signing and the verification of the configured {@linkplain SignatureAlgorithm} with the generic arithmetic of BouncyCastle and with
+ * the arithmetic chosen by {@linkplain CurveArithmetic}, e.g. the {@linkplain MontgomeryFpCurve} for the brainpool curves.<br>
+ * Every configuration directory is copied twice into a temporary directory, once with <i>curveArithmetic</i> set to <i>generic</i> and once with
+ * <i>specialized</i>. The nonce pool is switched off and the reference engine is used, so that every signature calculates k*G itself. Both
+ * algorithms sign the same messages after a warm-up and verify their own signatures and those of the other one, with the time per call printed.
+ * Since {@linkplain PropertyValues} only reads one config.properties, its instance is reset between the directories.<br>
+ * Run with the compiled simulator and the BouncyCastle libraries on the class path. Arguments: the number of signatures per arithmetic
+ * (default 100) and the configuration directories (default test-files/configA to test-files/configD). Ends with an exception if a signature
+ * is not valid.
+ *
+ * @since 1.6
+ */
+public class CurveArithmeticBenchmark {
+	private static final int WARM_UP = 20;
+	private static final int MESSAGE_LENGTH = 200;
+
+	/**
+	 * @param args the number of signatures and the configuration directories
+	 * @throws Exception if a configuration can not be loaded or a signature is not valid
+	 */
+	public static void main(String[] args) throws Exception {
+		int signatures = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+		String[] directories = {"test-files/configA", "test-files/configB", "test-files/configC", "test-files/configD"};
+		if(args.length > 1) {
+			directories = new String[args.length - 1];
+			System.arraycopy(args, 1, directories, 0, directories.length);
+		}
+
+		System.out.println("configuration    algorithm   hash       curve              generic sign/verify     specialized sign/verify    speedup");
+		for(String directory : directories) {
+			//1. create both algorithms from copies of the configuration
+			SignatureAlgorithm generic = createAlgorithm(new File(directory), ConfigConstants.CFG_ENTRY_CURVE_ARITHMETIC_GENERIC);
+			SignatureAlgorithm specialized = createAlgorithm(new File(directory), ConfigConstants.CFG_ENTRY_CURVE_ARITHMETIC_SPECIALIZED);
+			PropertyValues config = PropertyValues.getInstance();
+			String hash = config.getValue(ConfigConstants.CFG_TAG_HASH_METHOD) +"-" +config.getValue(ConfigConstants.CFG_TAG_HASH_LENGTH);
+
+			//2. the same messages for both
+			byte[][] messages = new byte[WARM_UP + signatures][MESSAGE_LENGTH];
+			Random random = new Random(11);
+			for(byte[] message : messages) {
+				random.nextBytes(message);
+			}
+			byte[][] genericSignatures = new byte[messages.length][];
+			byte[][] specializedSignatures = new byte[messages.length][];
+			double[] genericTimes = measure(generic, messages, genericSignatures);
+			double[] specializedTimes = measure(specialized, messages, specializedSignatures);
+
+			//3. both arithmetics have to accept the signatures of the other one
+			for(int i = 0; i < messages.length; i++) {
+				check(specialized.verify(genericSignatures[i], messages[i]), directory +": a signature of the generic arithmetic is not valid");
+				check(generic.verify(specializedSignatures[i], messages[i]), directory +": a signature of the specialized arithmetic is not valid");
+			}
+			System.out.printf("%-16s %-11s %-10s %-18s %7.2f / %7.2f ms      %7.2f / %7.2f ms       %.2f x / %.2f x%n", new File(directory).getName(),
+					config.getValue(ConfigConstants.CFG_TAG_SIGNATURE_ALGORITHM), hash, config.getValue(ConfigConstants.CFG_TAG_CURVE), genericTimes[0],
+					genericTimes[1], specializedTimes[0], specializedTimes[1], genericTimes[0] / specializedTimes[0], genericTimes[1] / specializedTimes[1]);
+		}
+	}
+
+	/**
+	 * Signs and verifies all messages, the first {@value #WARM_UP} are not timed.
+	 * @return the time per signature and per verification in ms
+	 */
+	private static double[] measure(SignatureAlgorithm algorithm, byte[][] messages, byte[][] signatures) throws Exception {
+		for(int i = 0; i < WARM_UP; i++) {
+			signatures[i] = algorithm.sign(messages[i]);
+			check(algorithm.verify(signatures[i], messages[i]), "a signature of the warm-up is not valid");
+		}
+		int measured = messages.length - WARM_UP;
+		long start = System.nanoTime();
+		for(int i = WARM_UP; i < messages.length; i++) {
+			signatures[i] = algorithm.sign(messages[i]);
+		}
+		long signing = System.nanoTime() - start;
+		start = System.nanoTime();
+		for(int i = WARM_UP; i < messages.length; i++) {
+			check(algorithm.verify(signatures[i], messages[i]), "a signature is not valid");
+		}
+		long verifying = System.nanoTime() - start;
+		return new double[] {signing / 1e6 / measured, verifying / 1e6 / measured};
+	}
+
+	/**
+	 * Copies config.properties and the key directory of a configuration into a temporary directory, chooses the arithmetic there and creates the
+	 * configured signature algorithm from it. The temporary directory is deleted again, the key is already loaded.
+	 */
+	private static SignatureAlgorithm createAlgorithm(File directory, String arithmetic) throws Exception {
+		File copy = Files.createTempDirectory("curveArithmetic").toFile();
+		try {
+			File configFile = new File(copy, ConfigConstants.CFG_NAME);
+			Files.copy(new File(directory, ConfigConstants.CFG_NAME).toPath(), configFile.toPath());
+			//later entries replace earlier ones with the same name
+			String entries = "\n" +ConfigConstants.CFG_TAG_CURVE_ARITHMETIC +" = " +arithmetic +"\n" +ConfigConstants.CFG_TAG_NONCE_POOL_SIZE +" = 0\n"
+					+ConfigConstants.CFG_TAG_SIGNATURE_ENGINE +" = " +ConfigConstants.CFG_ENTRY_SIGNATURE_ENGINE_REFERENCE +"\n";
+			Files.write(configFile.toPath(), entries.getBytes(StandardCharsets.ISO_8859_1), StandardOpenOption.APPEND);
+			useConfiguration(copy);
+			String keyDirectoryName = PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_KEY_DIR);
+			File keyDirectory = new File(copy, keyDirectoryName);
+			check(keyDirectory.mkdir(), "the key directory could not be created in " +copy);
+			File[] keyFiles = new File(directory, keyDirectoryName).listFiles();
+			if(keyFiles != null) {
+				for(File keyFile : keyFiles) {
+					Files.copy(keyFile.toPath(), new File(keyDirectory, keyFile.getName()).toPath(), StandardCopyOption.COPY_ATTRIBUTES);
+				}
+			}
+
+			String algorithm = PropertyValues.getInstance().getValue(ConfigConstants.CFG_TAG_SIGNATURE_ALGORITHM);
+			if(ConfigConstants.CFG_ENTRY_SIGNATURE_ALGORITHM_ECSDSA.equalsIgnoreCase(algorithm)) {
+				return new ECSDSA();
+			}
+			return new ECDSA();
+		} finally {
+			delete(copy);
+		}
+	}
+
+	/**
+	 * Lets {@linkplain PropertyValues} read the config.properties in the directory, also if an other one has been read before.
+	 */
+	private static void useConfiguration(File directory) throws ReflectiveOperationException {
+		Field instance = PropertyValues.class.getDeclaredField("instance");
+		instance.setAccessible(true);
+		instance.set(null, null);
+		PropertyValues.setPathToResourceDirectory(directory.getAbsolutePath());
+	}
+
+	private static void delete(File file) throws IOException {
+		File[] children = file.listFiles();
+		if(children != null) {
+			for(File child : children) {
+				delete(child);
+			}
+		}
+		Files.deleteIfExists(file.toPath());
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition) {
+			throw new IllegalStateException(message);
+		}
+	}
+}
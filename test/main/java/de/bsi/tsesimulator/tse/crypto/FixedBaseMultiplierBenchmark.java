@@ -0,0 +1,85 @@
+package main.java.de.bsi.tsesimulator.tse.crypto;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.bouncycastle.jce.ECNamedCurveTable;
+import org.bouncycastle.jce.spec.ECParameterSpec;
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECPoint;
+
+/**
+ * Measures the speedup of the fixed-base comb table of {@linkplain FixedBaseMultiplier} for k*G on every curve the simulator supports.<br>
+ * For each curve and each arithmetic, the generic one of BouncyCastle and the one chosen by {@linkplain CurveArithmetic}, the same random scalars are
+ * multiplied with the comb table and with the plain {@linkplain ECPoint#multiply(BigInteger)} of the base point. Both have to give the same points.
+ * The time for building the table is printed as well, it is paid once when the {@linkplain SignatureAlgorithm} is created. The NIST curves already
+ * come with the specialized arithmetic of BouncyCastle, so they are only measured once.<br>
+ * Run with the compiled simulator and the BouncyCastle libraries on the class path. Arguments: the number of scalars per curve (default 500).
+ * Ends with an exception if the results differ.
+ *
+ * @since 1.6
+ */
+public class FixedBaseMultiplierBenchmark {
+	private static final String[] CURVES = {"brainpoolP256r1", "brainpoolP384r1", "brainpoolP512r1", "secp256r1", "secp384r1"};
+	private static final int WARM_UP = 200;
+
+	/**
+	 * @param args the number of scalars per curve
+	 * @throws Exception if the comb table gives another point than the plain multiplication
+	 */
+	public static void main(String[] args) throws Exception {
+		int scalars = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+		Random random = new Random(13);
+
+		System.out.println("curve              arithmetic           table built      plain         comb     speedup");
+		for(String curveName : CURVES) {
+			ECParameterSpec genericSpec = ECNamedCurveTable.getParameterSpec(curveName);
+			for(boolean useSpecialized : new boolean[] {false, true}) {
+				ECParameterSpec spec = CurveArithmetic.select(genericSpec, useSpecialized);
+				if(useSpecialized && (spec == genericSpec)) {
+					continue;
+				}
+				BigInteger[] k = new BigInteger[WARM_UP + scalars];
+				for(int i = 0; i < k.length; i++) {
+					k[i] = new BigInteger(spec.getN().bitLength(), random).mod(spec.getN());
+				}
+
+				//1. build the table, the plain multiplier does not need one
+				long start = System.nanoTime();
+				FixedBaseMultiplier comb = new FixedBaseMultiplier(spec, true);
+				long tableBuilt = System.nanoTime() - start;
+				FixedBaseMultiplier plain = new FixedBaseMultiplier(spec, false);
+
+				//2. warm up and compare the results
+				for(int i = 0; i < WARM_UP; i++) {
+					check(comb.multiply(k[i]).equals(plain.multiply(k[i])), curveName +": the comb table gives another point for k = " +k[i].toString(16));
+				}
+				ECPoint[] combResults = new ECPoint[scalars];
+				ECPoint[] plainResults = new ECPoint[scalars];
+				start = System.nanoTime();
+				for(int i = 0; i < scalars; i++) {
+					plainResults[i] = plain.multiply(k[WARM_UP + i]);
+				}
+				long plainTime = System.nanoTime() - start;
+				start = System.nanoTime();
+				for(int i = 0; i < scalars; i++) {
+					combResults[i] = comb.multiply(k[WARM_UP + i]);
+				}
+				long combTime = System.nanoTime() - start;
+				for(int i = 0; i < scalars; i++) {
+					check(combResults[i].equals(plainResults[i]), curveName +": the comb table gives another point for k = " +k[WARM_UP + i].toString(16));
+				}
+
+				String arithmetic = (spec.getCurve() instanceof ECCurve.Fp) ? "ECCurve.Fp" : spec.getCurve().getClass().getSimpleName();
+				System.out.printf("%-18s %-18s %8.1f ms  %8.0f us  %8.0f us     %.2f x%n", curveName, arithmetic,
+						tableBuilt / 1e6, plainTime / 1e3 / scalars, combTime / 1e3 / scalars, plainTime / (double) combTime);
+			}
+		}
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition) {
+			throw new IllegalStateException(message);
+		}
+	}
+}
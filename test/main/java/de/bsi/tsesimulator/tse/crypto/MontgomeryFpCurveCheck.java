@@ -0,0 +1,135 @@
+package main.java.de.bsi.tsesimulator.tse.crypto;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.bouncycastle.jce.ECNamedCurveTable;
+import org.bouncycastle.jce.spec.ECParameterSpec;
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECPoint;
+
+/**
+ * Checks {@linkplain MontgomeryFpCurve} against the generic {@linkplain ECCurve.Fp} of BouncyCastle on all brainpool curves, r1 and t1.<br>
+ * For random scalars and the scalars at the ends of the range [1, n-1], k*G of the {@linkplain FixedBaseMultiplier} and of the point itself and
+ * u1*G + u2*Pa of the {@linkplain DoubleBaseMultiplier} have to be the same point on both curves, including u1*G + u2*Pa = infinity. Every
+ * point k*G is encoded compressed and uncompressed on both curves, the encodings have to be equal and decode to the same point on the other curve.<br>
+ * Run with the compiled simulator and the BouncyCastle libraries on the class path. Arguments: the number of random scalars per curve
+ * (default 200) and the seed (default 5). Ends with an exception if the curves differ.
+ *
+ * @since 1.6
+ */
+public class MontgomeryFpCurveCheck {
+	private static final String[] CURVES = {"brainpoolP160r1", "brainpoolP160t1", "brainpoolP192r1", "brainpoolP192t1", "brainpoolP224r1",
+			"brainpoolP224t1", "brainpoolP256r1", "brainpoolP256t1", "brainpoolP320r1", "brainpoolP320t1", "brainpoolP384r1", "brainpoolP384t1",
+			"brainpoolP512r1", "brainpoolP512t1"};
+
+	/**
+	 * @param args the number of random scalars per curve and the seed
+	 * @throws Exception if the curves differ
+	 */
+	public static void main(String[] args) throws Exception {
+		int scalars = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+		long seed = (args.length > 1) ? Long.parseLong(args[1]) : 5;
+		Random random = new Random(seed);
+		for(String curveName : CURVES) {
+			checkCurve(curveName, scalars, random);
+		}
+		System.out.println("MontgomeryFpCurveCheck: " +CURVES.length +" curves, " +scalars +" random scalars each, equal to ECCurve.Fp (seed " +seed +").");
+	}
+
+	/**
+	 * Compares the point multiplications and the encodings of one curve.
+	 */
+	private static void checkCurve(String curveName, int scalars, Random random) {
+		//1. the same curve with both arithmetics
+		ECParameterSpec genericSpec = ECNamedCurveTable.getParameterSpec(curveName);
+		ECParameterSpec montgomerySpec = CurveArithmetic.select(genericSpec, true);
+		check(genericSpec.getCurve() instanceof ECCurve.Fp, curveName +" is not an ECCurve.Fp in BouncyCastle");
+		check(montgomerySpec.getCurve() instanceof MontgomeryFpCurve, curveName +" does not use the MontgomeryFpCurve");
+		ECCurve montgomeryCurve = montgomerySpec.getCurve();
+		BigInteger n = genericSpec.getN();
+
+		FixedBaseMultiplier genericG = new FixedBaseMultiplier(genericSpec, true);
+		FixedBaseMultiplier montgomeryG = new FixedBaseMultiplier(montgomerySpec, true);
+		BigInteger privateKey = randomScalar(n, random);
+		ECPoint genericPa = genericSpec.getG().multiply(privateKey).normalize();
+		ECPoint montgomeryPa = montgomeryCurve.importPoint(genericPa);
+		check(montgomeryPa.isValid(), curveName +": Pa is not on the MontgomeryFpCurve");
+		DoubleBaseMultiplier genericDouble = new DoubleBaseMultiplier(genericG.getGenerator(), genericPa, n.bitLength());
+		DoubleBaseMultiplier montgomeryDouble = new DoubleBaseMultiplier(montgomeryG.getGenerator(), montgomeryPa, n.bitLength());
+
+		//2. the scalars at the ends of the range first, then random ones
+		BigInteger[] edges = {BigInteger.ONE, BigInteger.valueOf(2), BigInteger.valueOf(3), n.subtract(BigInteger.valueOf(2)), n.subtract(BigInteger.ONE)};
+		for(int i = 0; i < edges.length + scalars; i++) {
+			BigInteger k = (i < edges.length) ? edges[i] : randomScalar(n, random);
+			BigInteger u2 = (i < edges.length) ? edges[edges.length - 1 - i] : randomScalar(n, random);
+
+			//k*G with the fixed-base table and with the point itself
+			ECPoint expected = genericG.multiply(k).normalize();
+			ECPoint actual = montgomeryG.multiply(k).normalize();
+			checkSamePoint(expected, actual, curveName +": k*G differs for k = " +k.toString(16));
+			checkSamePoint(expected, montgomerySpec.getG().multiply(k).normalize(), curveName +": G.multiply(k) differs for k = " +k.toString(16));
+			check(actual.isValid(), curveName +": k*G is not on the MontgomeryFpCurve for k = " +k.toString(16));
+
+			//u1*G + u2*Pa
+			checkSamePoint(genericDouble.multiplyAndAdd(k, u2).normalize(), montgomeryDouble.multiplyAndAdd(k, u2).normalize(),
+					curveName +": u1*G + u2*Pa differs for u1 = " +k.toString(16) +", u2 = " +u2.toString(16));
+
+			//the encodings in both directions
+			checkEncodings(expected, actual, genericSpec.getCurve(), montgomeryCurve, curveName +", k = " +k.toString(16));
+		}
+
+		//3. u1 = -d*u2 mod n gives the point at infinity
+		BigInteger u2 = randomScalar(n, random);
+		BigInteger u1 = privateKey.multiply(u2).negate().mod(n);
+		check(genericDouble.multiplyAndAdd(u1, u2).isInfinity(), curveName +": u1*G + u2*Pa is not infinity on ECCurve.Fp");
+		check(montgomeryDouble.multiplyAndAdd(u1, u2).isInfinity(), curveName +": u1*G + u2*Pa is not infinity on the MontgomeryFpCurve");
+	}
+
+	/**
+	 * The compressed and the uncompressed encoding of a point have to be equal on both curves and decode to the point on the other curve.
+	 */
+	private static void checkEncodings(ECPoint genericPoint, ECPoint montgomeryPoint, ECCurve genericCurve, ECCurve montgomeryCurve, String description) {
+		for(boolean compressed : new boolean[] {true, false}) {
+			byte[] genericEncoding = genericPoint.getEncoded(compressed);
+			byte[] montgomeryEncoding = montgomeryPoint.getEncoded(compressed);
+			String form = compressed ? "compressed" : "uncompressed";
+			check(Arrays.equals(genericEncoding, montgomeryEncoding), description +": the " +form +" encodings differ");
+			checkSamePoint(montgomeryPoint, montgomeryCurve.decodePoint(genericEncoding).normalize(), description +": decoding the " +form
+					+" encoding on the MontgomeryFpCurve failed");
+			checkSamePoint(genericPoint, genericCurve.decodePoint(montgomeryEncoding).normalize(), description +": decoding the " +form
+					+" encoding on ECCurve.Fp failed");
+		}
+		checkSamePoint(genericPoint, genericCurve.importPoint(montgomeryPoint).normalize(), description +": importing the point into ECCurve.Fp failed");
+	}
+
+	/**
+	 * Points on different curve implementations are compared by their affine coordinates.
+	 */
+	private static void checkSamePoint(ECPoint expected, ECPoint actual, String message) {
+		if(expected.isInfinity() || actual.isInfinity()) {
+			check(expected.isInfinity() && actual.isInfinity(), message);
+			return;
+		}
+		check(expected.getAffineXCoord().toBigInteger().equals(actual.getAffineXCoord().toBigInteger())
+				&& expected.getAffineYCoord().toBigInteger().equals(actual.getAffineYCoord().toBigInteger()), message);
+	}
+
+	/**
+	 * @return a random value in [1, n-1]
+	 */
+	private static BigInteger randomScalar(BigInteger n, Random random) {
+		BigInteger k;
+		do {
+			k = new BigInteger(n.bitLength(), random);
+		} while((k.signum() == 0) || (k.compareTo(n) >= 0));
+		return k;
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition) {
+			throw new IllegalStateException(message);
+		}
+	}
+}
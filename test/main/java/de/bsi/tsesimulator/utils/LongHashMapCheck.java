@@ -0,0 +1,231 @@
+package main.java.de.bsi.tsesimulator.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks {@linkplain LongHashMap}: keys whose probe sequences collide and wrap around the end of the table, the backward shift when an entry is
+ * removed from the middle of such a sequence, growing the table and finally random operations compared with a {@linkplain HashMap}.<br>
+ * Run with the compiled simulator on the class path. Ends with an exception if the map returns something else than expected.
+ *
+ * @since 1.6
+ */
+public class LongHashMapCheck {
+	//a new map with this expected size has 16 slots and grows when the 9th entry is added
+	private static final int SMALL_EXPECTED_SIZE = 8;
+	private static final int SMALL_CAPACITY = 16;
+
+	/**
+	 * @param args an optional seed for the random operations
+	 * @throws Exception if the map returns something else than expected
+	 */
+	public static void main(String[] args) throws Exception {
+		long seed = (args.length > 0) ? Long.parseLong(args[0]) : 3;
+		checkSingleValues();
+		checkCollidingKeys();
+		checkWrappingProbeSequence();
+		checkGrowing();
+		int operations = checkRandomOperations(new Random(seed));
+		System.out.println("LongHashMapCheck: all checks passed, " +operations +" random operations (seed " +seed +").");
+	}
+
+	/**
+	 * put, replace, get, remove and clear with keys at the ends of the range of long.
+	 */
+	private static void checkSingleValues() {
+		LongHashMap<String> map = new LongHashMap<String>(SMALL_EXPECTED_SIZE);
+		long[] keys = {0, -1, 1, Long.MIN_VALUE, Long.MAX_VALUE};
+		for(long key : keys) {
+			check(map.put(key, "a" +key) == null, "put of new key " +key +" returned a value");
+		}
+		for(long key : keys) {
+			check(("a" +key).equals(map.put(key, "b" +key)), "put of existing key " +key +" did not return the old value");
+		}
+		check(map.size() == keys.length, "size is " +map.size() +" instead of " +keys.length);
+		check(sameKeys(map.keys(), keys), "keys() returned " +Arrays.toString(map.keys()));
+		check(map.get(2) == null && !map.containsKey(2), "key 2 was never put");
+		check(map.remove(2) == null, "removing key 2 returned a value");
+		check(("b" +Long.MIN_VALUE).equals(map.remove(Long.MIN_VALUE)), "removing Long.MIN_VALUE did not return its value");
+		check(!map.containsKey(Long.MIN_VALUE) && (map.size() == keys.length - 1), "Long.MIN_VALUE is still in the map");
+		try {
+			map.put(5, null);
+			throw new IllegalStateException("null was accepted as a value");
+		} catch (NullPointerException e) {
+			//expected
+		}
+		map.clear();
+		check((map.size() == 0) && (map.keys().length == 0) && !map.containsKey(0), "the map is not empty after clear()");
+		check(map.put(0, "c") == null && "c".equals(map.get(0)), "the map can not be used after clear()");
+	}
+
+	/**
+	 * Several keys with the same home slot form one probe sequence. Removing any one of them must leave the others reachable.
+	 */
+	private static void checkCollidingKeys() {
+		long[] colliding = keysWithHomeSlot(3, 6);
+		for(int removed = 0; removed < colliding.length; removed++) {
+			LongHashMap<Long> map = new LongHashMap<Long>(SMALL_EXPECTED_SIZE);
+			for(long key : colliding) {
+				map.put(key, Long.valueOf(key));
+			}
+			check(Long.valueOf(colliding[removed]).equals(map.remove(colliding[removed])), "removing colliding key " +removed +" failed");
+			for(int i = 0; i < colliding.length; i++) {
+				boolean expected = (i != removed);
+				check(map.containsKey(colliding[i]) == expected, "colliding key " +i +" is " +(expected ? "lost" : "still there") 
+						+" after key " +removed +" was removed");
+			}
+			//the free slot at the end of the shifted sequence must be usable again
+			check(map.put(colliding[removed], Long.valueOf(-1)) == null, "colliding key " +removed +" could not be put again");
+			check(map.size() == colliding.length, "size is " +map.size() +" after putting colliding key " +removed +" again");
+		}
+
+		//entries with other home slots in between must only be moved back if that does not put them before their home slot
+		long[] first = keysWithHomeSlot(5, 3);
+		long[] second = keysWithHomeSlot(6, 2);
+		LongHashMap<Long> map = new LongHashMap<Long>(SMALL_EXPECTED_SIZE);
+		long[] order = {first[0], second[0], first[1], second[1], first[2]};
+		for(long key : order) {
+			map.put(key, Long.valueOf(key));
+		}
+		for(long key : order) {
+			map.remove(key);
+			for(long other : order) {
+				if(map.containsKey(other) != (indexOf(order, other) > indexOf(order, key))) {
+					throw new IllegalStateException("key " +other +" is wrong after removing " +key +" from interleaved probe sequences");
+				}
+			}
+		}
+		check(map.size() == 0, "the interleaved probe sequences are not empty");
+	}
+
+	/**
+	 * A probe sequence that starts in the last slot continues in the first slots. Removing its first entry must shift the entries from the
+	 * beginning of the table back to its end.
+	 */
+	private static void checkWrappingProbeSequence() {
+		long[] wrapping = keysWithHomeSlot(SMALL_CAPACITY - 1, 4);
+		long[] atStart = keysWithHomeSlot(0, 2);
+		LongHashMap<Long> map = new LongHashMap<Long>(SMALL_EXPECTED_SIZE);
+		for(long key : wrapping) {
+			map.put(key, Long.valueOf(key));
+		}
+		for(long key : atStart) {
+			map.put(key, Long.valueOf(key));
+		}
+		map.remove(wrapping[0]);
+		map.remove(atStart[0]);
+		for(int i = 1; i < wrapping.length; i++) {
+			check(Long.valueOf(wrapping[i]).equals(map.get(wrapping[i])), "wrapping key " +i +" is lost");
+		}
+		check(Long.valueOf(atStart[1]).equals(map.get(atStart[1])), "the key with home slot 0 is lost");
+		check(map.size() == wrapping.length + atStart.length - 2, "size is " +map.size() +" after removing from the wrapping sequence");
+	}
+
+	/**
+	 * A map that is created for one entry has to grow many times. All entries must survive every rehash, also after half of them were removed.
+	 */
+	private static void checkGrowing() {
+		int count = 100000;
+		LongHashMap<Long> map = new LongHashMap<Long>(1);
+		for(long key = 1; key <= count; key++) {
+			map.put(key, Long.valueOf(key * 3));
+		}
+		check(map.size() == count, "size is " +map.size() +" after growing to " +count);
+		for(long key = 2; key <= count; key += 2) {
+			check(Long.valueOf(key * 3).equals(map.remove(key)), "removing key " +key +" after growing failed");
+		}
+		for(long key = 1; key <= count; key++) {
+			check(map.containsKey(key) == (key % 2 == 1), "key " +key +" is wrong after removing the even keys");
+		}
+		check(map.keys().length == count / 2, "keys() returned " +map.keys().length +" keys instead of " +(count / 2));
+	}
+
+	/**
+	 * Random put, remove, get and containsKey compared with a HashMap, once with few keys, so that most operations hit existing keys, and once with
+	 * many keys that are multiples of 1024, so that they collide in the low bits.
+	 * @return the number of operations
+	 */
+	private static int checkRandomOperations(Random random) {
+		int operations = 0;
+		for(int round = 0; round < 10; round++) {
+			LongHashMap<Long> map = new LongHashMap<Long>(4);
+			Map<Long, Long> reference = new HashMap<Long, Long>();
+			int range = (round % 2 == 0) ? 200 : (1 << 20);
+			for(int i = 0; i < 200000; i++) {
+				long key = (round % 3 == 0) ? random.nextInt(range) : (long) random.nextInt(range) * 1024 - 5000;
+				int operation = random.nextInt(4);
+				if(operation < 2) {
+					Long value = Long.valueOf(random.nextLong());
+					check(equal(map.put(key, value), reference.put(Long.valueOf(key), value)), "put " +key +" differs in round " +round);
+				}
+				else if(operation == 2) {
+					check(equal(map.remove(key), reference.remove(Long.valueOf(key))), "remove " +key +" differs in round " +round);
+				}
+				else {
+					check(equal(map.get(key), reference.get(Long.valueOf(key))) && (map.containsKey(key) == reference.containsKey(Long.valueOf(key))), 
+							"get " +key +" differs in round " +round);
+				}
+				check(map.size() == reference.size(), "size differs in round " +round);
+				operations++;
+			}
+			long[] keys = map.keys();
+			check(keys.length == reference.size(), "keys() differs in round " +round);
+			for(long key : keys) {
+				check(reference.containsKey(Long.valueOf(key)), "keys() contains " +key +" in round " +round);
+			}
+		}
+		return operations;
+	}
+
+	//-----------------------------------INTERNAL METHODS------------------------------------------------------------------
+
+	/**
+	 * Finds keys whose home slot is the given slot in a map with {@value #SMALL_CAPACITY} slots. Uses the same hash as LongHashMap, if that hash
+	 * is changed, the keys only collide by chance, the checks are still valid.
+	 */
+	private static long[] keysWithHomeSlot(int slot, int count) {
+		List<Long> found = new ArrayList<Long>();
+		for(long key = 1; found.size() < count; key++) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			if(((int) (h ^ (h >>> 32)) & (SMALL_CAPACITY - 1)) == slot) {
+				found.add(Long.valueOf(key));
+			}
+		}
+		long[] keys = new long[count];
+		for(int i = 0; i < count; i++) {
+			keys[i] = found.get(i).longValue();
+		}
+		return keys;
+	}
+
+	private static int indexOf(long[] keys, long key) {
+		for(int i = 0; i < keys.length; i++) {
+			if(keys[i] == key) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean sameKeys(long[] actual, long[] expected) {
+		long[] sortedActual = actual.clone();
+		long[] sortedExpected = expected.clone();
+		Arrays.sort(sortedActual);
+		Arrays.sort(sortedExpected);
+		return Arrays.equals(sortedActual, sortedExpected);
+	}
+
+	private static boolean equal(Object first, Object second) {
+		return (first == null) ? (second == null) : first.equals(second);
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition) {
+			throw new IllegalStateException(message);
+		}
+	}
+}